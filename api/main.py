@@ -3,23 +3,29 @@ Phone Validator API
 FastAPI wrapper for the Java phone validation application
 """
 
-from fastapi import FastAPI, UploadFile, File, HTTPException, Form, Query
+from fastapi import FastAPI, UploadFile, File, HTTPException, Form, Query, Request
 from fastapi.responses import JSONResponse
 from fastapi.middleware.cors import CORSMiddleware
 from pydantic import BaseModel
 from typing import List, Optional
 import subprocess
+import asyncio
 import json
 import tempfile
 import os
 import shutil
+import urllib.error
 from pathlib import Path
 from datetime import datetime
 import redis
 from rq import Queue
 from rq.job import Job
 from rq.exceptions import NoSuchJobError
-from api.queue_worker import process_validation_job
+from functools import lru_cache
+from api.queue_worker import (process_validation_job, read_validation_results, RESULTS_DIR,
+                              VALIDATOR_SERVICE_URL, ValidatorServiceError, call_validator_service,
+                              VALIDATION_TIMEOUT_SECONDS, VALIDATION_DEADLINE_SECONDS)
+from api.result_pages import ResultPages, COLUMNS
 # Find Java executable
 def find_java_executable():
     """Find the Java executable in system PATH"""
@@ -134,7 +140,10 @@ async def root():
         "endpoints": {
             "health": "/health",
             "validate_file": "POST /validate-phones (accepts .sql, .csv, .xlsx, .xls)",
+            "validate_stream": "POST /validate-phones-stream?format=csv (raw body, validated while it uploads)",
             "validate_manual": "POST /validate-phones-manual (single phone number, returns result directly)",
+            "probe_columns": "POST /probe-columns (detected ID/email/phone/country columns of a file's header)",
+            "job_results": "GET /job/{job_id}/results (sorted, filtered pages of a finished job's records)",
             "docs": "/docs"
         }
     }
@@ -236,6 +245,135 @@ async def validate_phones(file: UploadFile = File(...)):
             detail=f"Failed to queue validation job: {str(e)}"
         )
 
+# CSV and SQL headers sit at the start of the file; an .xlsx needs its zip directory at the end
+PROBE_PREFIX_BYTES = 1024 * 1024
+
+@app.post("/probe-columns")
+async def probe_columns(file: UploadFile = File(...)):
+    """
+    Detect which columns hold the ID, email, name, phone and country fields
+    
+    - **file**: SQL (.sql), CSV (.csv), or Excel (.xlsx) file
+    
+    Reads only the header (see HeaderProbe.java) and returns the column names and the
+    detected mapping, so the upload page can show it before validation starts.
+    """
+    if JAVA_PATH is None or not JAR_PATH.exists():
+        raise HTTPException(status_code=500, detail="Java validator is not available")
+    
+    file_ext = os.path.splitext(file.filename)[1].lower()
+    if file_ext not in ['.sql', '.csv', '.xlsx']:
+        raise HTTPException(status_code=400, detail="Column detection supports .sql, .csv and .xlsx files")
+    
+    tmp_input = None
+    try:
+        with tempfile.NamedTemporaryFile(delete=False, suffix=file_ext, mode='wb') as tmp:
+            tmp_input = tmp.name
+            if file_ext == '.xlsx':
+                shutil.copyfileobj(file.file, tmp)
+            else:
+                tmp.write(await file.read(PROBE_PREFIX_BYTES))
+        
+        result = subprocess.run(
+            [JAVA_PATH, '-cp', str(JAR_PATH), 'com.facebookleads.validator.HeaderProbe', tmp_input],
+            capture_output=True,
+            text=True,
+            timeout=30
+        )
+        if result.returncode != 0:
+            message = result.stderr.strip().splitlines()[-1] if result.stderr.strip() else "Column detection failed"
+            raise HTTPException(status_code=400, detail=message.replace("❌ Error: ", ""))
+        
+        probe = json.loads(result.stdout.strip().splitlines()[-1])
+        probe["file"] = file.filename
+        return probe
+    
+    except subprocess.TimeoutExpired:
+        raise HTTPException(status_code=504, detail="Column detection timed out")
+    
+    finally:
+        if tmp_input and os.path.exists(tmp_input):
+            os.unlink(tmp_input)
+
+STREAM_FORMATS = ['sql', 'csv', 'xlsx']
+# Validator stderr kept for error messages; parsers may warn once per row of a dirty upload
+STDERR_TAIL_BYTES = 64 * 1024
+
+@app.post("/validate-phones-stream")
+async def validate_phones_stream(request: Request, format: str = Query(...)):
+    """
+    Validate phone numbers from a raw request body while it is still uploading
+    
+    - **format**: sql, csv or xlsx (the body is the file's bytes, not a multipart form)
+    
+    Each chunk of the body is piped into the validator's standard input as it arrives, so
+    SQL and CSV rows are parsed and validated during the upload instead of after it (see
+    RecordStream.java). Returns the same result as a finished job of POST /validate-phones.
+    """
+    if JAVA_PATH is None or not JAR_PATH.exists():
+        raise HTTPException(status_code=500, detail="Java validator is not available")
+    
+    file_format = format.lower()
+    if file_format not in STREAM_FORMATS:
+        raise HTTPException(status_code=400, detail=f"format must be one of: {', '.join(STREAM_FORMATS)}")
+    
+    tmp_output_dir = tempfile.mkdtemp()
+    process = None
+    stderr_reader = None
+    try:
+        process = await asyncio.create_subprocess_exec(
+            JAVA_PATH, '-jar', str(JAR_PATH), '--deadline', str(VALIDATION_DEADLINE_SECONDS),
+            '--input-format', file_format, '-', tmp_output_dir,
+            stdin=asyncio.subprocess.PIPE,
+            stdout=asyncio.subprocess.DEVNULL,
+            stderr=asyncio.subprocess.PIPE
+        )
+        # Parsers warn once per bad row; read stderr from the start so a full pipe never
+        # blocks the validator (and with it the upload), keeping only the tail for errors
+        stderr_reader = asyncio.create_task(_read_tail(process.stderr, STDERR_TAIL_BYTES))
+        
+        async def upload_and_wait():
+            try:
+                async for chunk in request.stream():
+                    if chunk:
+                        process.stdin.write(chunk)
+                        await process.stdin.drain()
+                process.stdin.close()
+            except (BrokenPipeError, ConnectionResetError):
+                # The validator stopped reading (bad input); its exit status says why
+                pass
+            await process.wait()
+            return await stderr_reader
+        
+        # The upload counts towards the timeout too: a stalled client must not hold a JVM
+        stderr = await asyncio.wait_for(upload_and_wait(), timeout=VALIDATION_TIMEOUT_SECONDS)
+        if process.returncode != 0:
+            raise HTTPException(status_code=500, detail=f"Java validation failed: {stderr.decode(errors='replace')}")
+        
+        result_data = read_validation_results(tmp_output_dir)
+        result_data['completed_at'] = datetime.now().isoformat()
+        return result_data
+    
+    except asyncio.TimeoutError:
+        raise HTTPException(status_code=504, detail="Validation timeout - file too large or processing error")
+    
+    finally:
+        if process is not None and process.returncode is None:
+            process.kill()
+            await process.wait()
+        if stderr_reader is not None and not stderr_reader.done():
+            stderr_reader.cancel()
+        shutil.rmtree(tmp_output_dir, ignore_errors=True)
+
+async def _read_tail(stream, limit: int) -> bytes:
+    """Read a stream to its end, keeping only its last `limit` bytes"""
+    tail = b''
+    while True:
+        chunk = await stream.read(65536)
+        if not chunk:
+            return tail
+        tail = (tail + chunk)[-limit:]
+
 @app.post("/validate-phones-manual", response_model=ValidationResponse)
 async def validate_phone_manual(
     request: Optional[ManualPhoneRequest] = None,
@@ -286,6 +424,33 @@ async def validate_phone_manual(
             detail="Phone number cannot be empty"
         )
     
+    # The validator service answers from its interactive lane, without starting a JVM
+    if VALIDATOR_SERVICE_URL:
+        try:
+            result = await asyncio.to_thread(call_validator_service, 'POST', '/validate', {
+                'id': 'manual-test', 'name': 'Manual Test', 'platform': 'web',
+                'phone': phone_number.strip(), 'country': country_name or '',
+            }, 60)
+            valid_numbers = result['valid_numbers']
+            country_breakdown = {}
+            for number in valid_numbers:
+                country_breakdown[number.get('region')] = country_breakdown.get(number.get('region'), 0) + 1
+            return ValidationResponse(
+                status="success",
+                total_numbers=result['total_numbers'],
+                valid_count=len(valid_numbers),
+                invalid_count=len(result['invalid_numbers']),
+                success_rate=float(len(valid_numbers) / result['total_numbers'] * 100),
+                valid_numbers=valid_numbers,
+                invalid_numbers=result['invalid_numbers'],
+                country_breakdown=country_breakdown,
+                timestamp=datetime.now().isoformat(),
+            )
+        except urllib.error.URLError as e:
+            print(f"Warning: Validator service unreachable ({e}), starting a JVM")
+        except ValidatorServiceError as e:
+            raise HTTPException(status_code=500, detail=f"Java validation failed: {e}")
+    
     tmp_input = None
     tmp_output_dir = None
     
@@ -441,6 +606,54 @@ async def get_job_status(job_id: str):
             detail=f"Error fetching job status: {str(e)}"
         )
 
+@lru_cache(maxsize=16)
+def open_result_pages(path: str, mtime: float) -> ResultPages:
+    """Open paged results once per file version; the mtime is part of the key"""
+    return ResultPages(path)
+
+@app.get("/job/{job_id}/results")
+async def get_job_results(
+    job_id: str,
+    table: str = Query("valid", pattern="^(valid|invalid)$"),
+    region: Optional[str] = None,
+    type: Optional[str] = None,
+    method: Optional[str] = None,
+    error: Optional[str] = None,
+    sort: Optional[str] = Query(None, pattern="^(" + "|".join(COLUMNS) + ")$"),
+    desc: bool = False,
+    offset: int = Query(0, ge=0),
+    limit: int = Query(50, ge=1, le=1000)
+):
+    """
+    Get one page of a finished job's valid or invalid records
+    
+    - **table**: valid or invalid
+    - **region**, **type**, **method**, **error**: keep only records with this value
+      (error is the errorCode, e.g. NOT_VALID; region of invalid records is their input country as a region code, e.g. BR)
+    - **sort**: region, type, method or error; records with equal values keep file order
+    - **desc**: reverse the order
+    - **offset**, **limit**: page window (limit at most 1000)
+    
+    Returns {"total": matching records, "offset": offset, "records": [...]}.
+    """
+    pages_path = RESULTS_DIR / f"{job_id}.pages"
+    if Path(job_id).name != job_id or not pages_path.is_file():
+        raise HTTPException(
+            status_code=404,
+            detail=f"No paged results for job {job_id}"
+        )
+    
+    filters = {column: value for column, value in
+               (("region", region), ("type", type), ("method", method), ("error", error)) if value}
+    try:
+        pages = open_result_pages(str(pages_path), pages_path.stat().st_mtime)
+        return pages.query(table, filters, sort, desc, offset, limit)
+    except (OSError, ValueError) as e:
+        raise HTTPException(
+            status_code=500,
+            detail=f"Error reading paged results: {str(e)}"
+        )
+
 @app.get("/queue/stats")
 async def get_queue_stats():
     """Get queue statistics"""
@@ -456,7 +669,7 @@ async def get_queue_stats():
         finished_jobs = validation_queue.finished_job_registry.count
         failed_jobs = validation_queue.failed_job_registry.count
         
-        return {
+        stats = {
             "queue_enabled": True,
             "queued": queued_jobs,
             "started": started_jobs,
@@ -464,6 +677,13 @@ async def get_queue_stats():
             "failed": failed_jobs,
             "total": queued_jobs + started_jobs
         }
+        # Lane depths and wait times of the validator service
+        if VALIDATOR_SERVICE_URL:
+            try:
+                stats["validator_service"] = await asyncio.to_thread(call_validator_service, 'GET', '/metrics')
+            except (urllib.error.URLError, ValidatorServiceError) as e:
+                stats["validator_service"] = {"error": str(e)}
+        return stats
     except Exception as e:
         return {
             "queue_enabled": True,
@@ -8,6 +8,9 @@ import json
 import tempfile
 import os
 import shutil
+import time
+import urllib.request
+import urllib.error
 from pathlib import Path
 from datetime import datetime
 from typing import Dict, Any
@@ -21,6 +24,20 @@ redis_conn = redis.Redis(host='localhost', port=6379, db=0, decode_responses=Tru
 # Configuration
 BASE_DIR = Path(__file__).resolve().parent.parent
 JAR_PATH = BASE_DIR / "target" / "phone-validator-1.0.0.jar"
+# Paged results of finished jobs (<job_id>.pages), served by GET /job/{job_id}/results
+RESULTS_DIR = BASE_DIR / "results"
+RESULT_PAGES_MAX_AGE = 24 * 60 * 60  # seconds
+# Outputs of earlier runs keyed by file content, so a re-uploaded export is not validated again
+RESULT_CACHE_DIR = BASE_DIR / "cache" / "results"
+RESULT_CACHE_SIZE_MB = int(os.getenv("RESULT_CACHE_SIZE_MB", "2048"))
+# Long-running Java validator (ValidationService.java), e.g. http://localhost:8090; unset or
+# unreachable → one JVM per job
+VALIDATOR_SERVICE_URL = os.getenv("VALIDATOR_SERVICE_URL")
+SERVICE_POLL_SECONDS = 0.5
+# Validation time budget: the validator stops by itself after this long and writes the results
+# so far, marked partial, before the hard timeout below would kill it and lose everything
+VALIDATION_TIMEOUT_SECONDS = 300
+VALIDATION_DEADLINE_SECONDS = int(os.getenv("VALIDATION_DEADLINE_SECONDS", "270"))
 
 def find_java_executable():
     """Find the Java executable in system PATH"""
@@ -44,6 +61,120 @@ def find_java_executable():
 
 JAVA_PATH = find_java_executable()
 
+def prune_result_pages():
+    """Delete paged results older than RESULT_PAGES_MAX_AGE"""
+    if not RESULTS_DIR.exists():
+        return
+    cutoff = time.time() - RESULT_PAGES_MAX_AGE
+    for path in RESULTS_DIR.glob("*.pages"):
+        try:
+            if path.stat().st_mtime < cutoff:
+                path.unlink()
+        except OSError as e:
+            print(f"Warning: Could not remove old result pages {path}: {e}")
+
+class ValidatorServiceError(Exception):
+    """The validator service answered with an error"""
+
+def call_validator_service(method: str, path: str, payload: Any = None, timeout: float = 10) -> Dict[str, Any]:
+    """
+    Call the validator service
+    
+    Raises urllib.error.URLError if the service is unreachable, ValidatorServiceError if it
+    rejects the request.
+    """
+    data = json.dumps(payload).encode('utf-8') if payload is not None else None
+    request = urllib.request.Request(VALIDATOR_SERVICE_URL.rstrip('/') + path, data=data, method=method,
+                                     headers={'Content-Type': 'application/json'})
+    try:
+        with urllib.request.urlopen(request, timeout=timeout) as response:
+            return json.loads(response.read())
+    except urllib.error.HTTPError as e:
+        try:
+            message = json.loads(e.read()).get('error', str(e))
+        except ValueError:
+            message = str(e)
+        raise ValidatorServiceError(message)
+
+def run_on_validator_service(input_file_path: str, output_dir: str, args: list, timeout: float) -> bool:
+    """
+    Run a file on the service's bulk lane and wait for it
+    
+    Returns False if the service is unreachable, so the caller can start a JVM instead.
+    """
+    try:
+        job = call_validator_service('POST', '/jobs', {
+            'input': os.path.abspath(input_file_path),
+            'output': os.path.abspath(output_dir),
+            'args': args,
+        })
+    except urllib.error.URLError as e:
+        print(f"Warning: Validator service unreachable ({e}), starting a JVM for this job")
+        return False
+    
+    deadline = time.time() + timeout
+    while job['status'] in ('queued', 'running'):
+        if time.time() > deadline:
+            # Stop the job so it does not keep a service worker busy after this one gives up
+            try:
+                call_validator_service('POST', f"/jobs/{job['job_id']}/cancel")
+            except (urllib.error.URLError, ValidatorServiceError) as e:
+                print(f"Warning: Could not cancel validator service job {job['job_id']}: {e}")
+            raise subprocess.TimeoutExpired(cmd=f"validator service {job['job_id']}", timeout=timeout)
+        time.sleep(SERVICE_POLL_SECONDS)
+        job = call_validator_service('GET', f"/jobs/{job['job_id']}")
+    
+    if job['status'] != 'completed':
+        raise Exception(f"Java validation failed: {job.get('error')}")
+    return True
+
+def read_validation_results(output_dir: str) -> Dict[str, Any]:
+    """
+    Read the JSON outputs of a validator run into the result shape returned to clients
+    
+    Args:
+        output_dir: Output directory of the run
+    
+    Returns:
+        Dictionary with counts, records and the country breakdown
+    """
+    valid_path = Path(output_dir) / "valid_numbers.json"
+    invalid_path = Path(output_dir) / "invalid_numbers.json"
+    summary_path = Path(output_dir) / "summary.json"
+    
+    if not valid_path.exists() or not invalid_path.exists() or not summary_path.exists():
+        raise Exception("Validation result files not found")
+    
+    with open(valid_path) as f:
+        valid_numbers = json.load(f)
+    
+    with open(invalid_path) as f:
+        invalid_numbers = json.load(f)
+    
+    with open(summary_path) as f:
+        summary = json.load(f)
+    
+    # Calculate statistics
+    total_numbers = summary.get("total_numbers", 0)
+    valid_count = len(valid_numbers)
+    invalid_count = len(invalid_numbers)
+    success_rate = float((valid_count / total_numbers * 100) if total_numbers > 0 else 0)
+    
+    return {
+        'status': 'success',
+        'total_numbers': total_numbers,
+        'valid_count': valid_count,
+        'invalid_count': invalid_count,
+        'success_rate': success_rate,
+        'valid_numbers': valid_numbers,
+        'invalid_numbers': invalid_numbers,
+        'country_breakdown': summary.get("valid_by_country", {}),
+        'timestamp': summary.get("timestamp", datetime.now().isoformat()),
+        'original_column_names': summary.get("original_column_names"),
+        'partial': summary.get("partial", False),
+        'partial_reason': summary.get("partial_reason"),
+    }
+
 def process_validation_job(input_file_path: str) -> Dict[str, Any]:
     """
     Process a phone validation job
@@ -80,16 +211,21 @@ def process_validation_job(input_file_path: str) -> Dict[str, Any]:
             job.meta['progress'] = 'Running Java validator...'
             job.save_meta()
         
-        # Run Java validator
-        result = subprocess.run(
-            [JAVA_PATH, '-jar', str(JAR_PATH), input_file_path, tmp_output_dir],
-            capture_output=True,
-            text=True,
-            timeout=300  # 5 minute timeout for large files
-        )
-        
-        if result.returncode != 0:
-            raise Exception(f"Java validation failed: {result.stderr}")
+        # Run Java validator, on the service's bulk lane when one is running
+        java_args = ['--page-index', '--deadline', str(VALIDATION_DEADLINE_SECONDS),
+                     '--result-cache', str(RESULT_CACHE_DIR), '--result-cache-size', str(RESULT_CACHE_SIZE_MB)]
+        if not (VALIDATOR_SERVICE_URL
+                and run_on_validator_service(input_file_path, tmp_output_dir, java_args,
+                                             timeout=VALIDATION_TIMEOUT_SECONDS)):
+            result = subprocess.run(
+                [JAVA_PATH, '-jar', str(JAR_PATH)] + java_args + [input_file_path, tmp_output_dir],
+                capture_output=True,
+                text=True,
+                timeout=VALIDATION_TIMEOUT_SECONDS  # backstop if the deadline is not honoured
+            )
+            
+            if result.returncode != 0:
+                raise Exception(f"Java validation failed: {result.stderr}")
         
         # Update job progress
         if job:
@@ -97,47 +233,25 @@ def process_validation_job(input_file_path: str) -> Dict[str, Any]:
             job.save_meta()
         
         # Read results
-        valid_path = Path(tmp_output_dir) / "valid_numbers.json"
-        invalid_path = Path(tmp_output_dir) / "invalid_numbers.json"
-        summary_path = Path(tmp_output_dir) / "summary.json"
-        
-        if not valid_path.exists() or not invalid_path.exists() or not summary_path.exists():
-            raise Exception("Validation result files not found")
-        
-        with open(valid_path) as f:
-            valid_numbers = json.load(f)
-        
-        with open(invalid_path) as f:
-            invalid_numbers = json.load(f)
-        
-        with open(summary_path) as f:
-            summary = json.load(f)
+        result_data = read_validation_results(tmp_output_dir)
         
-        # Calculate statistics
-        total_numbers = summary.get("total_numbers", 0)
-        valid_count = len(valid_numbers)
-        invalid_count = len(invalid_numbers)
-        success_rate = float((valid_count / total_numbers * 100) if total_numbers > 0 else 0)
+        # Keep the paged results for GET /job/{job_id}/results
+        pages_path = Path(tmp_output_dir) / "results.pages"
+        page_index = False
+        if job and pages_path.exists():
+            prune_result_pages()
+            RESULTS_DIR.mkdir(parents=True, exist_ok=True)
+            shutil.move(str(pages_path), str(RESULTS_DIR / f"{job.id}.pages"))
+            page_index = True
         
-        # Build result
-        result_data = {
-            'status': 'success',
-            'total_numbers': total_numbers,
-            'valid_count': valid_count,
-            'invalid_count': invalid_count,
-            'success_rate': success_rate,
-            'valid_numbers': valid_numbers,
-            'invalid_numbers': invalid_numbers,
-            'country_breakdown': summary.get("valid_by_country", {}),
-            'timestamp': summary.get("timestamp", datetime.now().isoformat()),
-            'completed_at': datetime.now().isoformat(),
-            'original_column_names': summary.get("original_column_names"),
-        }
+        result_data['completed_at'] = datetime.now().isoformat()
+        result_data['page_index'] = page_index
         
         # Update job metadata
         if job:
             job.meta['status'] = 'completed'
-            job.meta['progress'] = 'Completed'
+            job.meta['progress'] = ('Stopped early, partial results: ' + result_data['partial_reason']
+                                    if result_data['partial'] else 'Completed')
             job.meta['completed_at'] = datetime.now().isoformat()
             job.save_meta()
         
@@ -0,0 +1,152 @@
+"""
+Reader for results.pages, the paged result file the Java validator writes with --page-index.
+See ResultPages.java for the layout; this module mirrors its query logic so pages can be
+served without loading valid_numbers.json / invalid_numbers.json.
+"""
+
+import json
+import mmap
+import struct
+
+import numpy as np
+
+MAGIC = b"PVPAGES1"
+VERSION = 2
+HEADER_BYTES = 64
+TABLES = ("valid", "invalid")
+COLUMNS = ("region", "type", "method", "error")
+ROW_FIXED_BYTES = 12
+ROW_BYTES = ROW_FIXED_BYTES + 2 * len(COLUMNS)
+ROW_DTYPE = np.dtype([("text", ">i8"), ("length", ">i4"), ("codes", ">u2", (len(COLUMNS),))])
+
+
+class _Table:
+    """Dictionaries and offsets of one table (valid or invalid)."""
+
+    def __init__(self, data, count, offset):
+        self.count = count
+        self.rows = np.frombuffer(data, dtype=ROW_DTYPE, count=count, offset=offset)
+        self.sorted_offset = offset + count * ROW_BYTES
+        self.codes = []
+        self.values = []
+        self.starts = []
+        self.counts = []
+        pos = self.sorted_offset + len(COLUMNS) * count * 4
+        for _ in COLUMNS:
+            (n,) = struct.unpack_from(">i", data, pos)
+            pos += 4
+            starts, counts = [], []
+            for _ in range(n + 1):
+                start, rows = struct.unpack_from(">ii", data, pos)
+                starts.append(start)
+                counts.append(rows)
+                pos += 8
+            values = [None]
+            for _ in range(n):
+                (length,) = struct.unpack_from(">i", data, pos)
+                values.append(bytes(data[pos + 4:pos + 4 + length]).decode("utf-8"))
+                pos += 4 + length
+            self.starts.append(starts)
+            self.counts.append(counts)
+            self.values.append(values)
+            self.codes.append({value: code for code, value in enumerate(values) if code > 0})
+
+
+class ResultPages:
+    """A memory-mapped results.pages file."""
+
+    def __init__(self, path):
+        self._file = open(path, "rb")
+        try:
+            self._map = mmap.mmap(self._file.fileno(), 0, access=mmap.ACCESS_READ)
+            if len(self._map) < HEADER_BYTES or self._map[:8] != MAGIC:
+                raise ValueError(f"Not a results pages file: {path}")
+            version, columns = struct.unpack_from(">ii", self._map, 8)
+            if version != VERSION or columns != len(COLUMNS):
+                raise ValueError(f"Unsupported results pages version {version}: {path}")
+            self._text_offset, text_bytes = struct.unpack_from(">qq", self._map, 48)
+            if self._text_offset + text_bytes != len(self._map):
+                raise ValueError(f"Results pages file is truncated: {path}")
+            self._tables = {}
+            for index, name in enumerate(TABLES):
+                count, offset = struct.unpack_from(">qq", self._map, 16 + 16 * index)
+                self._tables[name] = _Table(self._map, count, offset)
+        except Exception:
+            self._file.close()
+            raise
+
+    def count(self, table):
+        return self._tables[table].count
+
+    def values(self, table, column):
+        """Distinct values of a column with their row counts, in sort order."""
+        view = self._tables[table]
+        c = COLUMNS.index(column)
+        return {view.values[c][code]: view.counts[c][code] for code in range(1, len(view.values[c]))}
+
+    def query(self, table="valid", filters=None, sort=None, descending=False, offset=0, limit=50):
+        """
+        One page of records: {"total": matching rows, "offset": offset, "records": [...]}.
+        A filter on one column, in output order or sorted by that column, reads only the page;
+        other combinations check the rows of the most selective filter or the sort column,
+        vectorized with numpy.
+        """
+        view = self._tables[table]
+        wanted = {}
+        for column, value in (filters or {}).items():
+            c = COLUMNS.index(column)
+            code = view.codes[c].get(value)
+            if code is None:
+                return {"total": 0, "offset": offset, "records": []}
+            wanted[c] = code
+
+        driving = COLUMNS.index(sort) if sort else None
+        if driving is None and wanted:
+            driving = min(wanted, key=lambda c: view.counts[c][wanted[c]])
+        start, end = 0, view.count
+        if driving is not None and driving in wanted:
+            start = view.starts[driving][wanted[driving]]
+            end = start + view.counts[driving][wanted[driving]]
+        others = {c: code for c, code in wanted.items() if c != driving}
+
+        length = end - start
+        if not others:
+            total = length
+            first, last = offset, min(length, offset + limit)
+            rows = self._walk(view, driving, start, end, first, last, descending) if first < last else []
+        else:
+            walk = self._walk(view, driving, start, end, 0, length, descending)
+            mask = np.ones(len(walk), dtype=bool)
+            for c, code in others.items():
+                mask &= view.rows["codes"][walk, c] == code
+            matching = walk[mask]
+            total = len(matching)
+            rows = matching[offset:offset + limit]
+        return {"total": total, "offset": offset, "records": [self._record(view, row) for row in rows]}
+
+    def _walk(self, view, driving, start, end, first, last, descending):
+        """Rows at walk positions [first, last): sort table positions, or output order."""
+        if descending:
+            low, high = end - last, end - first
+        else:
+            low, high = start + first, start + last
+        if driving is None:
+            rows = np.arange(low, high)
+        else:
+            base = view.sorted_offset + 4 * (driving * view.count + low)
+            rows = np.frombuffer(self._map, dtype=">i4", count=high - low, offset=base)
+        return rows[::-1] if descending else rows
+
+    def _record(self, view, row):
+        entry = view.rows[row]
+        position = self._text_offset + int(entry["text"])
+        return json.loads(self._map[position:position + int(entry["length"])].decode("utf-8"))
+
+    def close(self):
+        self._tables = None
+        try:
+            self._map.close()
+        except BufferError:
+            # A row array or sort run handed out still views the map; it is unmapped with the last of them
+            pass
+        self._file.close()
@@ -1,13 +1,32 @@
 'use client';
 
-import { useState } from 'react';
+import { useRef, useState } from 'react';
+import axios from 'axios';
 import {
   FILE_CONFIG,
   MANUAL_TEST_COUNTRIES,
   DEFAULTS,
+  API_CONFIG,
+  getApiUrl,
 } from '../utils/constants';
 import BestPracticesTab from './BestPracticesTab';
 
+// File types the header probe (POST /probe-columns) can read
+const COLUMN_PROBE_EXTENSIONS = ['.sql', '.csv', '.xlsx'];
+
+const COLUMN_LABELS = {
+  id: 'ID',
+  email: 'Email',
+  name: 'Name',
+  first_name: 'First Name',
+  last_name: 'Last Name',
+  phone_number: 'Phone',
+  us_telephone: 'US Telephone',
+  foreign_telephone: 'Foreign Telephone',
+  country: 'Country',
+  platform: 'Platform',
+};
+
 export default function FileUpload({ onFileUpload, loading, error }) {
   const [selectedFile, setSelectedFile] = useState(null);
   const [dragActive, setDragActive] = useState(false);
@@ -15,6 +34,45 @@ export default function FileUpload({ onFileUpload, loading, error }) {
   const [manualCountry, setManualCountry] = useState(DEFAULTS.MANUAL_TEST_COUNTRY);
   const [showManualInput, setShowManualInput] = useState(false);
   const [showBestPractices, setShowBestPractices] = useState(false);
+  const [columnProbe, setColumnProbe] = useState(null);
+  const probedFileRef = useRef(null);
+
+  // Ask the API which columns the header maps to; only the header is read, so this is quick
+  const probeColumns = async (file) => {
+    probedFileRef.current = file;
+    const ext = file.name.toLowerCase().substring(file.name.lastIndexOf('.'));
+    if (!COLUMN_PROBE_EXTENSIONS.includes(ext)) {
+      setColumnProbe(null);
+      return;
+    }
+    setColumnProbe({ loading: true });
+    try {
+      const formData = new FormData();
+      formData.append('file', file);
+      const response = await axios.post(
+        getApiUrl(API_CONFIG.ENDPOINTS.PROBE_COLUMNS),
+        formData,
+        { headers: { 'Content-Type': 'multipart/form-data' } }
+      );
+      if (probedFileRef.current === file) {
+        setColumnProbe({ data: response.data });
+      }
+    } catch (err) {
+      if (probedFileRef.current === file) {
+        setColumnProbe({ error: err.response?.data?.detail || err.message });
+      }
+    }
+  };
+
+  const selectFile = (file) => {
+    setSelectedFile(file);
+    if (file) {
+      probeColumns(file);
+    } else {
+      probedFileRef.current = null;
+      setColumnProbe(null);
+    }
+  };
 
   const handleDrag = (e) => {
     e.preventDefault();
@@ -32,13 +90,13 @@ export default function FileUpload({ onFileUpload, loading, error }) {
     setDragActive(false);
 
     if (e.dataTransfer.files && e.dataTransfer.files[0]) {
-      setSelectedFile(e.dataTransfer.files[0]);
+      selectFile(e.dataTransfer.files[0]);
     }
   };
 
   const handleChange = (e) => {
     if (e.target.files && e.target.files[0]) {
-      setSelectedFile(e.target.files[0]);
+      selectFile(e.target.files[0]);
     }
   };
 
@@ -168,7 +226,7 @@ export default function FileUpload({ onFileUpload, loading, error }) {
                 <span className="text-sm text-gray-700">{selectedFile.name}</span>
               </div>
               <button
-                onClick={() => setSelectedFile(null)}
+                onClick={() => selectFile(null)}
                 className="text-red-500 hover:text-red-700"
                 disabled={loading}
               >
@@ -184,6 +242,35 @@ export default function FileUpload({ onFileUpload, loading, error }) {
           </div>
         )}
 
+        {selectedFile && columnProbe && (
+          <div className="mt-4 p-4 bg-gray-50 rounded-lg border-l-4 border-yellow-400">
+            <p className="text-sm font-medium text-black mb-2">Detected columns</p>
+            {columnProbe.loading && (
+              <p className="text-sm text-gray-500">Reading header...</p>
+            )}
+            {columnProbe.error && (
+              <p className="text-sm text-gray-500">Could not detect columns: {columnProbe.error}</p>
+            )}
+            {columnProbe.data && (
+              <>
+                <ul className="text-sm text-gray-700 space-y-1">
+                  {Object.entries(columnProbe.data.detected).map(([field, column]) => (
+                    <li key={field}>
+                      <span className="font-medium">{COLUMN_LABELS[field] || field}:</span>{' '}
+                      {column.header || `column ${column.index + 1}`}
+                    </li>
+                  ))}
+                </ul>
+                {!columnProbe.data.has_phone && (
+                  <p className="text-sm text-red-700 mt-2">
+                    No phone column found - check the header row before validating.
+                  </p>
+                )}
+              </>
+            )}
+          </div>
+        )}
+
         {error && (
           <div className="mt-4 p-4 bg-red-50 border-l-4 border-red-500 rounded-lg">
             <p className="text-sm text-red-700">{error}</p>
@@ -17,6 +17,7 @@ export const API_CONFIG = {
     STATS: "/stats",
     JOB_STATUS: "/job",
     QUEUE_STATS: "/queue/stats",
+    PROBE_COLUMNS: "/probe-columns",
   },
   TIMEOUTS: {
     FILE_UPLOAD: 120000, // 2 minutes
@@ -0,0 +1,345 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Processes many input files in one JVM with a bounded worker pool.
+ * All workers share one PhoneNumberValidator (and therefore one outcome cache);
+ * each file gets its own output sub-directory, and a failure in one file is
+ * recorded in batch_summary.json without affecting the others.
+ */
+public class BatchProcessor {
+
+    private static final Set<String> SUPPORTED_EXTENSIONS = new HashSet<>(Arrays.asList("sql", "csv", "xlsx", "xls"));
+
+    private final PhoneNumberValidator validator;
+    private final ValidationCache cache;
+    private final int threads;
+    private final String deltaDir;
+    private final CliOptions options;
+    private final CancellationToken cancellation;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    public BatchProcessor(ValidationCache cache, CliOptions options) {
+        this(cache, options, CancellationToken.NONE);
+    }
+
+    /**
+     * Once the token is cancelled, running files stop and write partial results and files not
+     * yet started are reported as failed, so a later --resume picks them up.
+     */
+    public BatchProcessor(ValidationCache cache, CliOptions options, CancellationToken cancellation) {
+        this.cache = cache;
+        this.cancellation = cancellation;
+        this.validator = new PhoneNumberValidator(cache);
+        this.threads = options.getThreads();
+        this.deltaDir = options.getDeltaDir();
+        this.options = options;
+    }
+
+    /**
+     * Expand input arguments into concrete files. Each argument may be a file,
+     * a directory (its supported files, sorted by name) or a glob such as "exports/*.csv".
+     */
+    public static List<File> expandInputs(List<String> inputs) throws IOException {
+        Set<File> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            File file = new File(input);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles(f -> f.isFile() && isSupported(f.getName()));
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                }
+            } else if (isGlob(input)) {
+                files.addAll(expandGlob(input));
+            } else {
+                files.add(file);
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    public boolean run(List<File> inputs, String outputDir) throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get(outputDir));
+        Map<File, String> outputDirs = assignOutputDirs(inputs, outputDir);
+
+        System.out.println("📦 Batch mode: " + inputs.size() + " file(s), " + threads + " worker thread(s)");
+        System.out.println();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<FileReport>> futures = new ArrayList<>();
+        try {
+            for (File input : inputs) {
+                futures.add(pool.submit(() -> processFile(input, outputDirs.get(input))));
+            }
+            List<FileReport> reports = new ArrayList<>();
+            for (Future<FileReport> future : futures) {
+                try {
+                    reports.add(future.get());
+                } catch (ExecutionException e) {
+                    // processFile catches everything it can; this only guards against Errors
+                    throw new IOException("Batch worker failed: " + e.getCause(), e.getCause());
+                }
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            writeBatchSummary(reports, outputDir, elapsedMillis);
+            printBatchSummary(reports, outputDir, elapsedMillis);
+            return reports.stream().allMatch(r -> r.error == null);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private FileReport processFile(File input, String fileOutputDir) {
+        FileReport report = new FileReport(input.getPath(), fileOutputDir);
+        long start = System.nanoTime();
+        try {
+            if (cancellation.isCancelled()) {
+                throw new CancellationException("Not started: " + cancellation.getReason());
+            }
+            if (options.isResume() && isComplete(fileOutputDir) && loadCompletedReport(report)) {
+                System.out.println("⏭️  " + input.getName() + ": already complete, skipped");
+                report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                return report;
+            }
+            // In delta mode each file is compared against its own sub-directory of the previous batch
+            InputRun run = new InputRun(options, validator)
+                    .cancellation(cancellation)
+                    .concurrent(threads)
+                    .deltaDir(deltaDir != null
+                            ? Paths.get(deltaDir, Paths.get(fileOutputDir).getFileName().toString()).toString()
+                            : null);
+            boolean restored;
+            try (ValidationResult result = run.run(input.getPath(), fileOutputDir)) {
+                restored = result == null;
+                if (restored) {
+                    if (!loadCompletedReport(report)) {
+                        throw new IOException("Outputs restored from the result cache have no readable summary.json");
+                    }
+                } else {
+                    report.partialReason = result.getPartialReason();
+                    report.totalCount = result.getTotalCount();
+                    report.validCount = result.getValidCount();
+                    report.invalidCount = result.getInvalidCount();
+                    report.countryStats.putAll(result.getValidByCountry());
+                }
+            }
+            System.out.println(String.format("%s %s: %d valid / %d invalid%s",
+                    restored ? "♻️ " : report.partialReason != null ? "⏹️ " : "✅", input.getName(),
+                    report.validCount, report.invalidCount,
+                    restored ? " (restored from the result cache)"
+                            : report.partialReason != null ? " (partial: " + report.partialReason + ")" : ""));
+        } catch (Exception e) {
+            report.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            System.err.println("❌ " + input.getName() + " failed: " + report.error);
+        }
+        report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    /**
+     * A file's outputs are complete once its manifest (written last) exists and no checkpoint
+     * is left behind; a checkpoint is only removed after all outputs have been generated.
+     */
+    private static boolean isComplete(String fileOutputDir) {
+        return Files.isRegularFile(Paths.get(fileOutputDir, DeltaManifest.FILE_NAME))
+                && Files.isRegularFile(Paths.get(fileOutputDir, "summary.json"))
+                && !CheckpointManager.exists(fileOutputDir);
+    }
+
+    /** Fill a report from a finished file's summary.json; false if it cannot be read. */
+    private static boolean loadCompletedReport(FileReport report) {
+        try (Reader reader = new InputStreamReader(
+                new FileInputStream(Paths.get(report.outputDir, "summary.json").toFile()), StandardCharsets.UTF_8)) {
+            JsonObject summary = JsonParser.parseReader(reader).getAsJsonObject();
+            report.totalCount = summary.get("total_numbers").getAsInt();
+            report.validCount = summary.get("valid_count").getAsInt();
+            report.invalidCount = summary.get("invalid_count").getAsInt();
+            if (summary.has("valid_by_country")) {
+                for (Map.Entry<String, JsonElement> entry : summary.getAsJsonObject("valid_by_country").entrySet()) {
+                    report.countryStats.put(entry.getKey(), entry.getValue().getAsInt());
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            report.countryStats.clear();
+            return false;
+        }
+    }
+
+    /** One output sub-directory per input, named after the file and de-duplicated. */
+    private static Map<File, String> assignOutputDirs(List<File> inputs, String outputDir) {
+        Map<File, String> dirs = new LinkedHashMap<>();
+        Set<String> used = new HashSet<>();
+        for (File input : inputs) {
+            String name = input.getName();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+            String candidate = base;
+            int suffix = 2;
+            while (!used.add(candidate)) {
+                candidate = base + "-" + suffix++;
+            }
+            dirs.put(input, Paths.get(outputDir, candidate).toString());
+        }
+        return dirs;
+    }
+
+    private void writeBatchSummary(List<FileReport> reports, String outputDir, long elapsedMillis) throws IOException {
+        int totalNumbers = 0;
+        int validCount = 0;
+        int invalidCount = 0;
+        int failedFiles = 0;
+        Map<String, Integer> countryStats = new TreeMap<>();
+        List<Map<String, Object>> files = new ArrayList<>();
+
+        for (FileReport report : reports) {
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("input", report.input);
+            file.put("output_dir", report.outputDir);
+            file.put("status", report.error != null ? "failed" : report.partialReason != null ? "partial" : "success");
+            file.put("elapsed_ms", report.elapsedMillis);
+            if (report.error != null) {
+                failedFiles++;
+                file.put("error", report.error);
+            } else {
+                totalNumbers += report.totalCount;
+                validCount += report.validCount;
+                invalidCount += report.invalidCount;
+                file.put("total_numbers", report.totalCount);
+                file.put("valid_count", report.validCount);
+                file.put("invalid_count", report.invalidCount);
+                if (report.partialReason != null) {
+                    file.put("partial_reason", report.partialReason);
+                }
+                file.put("success_rate", String.format("%.2f%%",
+                        report.totalCount > 0 ? report.validCount * 100.0 / report.totalCount : 0.0));
+                report.countryStats.forEach((region, count) -> countryStats.merge(region, count, Integer::sum));
+            }
+            files.add(file);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("timestamp", dateFormat.format(new Date()));
+        summary.put("file_count", reports.size());
+        summary.put("failed_files", failedFiles);
+        summary.put("partial_files", reports.stream().filter(r -> r.error == null && r.partialReason != null).count());
+        summary.put("elapsed_ms", elapsedMillis);
+        summary.put("total_numbers", totalNumbers);
+        summary.put("valid_count", validCount);
+        summary.put("invalid_count", invalidCount);
+        summary.put("success_rate", String.format("%.2f%%",
+                totalNumbers > 0 ? validCount * 100.0 / totalNumbers : 0.0));
+        summary.put("valid_by_country", countryStats);
+        summary.put("cache_hits", cache.getHits());
+        summary.put("cache_misses", cache.getMisses());
+        // Files run side by side in one heap, so batch sizes are reported for the batch
+        summary.put("heap", HeapMonitor.get().metrics());
+        summary.put("files", files);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(Paths.get(outputDir, "batch_summary.json").toFile()), StandardCharsets.UTF_8)) {
+            gson.toJson(summary, writer);
+        }
+    }
+
+    private void printBatchSummary(List<FileReport> reports, String outputDir, long elapsedMillis) {
+        long failed = reports.stream().filter(r -> r.error != null).count();
+        long partial = reports.stream().filter(r -> r.error == null && r.partialReason != null).count();
+        System.out.println();
+        System.out.println("═══════════════════════════════════════════════════════════════");
+        System.out.println(failed > 0 ? "⚠️  BATCH COMPLETED WITH FAILURES"
+                : partial > 0 ? "⏹️  BATCH STOPPED EARLY: " + partial + " file(s) with partial results"
+                : "✅ BATCH COMPLETED SUCCESSFULLY!");
+        System.out.println("═══════════════════════════════════════════════════════════════");
+        System.out.println("   Files processed:  " + (reports.size() - failed) + "/" + reports.size());
+        System.out.println("   Elapsed:          " + elapsedMillis + " ms");
+        System.out.println("   Cache hits:       " + cache.getHits() + " (misses: " + cache.getMisses() + ")");
+        if (HeapMonitor.get().hasAdapted()) {
+            System.out.println("   Adaptive sizes:   " + HeapMonitor.get().describe());
+        }
+        for (FileReport report : reports) {
+            if (report.error != null) {
+                System.out.println("   ❌ " + report.input + ": " + report.error);
+            }
+        }
+        System.out.println();
+        System.out.println("📁 Combined summary: " + outputDir + "/batch_summary.json");
+        System.out.println("═══════════════════════════════════════════════════════════════");
+        System.out.println();
+    }
+
+    private static boolean isSupported(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && SUPPORTED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase());
+    }
+
+    static boolean isGlob(String input) {
+        return input.indexOf('*') >= 0 || input.indexOf('?') >= 0
+                || input.indexOf('[') >= 0 || input.indexOf('{') >= 0;
+    }
+
+    /**
+     * Expand a glob relative to its longest non-wildcard parent directory. The walk goes only
+     * as deep as the pattern has segments below that directory, unless it contains "**".
+     */
+    private static List<File> expandGlob(String pattern) throws IOException {
+        String normalized = pattern.replace('\\', '/');
+        int firstWildcard = normalized.length();
+        for (char c : new char[] { '*', '?', '[', '{' }) {
+            int idx = normalized.indexOf(c);
+            if (idx >= 0) firstWildcard = Math.min(firstWildcard, idx);
+        }
+        int slash = normalized.lastIndexOf('/', firstWildcard);
+        Path root = slash >= 0 ? Paths.get(normalized.substring(0, slash + 1)) : Paths.get(".");
+        if (!Files.isDirectory(root)) {
+            return Collections.emptyList();
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+        boolean relative = slash < 0;
+        String below = normalized.substring(slash + 1);
+        // Every '/' left may start a segment (braces can hold some), so this depth is never too shallow
+        int depth = below.contains("**") ? Integer.MAX_VALUE : (int) below.chars().filter(c -> c == '/').count() + 1;
+        try (Stream<Path> paths = Files.walk(root, depth)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(relative ? root.relativize(p) : p))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static class FileReport {
+        final String input;
+        final String outputDir;
+        final Map<String, Integer> countryStats = new TreeMap<>();
+        int totalCount;
+        int validCount;
+        int invalidCount;
+        String error;
+        String partialReason;
+        long elapsedMillis;
+
+        FileReport(String input, String outputDir) {
+            this.input = input;
+            this.outputDir = outputDir;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.facebookleads.validator;
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 /**
@@ -14,32 +16,64 @@ import java.util.stream.Collectors;
 public class CSVParser implements DataParser {
     
     @Override
-    public PhoneNumberData parse(String filePath) throws IOException {
+    public PhoneNumberData parse(String filePath, CancellationToken cancellation) throws IOException {
         System.out.println("📊 Reading CSV file: " + filePath);
         
-        List<PhoneRecord> records = new ArrayList<>();
+        List<PhoneRecord> records = new ColumnarRecords();
+        List<List<String>> header = new ArrayList<>(1);
+        boolean truncated = false;
+        try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+            parse(in, new RecordSink() {
+                public void columnNames(List<String> names) {
+                    header.add(names);
+                }
+
+                public void record(PhoneRecord record) {
+                    if (records.size() % CANCEL_CHECK_ROWS == 0) {
+                        cancellation.throwIfCancelled();
+                    }
+                    records.add(record);
+                }
+            });
+        } catch (CancellationException e) {
+            truncated = true;
+            System.out.println("⏹️  Stopped reading after " + records.size() + " records: " + e.getMessage());
+        }
         
-        // Read entire file as a single string to handle multi-line records
-        String content = new String(Files.readAllBytes(Paths.get(filePath)));
-        List<String> csvRecords = parseCSVRecords(content);
+        if (header.isEmpty()) {
+            return new PhoneNumberData(records);
+        }
+        System.out.println("✅ Parsed " + records.size() + " phone records from CSV file");
+        PhoneNumberData data = new PhoneNumberData(records, header.get(0));
+        if (truncated) {
+            data.markTruncated();
+        }
+        return data;
+    }
+    
+    @Override
+    public void parse(InputStream in, RecordSink sink) throws IOException {
+        // Records end at a newline outside quotes, so they are split while reading
+        RecordReader reader = new RecordReader(new InputStreamReader(in, Charset.defaultCharset()));
         
-        if (csvRecords.isEmpty()) {
+        String headerLine = reader.next();
+        if (headerLine == null) {
             System.out.println("⚠️  Warning: CSV file is empty");
-            return new PhoneNumberData(records);
+            return;
         }
         
         // Parse header row: full column names (for export) and column indices (for mapping)
-        String headerLine = csvRecords.get(0);
         String[] headerArray = parseCSVLine(headerLine);
         List<String> originalColumnNames = Arrays.stream(headerArray)
                 .map(h -> h != null ? h.trim() : "")
                 .collect(Collectors.toList());
+        sink.columnNames(originalColumnNames);
 
         Map<String, Integer> columnIndex = parseHeader(headerLine);
 
         if (columnIndex.isEmpty()) {
             System.err.println("⚠️  Warning: Could not detect required columns in CSV header");
-            return new PhoneNumberData(records, originalColumnNames);
+            return;
         }
         
         // Log detected columns for debugging
@@ -57,85 +91,109 @@ public class CSVParser implements DataParser {
         // Parse data rows
         int rowNumber = 0;
         
-        for (int i = 1; i < csvRecords.size(); i++) {
-            String record = csvRecords.get(i).trim();
-            
-            // Skip empty records
-            if (record.isEmpty()) {
-                continue;
-            }
-            
+        for (String record = reader.next(); record != null; record = reader.next()) {
+            PhoneRecord phoneRecord = null;
             try {
                 rowNumber++;
-                PhoneRecord phoneRecord = parseCSVRow(rowNumber, record, columnIndex, headerArray.length);
-                if (phoneRecord != null) {
-                    records.add(phoneRecord);
-                }
+                phoneRecord = parseCSVRow(rowNumber, record, columnIndex, headerArray.length);
             } catch (Exception e) {
                 System.err.println("⚠️  Warning: Failed to parse row " + rowNumber + ": " + e.getMessage());
             }
+            if (phoneRecord != null) {
+                sink.record(phoneRecord);
+            }
         }
-        
-        System.out.println("✅ Parsed " + records.size() + " phone records from CSV file");
-        return new PhoneNumberData(records, originalColumnNames);
     }
     
     /**
-     * Split CSV content into individual records (handles multi-line records)
+     * Splits CSV input into individual records (handles multi-line records)
      */
-    private List<String> parseCSVRecords(String content) {
-        List<String> records = new ArrayList<>();
-        StringBuilder currentRecord = new StringBuilder();
-        boolean inQuotes = false;
+    private static class RecordReader {
+        private final Reader in;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        
+        RecordReader(Reader in) {
+            this.in = in;
+        }
         
-        for (int i = 0; i < content.length(); i++) {
-            char c = content.charAt(i);
+        /** Next record, trimmed; empty records are skipped. Null at the end of the input. */
+        String next() throws IOException {
+            StringBuilder currentRecord = new StringBuilder();
+            boolean inQuotes = false;
             
-            if (c == '"') {
-                currentRecord.append(c);
-                // Check if it's an escaped quote
-                if (i + 1 < content.length() && content.charAt(i + 1) == '"') {
+            for (int c = read(); c >= 0; c = read()) {
+                if (c == '"') {
                     currentRecord.append('"');
-                    i++;
+                    // Check if it's an escaped quote
+                    if (peek() == '"') {
+                        currentRecord.append('"');
+                        read();
+                    } else {
+                        inQuotes = !inQuotes;
+                    }
+                } else if (c == '\n' && !inQuotes) {
+                    // End of record (newline outside quotes)
+                    String record = currentRecord.toString().trim();
+                    if (!record.isEmpty()) {
+                        return record;
+                    }
+                    currentRecord.setLength(0);
                 } else {
-                    inQuotes = !inQuotes;
+                    currentRecord.append((char) c);
                 }
-            } else if (c == '\n' && !inQuotes) {
-                // End of record (newline outside quotes)
-                String record = currentRecord.toString().trim();
-                if (!record.isEmpty()) {
-                    records.add(record);
-                }
-                currentRecord = new StringBuilder();
-            } else {
-                currentRecord.append(c);
             }
+            
+            // Last record
+            String record = currentRecord.toString().trim();
+            return record.isEmpty() ? null : record;
         }
         
-        // Add last record
-        String record = currentRecord.toString().trim();
-        if (!record.isEmpty()) {
-            records.add(record);
+        private int read() throws IOException {
+            return fill() ? buffer[position++] : -1;
         }
         
-        return records;
+        private int peek() throws IOException {
+            return fill() ? buffer[position] : -1;
+        }
+        
+        private boolean fill() throws IOException {
+            if (position < limit) {
+                return true;
+            }
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return false;
+            }
+            return true;
+        }
     }
     
     /**
      * Parse CSV header row to find column indices
      * Enhanced to match ExcelParser's comprehensive detection
      */
-    private Map<String, Integer> parseHeader(String headerLine) {
+    Map<String, Integer> parseHeader(String headerLine) {
+        return detectColumns(parseCSVLine(headerLine), System.out);
+    }
+
+    /**
+     * Map header names to column indices by field (id, email, first_name, phone_number, ...).
+     * Also used by HeaderProbe, which passes a log that discards the output.
+     */
+    static Map<String, Integer> detectColumns(String[] headers, PrintStream log) {
         Map<String, Integer> columnIndex = new HashMap<>();
-        String[] headers = parseCSVLine(headerLine);
         
         // Debug: Print all headers to help troubleshoot
-        System.out.println("🔍 Scanning headers...");
+        log.println("🔍 Scanning headers...");
         for (int i = 0; i < headers.length; i++) {
             String headerValue = headers[i].trim();
-            System.out.println("   Column " + i + ": '" + headerValue + "'");
+            log.println("   Column " + i + ": '" + headerValue + "'");
         }
-        System.out.println();
+        log.println();
         
         for (int i = 0; i < headers.length; i++) {
             String header = headers[i];
@@ -151,55 +209,55 @@ public class CSVParser implements DataParser {
                     headerLower.equals("id")) {
                 if (!columnIndex.containsKey("id")) {
                     columnIndex.put("id", i);
-                    System.out.println("   ✓ Found ID at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found ID at column " + i + ": '" + header + "'");
                 }
             }
             // Email columns - prefer personal email over campus email
             else if (headerLower.contains("personal") && headerLower.contains("email")) {
                 columnIndex.put("email", i); // Override with personal email
-                System.out.println("   ✓ Found Personal Email at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Personal Email at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("campus") && headerLower.contains("email")) {
                 if (!columnIndex.containsKey("email")) {
                     columnIndex.put("email", i);
-                    System.out.println("   ✓ Found Campus Email at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Campus Email at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.equals("email") || headerLower.contains("e-mail")) {
                 if (!columnIndex.containsKey("email")) {
                     columnIndex.put("email", i);
-                    System.out.println("   ✓ Found Email at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Email at column " + i + ": '" + header + "'");
                 }
             }
             // Name columns
             else if (headerLower.contains("first") && headerLower.contains("name")) {
                 columnIndex.put("first_name", i);
-                System.out.println("   ✓ Found First Name at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found First Name at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("given") && headerLower.contains("name")) {
                 columnIndex.put("first_name", i);
-                System.out.println("   ✓ Found Given Name at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Given Name at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("last") && headerLower.contains("name")) {
                 columnIndex.put("last_name", i);
-                System.out.println("   ✓ Found Last Name at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Last Name at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("surname") || headerLower.contains("primary name")) {
                 columnIndex.put("last_name", i);
-                System.out.println("   ✓ Found Surname at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Surname at column " + i + ": '" + header + "'");
             }
             // Phone columns - just "phone" or variations
             else if (headerLower.equals("phone")) {
                 columnIndex.put("phone_number", i);
-                System.out.println("   ✓ Found Phone at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Phone at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("phone") && !headerLower.contains("country")
                     && !headerLower.contains("code")) {
                 if (!columnIndex.containsKey("phone_number")) {
                     columnIndex.put("phone_number", i);
-                    System.out.println("   ✓ Found Phone (variant) at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Phone (variant) at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.contains("telephone") && headerLower.contains("u.s.")) {
                 columnIndex.put("us_telephone", i);
-                System.out.println("   ✓ Found US Telephone at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found US Telephone at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("telephone") && headerLower.contains("foreign")
                     && !headerLower.contains("code")) {
                 columnIndex.put("foreign_telephone", i);
-                System.out.println("   ✓ Found Foreign Telephone at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Foreign Telephone at column " + i + ": '" + header + "'");
             }
             // Country columns - specifically check for "country" not just "count"
             else if (headerLower.equals("country") ||
@@ -207,24 +265,24 @@ public class CSVParser implements DataParser {
                     headerLower.contains("citizenship")) {
                 if (!columnIndex.containsKey("country")) {
                     columnIndex.put("country", i);
-                    System.out.println("   ✓ Found Country at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Country at column " + i + ": '" + header + "'");
                 }
             }
             // Platform columns
             else if (headerLower.contains("platform") || headerLower.contains("source")) {
                 columnIndex.put("platform", i);
-                System.out.println("   ✓ Found Platform at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Platform at column " + i + ": '" + header + "'");
             }
         }
         
-        System.out.println();
+        log.println();
         return columnIndex;
     }
     
     /**
      * Parse a single CSV row into a PhoneRecord
      */
-    private PhoneRecord parseCSVRow(int rowNumber, String record, Map<String, Integer> columnIndex, int expectedColumns) {
+    PhoneRecord parseCSVRow(int rowNumber, String record, Map<String, Integer> columnIndex, int expectedColumns) {
         String[] values = parseCSVLine(record);
         List<String> originalColumnValues = new ArrayList<>();
         for (int i = 0; i < expectedColumns; i++) {
@@ -305,7 +363,7 @@ public class CSVParser implements DataParser {
     /**
      * Parse a single CSV line (already extracted from multi-line records)
      */
-    private String[] parseCSVLine(String line) {
+    String[] parseCSVLine(String line) {
         List<String> values = new ArrayList<>();
         StringBuilder current = new StringBuilder();
         boolean inQuotes = false;
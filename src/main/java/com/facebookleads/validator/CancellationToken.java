@@ -0,0 +1,68 @@
+package com.facebookleads.validator;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Asks a run to stop early: cancelled explicitly (shutdown signal, a service client) or once
+ * its deadline passes. Parsers, the validator and the output step check it between rows and
+ * stop cleanly, so the rows done so far are still written, marked partial in summary.json.
+ *
+ * Once cancelled, a token stays cancelled; the first reason is the one reported.
+ */
+public class CancellationToken {
+
+    /** Never cancelled, for callers without a budget; it is shared, so cancel() is ignored. */
+    public static final CancellationToken NONE = new CancellationToken() {
+        @Override
+        public void cancel(String reason) {
+        }
+    };
+
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private volatile String reason;
+
+    public CancellationToken() {
+        this.deadlineNanos = 0;
+        this.hasDeadline = false;
+    }
+
+    private CancellationToken(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+        this.hasDeadline = true;
+    }
+
+    /** A token that cancels itself the given number of seconds from now. */
+    public static CancellationToken withDeadline(long seconds) {
+        return new CancellationToken(System.nanoTime() + seconds * 1_000_000_000L);
+    }
+
+    public void cancel(String reason) {
+        if (this.reason == null) {
+            this.reason = reason;
+        }
+    }
+
+    public boolean isCancelled() {
+        if (reason != null) {
+            return true;
+        }
+        if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+            cancel("deadline exceeded");
+            return true;
+        }
+        return false;
+    }
+
+    /** For a RecordSink, which can only stop a streaming parse by throwing. */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException(reason);
+        }
+    }
+
+    /** Why the run was stopped, or null while it is not cancelled. */
+    public String getReason() {
+        return isCancelled() ? reason : null;
+    }
+}
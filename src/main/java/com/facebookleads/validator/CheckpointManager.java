@@ -0,0 +1,258 @@
+package com.facebookleads.validator;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Periodic checkpoints for long validation runs, kept in {@code <output>/.checkpoint/}.
+ *
+ * Every validated row's outcome is appended to journal.bin in row order. At most once per
+ * interval the journal is flushed and state.properties is replaced atomically with the number
+ * of rows (and journal bytes) that are safely on disk, so a killed process loses at most one
+ * interval of work. On resume the input is parsed again, the first rows take their outcomes
+ * from the journal and validation continues from the next row; because the final output files
+ * are only generated from the complete result, they are identical to an uninterrupted run.
+ *
+ * The parsers read whole files, so the resume position is a row index rather than a byte offset.
+ */
+public class CheckpointManager {
+    public static final String DIR_NAME = ".checkpoint";
+    public static final long DEFAULT_INTERVAL_SECONDS = 30;
+
+    private static final String JOURNAL_FILE = "journal.bin";
+    private static final String STATE_FILE = "state.properties";
+    private static final int STATE_VERSION = 3;
+    // Check the clock only every N rows; System.nanoTime per row would be measurable
+    private static final int CLOCK_CHECK_ROWS = 1024;
+
+    private final Path dir;
+    private final Path journalPath;
+    private final Path statePath;
+    private final Properties identity;
+    private final long intervalNanos;
+
+    private int resumeRows;
+    private long resumeJournalBytes;
+
+    private FileOutputStream journalFile;
+    private DataOutputStream journal;
+    private int recordCount;
+    private int rowsDone;
+    private long lastCommitNanos;
+    private long startNanos;
+    private long overheadNanos;
+    private int commits;
+
+    private CheckpointManager(Path dir, Properties identity, long intervalSeconds) {
+        this.dir = dir;
+        this.journalPath = dir.resolve(JOURNAL_FILE);
+        this.statePath = dir.resolve(STATE_FILE);
+        this.identity = identity;
+        this.intervalNanos = intervalSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Open the checkpoint directory for an input. With {@code resume} a checkpoint written for
+     * the same input file and validator configuration is picked up; anything else is discarded
+     * and the run starts from the first row.
+     */
+    public static CheckpointManager open(String inputFile, String outputDir, long intervalSeconds, boolean resume)
+            throws IOException {
+        Path dir = Paths.get(outputDir, DIR_NAME);
+        File input = new File(inputFile);
+        Properties identity = new Properties();
+        identity.setProperty("version", String.valueOf(STATE_VERSION));
+        identity.setProperty("input", input.getCanonicalPath());
+        identity.setProperty("input_size", String.valueOf(input.length()));
+        identity.setProperty("input_modified", String.valueOf(input.lastModified()));
+        identity.setProperty("fingerprint", DeltaManifest.configFingerprint());
+
+        CheckpointManager checkpoint = new CheckpointManager(dir, identity, intervalSeconds);
+        if (resume) {
+            checkpoint.loadState();
+        }
+        if (checkpoint.resumeRows == 0) {
+            deleteRecursively(dir);
+        }
+        Files.createDirectories(dir);
+        return checkpoint;
+    }
+
+    /** True if a run into this output directory started but did not finish. */
+    public static boolean exists(String outputDir) {
+        return Files.isDirectory(Paths.get(outputDir, DIR_NAME));
+    }
+
+    private void loadState() throws IOException {
+        if (!Files.isRegularFile(statePath)) {
+            System.out.println("⚠️  No checkpoint found, starting from the first row");
+            return;
+        }
+        Properties state = new Properties();
+        try (Reader reader = Files.newBufferedReader(statePath, StandardCharsets.UTF_8)) {
+            state.load(reader);
+        }
+        for (String key : identity.stringPropertyNames()) {
+            if (!identity.getProperty(key).equals(state.getProperty(key))) {
+                System.out.println("⚠️  Checkpoint does not match this input (" + key + " changed), starting from the first row");
+                return;
+            }
+        }
+        try {
+            resumeRows = Integer.parseInt(state.getProperty("rows_done"));
+            resumeJournalBytes = Long.parseLong(state.getProperty("journal_bytes"));
+            recordCount = Integer.parseInt(state.getProperty("record_count"));
+        } catch (NumberFormatException | NullPointerException e) {
+            System.out.println("⚠️  Checkpoint state is incomplete, starting from the first row");
+            resumeRows = 0;
+            return;
+        }
+        if (!Files.isRegularFile(journalPath) || Files.size(journalPath) < resumeJournalBytes) {
+            System.out.println("⚠️  Checkpoint journal is missing or truncated, starting from the first row");
+            resumeRows = 0;
+        }
+    }
+
+    /**
+     * Re-attach journaled outcomes to the first rows of a fresh parse and open the journal for
+     * appending. Called once, before validation starts.
+     * @return number of rows restored; validation continues with the row at this index
+     */
+    public int restore(List<PhoneRecord> records, ResultCollector results) throws IOException {
+        if (resumeRows > 0 && recordCount != records.size()) {
+            throw new IOException("Checkpoint was taken for " + recordCount + " rows but the input now has "
+                    + records.size() + "; delete " + dir + " to start over");
+        }
+        recordCount = records.size();
+
+        if (resumeRows > 0) {
+            // Drop anything appended after the last committed checkpoint
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                channel.truncate(resumeJournalBytes);
+            }
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(journalPath), 1 << 16))) {
+                for (int i = 0; i < resumeRows; i++) {
+                    results.add(ValidationOutcome.readFrom(in));
+                }
+            }
+            System.out.println("⏩ Resumed from checkpoint: " + resumeRows + "/" + recordCount + " rows already validated");
+        }
+
+        rowsDone = resumeRows;
+        journalFile = new FileOutputStream(journalPath.toFile(), true);
+        journal = new DataOutputStream(new BufferedOutputStream(journalFile, 1 << 16));
+        startNanos = System.nanoTime();
+        lastCommitNanos = startNanos;
+        return resumeRows;
+    }
+
+    /** Append the outcome of the next row; commits a checkpoint when the interval has passed. */
+    public void record(ValidationOutcome outcome) throws IOException {
+        outcome.writeTo(journal);
+        rowsDone++;
+        if (rowsDone % CLOCK_CHECK_ROWS == 0 && System.nanoTime() - lastCommitNanos >= intervalNanos) {
+            commit();
+        }
+    }
+
+    /** Flush the journal and atomically record how much of it is valid. */
+    public void commit() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        journal.flush();
+
+        Properties state = new Properties();
+        state.putAll(identity);
+        state.setProperty("record_count", String.valueOf(recordCount));
+        state.setProperty("rows_done", String.valueOf(rowsDone));
+        state.setProperty("journal_bytes", String.valueOf(journalFile.getChannel().position()));
+        Path temp = dir.resolve(STATE_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            state.store(writer, "Phone validator checkpoint");
+        }
+        try {
+            Files.move(temp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, statePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        long end = System.nanoTime();
+        overheadNanos += end - start;
+        lastCommitNanos = end;
+        commits++;
+    }
+
+    /**
+     * Save progress after a failure so a later --resume can pick it up. Never throws;
+     * the original failure is what the caller reports.
+     */
+    public void abort() {
+        if (journal == null) {
+            // Failed before validation started; the previous state file still stands
+            return;
+        }
+        try {
+            commit();
+            System.out.println("💾 Checkpoint saved at row " + rowsDone + "/" + recordCount
+                    + "; rerun with --resume to continue");
+        } catch (IOException e) {
+            System.err.println("⚠️  Could not save checkpoint: " + e.getMessage());
+        } finally {
+            closeJournal();
+        }
+    }
+
+    /** The run's outputs are complete; the checkpoint is no longer needed. */
+    public void complete() throws IOException {
+        closeJournal();
+        deleteRecursively(dir);
+    }
+
+    /** One-line overhead report, e.g. for the validation step's console output. */
+    public String describeOverhead() {
+        long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        long journalBytes = 0;
+        try {
+            journalBytes = Files.size(journalPath);
+        } catch (IOException e) {
+            // report what we can
+        }
+        return String.format("%d checkpoint(s), %.1f MB journal, %d ms overhead (%.2f%% of validation)",
+                commits, journalBytes / (1024.0 * 1024.0), overheadNanos / 1_000_000,
+                overheadNanos * 100.0 / elapsed);
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                // already reported or irrelevant once the run is over
+            }
+            journal = null;
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // Getters
+    public int getRowsDone() { return rowsDone; }
+    public int getCommits() { return commits; }
+    public long getOverheadMillis() { return overheadNanos / 1_000_000; }
+}
@@ -0,0 +1,261 @@
+package com.facebookleads.validator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Command line options for Main.
+ * Positional arguments are one or more inputs (files, directories or glob patterns)
+ * followed by the output directory.
+ */
+public class CliOptions {
+    private final List<String> inputs = new ArrayList<>();
+    private String outputDir;
+    private int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private int cacheSize = ValidationCache.DEFAULT_MAX_ENTRIES;
+    private String deltaDir;
+    private boolean checkpoint;
+    private boolean resume;
+    private long checkpointIntervalSeconds = CheckpointManager.DEFAULT_INTERVAL_SECONDS;
+    // A quarter of the max heap for buffered results leaves room for the parsed input and libphonenumber
+    private long heapBudgetBytes = Runtime.getRuntime().maxMemory() / 4;
+    private boolean dedupe;
+    private boolean dropDuplicates;
+    private long dedupeMemoryBytes = DuplicateGroups.DEFAULT_MEMORY_BYTES;
+    private boolean e164Index;
+    private boolean pageIndex;
+    private boolean searchIndex;
+    private Set<FormattedNumber.Field> formats = EnumSet.allOf(FormattedNumber.Field.class);
+    private String countryConfig;
+    private List<String> fastPathRegions;
+    private int previewSize;
+    private String resultCacheDir;
+    private long resultCacheBytes = ResultCache.DEFAULT_MAX_BYTES;
+    private Long previewSeed;
+    private String inputFormat;
+    private long deadlineSeconds;
+    private long recordBudgetMillis;
+    private long slowRecordMillis;
+
+    public static CliOptions parse(String[] args) {
+        List<String> positional = new ArrayList<>();
+        CliOptions options = parse(args, positional);
+        if (positional.size() < 2) {
+            throw new IllegalArgumentException("Expected at least one input and an output directory");
+        }
+        options.inputs.addAll(positional.subList(0, positional.size() - 1));
+        options.outputDir = positional.get(positional.size() - 1);
+        return options;
+    }
+
+    /**
+     * Options without inputs or an output directory, as ValidationService takes them: they set
+     * up the process and are the defaults of every job it runs.
+     */
+    public static CliOptions parseSettings(String[] args) {
+        List<String> positional = new ArrayList<>();
+        CliOptions options = parse(args, positional);
+        if (!positional.isEmpty()) {
+            throw new IllegalArgumentException("Unexpected argument: " + positional.get(0));
+        }
+        return options;
+    }
+
+    private static CliOptions parse(String[] args, List<String> positional) {
+        CliOptions options = new CliOptions();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--threads":
+                    options.threads = parsePositiveInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--cache-size":
+                    options.cacheSize = parseNonNegativeInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--delta":
+                    options.deltaDir = requireValue(args, ++i, arg);
+                    break;
+                case "--checkpoint":
+                    options.checkpoint = true;
+                    break;
+                case "--checkpoint-interval":
+                    options.checkpoint = true;
+                    options.checkpointIntervalSeconds = parsePositiveInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--heap-budget":
+                    options.heapBudgetBytes = parseNonNegativeInt(arg, requireValue(args, ++i, arg)) * 1024L * 1024L;
+                    break;
+                case "--dedupe":
+                    options.dedupe = true;
+                    break;
+                case "--drop-duplicates":
+                    options.dedupe = true;
+                    options.dropDuplicates = true;
+                    break;
+                case "--dedupe-memory":
+                    options.dedupe = true;
+                    options.dedupeMemoryBytes = parsePositiveInt(arg, requireValue(args, ++i, arg)) * 1024L * 1024L;
+                    break;
+                case "--e164-index":
+                    options.e164Index = true;
+                    break;
+                case "--page-index":
+                    options.pageIndex = true;
+                    break;
+                case "--search-index":
+                    options.searchIndex = true;
+                    break;
+                case "--formats":
+                    options.formats = FormattedNumber.Field.parseList(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--country-config":
+                    options.countryConfig = requireValue(args, ++i, arg);
+                    break;
+                case "--fast-path":
+                    if (options.fastPathRegions == null) {
+                        options.fastPathRegions = RegionFastPath.DEFAULT_REGIONS;
+                    }
+                    break;
+                case "--fast-regions":
+                    options.fastPathRegions = parseRegionList(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--preview":
+                    options.previewSize = parsePositiveInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--preview-seed":
+                    options.previewSeed = (long) parseNonNegativeInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--result-cache":
+                    options.resultCacheDir = requireValue(args, ++i, arg);
+                    break;
+                case "--result-cache-size":
+                    options.resultCacheBytes = parsePositiveInt(arg, requireValue(args, ++i, arg)) * 1024L * 1024L;
+                    break;
+                case "--deadline":
+                    options.deadlineSeconds = parsePositiveInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--record-budget":
+                    options.recordBudgetMillis = parsePositiveInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--slow-records":
+                    options.slowRecordMillis = parsePositiveInt(arg, requireValue(args, ++i, arg));
+                    break;
+                case "--input-format":
+                    options.inputFormat = requireValue(args, ++i, arg).toLowerCase();
+                    if (!ParserFactory.isSupportedFormat(options.inputFormat)) {
+                        throw new IllegalArgumentException(arg + " must be sql, csv, xlsx or xls");
+                    }
+                    break;
+                case "--resume":
+                    options.checkpoint = true;
+                    options.resume = true;
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    positional.add(arg);
+            }
+        }
+        return options;
+    }
+
+    static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    static int parsePositiveInt(String option, String value) {
+        int parsed = parseNonNegativeInt(option, value);
+        if (parsed == 0) {
+            throw new IllegalArgumentException(option + " must be greater than 0");
+        }
+        return parsed;
+    }
+
+    static int parseNonNegativeInt(String option, String value) {
+        try {
+            int parsed = Integer.parseInt(value.replace("_", ""));
+            if (parsed < 0) {
+                throw new IllegalArgumentException(option + " must not be negative");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+        }
+    }
+
+    static List<String> parseRegionList(String option, String value) {
+        List<String> regions = new ArrayList<>();
+        for (String region : value.split(",")) {
+            if (!region.trim().isEmpty()) {
+                regions.add(region.trim().toUpperCase(Locale.ROOT));
+            }
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("No regions given for " + option);
+        }
+        return regions;
+    }
+
+    // Getters
+    public List<String> getInputs() { return Collections.unmodifiableList(inputs); }
+    public String getOutputDir() { return outputDir; }
+    public int getThreads() { return threads; }
+    public int getCacheSize() { return cacheSize; }
+    /** Previous output directory whose manifest.bin supplies reusable outcomes; null if not in delta mode. */
+    public String getDeltaDir() { return deltaDir; }
+    /** Journal progress under the output directory; implied by --resume and --checkpoint-interval. */
+    public boolean isCheckpoint() { return checkpoint; }
+    /** Continue from the checkpoint (and skip finished files in batch mode) instead of starting over. */
+    public boolean isResume() { return resume; }
+    public long getCheckpointIntervalSeconds() { return checkpointIntervalSeconds; }
+    /** Heap for buffered result records before they spill to temp files (--heap-budget MB); 0 never spills. */
+    public long getHeapBudgetBytes() { return heapBudgetBytes; }
+    /** Report valid records sharing an E.164 number in duplicates.csv/json. */
+    public boolean isDedupe() { return dedupe; }
+    /** Also leave repeated numbers out of valid_numbers.*; implies --dedupe. */
+    public boolean isDropDuplicates() { return dropDuplicates; }
+    public long getDedupeMemoryBytes() { return dedupeMemoryBytes; }
+    /** Write valid_e164.idx for fast membership lookups. */
+    public boolean isE164Index() { return e164Index; }
+    /** Write results.pages for sorted, filtered paging of the results. */
+    public boolean isPageIndex() { return pageIndex; }
+    /** Write search.idx for prefix search by phone number, email or name. */
+    public boolean isSearchIndex() { return searchIndex; }
+    /** Formatted fields written for valid numbers (--formats); all by default. */
+    public Set<FormattedNumber.Field> getFormats() { return formats; }
+    /** JSON file replacing the built-in country table, reloaded when it changes; null for built-in. */
+    public String getCountryConfig() { return countryConfig; }
+    /** Regions whose calling codes get the compiled isValidNumber fast path; null when disabled. */
+    public List<String> getFastPathRegions() { return fastPathRegions; }
+    /** Rows to sample for a quick estimate instead of a full run (--preview K); 0 for a full run. */
+    public int getPreviewSize() { return previewSize; }
+    /** Directory of cached runs keyed by input content and settings; null when not caching. */
+    public String getResultCacheDir() { return resultCacheDir; }
+    /** Size the result cache is trimmed to, least recently used runs first (--result-cache-size MB). */
+    public long getResultCacheBytes() { return resultCacheBytes; }
+    /** Seed for the preview sample, to repeat a preview; null for a random seed. */
+    public Long getPreviewSeed() { return previewSeed; }
+    /** Format of an input read from standard input ("-"), which has no extension to go by. */
+    public String getInputFormat() { return inputFormat; }
+    /** Time budget of the run in seconds, after which it stops and writes partial results; 0 for none. */
+    public long getDeadlineSeconds() { return deadlineSeconds; }
+
+    /** Time allowed for one record's validation cascade in ms (--record-budget); 0 for none. */
+    public long getRecordBudgetMillis() { return recordBudgetMillis; }
+    /** Cascade time in ms from which a record is logged to slow_records.json (--slow-records); 0 for no log. */
+    public long getSlowRecordMillis() { return slowRecordMillis; }
+
+    /** A token carrying the --deadline, if any; cancelled early on shutdown (see Main). */
+    public CancellationToken newCancellationToken() {
+        return deadlineSeconds > 0 ? CancellationToken.withDeadline(deadlineSeconds) : new CancellationToken();
+    }
+}
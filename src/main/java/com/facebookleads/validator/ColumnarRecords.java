@@ -0,0 +1,319 @@
+package com.facebookleads.validator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Column-oriented store for parsed records, used by the parsers in place of an ArrayList.
+ *
+ * {@link #add} takes a PhoneRecord apart into one column per field and drops it. Free text
+ * (id, email, name, phone, original line) goes into a shared UTF-8 byte arena addressed by
+ * offset and length; country, platform and the original CSV/Excel columns start out
+ * dictionary-encoded, one int code per row, and move to the arena if a column turns out to
+ * have too many distinct values. {@link #get} rebuilds a PhoneRecord view on demand, whose
+ * original column values are decoded lazily.
+ */
+public class ColumnarRecords extends AbstractList<PhoneRecord> implements RandomAccess {
+
+    // Columns with more distinct values than this are stored as text instead
+    private static final int DICTIONARY_LIMIT = 4096;
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Text values sharing at least this many leading bytes with the column's last fully stored
+    // value only store the rest (e.g. the repeated "INSERT INTO ... VALUES" of SQL lines)
+    private static final int MIN_SHARED_PREFIX = 32;
+
+    private final Arena arena = new Arena();
+    private int[] rowNumbers = new int[INITIAL_CAPACITY];
+    private final StringColumn ids = new StringColumn(arena, false);
+    private final StringColumn emails = new StringColumn(arena, false);
+    private final StringColumn names = new StringColumn(arena, false);
+    private final StringColumn phoneNumbers = new StringColumn(arena, false);
+    private final StringColumn countries = new StringColumn(arena, true);
+    private final StringColumn platforms = new StringColumn(arena, true);
+    private final StringColumn originalLines = new StringColumn(arena, false);
+    // Per row: number of original column values, or -1 when the row has none (SQL input)
+    private int[] originalValueCounts;
+    private final List<StringColumn> originalColumns = new ArrayList<>();
+    private int size;
+
+    @Override
+    public boolean add(PhoneRecord record) {
+        if (size == rowNumbers.length) {
+            rowNumbers = Arrays.copyOf(rowNumbers, grow(size));
+        }
+        rowNumbers[size] = record.getRowNumber();
+        ids.add(record.getId());
+        emails.add(record.getEmail());
+        names.add(record.getName());
+        phoneNumbers.add(record.getPhoneNumber());
+        countries.add(record.getCountry());
+        platforms.add(record.getPlatform());
+        originalLines.add(record.getOriginalLine());
+        addOriginalValues(record.getOriginalColumnValues());
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private void addOriginalValues(List<String> values) {
+        if (values == null && originalValueCounts == null) {
+            return;
+        }
+        if (originalValueCounts == null) {
+            // First row with original values; earlier rows had none
+            originalValueCounts = new int[rowNumbers.length];
+            Arrays.fill(originalValueCounts, 0, size, -1);
+        } else if (originalValueCounts.length < rowNumbers.length) {
+            originalValueCounts = Arrays.copyOf(originalValueCounts, rowNumbers.length);
+        }
+        int count = values == null ? -1 : values.size();
+        originalValueCounts[size] = count;
+        while (originalColumns.size() < count) {
+            StringColumn column = new StringColumn(arena, true);
+            for (int row = 0; row < size; row++) {
+                column.add(null);
+            }
+            originalColumns.add(column);
+        }
+        for (int i = 0; i < originalColumns.size(); i++) {
+            originalColumns.get(i).add(i < count ? values.get(i) : null);
+        }
+    }
+
+    @Override
+    public PhoneRecord get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int valueCount = originalValueCounts == null ? -1 : originalValueCounts[index];
+        return new PhoneRecord(rowNumbers[index], ids.get(index), emails.get(index), names.get(index),
+                phoneNumbers.get(index), countries.get(index), platforms.get(index), originalLines.get(index),
+                valueCount < 0 ? null : new OriginalValues(index, valueCount));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Approximate heap held by this store, for reporting. */
+    public long estimateHeapBytes() {
+        long bytes = 4L * rowNumbers.length + arena.heapBytes();
+        bytes += originalValueCounts == null ? 0 : 4L * originalValueCounts.length;
+        for (StringColumn column : Arrays.asList(ids, emails, names, phoneNumbers, countries, platforms, originalLines)) {
+            bytes += column.heapBytes();
+        }
+        for (StringColumn column : originalColumns) {
+            bytes += column.heapBytes();
+        }
+        return bytes;
+    }
+
+    private static int grow(int capacity) {
+        return Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1));
+    }
+
+    /** Lazily decoded original column values of one row. */
+    private class OriginalValues extends AbstractList<String> implements RandomAccess {
+        private final int row;
+        private final int count;
+
+        OriginalValues(int row, int count) {
+            this.row = row;
+            this.count = count;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+            }
+            return originalColumns.get(index).get(row);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /** Append-only UTF-8 byte storage in fixed-size chunks; offsets encode chunk and position. */
+    private static class Arena {
+        private byte[][] chunks = new byte[0][];
+        private int position = CHUNK_SIZE;
+
+        long append(byte[] bytes) {
+            if (chunks.length == 0 || bytes.length > CHUNK_SIZE - position) {
+                // Strings never span chunks; an oversized one gets a chunk of its own
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = new byte[Math.max(CHUNK_SIZE, bytes.length)];
+                position = 0;
+            }
+            System.arraycopy(bytes, 0, chunks[chunks.length - 1], position, bytes.length);
+            long offset = ((long) (chunks.length - 1) << 32) | position;
+            position += bytes.length;
+            return offset;
+        }
+
+        String read(long offset, int length) {
+            return new String(chunks[(int) (offset >>> 32)], (int) offset, length, StandardCharsets.UTF_8);
+        }
+
+        /** Decode a value stored as a prefix shared with another value plus its own suffix. */
+        String read(long prefixOffset, int prefixLength, long offset, int length) {
+            byte[] bytes = new byte[prefixLength + length];
+            System.arraycopy(chunks[(int) (prefixOffset >>> 32)], (int) prefixOffset, bytes, 0, prefixLength);
+            System.arraycopy(chunks[(int) (offset >>> 32)], (int) offset, bytes, prefixLength, length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long heapBytes() {
+            long bytes = 0;
+            for (byte[] chunk : chunks) {
+                bytes += chunk.length;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * One field for every row. Dictionary mode keeps an int code per row (-1 for null);
+     * text mode keeps an arena offset and length per row (length -1 for null), plus the offset
+     * and length of a prefix shared with an earlier row once any value has one.
+     */
+    private static class StringColumn {
+        private final Arena arena;
+        private Map<String, Integer> dictionaryIds;
+        private List<String> dictionary;
+        private int[] codes;
+        private long[] offsets;
+        private int[] lengths;
+        private long[] prefixOffsets;
+        private int[] prefixLengths;
+        private byte[] anchor;
+        private long anchorOffset;
+        private int size;
+
+        StringColumn(Arena arena, boolean dictionaryEncoded) {
+            this.arena = arena;
+            if (dictionaryEncoded) {
+                dictionaryIds = new HashMap<>();
+                dictionary = new ArrayList<>();
+                codes = new int[INITIAL_CAPACITY];
+            } else {
+                offsets = new long[INITIAL_CAPACITY];
+                lengths = new int[INITIAL_CAPACITY];
+            }
+        }
+
+        void add(String value) {
+            if (dictionary != null) {
+                Integer code = value == null ? Integer.valueOf(-1) : dictionaryIds.get(value);
+                if (code == null && dictionary.size() < DICTIONARY_LIMIT) {
+                    code = dictionary.size();
+                    dictionary.add(value);
+                    dictionaryIds.put(value, code);
+                }
+                if (code != null) {
+                    if (size == codes.length) {
+                        codes = Arrays.copyOf(codes, grow(size));
+                    }
+                    codes[size++] = code;
+                    return;
+                }
+                switchToText();
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, grow(size));
+                lengths = Arrays.copyOf(lengths, offsets.length);
+                if (prefixLengths != null) {
+                    prefixOffsets = Arrays.copyOf(prefixOffsets, offsets.length);
+                    prefixLengths = Arrays.copyOf(prefixLengths, offsets.length);
+                }
+            }
+            if (value == null) {
+                lengths[size++] = -1;
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int shared = anchor == null ? 0 : commonPrefix(anchor, bytes);
+            if (shared >= MIN_SHARED_PREFIX) {
+                if (prefixLengths == null) {
+                    prefixOffsets = new long[offsets.length];
+                    prefixLengths = new int[offsets.length];
+                }
+                prefixOffsets[size] = anchorOffset;
+                prefixLengths[size] = shared;
+                offsets[size] = arena.append(Arrays.copyOfRange(bytes, shared, bytes.length));
+                lengths[size++] = bytes.length - shared;
+                return;
+            }
+            offsets[size] = arena.append(bytes);
+            lengths[size] = bytes.length;
+            if (bytes.length >= MIN_SHARED_PREFIX) {
+                anchor = bytes;
+                anchorOffset = offsets[size];
+            }
+            size++;
+        }
+
+        private static int commonPrefix(byte[] a, byte[] b) {
+            int limit = Math.min(a.length, b.length);
+            int i = 0;
+            while (i < limit && a[i] == b[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        String get(int row) {
+            if (dictionary != null) {
+                int code = codes[row];
+                return code < 0 ? null : dictionary.get(code);
+            }
+            int length = lengths[row];
+            if (length < 0) {
+                return null;
+            }
+            if (prefixLengths != null && prefixLengths[row] > 0) {
+                return arena.read(prefixOffsets[row], prefixLengths[row], offsets[row], length);
+            }
+            return arena.read(offsets[row], length);
+        }
+
+        /** Too many distinct values to be worth a dictionary: re-encode the rows so far as text. */
+        private void switchToText() {
+            int[] oldCodes = codes;
+            List<String> oldDictionary = dictionary;
+            int rows = size;
+            dictionary = null;
+            dictionaryIds = null;
+            codes = null;
+            offsets = new long[Math.max(INITIAL_CAPACITY, oldCodes.length)];
+            lengths = new int[offsets.length];
+            size = 0;
+            for (int row = 0; row < rows; row++) {
+                add(oldCodes[row] < 0 ? null : oldDictionary.get(oldCodes[row]));
+            }
+        }
+
+        long heapBytes() {
+            if (dictionary != null) {
+                long bytes = 4L * codes.length;
+                for (String value : dictionary) {
+                    bytes += 40 + 2L * value.length() + 48;
+                }
+                return bytes;
+            }
+            return 12L * offsets.length + (prefixLengths == null ? 0 : 12L * prefixLengths.length)
+                    + (anchor == null ? 0 : anchor.length);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.facebookleads.validator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a country config file into the current CountryRegistry and keeps watching it.
+ *
+ * The file is polled for a new modification time or size on a daemon thread. A changed file
+ * is loaded and checked in full before it is installed, so validation never sees a half-read
+ * table; an invalid edit is reported and the previous registry stays in effect.
+ */
+public class CountryConfigWatcher implements Closeable {
+
+    public static final long DEFAULT_POLL_SECONDS = 5;
+
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private FileTime lastModified;
+    private long lastSize;
+
+    private CountryConfigWatcher(Path file) {
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "country-config-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load and install the config, then watch it for changes.
+     * @throws IOException if the initial config cannot be loaded; nothing is installed then
+     */
+    public static CountryConfigWatcher start(Path file, long pollSeconds) throws IOException {
+        CountryConfigWatcher watcher = new CountryConfigWatcher(file);
+        watcher.lastModified = Files.getLastModifiedTime(file);
+        watcher.lastSize = Files.size(file);
+        CountryRegistry.install(CountryRegistry.load(file));
+        watcher.scheduler.scheduleWithFixedDelay(watcher::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+        return watcher;
+    }
+
+    private void poll() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            long size = Files.size(file);
+            if (modified.equals(lastModified) && size == lastSize) {
+                return;
+            }
+            lastModified = modified;
+            lastSize = size;
+            CountryRegistry loaded = CountryRegistry.load(file);
+            CountryRegistry previous = CountryRegistry.install(loaded);
+            boolean forcefulChanged = previous.getForcefulFingerprint() != loaded.getForcefulFingerprint();
+            System.out.println("🔄 Country config reloaded: " + loaded.getCountries().size() + " countries"
+                    + (forcefulChanged ? ", forceful regions changed (affected cached outcomes retired)" : ""));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️  Warning: Keeping previous country config, reload failed: " + e.getMessage());
+        }
+    }
+
+    /** Stop watching; the installed registry stays in effect. */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
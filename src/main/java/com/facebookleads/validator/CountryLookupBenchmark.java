@@ -0,0 +1,123 @@
+package com.facebookleads.validator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro-benchmark for country lookups: CountryRegistry against the HashMap-plus-toUpperCase
+ * lookups and per-call sorted calling-code scan it replaced, on a mix of lead-style inputs.
+ * Prints nanoseconds and heap bytes allocated per lookup.
+ *
+ * Usage: java -cp phone-validator.jar com.facebookleads.validator.CountryLookupBenchmark [--iterations N]
+ */
+public class CountryLookupBenchmark {
+
+    private static final int INPUTS = 4096;
+
+    public static void main(String[] args) {
+        int iterations = 2_000_000;
+        if (args.length == 2 && args[0].equals("--iterations")) {
+            iterations = CliOptions.parsePositiveInt(args[0], args[1]);
+        } else if (args.length != 0) {
+            System.out.println("Usage: CountryLookupBenchmark [--iterations N]");
+            System.exit(1);
+        }
+
+        CountryRegistry registry = CountryRegistry.getDefault();
+        Map<String, String> legacyRegions = new HashMap<>();
+        for (CountryRegistry.Country country : registry.getCountries()) {
+            legacyRegions.put(country.getRegion(), country.getRegion());
+            for (String name : country.getNames()) {
+                legacyRegions.put(name, country.getRegion());
+            }
+        }
+        Map<String, String> legacyCodes = registry.callingCodesByName();
+
+        Random random = new Random(42);
+        String[] names = new String[INPUTS];
+        String[] numbers = new String[INPUTS];
+        List<String> pool = new ArrayList<>(legacyRegions.keySet());
+        pool.add("Unknown");
+        pool.add("");
+        for (int i = 0; i < INPUTS; i++) {
+            String name = pool.get(random.nextInt(pool.size()));
+            switch (random.nextInt(3)) {
+                case 0: names[i] = name.toLowerCase(); break;
+                case 1: names[i] = " " + name + " "; break;
+                default: names[i] = name;
+            }
+            StringBuilder number = new StringBuilder();
+            int digits = 9 + random.nextInt(5);
+            for (int d = 0; d < digits; d++) {
+                number.append((char) ('0' + random.nextInt(10)));
+            }
+            numbers[i] = number.toString();
+        }
+
+        System.out.println("Country lookups, " + iterations + " iterations over " + INPUTS + " inputs");
+        for (int round = 0; round < 3; round++) {
+            boolean last = round == 2;
+            measure(last, "name -> region (HashMap)", iterations, i -> {
+                String name = names[i];
+                return name == null || name.trim().isEmpty() ? null : legacyRegions.get(name.toUpperCase().trim());
+            });
+            measure(last, "name -> region (registry)", iterations, i -> registry.regionFor(names[i]));
+            measure(last, "code in number (sorted scan)", iterations / 20,
+                    i -> legacyDetect(legacyCodes, numbers[i]));
+            measure(last, "code in number (trie)", iterations,
+                    i -> CountryCodeUtil.detectCountryCodeInNumber(numbers[i]));
+        }
+    }
+
+    private interface Lookup {
+        String apply(int index);
+    }
+
+    private static void measure(boolean print, String label, int iterations, Lookup lookup) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = allocation != null ? allocation.getThreadAllocatedBytes(thread) : 0;
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (lookup.apply(i & (INPUTS - 1)) != null) {
+                hits++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = allocation != null ? allocation.getThreadAllocatedBytes(thread) - bytesBefore : -1;
+        if (print) {
+            System.out.println(String.format("   %-30s %8.1f ns/op %8.1f B/op  (%d hits)",
+                    label, (double) nanos / iterations, bytes < 0 ? Double.NaN : (double) bytes / iterations, hits));
+        }
+    }
+
+    /** The former CountryCodeUtil.detectCountryCodeInNumber, which sorted the codes on every call. */
+    private static String legacyDetect(Map<String, String> codesByName, String phoneNumber) {
+        if (phoneNumber.length() < 10) {
+            return null;
+        }
+        String[] codes = codesByName.values().stream()
+                .distinct()
+                .sorted((a, b) -> Integer.compare(b.length(), a.length()))
+                .toArray(String[]::new);
+        for (String code : codes) {
+            if (phoneNumber.startsWith(code)) {
+                if (code.length() <= 2 && phoneNumber.length() >= 11) {
+                    return code;
+                }
+                if (code.length() >= 3 && phoneNumber.length() >= 12) {
+                    return code;
+                }
+            }
+        }
+        return null;
+    }
+}
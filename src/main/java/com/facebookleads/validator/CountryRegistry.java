@@ -0,0 +1,498 @@
+package com.facebookleads.validator;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The one table of supported countries: ISO region, calling code and the names leads use for
+ * them. PhoneNumberValidator and CountryCodeUtil both resolve through it.
+ *
+ * A registry is immutable once built and safe to share between threads. Names are found in an
+ * open-addressing table hashed over the raw chars, folding ASCII case and skipping surrounding
+ * whitespace as it goes, so a lookup allocates nothing; calling codes are matched against the
+ * leading digits of a number with a digit trie.
+ *
+ * The built-in table can be replaced by a JSON file (--country-config, see {@link #load}).
+ * Callers resolve through {@link #current()}, which a reload swaps atomically: a validation
+ * already running keeps the registry it started with, the next one sees the new table.
+ *
+ * Config file layout:
+ *   { "countries": [ { "region": "BR", "calling_code": "55", "names": ["BRAZIL"] }, ... ],
+ *     "forceful_regions": ["US", "BR", ...] }
+ * Region codes are always accepted as names. Forceful regions are tried in order as the
+ * validator's last resort, and only numbers of these regions are accepted from that step.
+ */
+public final class CountryRegistry {
+
+    private static final CountryRegistry DEFAULT = new CountryRegistry(Arrays.asList(
+            country("AR", "54", "ARGENTINA"),
+            country("BS", "1", "BAHAMAS"),
+            country("BD", "880", "BANGLADESH"),
+            country("BR", "55", "BRAZIL"),
+            country("CA", "1", "CANADA"),
+            country("CL", "56", "CHILE"),
+            country("CN", "86", "CHINA"),
+            country("CO", "57", "COLOMBIA"),
+            country("CR", "506", "COSTA RICA"),
+            country("EC", "593", "ECUADOR"),
+            country("EG", "20", "EGYPT"),
+            country("SV", "503", "EL SALVADOR", "ELSALVADOR"),
+            country("HN", "504", "HONDURAS"),
+            country("IN", "91", "INDIA"),
+            country("ID", "62", "INDONESIA"),
+            country("IL", "972", "ISRAEL"),
+            country("KZ", "7", "KAZAKHSTAN"),
+            country("KG", "996", "KYRGYZSTAN"),
+            country("MX", "52", "MEXICO"),
+            country("MA", "212", "MOROCCO"),
+            country("NP", "977", "NEPAL"),
+            country("NG", "234", "NIGERIA"),
+            country("PK", "92", "PAKISTAN"),
+            country("PE", "51", "PERU"),
+            country("RU", "7", "RUSSIA", "RUSSIAN FEDERATION", "RUSSIAN FD"),
+            country("SA", "966", "SAUDI ARABIA"),
+            country("ES", "34", "SPAIN"),
+            country("TR", "90", "TURKEY"),
+            country("US", "1", "UNITED STATES", "USA"),
+            country("UZ", "998", "UZBEKISTAN"),
+            country("VE", "58", "VENEZUELA"),
+            country("VN", "84", "VIET NAM", "VIETNAM"),
+            country("ZM", "260", "ZAMBIA"),
+            country("TZ", "255", "TANZANIA"),
+            country("PT", "351", "PORTUGAL"),
+            country("FR", "33", "FRANCE"),
+            country("DE", "49", "GERMANY"),
+            country("IT", "39", "ITALY"),
+            country("GB", "44", "UNITED KINGDOM", "UK"),
+            country("NL", "31", "NETHERLANDS"),
+            country("PL", "48", "POLAND"),
+            country("GR", "30", "GREECE"),
+            country("AT", "43", "AUSTRIA"),
+            country("CH", "41", "SWITZERLAND"),
+            country("GT", "502", "GUATEMALA"),
+            country("PA", "507", "PANAMA"),
+            country("NI", "505", "NICARAGUA"),
+            country("DO", "1", "DOMINICAN REPUBLIC"),
+            country("UY", "598", "URUGUAY"),
+            country("PY", "595", "PARAGUAY"),
+            country("BO", "591", "BOLIVIA"),
+            country("JO", "962", "JORDAN"),
+            country("QA", "974", "QATAR"),
+            country("KW", "965", "KUWAIT"),
+            country("BH", "973", "BAHRAIN"),
+            country("LB", "961", "LEBANON"),
+            country("IQ", "964", "IRAQ"),
+            country("YE", "967", "YEMEN"),
+            country("ZA", "27", "SOUTH AFRICA"),
+            country("GH", "233", "GHANA"),
+            country("ET", "251", "ETHIOPIA"),
+            country("UG", "256", "UGANDA"),
+            country("RW", "250", "RWANDA"),
+            country("SN", "221", "SENEGAL"),
+            country("CI", "225", "IVORY COAST", "COTE D'IVOIRE"),
+            country("DZ", "213", "ALGERIA"),
+            country("TN", "216", "TUNISIA"),
+            country("MG", "261", "MADAGASCAR"),
+            country("MW", "265", "MALAWI"),
+            country("MZ", "258", "MOZAMBIQUE"),
+            country("AZ", "994", "AZERBAIJAN"),
+            country("RS", "381", "SERBIA"),
+            country("KR", "82", "SOUTH KOREA", "KOREA", "STH KOREA"),
+            country("MN", "976", "MONGOLIA"),
+            country("BE", "32", "BELGIUM"),
+            country("BJ", "229", "BENIN"),
+            country("OM", "968", "OMAN"),
+            country("SG", "65", "SINGAPORE"),
+            country("MY", "60", "MALAYSIA"),
+            country("AE", "971", "UNITED ARAB EMIRATES", "UAE")
+    ), Arrays.asList(
+            "US", "BR", "MX", "CO", "CR", "ES", "CA", "AR",
+            "BD", "BE", "BJ", "CL", "CN", "EC", "EG", "SV",
+            "HN", "IN", "IL", "KZ", "KG", "MA", "MY", "NP",
+            "NG", "OM", "PK", "PE", "RU", "SA", "SG", "TR",
+            "UZ", "VE", "VN", "ZM", "AE", "TZ", "PT", "FR",
+            "DE", "IT", "GB", "NL", "PL", "GR", "AT", "CH",
+            "GT", "PA", "NI", "DO", "UY", "PY", "BO", "BS", "JO", "ID",
+            "QA", "KW", "BH", "LB", "IQ", "YE", "ZA", "GH",
+            "ET", "UG", "RW", "SN", "CI", "DZ", "TN", "MG",
+            "MW", "MZ", "AZ", "RS", "KR", "MN"
+    ));
+
+    private static final AtomicReference<CountryRegistry> CURRENT = new AtomicReference<>(DEFAULT);
+
+    /** One supported country. */
+    public static final class Country {
+        private final String region;
+        private final String callingCode;
+        private final List<String> names;
+
+        public Country(String region, String callingCode, List<String> names) {
+            this.region = region;
+            this.callingCode = callingCode;
+            this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        }
+
+        public String getRegion() { return region; }
+        public String getCallingCode() { return callingCode; }
+        /** Upper-case names and aliases, not including the region code itself. */
+        public List<String> getNames() { return names; }
+    }
+
+    private final List<Country> countries;
+    private final List<String> forcefulRegions;
+    private final Set<String> forcefulRegionSet;
+    private final long fingerprint;
+    private final long forcefulFingerprint;
+    // Name table: upper-case keys, linear probing
+    private final String[] keys;
+    private final Country[] values;
+    private final int mask;
+    // Calling code trie: 10 children per node, 0 = none; node 0 is the root
+    private final int[] children;
+    private final String[] codes;
+
+    public CountryRegistry(List<Country> countries, List<String> forcefulRegions) {
+        this.countries = Collections.unmodifiableList(new ArrayList<>(countries));
+        this.forcefulRegions = Collections.unmodifiableList(new ArrayList<>(forcefulRegions));
+        this.forcefulRegionSet = Collections.unmodifiableSet(new HashSet<>(forcefulRegions));
+
+        long forcefulHash = 0x9E3779B97F4A7C15L;
+        for (String region : forcefulRegions) {
+            forcefulHash = hash64(forcefulHash, region);
+        }
+        long hash = forcefulHash;
+        for (Country country : countries) {
+            hash = hash64(hash, country.getRegion());
+            hash = hash64(hash, country.getCallingCode());
+            for (String name : country.getNames()) {
+                hash = hash64(hash, name);
+            }
+        }
+        // Never 0, so callers can use 0 for "does not depend on the registry"
+        this.forcefulFingerprint = forcefulHash | 1;
+        this.fingerprint = hash | 1;
+
+        Map<String, Country> byName = new LinkedHashMap<>();
+        for (Country country : countries) {
+            byName.put(country.getRegion().toUpperCase(Locale.ROOT), country);
+            for (String name : country.getNames()) {
+                byName.put(name.toUpperCase(Locale.ROOT), country);
+            }
+        }
+        int capacity = Integer.highestOneBit(Math.max(16, byName.size() * 2) - 1) << 1;
+        keys = new String[capacity];
+        values = new Country[capacity];
+        mask = capacity - 1;
+        for (Map.Entry<String, Country> entry : byName.entrySet()) {
+            String key = entry.getKey();
+            int slot = hash(key, 0, key.length()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = entry.getValue();
+        }
+
+        int[] trie = new int[10 * 64];
+        String[] terminal = new String[64];
+        int nodes = 1;
+        for (Country country : countries) {
+            String code = country.getCallingCode();
+            if (code == null) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < code.length(); i++) {
+                int digit = code.charAt(i) - '0';
+                if (trie[10 * node + digit] == 0) {
+                    if (nodes == terminal.length) {
+                        trie = Arrays.copyOf(trie, trie.length * 2);
+                        terminal = Arrays.copyOf(terminal, terminal.length * 2);
+                    }
+                    trie[10 * node + digit] = nodes++;
+                }
+                node = trie[10 * node + digit];
+            }
+            if (terminal[node] == null) {
+                terminal[node] = code;
+            }
+        }
+        children = trie;
+        codes = terminal;
+    }
+
+    private static Country country(String region, String callingCode, String... names) {
+        return new Country(region, callingCode, Arrays.asList(names));
+    }
+
+    /** The built-in table, built once. */
+    public static CountryRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /** The registry in effect: the built-in table unless a config file was installed. */
+    public static CountryRegistry current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make a registry the current one.
+     * @return the registry it replaced
+     */
+    public static CountryRegistry install(CountryRegistry registry) {
+        return CURRENT.getAndSet(registry);
+    }
+
+    /**
+     * Read a config file and check it against libphonenumber: every region must be supported
+     * and its calling code must match, names must be unique, and forceful regions listed.
+     * @throws IOException if the file cannot be read or is invalid
+     */
+    public static CountryRegistry load(Path file) throws IOException {
+        JsonObject root;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            root = JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Invalid country config " + file + ": " + e.getMessage(), e);
+        }
+
+        PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
+        Set<String> supported = phoneUtil.getSupportedRegions();
+        List<Country> countries = new ArrayList<>();
+        Map<String, String> regionByName = new HashMap<>();
+        try {
+            for (JsonElement element : root.getAsJsonArray("countries")) {
+                JsonObject entry = element.getAsJsonObject();
+                String region = entry.get("region").getAsString().trim().toUpperCase(Locale.ROOT);
+                if (!supported.contains(region)) {
+                    throw new IOException("Unknown region " + region + " in " + file);
+                }
+                String expectedCode = String.valueOf(phoneUtil.getCountryCodeForRegion(region));
+                String callingCode = entry.has("calling_code") ? entry.get("calling_code").getAsString().trim() : expectedCode;
+                if (!callingCode.equals(expectedCode)) {
+                    throw new IOException("Calling code of " + region + " is " + expectedCode + ", not " + callingCode + " in " + file);
+                }
+                List<String> names = new ArrayList<>();
+                if (entry.has("names")) {
+                    for (JsonElement name : entry.getAsJsonArray("names")) {
+                        names.add(name.getAsString().trim().toUpperCase(Locale.ROOT));
+                    }
+                }
+                for (String name : names) {
+                    claimName(regionByName, name, region, file);
+                }
+                claimName(regionByName, region, region, file);
+                countries.add(new Country(region, callingCode, names));
+            }
+            List<String> forceful = new ArrayList<>();
+            if (root.has("forceful_regions")) {
+                for (JsonElement element : root.getAsJsonArray("forceful_regions")) {
+                    String region = element.getAsString().trim().toUpperCase(Locale.ROOT);
+                    if (!region.equals(regionByName.get(region))) {
+                        throw new IOException("Forceful region " + region + " is not among the countries in " + file);
+                    }
+                    forceful.add(region);
+                }
+            }
+            return new CountryRegistry(countries, forceful);
+        } catch (NullPointerException | IllegalStateException | UnsupportedOperationException e) {
+            throw new IOException("Invalid country config " + file + ": expected \"countries\" entries with"
+                    + " \"region\", \"calling_code\" and \"names\"", e);
+        }
+    }
+
+    private static void claimName(Map<String, String> regionByName, String name, String region, Path file) throws IOException {
+        String previous = regionByName.putIfAbsent(name, region);
+        if (previous != null && !previous.equals(region)) {
+            throw new IOException("Name " + name + " is used for both " + previous + " and " + region + " in " + file);
+        }
+    }
+
+    /** Write this registry in the config file layout. */
+    public void writeJson(Writer out) throws IOException {
+        JsonWriter writer = new GsonBuilder().setPrettyPrinting().create().newJsonWriter(out);
+        writer.beginObject();
+        writer.name("countries").beginArray();
+        for (Country country : countries) {
+            writer.beginObject();
+            writer.name("region").value(country.getRegion());
+            writer.name("calling_code").value(country.getCallingCode());
+            writer.name("names").beginArray();
+            for (String name : country.getNames()) {
+                writer.value(name);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("forceful_regions").beginArray();
+        for (String region : forcefulRegions) {
+            writer.value(region);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    public List<Country> getCountries() {
+        return countries;
+    }
+
+    /** Regions tried, in order, by the validator's forceful step. */
+    public List<String> getForcefulRegions() {
+        return forcefulRegions;
+    }
+
+    public boolean isForcefulRegion(String region) {
+        return forcefulRegionSet.contains(region);
+    }
+
+    /** Hash of the whole table; equal registries have equal fingerprints. Never 0. */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /** Hash of the forceful region list alone, which is all cached outcomes can depend on. Never 0. */
+    public long getForcefulFingerprint() {
+        return forcefulFingerprint;
+    }
+
+    /**
+     * Find a country by name, alias or ISO region code, ignoring case and surrounding whitespace.
+     * @return the country, or null if unknown
+     */
+    public Country lookup(String name) {
+        if (name == null) {
+            return null;
+        }
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i) >= 0x80) {
+                // Rare: non-ASCII case mappings (e.g. U+0131 dotless i) can still yield a known name
+                String upper = name.toUpperCase(Locale.ROOT);
+                return upper.equals(name) ? null : lookup(upper);
+            }
+        }
+        int slot = hash(name, start, end) & mask;
+        while (keys[slot] != null) {
+            if (matches(keys[slot], name, start, end)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /** ISO region code for a country name or code, or null if unknown. */
+    public String regionFor(String name) {
+        Country country = lookup(name);
+        return country == null ? null : country.getRegion();
+    }
+
+    /** Calling code (e.g. "55") for a country name or code, or null if unknown. */
+    public String callingCodeFor(String name) {
+        Country country = lookup(name);
+        return country == null ? null : country.getCallingCode();
+    }
+
+    /**
+     * Longest known calling code the number starts with, considering codes of at most
+     * maxLength digits.
+     * @return the calling code, or null if none matches
+     */
+    public String callingCodePrefix(CharSequence number, int maxLength) {
+        String match = null;
+        int node = 0;
+        for (int i = 0; i < number.length() && i < maxLength; i++) {
+            int digit = number.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || (node = children[10 * node + digit]) == 0) {
+                break;
+            }
+            if (codes[node] != null) {
+                match = codes[node];
+            }
+        }
+        return match;
+    }
+
+    /** Name (and region code) to calling code, for every country that has one. */
+    public Map<String, String> callingCodesByName() {
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && values[i].getCallingCode() != null) {
+                result.put(keys[i], values[i].getCallingCode());
+            }
+        }
+        return result;
+    }
+
+    private static long hash64(long h, String value) {
+        if (value == null) {
+            return h * 31;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return (h ^ 0xFF) * 0x100000001B3L;
+    }
+
+    private static int fold(char c) {
+        return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String key, String name, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != fold(name.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write the built-in table as a starting point for --country-config. */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: CountryRegistry <output.json>");
+            System.exit(1);
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            DEFAULT.writeJson(writer);
+            System.out.println("✅ Wrote " + DEFAULT.getCountries().size() + " countries to " + args[0]);
+        } catch (IOException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,15 +1,45 @@
 package com.facebookleads.validator;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 /**
  * Interface for different file format parsers
  */
 public interface DataParser {
+    /** Rows between checks of the cancellation token while parsing. */
+    int CANCEL_CHECK_ROWS = 1024;
+
     /**
      * Parse a file and return phone records
      * @param filePath Path to the file
      * @return PhoneNumberData containing all parsed records
      */
-    PhoneNumberData parse(String filePath) throws IOException;
-}
\ No newline at end of file
+    default PhoneNumberData parse(String filePath) throws IOException {
+        return parse(filePath, CancellationToken.NONE);
+    }
+
+    /**
+     * Parse a file, stopping early once the token is cancelled
+     * @param filePath Path to the file
+     * @param cancellation Checked between rows
+     * @return PhoneNumberData with the records read; marked truncated if parsing stopped early
+     */
+    PhoneNumberData parse(String filePath, CancellationToken cancellation) throws IOException;
+
+    /**
+     * Parse a stream, handing each record to the sink as soon as it is read, so a caller can
+     * validate while the input is still arriving (stdin input, see RecordStream).
+     * Formats that need the whole file first (Excel) read it all before the first record.
+     */
+    void parse(InputStream in, RecordSink sink) throws IOException;
+
+    /** Receives what a streaming parse reads, in input order. */
+    interface RecordSink {
+        /** Header names, before any record; not called for formats without a header row. */
+        void columnNames(List<String> names);
+
+        void record(PhoneRecord record);
+    }
+}
@@ -0,0 +1,410 @@
+package com.facebookleads.validator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compact, memory-mapped manifest of a previous run: row key → content hash → outcome.
+ * Written next to the regular outputs as manifest.bin and loaded with --delta so that
+ * rows whose phone number and country did not change reuse their previous outcome
+ * instead of going through the validation cascade again.
+ *
+ * Layout (big-endian):
+ *   header   magic "PVMANIF1", int version, int entryCount, int outcomeCount, int stringCount,
+ *            fingerprint (short length + UTF-8 bytes)
+ *   strings  int offset per string, then (int length + UTF-8 bytes) per string
+ *   outcomes 32 bytes each: byte valid, then
+ *            valid:   byte 1 if the number is in compact form (see FormattedNumber), 2 padding,
+ *                     7 int string ids (-1 = null): compact number, 2 unused, country code,
+ *                     region, unused, validation method; or with byte 0 e164, international,
+ *                     national, country code, region, type, validation method
+ *            invalid: byte InvalidReason ordinal, byte parameter count, 1 padding and the
+ *                     string ids of the reason's parameters
+ *   entries  20 bytes each, sorted: long keyHash, long contentHash, int outcome index
+ *
+ * Rows with an ID are keyed by it; rows without one are keyed by their content, so
+ * unchanged rows still match when earlier rows were inserted or removed.
+ */
+public class DeltaManifest {
+
+    public static final String FILE_NAME = "manifest.bin";
+
+    private static final byte[] MAGIC = "PVMANIF1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 3;
+    private static final int OUTCOME_BYTES = 32;
+    private static final int ENTRY_BYTES = 20;
+
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int outcomeCount;
+    private final int stringOffsetsStart;
+    private final int stringDataStart;
+    private final int outcomesStart;
+    private final int entriesStart;
+    private final ValidationOutcome[] decoded;
+
+    private DeltaManifest(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (!Arrays.equals(bytes(0, MAGIC.length), MAGIC) || buffer.getInt(MAGIC.length) != VERSION) {
+            throw new IOException("Not a compatible manifest file");
+        }
+        this.entryCount = buffer.getInt(MAGIC.length + 4);
+        this.outcomeCount = buffer.getInt(MAGIC.length + 8);
+        int stringCount = buffer.getInt(MAGIC.length + 12);
+        int fingerprintLength = buffer.getShort(MAGIC.length + 16) & 0xFFFF;
+        byte[] fingerprint = bytes(MAGIC.length + 18, fingerprintLength);
+        if (!configFingerprint().equals(new String(fingerprint, StandardCharsets.UTF_8))) {
+            throw new IOException("Manifest was written by a different validator configuration");
+        }
+        this.stringOffsetsStart = MAGIC.length + 18 + fingerprintLength;
+        this.stringDataStart = stringOffsetsStart + stringCount * 4;
+        int stringDataLength = stringCount == 0 ? 0 : endOfStrings(stringCount);
+        this.outcomesStart = stringDataStart + stringDataLength;
+        this.entriesStart = outcomesStart + outcomeCount * OUTCOME_BYTES;
+        if ((long) entriesStart + (long) entryCount * ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Manifest file is truncated");
+        }
+        this.decoded = new ValidationOutcome[outcomeCount];
+    }
+
+    /**
+     * Memory-map the manifest in a previous output directory.
+     * @return the manifest, or null if the directory has none or it is unusable
+     */
+    public static DeltaManifest open(Path outputDir) {
+        Path path = outputDir.resolve(FILE_NAME);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DeltaManifest(mapped);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️  Warning: Ignoring manifest " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Previous outcome for this row if its key and content are unchanged; null otherwise,
+     * and for rows the previous run stopped validating at its time budget.
+     * Safe for concurrent use.
+     */
+    public ValidationOutcome lookup(PhoneRecord record) {
+        long contentHash = contentHash(record.getPhoneNumber(), record.getCountry());
+        long keyHash = keyHash(record.getId(), contentHash);
+
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int pos = entriesStart + mid * ENTRY_BYTES;
+            int cmp = compare(buffer.getLong(pos), buffer.getLong(pos + 8), keyHash, contentHash);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                ValidationOutcome outcome = outcome(buffer.getInt(pos + 16));
+                // Cut off by the time budget of that run: there is no outcome to reuse
+                return !outcome.isValid() && outcome.getError().getReason() == InvalidReason.TIME_BUDGET
+                        ? null : outcome;
+            }
+        }
+        return null;
+    }
+
+    private ValidationOutcome outcome(int index) {
+        ValidationOutcome outcome = decoded[index];
+        if (outcome == null) {
+            int pos = outcomesStart + index * OUTCOME_BYTES;
+            boolean valid = buffer.get(pos) == 1;
+            if (valid) {
+                FormattedNumber number = buffer.get(pos + 1) == 1
+                        ? FormattedNumber.fromCompact(string(buffer.getInt(pos + 4)))
+                        : FormattedNumber.preformatted(string(buffer.getInt(pos + 4)), string(buffer.getInt(pos + 8)),
+                                string(buffer.getInt(pos + 12)), string(buffer.getInt(pos + 24)));
+                outcome = ValidationOutcome.valid(number,
+                        string(buffer.getInt(pos + 16)),
+                        string(buffer.getInt(pos + 20)),
+                        string(buffer.getInt(pos + 28)));
+            } else {
+                String[] args = new String[buffer.get(pos + 2)];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = string(buffer.getInt(pos + 4 + 4 * i));
+                }
+                outcome = ValidationOutcome.invalid(InvalidReason.fromCode(buffer.get(pos + 1)), args);
+            }
+            // Benign race: concurrent readers decode identical values
+            decoded[index] = outcome;
+        }
+        return outcome;
+    }
+
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int pos = stringDataStart + buffer.getInt(stringOffsetsStart + id * 4);
+        return new String(bytes(pos + 4, buffer.getInt(pos)), StandardCharsets.UTF_8);
+    }
+
+    /** Absolute bulk read (ByteBuffer only gained an absolute bulk get in Java 13). */
+    private byte[] bytes(int pos, int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = buffer.get(pos + i);
+        }
+        return result;
+    }
+
+    private int endOfStrings(int stringCount) {
+        int lastOffset = buffer.getInt(stringOffsetsStart + (stringCount - 1) * 4);
+        int lastLength = buffer.getInt(stringDataStart + lastOffset);
+        return lastOffset + 4 + lastLength;
+    }
+
+    /**
+     * Write the manifest for a finished run. Outcomes are de-duplicated and entries
+     * sorted by (key hash, content hash) so lookups are a binary search over the mapping.
+     */
+    public static void write(ValidationResult result, Path outputDir) throws IOException {
+        int entryCount = result.getTotalCount();
+        long[] keyHashes = new long[entryCount];
+        long[] contentHashes = new long[entryCount];
+        int[] outcomeIds = new int[entryCount];
+
+        StringTable strings = new StringTable();
+        Map<List<Integer>, Integer> outcomeIndex = new HashMap<>();
+        ByteArrayOutputStream outcomeBytes = new ByteArrayOutputStream();
+        DataOutputStream outcomes = new DataOutputStream(outcomeBytes);
+
+        int i = 0;
+        for (ValidPhoneRecord record : result.getValidNumbers()) {
+            long contentHash = contentHash(record.getOriginalPhoneNumber(), record.getOriginalCountry());
+            keyHashes[i] = keyHash(record.getId(), contentHash);
+            contentHashes[i] = contentHash;
+            String compact = record.getNumber().getCompact();
+            List<Integer> ids = compact != null
+                    ? Arrays.asList(1 | 1 << 8, strings.id(compact), -1, -1,
+                            strings.id(record.getCountryCode()), strings.id(record.getRegion()), -1,
+                            strings.id(record.getValidationMethod()))
+                    : Arrays.asList(1,
+                            strings.id(record.getE164()), strings.id(record.getInternational()),
+                            strings.id(record.getNational()), strings.id(record.getCountryCode()),
+                            strings.id(record.getRegion()), strings.id(record.getType()),
+                            strings.id(record.getValidationMethod()));
+            outcomeIds[i++] = outcomeIndex.computeIfAbsent(ids, k -> writeOutcome(outcomes, k, outcomeIndex.size()));
+        }
+        for (InvalidPhoneRecord record : result.getInvalidNumbers()) {
+            long contentHash = contentHash(record.getOriginalPhoneNumber(), record.getOriginalCountry());
+            keyHashes[i] = keyHash(record.getId(), contentHash);
+            contentHashes[i] = contentHash;
+            ErrorDetail error = record.getErrorDetail() != null
+                    ? record.getErrorDetail() : ErrorDetail.of(InvalidReason.OTHER);
+            List<Integer> ids = new ArrayList<>(Arrays.asList(
+                    error.getReason().ordinal() << 8 | error.getArgCount() << 16, -1, -1, -1, -1, -1, -1, -1));
+            for (int j = 0; j < error.getArgCount(); j++) {
+                ids.set(1 + j, strings.id(error.getArg(j)));
+            }
+            outcomeIds[i++] = outcomeIndex.computeIfAbsent(ids, k -> writeOutcome(outcomes, k, outcomeIndex.size()));
+        }
+        sort(keyHashes, contentHashes, outcomeIds, 0, entryCount - 1);
+
+        long estimatedBytes = 64L + strings.byteSize() + outcomeBytes.size() + (long) entryCount * ENTRY_BYTES;
+        if (estimatedBytes > Integer.MAX_VALUE) {
+            // A single mapping is limited to 2 GB; such runs simply cannot be used as a delta base
+            System.err.println("⚠️  Warning: Result too large for a delta manifest, skipping " + FILE_NAME);
+            return;
+        }
+
+        Path target = outputDir.resolve(FILE_NAME);
+        Path temp = outputDir.resolve(FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            byte[] fingerprint = configFingerprint().getBytes(StandardCharsets.UTF_8);
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entryCount);
+            out.writeInt(outcomeIndex.size());
+            out.writeInt(strings.size());
+            out.writeShort(fingerprint.length);
+            out.write(fingerprint);
+            strings.writeTo(out);
+            outcomes.flush();
+            outcomeBytes.writeTo(out);
+            for (int e = 0; e < entryCount; e++) {
+                out.writeLong(keyHashes[e]);
+                out.writeLong(contentHashes[e]);
+                out.writeInt(outcomeIds[e]);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static int writeOutcome(DataOutputStream out, List<Integer> ids, int index) {
+        try {
+            // Header: valid flag, then the compact flag or the reason ordinal and parameter count
+            int header = ids.get(0);
+            out.writeByte(header);
+            out.writeByte(header >> 8);
+            out.writeByte(header >> 16);
+            out.writeByte(0);
+            for (int j = 1; j < ids.size(); j++) {
+                out.writeInt(ids.get(j));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return index;
+    }
+
+    /**
+     * Identifies the rules that produced the outcomes; a manifest from a different
+     * rules version or libphonenumber release is ignored rather than trusted.
+     */
+    static String configFingerprint() {
+        Package lib = com.google.i18n.phonenumbers.PhoneNumberUtil.class.getPackage();
+        String libVersion = lib != null && lib.getImplementationVersion() != null
+                ? lib.getImplementationVersion() : "unknown";
+        String fingerprint = "rules=" + PhoneNumberValidator.RULES_VERSION + ";libphonenumber=" + libVersion;
+        // A country config other than the built-in table can change outcomes too
+        CountryRegistry registry = CountryRegistry.current();
+        if (registry.getFingerprint() != CountryRegistry.getDefault().getFingerprint()) {
+            fingerprint += ";countries=" + Long.toHexString(registry.getFingerprint());
+        }
+        return fingerprint;
+    }
+
+    static long contentHash(String phoneNumber, String country) {
+        long h = hash(0x9E3779B97F4A7C15L, phoneNumber);
+        h = hash(h * 31 + 0x1F, country);
+        return mix(h);
+    }
+
+    static long keyHash(String id, long contentHash) {
+        if (id == null || id.isEmpty()) {
+            return contentHash;
+        }
+        return mix(hash(0xC2B2AE3D27D4EB4FL, id));
+    }
+
+    /** FNV-1a over UTF-16 code units, with null distinct from the empty string. */
+    private static long hash(long seed, String value) {
+        long h = seed ^ 0xCBF29CE484222325L;
+        if (value == null) {
+            return h ^ 0x5A5A5A5A5A5A5A5AL;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /** Murmur3 finalizer to spread FNV's weak low bits. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int compare(long key1, long content1, long key2, long content2) {
+        int cmp = Long.compare(key1, key2);
+        return cmp != 0 ? cmp : Long.compare(content1, content2);
+    }
+
+    /** In-place quicksort of the parallel entry arrays by (key, content). */
+    private static void sort(long[] keys, long[] contents, int[] outcomes, int low, int high) {
+        while (low < high) {
+            if (high - low < 16) {
+                for (int i = low + 1; i <= high; i++) {
+                    for (int j = i; j > low && compare(keys[j - 1], contents[j - 1], keys[j], contents[j]) > 0; j--) {
+                        swap(keys, contents, outcomes, j, j - 1);
+                    }
+                }
+                return;
+            }
+            int mid = (low + high) >>> 1;
+            long pivotKey = keys[mid];
+            long pivotContent = contents[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(keys[i], contents[i], pivotKey, pivotContent) < 0) i++;
+                while (compare(keys[j], contents[j], pivotKey, pivotContent) > 0) j--;
+                if (i <= j) {
+                    swap(keys, contents, outcomes, i++, j--);
+                }
+            }
+            // Recurse into the smaller half to bound stack depth
+            if (j - low < high - i) {
+                sort(keys, contents, outcomes, low, j);
+                low = i;
+            } else {
+                sort(keys, contents, outcomes, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private static void swap(long[] keys, long[] contents, int[] outcomes, int a, int b) {
+        long k = keys[a]; keys[a] = keys[b]; keys[b] = k;
+        long c = contents[a]; contents[a] = contents[b]; contents[b] = c;
+        int o = outcomes[a]; outcomes[a] = outcomes[b]; outcomes[b] = o;
+    }
+
+    /** De-duplicating string table written as an offset index followed by the data. */
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+
+        int id(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+            return id;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        long byteSize() {
+            long total = 0;
+            for (byte[] value : values) {
+                total += 8 + value.length;
+            }
+            return total;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            int offset = 0;
+            for (byte[] value : values) {
+                out.writeInt(offset);
+                offset += 4 + value.length;
+            }
+            for (byte[] value : values) {
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.facebookleads.validator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic automaton over the digits 0-9, compiled from one or more libphonenumber
+ * number patterns.
+ *
+ * Only the regex subset the metadata uses is accepted: digits, \d, character classes of
+ * digits, (?:...) and (...) groups, | and the quantifiers ?, *, +, {n}, {n,} and {n,m}
+ * (lazy forms included, they do not change what matches). Anything else is rejected with
+ * IllegalArgumentException so the caller can keep using java.util.regex for that pattern.
+ *
+ * Patterns are numbered in the order given; each state carries a bit mask of the patterns
+ * that accept there, so one walk over the input answers all of them (up to 32). A null
+ * pattern matches nothing.
+ */
+public final class DigitDfa {
+
+    /** Compiling stops here; libphonenumber patterns for a whole region stay far below it. */
+    public static final int MAX_STATES = 50_000;
+
+    private static final int DEAD = -1;
+
+    private final int[] next;      // state * 10 + digit -> state, or DEAD
+    private final int[] accepts;   // state -> mask of accepting patterns
+
+    private DigitDfa(int[] next, int[] accepts) {
+        this.next = next;
+        this.accepts = accepts;
+    }
+
+    public static DigitDfa compile(String... patterns) {
+        return compile(Arrays.asList(patterns));
+    }
+
+    public static DigitDfa compile(List<String> patterns) {
+        if (patterns.size() > 32) {
+            throw new IllegalArgumentException("At most 32 patterns per automaton");
+        }
+        Nfa nfa = new Nfa();
+        int start = nfa.newState();
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i) == null) {
+                continue;
+            }
+            Node node = new Parser(patterns.get(i)).parse();
+            int accept = nfa.newState();
+            nfa.acceptMask.set(accept, 1 << i);
+            int[] fragment = node.build(nfa);
+            nfa.epsilon(start, fragment[0]);
+            nfa.epsilon(fragment[1], accept);
+        }
+        return determinize(nfa, start);
+    }
+
+    /** Pattern mask accepted after consuming all of the input (Matcher.matches). */
+    public int run(CharSequence digits) {
+        int state = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            state = next[state * 10 + digit];
+            if (state == DEAD) {
+                return 0;
+            }
+        }
+        return accepts[state];
+    }
+
+    // Stepwise use, for callers that produce digits without building a string
+
+    public int start() {
+        return 0;
+    }
+
+    /** @return the next state, or a negative value once no pattern can match any more */
+    public int step(int state, int digit) {
+        return next[state * 10 + digit];
+    }
+
+    public int acceptsAt(int state) {
+        return accepts[state];
+    }
+
+    public int getStateCount() {
+        return accepts.length;
+    }
+
+    // ---------------------------------------------------------------- construction
+
+    private static DigitDfa determinize(Nfa nfa, int start) {
+        // DFA states are sets of NFA states, kept as sorted int arrays
+        Map<StateSet, Integer> ids = new HashMap<>();
+        List<int[]> sets = new ArrayList<>();
+        int[] initial = nfa.closure(new int[] { start }, 1);
+        ids.put(new StateSet(initial), 0);
+        sets.add(initial);
+
+        int[] next = new int[64 * 10];
+        int[] accepts = new int[64];
+        int[] moved = new int[16];
+        for (int current = 0; current < sets.size(); current++) {
+            int[] set = sets.get(current);
+            if (current >= accepts.length) {
+                accepts = Arrays.copyOf(accepts, accepts.length * 2);
+                next = Arrays.copyOf(next, next.length * 2);
+            }
+            int mask = 0;
+            for (int s : set) {
+                mask |= nfa.acceptMask.get(s);
+            }
+            accepts[current] = mask;
+            for (int digit = 0; digit < 10; digit++) {
+                int count = 0;
+                for (int s : set) {
+                    if ((nfa.digits.get(s) & (1 << digit)) != 0) {
+                        if (count == moved.length) {
+                            moved = Arrays.copyOf(moved, count * 2);
+                        }
+                        moved[count++] = nfa.target.get(s);
+                    }
+                }
+                if (count == 0) {
+                    next[current * 10 + digit] = DEAD;
+                    continue;
+                }
+                int[] target = nfa.closure(moved, count);
+                StateSet key = new StateSet(target);
+                Integer id = ids.get(key);
+                if (id == null) {
+                    if (sets.size() == MAX_STATES) {
+                        throw new IllegalArgumentException("Automaton exceeds " + MAX_STATES + " states");
+                    }
+                    id = sets.size();
+                    ids.put(key, id);
+                    sets.add(target);
+                }
+                next[current * 10 + digit] = id;
+            }
+        }
+        int count = sets.size();
+        return new DigitDfa(Arrays.copyOf(next, count * 10), Arrays.copyOf(accepts, count));
+    }
+
+    private static final class StateSet {
+        final int[] states;
+        final int hash;
+
+        StateSet(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateSet && Arrays.equals(states, ((StateSet) other).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** Thompson NFA: a state has epsilon edges and/or one edge on a set of digits. */
+    private static final class Nfa {
+        final IntList digits = new IntList();
+        final IntList target = new IntList();
+        final IntList acceptMask = new IntList();
+        final List<int[]> epsilons = new ArrayList<>();
+
+        int newState() {
+            digits.add(0);
+            target.add(-1);
+            acceptMask.add(0);
+            epsilons.add(new int[0]);
+            return epsilons.size() - 1;
+        }
+
+        void epsilon(int from, int to) {
+            int[] edges = epsilons.get(from);
+            int[] grown = Arrays.copyOf(edges, edges.length + 1);
+            grown[edges.length] = to;
+            epsilons.set(from, grown);
+        }
+
+        private int[] marks = new int[0];
+        private int stamp;
+
+        /** Sorted epsilon closure of the first count states. */
+        int[] closure(int[] states, int count) {
+            if (marks.length < epsilons.size()) {
+                marks = new int[epsilons.size()];
+                stamp = 0;
+            }
+            stamp++;
+            int[] stack = new int[Math.max(16, count)];
+            int depth = 0;
+            IntList members = new IntList();
+            for (int i = 0; i < count; i++) {
+                if (marks[states[i]] != stamp) {
+                    marks[states[i]] = stamp;
+                    stack[depth++] = states[i];
+                }
+            }
+            while (depth > 0) {
+                int state = stack[--depth];
+                members.add(state);
+                for (int to : epsilons.get(state)) {
+                    if (marks[to] != stamp) {
+                        marks[to] = stamp;
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, depth * 2);
+                        }
+                        stack[depth++] = to;
+                    }
+                }
+            }
+            int[] sorted = Arrays.copyOf(members.values, members.size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[64];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+    }
+
+    // ---------------------------------------------------------------- parsing
+
+    private abstract static class Node {
+        /** @return {entry, exit} states of a new fragment */
+        abstract int[] build(Nfa nfa);
+    }
+
+    private static final class DigitSet extends Node {
+        final int mask;
+
+        DigitSet(int mask) {
+            this.mask = mask;
+        }
+
+        int[] build(Nfa nfa) {
+            int from = nfa.newState();
+            int to = nfa.newState();
+            nfa.digits.set(from, mask);
+            nfa.target.set(from, to);
+            return new int[] { from, to };
+        }
+    }
+
+    private static final class Sequence extends Node {
+        final List<Node> items;
+
+        Sequence(List<Node> items) {
+            this.items = items;
+        }
+
+        int[] build(Nfa nfa) {
+            int entry = nfa.newState();
+            int exit = entry;
+            for (Node item : items) {
+                int[] fragment = item.build(nfa);
+                nfa.epsilon(exit, fragment[0]);
+                exit = fragment[1];
+            }
+            return new int[] { entry, exit };
+        }
+    }
+
+    private static final class Choice extends Node {
+        final List<Node> options;
+
+        Choice(List<Node> options) {
+            this.options = options;
+        }
+
+        int[] build(Nfa nfa) {
+            int entry = nfa.newState();
+            int exit = nfa.newState();
+            for (Node option : options) {
+                int[] fragment = option.build(nfa);
+                nfa.epsilon(entry, fragment[0]);
+                nfa.epsilon(fragment[1], exit);
+            }
+            return new int[] { entry, exit };
+        }
+    }
+
+    private static final class Repeat extends Node {
+        final Node item;
+        final int min;
+        final int max; // -1: unbounded
+
+        Repeat(Node item, int min, int max) {
+            this.item = item;
+            this.min = min;
+            this.max = max;
+        }
+
+        int[] build(Nfa nfa) {
+            int entry = nfa.newState();
+            int exit = entry;
+            for (int i = 0; i < min; i++) {
+                int[] fragment = item.build(nfa);
+                nfa.epsilon(exit, fragment[0]);
+                exit = fragment[1];
+            }
+            if (max < 0) {
+                int[] loop = item.build(nfa);
+                nfa.epsilon(exit, loop[0]);
+                nfa.epsilon(loop[1], exit);
+                return new int[] { entry, exit };
+            }
+            int end = nfa.newState();
+            nfa.epsilon(exit, end);
+            for (int i = min; i < max; i++) {
+                int[] fragment = item.build(nfa);
+                nfa.epsilon(exit, fragment[0]);
+                nfa.epsilon(fragment[1], end);
+                exit = fragment[1];
+            }
+            return new int[] { entry, end };
+        }
+    }
+
+    private static final class Parser {
+        private static final int MAX_REPEAT = 64;
+
+        private final String pattern;
+        private int position;
+
+        Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        Node parse() {
+            Node node = choice();
+            if (position != pattern.length()) {
+                throw unsupported();
+            }
+            return node;
+        }
+
+        private Node choice() {
+            List<Node> options = new ArrayList<>();
+            options.add(sequence());
+            while (peek() == '|') {
+                position++;
+                options.add(sequence());
+            }
+            return options.size() == 1 ? options.get(0) : new Choice(options);
+        }
+
+        private Node sequence() {
+            List<Node> items = new ArrayList<>();
+            while (position < pattern.length() && peek() != '|' && peek() != ')') {
+                items.add(quantified(atom()));
+            }
+            return items.size() == 1 ? items.get(0) : new Sequence(items);
+        }
+
+        private Node atom() {
+            char c = pattern.charAt(position++);
+            if (c >= '0' && c <= '9') {
+                return new DigitSet(1 << (c - '0'));
+            }
+            switch (c) {
+                case '\\':
+                    if (position < pattern.length() && pattern.charAt(position) == 'd') {
+                        position++;
+                        return new DigitSet(0x3FF);
+                    }
+                    throw unsupported();
+                case '[':
+                    return digitClass();
+                case '(':
+                    if (pattern.startsWith("?:", position)) {
+                        position += 2;
+                    } else if (peek() == '?') {
+                        throw unsupported();
+                    }
+                    Node inner = choice();
+                    if (peek() != ')') {
+                        throw unsupported();
+                    }
+                    position++;
+                    return inner;
+                default:
+                    throw unsupported();
+            }
+        }
+
+        private Node digitClass() {
+            boolean negated = peek() == '^';
+            if (negated) {
+                position++;
+            }
+            int mask = 0;
+            boolean first = true;
+            while (position < pattern.length() && (pattern.charAt(position) != ']' || first)) {
+                first = false;
+                int low = classDigit();
+                int high = low;
+                if (peek() == '-' && position + 1 < pattern.length() && pattern.charAt(position + 1) != ']') {
+                    position++;
+                    high = classDigit();
+                }
+                if (low > high) {
+                    throw unsupported();
+                }
+                for (int d = low; d <= high; d++) {
+                    mask |= 1 << d;
+                }
+            }
+            if (peek() != ']') {
+                throw unsupported();
+            }
+            position++;
+            return new DigitSet(negated ? ~mask & 0x3FF : mask);
+        }
+
+        private int classDigit() {
+            char c = pattern.charAt(position++);
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            throw unsupported();
+        }
+
+        private Node quantified(Node atom) {
+            if (position < pattern.length()) {
+                char c = pattern.charAt(position);
+                int min;
+                int max;
+                if (c == '?') {
+                    min = 0;
+                    max = 1;
+                    position++;
+                } else if (c == '*') {
+                    min = 0;
+                    max = -1;
+                    position++;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                    position++;
+                } else if (c == '{') {
+                    position++;
+                    min = number();
+                    max = min;
+                    if (peek() == ',') {
+                        position++;
+                        max = peek() == '}' ? -1 : number();
+                    }
+                    if (peek() != '}' || (max >= 0 && max < min)) {
+                        throw unsupported();
+                    }
+                    position++;
+                } else {
+                    return atom;
+                }
+                if (peek() == '+') {
+                    // Possessive quantifiers can change what matches
+                    throw unsupported();
+                }
+                if (peek() == '?') {
+                    position++;
+                }
+                if (peek() == '?' || peek() == '*' || peek() == '+' || peek() == '{') {
+                    throw unsupported();
+                }
+                return new Repeat(atom, min, max);
+            }
+            return atom;
+        }
+
+        private int number() {
+            int start = position;
+            while (position < pattern.length() && pattern.charAt(position) >= '0' && pattern.charAt(position) <= '9') {
+                position++;
+            }
+            if (position == start || position - start > 2) {
+                throw unsupported();
+            }
+            int value = Integer.parseInt(pattern.substring(start, position));
+            if (value > MAX_REPEAT) {
+                throw unsupported();
+            }
+            return value;
+        }
+
+        private char peek() {
+            return position < pattern.length() ? pattern.charAt(position) : '\0';
+        }
+
+        private IllegalArgumentException unsupported() {
+            return new IllegalArgumentException("Unsupported pattern syntax at " + position + ": " + pattern);
+        }
+    }
+}
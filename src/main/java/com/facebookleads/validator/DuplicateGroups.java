@@ -0,0 +1,361 @@
+package com.facebookleads.validator;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Valid records sharing an E.164 number, found without boxing and within a memory budget.
+ *
+ * Numbers are encoded as longs and inserted into a LongIntHashMap (number → row of the first
+ * record with it). If all numbers do not fit in the table at once, they are hash-partitioned
+ * and each partition is handled in its own pass over the records, reusing the same table.
+ * Every duplicate is kept as one packed long (first row, duplicate row) plus its number; when
+ * the entry buffer is full it is sorted and spilled to a temporary run, and the runs are merged
+ * when the groups are written, so groups come out ordered by their first occurrence.
+ *
+ * The budget covers the duplicate flags (one bit per valid record), the table and the entry
+ * buffer; close the groups to delete any runs.
+ */
+public class DuplicateGroups implements Closeable {
+    public static final long DEFAULT_MEMORY_BYTES = 256L * 1024 * 1024;
+
+    // Planned load per pass; the map itself only grows past 0.85
+    private static final double PASS_LOAD = 0.7;
+    // Packed rows and number of one duplicate
+    private static final int ENTRY_BYTES = 16;
+    private static final int MIN_ENTRIES = 1024;
+
+    private final long[] pairs;
+    private final long[] numbers;
+    private final int buffered;
+    private final List<Path> runs;
+    private final int pairCount;
+    private final BitSet duplicates;
+    private final int passes;
+    private final long tableBytes;
+    private int groupCount;
+
+    private DuplicateGroups(long[] pairs, long[] numbers, int buffered, List<Path> runs, int pairCount,
+                            BitSet duplicates, int passes, long tableBytes) {
+        this.pairs = pairs;
+        this.numbers = numbers;
+        this.buffered = buffered;
+        this.runs = runs;
+        this.pairCount = pairCount;
+        this.duplicates = duplicates;
+        this.passes = passes;
+        this.tableBytes = tableBytes;
+    }
+
+    /**
+     * Find duplicate numbers among valid records.
+     * @param count number of records the iterable yields
+     * @param memoryBytes budget for the duplicate flags, the hash table and the entry buffer;
+     *                    the table gets half of what the flags leave
+     */
+    public static DuplicateGroups find(Iterable<ValidPhoneRecord> valid, int count, long memoryBytes)
+            throws IOException {
+        long available = Math.max(0, memoryBytes - count / 8);
+        int needed = (int) Math.min(1 << 30, Math.ceil(Math.max(16, count) / PASS_LOAD));
+        int capacity = Math.min(LongIntHashMap.capacityFor(available / 2), Integer.highestOneBit(needed - 1) << 1);
+        long keysPerPass = Math.max(1, (long) (capacity * PASS_LOAD));
+        int passes = (int) Math.max(1, (count + keysPerPass - 1) / keysPerPass);
+        int maxEntries = (int) Math.max(MIN_ENTRIES,
+                Math.min(Integer.MAX_VALUE - 8, (available - 12L * capacity) / ENTRY_BYTES));
+
+        LongIntHashMap map = new LongIntHashMap(capacity);
+        long[] pairs = new long[Math.min(maxEntries, 1024)];
+        long[] numbers = new long[pairs.length];
+        int buffered = 0;
+        List<Path> runs = new ArrayList<>();
+        int pairCount = 0;
+        BitSet duplicates = new BitSet(count);
+        try {
+            for (int pass = 0; pass < passes; pass++) {
+                if (pass > 0) {
+                    map.clear();
+                }
+                int ordinal = 0;
+                for (ValidPhoneRecord record : valid) {
+                    long key = E164.encode(record.getE164());
+                    if (key > 0 && partition(key, passes) == pass) {
+                        int first = map.putIfAbsent(key, record.getRowNumber());
+                        if (first >= 0) {
+                            if (buffered == maxEntries) {
+                                runs.add(spill(pairs, numbers, buffered));
+                                buffered = 0;
+                            } else if (buffered == pairs.length) {
+                                int grown = (int) Math.min(maxEntries, pairs.length + (long) (pairs.length >> 1));
+                                pairs = Arrays.copyOf(pairs, grown);
+                                numbers = Arrays.copyOf(numbers, grown);
+                            }
+                            pairs[buffered] = ((long) first << 32) | record.getRowNumber();
+                            numbers[buffered++] = key;
+                            pairCount++;
+                            duplicates.set(ordinal);
+                        }
+                    }
+                    ordinal++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(runs);
+            throw e;
+        }
+        sort(pairs, numbers, 0, buffered);
+
+        DuplicateGroups groups = new DuplicateGroups(pairs, numbers, buffered, runs, pairCount, duplicates,
+                passes, 12L * map.capacity());
+        groups.groupCount = groups.forEachGroup(null);
+        return groups;
+    }
+
+    private static int partition(long key, int passes) {
+        return passes == 1 ? 0 : (int) Long.remainderUnsigned(LongIntHashMap.mix(key) >>> 32, passes);
+    }
+
+    private static int first(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    private static int duplicate(long pair) {
+        return (int) pair;
+    }
+
+    /** Sort the buffered entries and write them out as one run. */
+    private static Path spill(long[] pairs, long[] numbers, int count) throws IOException {
+        sort(pairs, numbers, 0, count);
+        Path file = Files.createTempFile("phone-validator-", ".dup");
+        file.toFile().deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                out.writeLong(pairs[i]);
+                out.writeLong(numbers[i]);
+            }
+        }
+        return file;
+    }
+
+    /** Quicksort of the entries by pair, moving each number with its pair. */
+    private static void sort(long[] pairs, long[] numbers, int from, int to) {
+        while (to - from > 16) {
+            long pivot = pairs[(from + to) >>> 1];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (pairs[i] < pivot) i++;
+                while (pairs[j] > pivot) j--;
+                if (i <= j) {
+                    swap(pairs, numbers, i++, j--);
+                }
+            }
+            // Recurse into the smaller side, loop on the larger, so the stack stays shallow
+            if (j - from < to - i) {
+                sort(pairs, numbers, from, j + 1);
+                from = i;
+            } else {
+                sort(pairs, numbers, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && pairs[j - 1] > pairs[j]; j--) {
+                swap(pairs, numbers, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] pairs, long[] numbers, int i, int j) {
+        long pair = pairs[i];
+        pairs[i] = pairs[j];
+        pairs[j] = pair;
+        long number = numbers[i];
+        numbers[i] = numbers[j];
+        numbers[j] = number;
+    }
+
+    /** True if the record at this position among the valid records repeats an earlier number. */
+    public boolean isDuplicate(int ordinal) {
+        return duplicates.get(ordinal);
+    }
+
+    /** E.164, first row, duplicate rows separated by ';', and how often the number occurs. */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.append("E.164,First Row,Duplicate Rows,Occurrences\n");
+        forEachGroup(new GroupVisitor() {
+            @Override
+            public void begin(String e164, int firstRow) throws IOException {
+                writer.append(e164).append(',').append(String.valueOf(firstRow)).append(',');
+            }
+
+            @Override
+            public void duplicate(int row, boolean firstDuplicate) throws IOException {
+                if (!firstDuplicate) writer.append(';');
+                writer.append(String.valueOf(row));
+            }
+
+            @Override
+            public void end(int occurrences) throws IOException {
+                writer.append(',').append(String.valueOf(occurrences)).append('\n');
+            }
+        });
+    }
+
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        forEachGroup(new GroupVisitor() {
+            @Override
+            public void begin(String e164, int firstRow) throws IOException {
+                writer.beginObject();
+                writer.name("e164").value(e164);
+                writer.name("first_row").value(firstRow);
+                writer.name("duplicate_rows").beginArray();
+            }
+
+            @Override
+            public void duplicate(int row, boolean firstDuplicate) throws IOException {
+                writer.value(row);
+            }
+
+            @Override
+            public void end(int occurrences) throws IOException {
+                writer.endArray();
+                writer.name("occurrences").value(occurrences);
+                writer.endObject();
+            }
+        });
+        writer.endArray();
+        writer.flush();
+    }
+
+    /** Receives the groups in order of first occurrence, one duplicate row at a time. */
+    private interface GroupVisitor {
+        void begin(String e164, int firstRow) throws IOException;
+        void duplicate(int row, boolean firstDuplicate) throws IOException;
+        void end(int occurrences) throws IOException;
+    }
+
+    /**
+     * Merge the runs and the buffer in pair order and hand each group to the visitor.
+     * @param visitor null to only count the groups
+     * @return the number of groups
+     */
+    private int forEachGroup(GroupVisitor visitor) throws IOException {
+        PriorityQueue<Source> merge = new PriorityQueue<>((a, b) -> Long.compare(a.pair, b.pair));
+        try {
+            for (Path run : runs) {
+                Source source = new Source(new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(run), 1 << 13)));
+                if (source.advance()) {
+                    merge.add(source);
+                }
+            }
+            Source memory = new Source(null);
+            if (memory.advance()) {
+                merge.add(memory);
+            }
+
+            int groups = 0;
+            int currentFirst = -1;
+            int occurrences = 0;
+            while (!merge.isEmpty()) {
+                Source source = merge.poll();
+                int firstRow = first(source.pair);
+                if (firstRow != currentFirst) {
+                    if (visitor != null && occurrences > 0) {
+                        visitor.end(occurrences);
+                    }
+                    if (visitor != null) {
+                        visitor.begin(E164.decode(source.number), firstRow);
+                    }
+                    currentFirst = firstRow;
+                    occurrences = 1;
+                    groups++;
+                }
+                if (visitor != null) {
+                    visitor.duplicate(duplicate(source.pair), occurrences == 1);
+                }
+                occurrences++;
+                if (source.advance()) {
+                    merge.add(source);
+                }
+            }
+            if (visitor != null && occurrences > 0) {
+                visitor.end(occurrences);
+            }
+            return groups;
+        } finally {
+            for (Source source : merge) {
+                source.close();
+            }
+        }
+    }
+
+    /** A sorted run on disk, or the in-memory buffer when in is null. */
+    private final class Source {
+        private final DataInputStream in;
+        private int index;
+        long pair;
+        long number;
+
+        Source(DataInputStream in) {
+            this.in = in;
+        }
+
+        boolean advance() throws IOException {
+            if (in == null) {
+                if (index == buffered) {
+                    return false;
+                }
+                pair = pairs[index];
+                number = numbers[index++];
+                return true;
+            }
+            try {
+                pair = in.readLong();
+                number = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /** Delete the spilled runs. */
+    @Override
+    public void close() {
+        delete(runs);
+    }
+
+    private static void delete(List<Path> runs) {
+        for (Path run : runs) {
+            run.toFile().delete();
+        }
+        runs.clear();
+    }
+
+    // Getters
+    public int getGroupCount() { return groupCount; }
+    /** Records whose number already appeared earlier (group size minus one, summed). */
+    public int getDuplicateCount() { return pairCount; }
+    public int getPasses() { return passes; }
+    public long getTableBytes() { return tableBytes; }
+    /** Sorted runs of duplicates written to disk because the entry buffer was full. */
+    public int getRunCount() { return runs.size(); }
+}
@@ -0,0 +1,35 @@
+package com.facebookleads.validator;
+
+/**
+ * Lossless conversion between E.164 strings and longs.
+ * "+" followed by at most 15 digits, the first non-zero, maps to the value of the digits,
+ * so a valid number costs 8 bytes in primitive sets, maps and index files.
+ */
+public final class E164 {
+
+    private static final int MAX_DIGITS = 15;
+
+    private E164() {
+    }
+
+    /** The number as a long, or -1 if it is not a canonical E.164 string. */
+    public static long encode(String e164) {
+        if (e164 == null || e164.length() < 2 || e164.length() > MAX_DIGITS + 1
+                || e164.charAt(0) != '+' || e164.charAt(1) == '0') {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 1; i < e164.length(); i++) {
+            char c = e164.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    public static String decode(long value) {
+        return "+" + value;
+    }
+}
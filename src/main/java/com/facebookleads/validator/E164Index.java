@@ -0,0 +1,307 @@
+package com.facebookleads.validator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Membership index of all valid E.164 numbers of a run, written as valid_e164.idx with
+ * --e164-index and queried without loading the JSON outputs.
+ *
+ * Layout (big-endian, like manifest.bin):
+ *   header  magic "PVE164I1", int version, int reserved, long count, 8 bytes padding (32 bytes)
+ *   data    count longs, sorted ascending and distinct; each is the E.164 number's digits
+ *
+ * The file is memory-mapped and searched in place with binary search. {@link Search#EYTZINGER}
+ * copies it once into a breadth-first (Eytzinger) array on the heap instead; without explicit
+ * prefetching it measured slower than binary search on 5M numbers (~800 vs ~500 ns for random
+ * point lookups), so binary search stays the default. Batches are fastest through
+ * {@link #containsAll}, which sorts the queries and walks the file once (~370 ns/query).
+ *
+ * CLI: java -cp phone-validator.jar com.facebookleads.validator.E164Index
+ *        [--eytzinger] &lt;index-file&gt; (&lt;number&gt;... | --batch &lt;file&gt; | --stats)
+ */
+public class E164Index {
+
+    public static final String FILE_NAME = "valid_e164.idx";
+
+    private static final byte[] MAGIC = "PVE164I1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    public enum Search { BINARY, EYTZINGER }
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final long[] eytzinger;
+
+    private E164Index(ByteBuffer buffer, int count, long[] eytzinger) {
+        this.buffer = buffer;
+        this.count = count;
+        this.eytzinger = eytzinger;
+    }
+
+    /** Write the distinct valid numbers of a result, sorted. */
+    public static void write(ValidationResult result, Path outputDir) throws IOException {
+        long[] numbers = new long[result.getValidCount()];
+        int n = 0;
+        for (ValidPhoneRecord record : result.getValidNumbers()) {
+            long number = E164.encode(record.getE164());
+            if (number > 0 && n < numbers.length) {
+                numbers[n++] = number;
+            }
+        }
+        Arrays.sort(numbers, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || numbers[i] != numbers[i - 1]) {
+                numbers[distinct++] = numbers[i];
+            }
+        }
+        if ((long) distinct * 8 + HEADER_BYTES > Integer.MAX_VALUE) {
+            // Kept to a single 2 GB mapping (268M numbers)
+            System.err.println("⚠️  Warning: Too many numbers for " + FILE_NAME + ", skipping");
+            return;
+        }
+
+        Path target = outputDir.resolve(FILE_NAME);
+        Path temp = outputDir.resolve(FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+            out.writeLong(distinct);
+            out.writeLong(0);
+            for (int i = 0; i < distinct; i++) {
+                out.writeLong(numbers[i]);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Map an index file; Eytzinger search additionally copies it to the heap (8 bytes per number). */
+    public static E164Index open(Path file, Search search) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not an E.164 index: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                throw new IOException("Not an E.164 index: " + file);
+            }
+        }
+        if (buffer.getInt(8) != VERSION) {
+            throw new IOException("Unsupported E.164 index version " + buffer.getInt(8) + ": " + file);
+        }
+        long count = buffer.getLong(16);
+        if (count < 0 || HEADER_BYTES + count * 8 > buffer.capacity()) {
+            throw new IOException("E.164 index is truncated: " + file);
+        }
+        long[] eytzinger = search == Search.EYTZINGER ? buildEytzinger(buffer, (int) count) : null;
+        return new E164Index(buffer, (int) count, eytzinger);
+    }
+
+    /** Breadth-first layout, 1-based: children of k are 2k and 2k+1. */
+    private static long[] buildEytzinger(ByteBuffer buffer, int count) {
+        long[] tree = new long[count + 1];
+        // In-order walk of the implicit tree, iterative to avoid deep recursion
+        int next = 0;
+        int k = 1;
+        int[] stack = new int[64];
+        int depth = 0;
+        while (depth > 0 || k <= count) {
+            if (k <= count) {
+                stack[depth++] = k;
+                k = 2 * k;
+            } else {
+                k = stack[--depth];
+                tree[k] = buffer.getLong(HEADER_BYTES + 8 * next++);
+                k = 2 * k + 1;
+            }
+        }
+        return tree;
+    }
+
+    public boolean contains(String e164) {
+        long number = E164.encode(e164);
+        return number > 0 && contains(number);
+    }
+
+    public boolean contains(long number) {
+        if (eytzinger != null) {
+            // Branch-free descent to the leaf, then back up to the first element >= number
+            int k = 1;
+            while (k <= count) {
+                k = 2 * k + (eytzinger[k] < number ? 1 : 0);
+            }
+            k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+            return k != 0 && eytzinger[k] == number;
+        }
+        return binarySearch(number, 0, count) >= 0;
+    }
+
+    /**
+     * Answer many queries at once. With binary search the queries are visited in sorted order
+     * and each search gallops forward from where the previous one ended.
+     */
+    public boolean[] containsAll(long[] numbers) {
+        boolean[] found = new boolean[numbers.length];
+        if (eytzinger != null) {
+            for (int i = 0; i < numbers.length; i++) {
+                found[i] = contains(numbers[i]);
+            }
+            return found;
+        }
+        int[] positions = sortedPositions(numbers);
+        int low = 0;
+        for (int position : positions) {
+            int index = gallop(numbers[position], low);
+            if (index >= 0) {
+                found[position] = true;
+                low = index;
+            } else {
+                low = -index - 1;
+            }
+        }
+        return found;
+    }
+
+    /** Search from a known lower bound with doubling steps, so close-together queries stay cheap. */
+    private int gallop(long number, int low) {
+        int step = 1;
+        while (low + step < count && buffer.getLong(HEADER_BYTES + 8 * (low + step)) < number) {
+            low += step;
+            step <<= 1;
+        }
+        return binarySearch(number, low, Math.min(count, low + step + 1));
+    }
+
+    /** Query positions ordered by number; a bottom-up merge sort on int[] to avoid boxing. */
+    private static int[] sortedPositions(long[] numbers) {
+        int[] positions = new int[numbers.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        int[] scratch = new int[positions.length];
+        for (int width = 1; width < positions.length; width *= 2) {
+            for (int lo = 0; lo < positions.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, positions.length);
+                int hi = Math.min(lo + 2 * width, positions.length);
+                int a = lo, b = mid, out = lo;
+                while (a < mid && b < hi) {
+                    scratch[out++] = numbers[positions[a]] <= numbers[positions[b]] ? positions[a++] : positions[b++];
+                }
+                while (a < mid) scratch[out++] = positions[a++];
+                while (b < hi) scratch[out++] = positions[b++];
+            }
+            int[] swap = positions;
+            positions = scratch;
+            scratch = swap;
+        }
+        return positions;
+    }
+
+    /** Arrays.binarySearch over the mapped data in [from, to). */
+    private int binarySearch(long number, int from, int to) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = buffer.getLong(HEADER_BYTES + 8 * mid);
+            if (value < number) {
+                low = mid + 1;
+            } else if (value > number) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public static void main(String[] args) {
+        Search search = Search.BINARY;
+        String batchFile = null;
+        boolean stats = false;
+        List<String> positional = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--eytzinger": search = Search.EYTZINGER; break;
+                    case "--batch": batchFile = CliOptions.requireValue(args, ++i, "--batch"); break;
+                    case "--stats": stats = true; break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        positional.add(args[i]);
+                }
+            }
+            if (positional.isEmpty() || (positional.size() == 1 && batchFile == null && !stats)) {
+                throw new IllegalArgumentException("Expected an index file and numbers, --batch <file> or --stats");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.out.println("Usage: E164Index [--eytzinger] <index-file> (<number>... | --batch <file> | --stats)");
+            System.exit(1);
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            E164Index index = open(Paths.get(positional.get(0)), search);
+            long openNanos = System.nanoTime() - start;
+            if (stats) {
+                System.out.println(String.format("%d numbers, opened in %.2f ms (%s search)",
+                        index.getCount(), openNanos / 1e6, search.name().toLowerCase()));
+            }
+
+            List<String> queries = new ArrayList<>(positional.subList(1, positional.size()));
+            if (batchFile != null) {
+                for (String line : Files.readAllLines(Paths.get(batchFile), StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        queries.add(line.trim());
+                    }
+                }
+            }
+            long[] numbers = new long[queries.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = E164.encode(normalize(queries.get(i)));
+            }
+            start = System.nanoTime();
+            boolean[] found = index.containsAll(numbers);
+            long queryNanos = System.nanoTime() - start;
+
+            PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false, "UTF-8");
+            for (int i = 0; i < numbers.length; i++) {
+                out.println(queries.get(i) + "," + (numbers[i] > 0 && found[i]));
+            }
+            out.flush();
+            if (stats && numbers.length > 0) {
+                System.err.println(String.format("%d queries in %.2f ms (%.0f ns/query)",
+                        numbers.length, queryNanos / 1e6, (double) queryNanos / numbers.length));
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Accept "+5511...", "5511..." and common separators. */
+    private static String normalize(String query) {
+        String digits = query.replaceAll("[\\s().-]", "");
+        return digits.startsWith("+") ? digits : "+" + digits;
+    }
+}
@@ -0,0 +1,84 @@
+package com.facebookleads.validator;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An invalid reason with its parameters. Immutable, so one instance is shared by the cached
+ * outcome and every record it is attached to; the message text is built on each toString(),
+ * i.e. only when JSON, CSV or the report is written. Serialized by gson as that text.
+ */
+@JsonAdapter(ErrorDetail.TextAdapter.class)
+public final class ErrorDetail {
+
+    private static final String[] NO_ARGS = new String[0];
+
+    private final InvalidReason reason;
+    private final String[] args;
+
+    private ErrorDetail(InvalidReason reason, String[] args) {
+        this.reason = reason;
+        this.args = args;
+    }
+
+    public static ErrorDetail of(InvalidReason reason, String... args) {
+        return new ErrorDetail(reason, args.length == 0 ? NO_ARGS : args.clone());
+    }
+
+    /** Free-text error with no reason code of its own. */
+    public static ErrorDetail text(String message) {
+        return message == null ? null : new ErrorDetail(InvalidReason.OTHER, new String[] { message });
+    }
+
+    public InvalidReason getReason() {
+        return reason;
+    }
+
+    public int getArgCount() {
+        return args.length;
+    }
+
+    public String getArg(int index) {
+        return args[index];
+    }
+
+    @Override
+    public String toString() {
+        return reason.format(args);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ErrorDetail)) {
+            return false;
+        }
+        ErrorDetail detail = (ErrorDetail) other;
+        return reason == detail.reason && Arrays.equals(args, detail.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * reason.ordinal() + Arrays.hashCode(args);
+    }
+
+    public static final class TextAdapter extends TypeAdapter<ErrorDetail> {
+        @Override
+        public void write(JsonWriter out, ErrorDetail value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(value.toString());
+            }
+        }
+
+        @Override
+        public ErrorDetail read(JsonReader in) throws IOException {
+            return text(in.nextString());
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.facebookleads.validator;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
 /**
@@ -12,11 +15,30 @@ import java.util.*;
  */
 public class ExcelParser implements DataParser {
 
+    /**
+     * A workbook can only be read whole, so the stream is spooled to a temp file and parsed
+     * before the sink receives its first record.
+     */
+    @Override
+    public void parse(InputStream in, RecordSink sink) throws IOException {
+        Path temp = Files.createTempFile("stdin-", ".xlsx");
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            PhoneNumberData data = parse(temp.toString());
+            sink.columnNames(data.getOriginalColumnNames());
+            for (PhoneRecord record : data.getRecords()) {
+                sink.record(record);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
     @Override
-    public PhoneNumberData parse(String filePath) throws IOException {
+    public PhoneNumberData parse(String filePath, CancellationToken cancellation) throws IOException {
         System.out.println("📊 Reading Excel file: " + filePath);
 
-        List<PhoneRecord> records = new ArrayList<>();
+        List<PhoneRecord> records = new ColumnarRecords();
         int totalSheets = 0;
         int processedSheets = 0;
 
@@ -28,7 +50,7 @@ public class ExcelParser implements DataParser {
             totalSheets = workbook.getNumberOfSheets();
             System.out.println("📑 Found " + totalSheets + " sheet(s) in workbook");
 
-            for (int sheetIndex = 0; sheetIndex < totalSheets; sheetIndex++) {
+            for (int sheetIndex = 0; sheetIndex < totalSheets && !cancellation.isCancelled(); sheetIndex++) {
                 Sheet sheet = workbook.getSheetAt(sheetIndex);
                 String sheetName = sheet.getSheetName();
 
@@ -40,24 +62,30 @@ public class ExcelParser implements DataParser {
                 if (sheetIndex == 0 && sheet.getPhysicalNumberOfRows() > 0 && sheet.getRow(0) != null) {
                     originalColumnNames = getHeaderValues(sheet.getRow(0));
                 }
-                List<PhoneRecord> sheetRecords = parseSheet(sheet, sheetIndex, originalColumnNames);
+                int sheetRecords = parseSheet(sheet, sheetIndex, originalColumnNames, records, cancellation);
 
-                if (sheetRecords.size() > 0) {
-                    records.addAll(sheetRecords);
+                if (sheetRecords > 0) {
                     processedSheets++;
-                    System.out.println("✅ Sheet '" + sheetName + "' processed: " + sheetRecords.size() + " records");
+                    System.out.println("✅ Sheet '" + sheetName + "' processed: " + sheetRecords + " records");
                 } else {
                     System.out.println("⚠️  Sheet '" + sheetName + "' had no valid records");
                 }
             }
 
+            if (cancellation.isCancelled()) {
+                System.out.println("⏹️  Stopped reading after " + records.size() + " records: " + cancellation.getReason());
+            }
             System.out.println();
             System.out.println("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
             System.out.println("✅ Parsed " + records.size() + " phone records from " + processedSheets + "/" + totalSheets + " sheet(s)");
             System.out.println("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
         }
 
-        return new PhoneNumberData(records, originalColumnNames);
+        PhoneNumberData data = new PhoneNumberData(records, originalColumnNames);
+        if (cancellation.isCancelled()) {
+            data.markTruncated();
+        }
+        return data;
     }
 
     /** Build ordered list of header cell values from the header row. */
@@ -72,28 +100,31 @@ public class ExcelParser implements DataParser {
     }
 
     /**
-     * Parse a single sheet and return its records.
+     * Parse a single sheet, appending its records.
      * @param originalColumnNames header from first sheet (for export); may be null
+     * @param cancellation checked every CANCEL_CHECK_ROWS rows; the sheet is left early once cancelled
+     * @return number of records added
      */
-    private List<PhoneRecord> parseSheet(Sheet sheet, int sheetIndex, List<String> originalColumnNames) {
-        List<PhoneRecord> records = new ArrayList<>();
+    private int parseSheet(Sheet sheet, int sheetIndex, List<String> originalColumnNames, List<PhoneRecord> records,
+            CancellationToken cancellation) {
+        int before = records.size();
 
         if (sheet.getPhysicalNumberOfRows() == 0) {
             System.out.println("⚠️  Warning: Excel sheet is empty");
-            return records;
+            return 0;
         }
 
         Row headerRow = sheet.getRow(sheet.getFirstRowNum());
         if (headerRow == null) {
             System.err.println("⚠️  Warning: Could not read header row");
-            return records;
+            return 0;
         }
 
         Map<String, Integer> columnIndex = parseHeader(headerRow);
 
         if (columnIndex.isEmpty()) {
             System.err.println("⚠️  Warning: Could not detect required columns");
-            return records;
+            return 0;
         }
 
         // Log detected columns
@@ -124,6 +155,9 @@ public class ExcelParser implements DataParser {
         int rowNumber = 0;
 
         for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+            if (i % CANCEL_CHECK_ROWS == 0 && cancellation.isCancelled()) {
+                break;
+            }
             Row row = sheet.getRow(i);
             if (row == null)
                 continue;
@@ -139,36 +173,43 @@ public class ExcelParser implements DataParser {
             }
         }
 
-        return records;
+        return records.size() - before;
     }
 
     /**
      * Parse header row to detect column positions
      */
     private Map<String, Integer> parseHeader(Row headerRow) {
-        Map<String, Integer> columnIndex = new HashMap<>();
-
         if (headerRow == null) {
-            return columnIndex;
+            return new HashMap<>();
         }
-
-        // Debug: Print all headers to help troubleshoot
-        System.out.println("🔍 Scanning headers...");
+        List<String> headers = new ArrayList<>();
         for (int i = 0; i < headerRow.getLastCellNum(); i++) {
             Cell cell = headerRow.getCell(i);
-            if (cell != null) {
-                String headerValue = getCellValueAsString(cell);
-                System.out.println("   Column " + i + ": '" + headerValue + "'");
-            }
+            headers.add(cell != null ? getCellValueAsString(cell) : null);
         }
-        System.out.println();
+        return detectColumns(headers, System.out);
+    }
 
-        for (int i = 0; i < headerRow.getLastCellNum(); i++) {
-            Cell cell = headerRow.getCell(i);
-            if (cell == null)
-                continue;
+    /**
+     * Map header cell values (null for empty cells) to column indices by field
+     * (id, email, name, first_name, phone_number, ...).
+     * Also used by HeaderProbe, which reads the header row without loading the workbook.
+     */
+    static Map<String, Integer> detectColumns(List<String> headers, PrintStream log) {
+        Map<String, Integer> columnIndex = new HashMap<>();
 
-            String header = getCellValueAsString(cell);
+        // Debug: Print all headers to help troubleshoot
+        log.println("🔍 Scanning headers...");
+        for (int i = 0; i < headers.size(); i++) {
+            if (headers.get(i) != null) {
+                log.println("   Column " + i + ": '" + headers.get(i) + "'");
+            }
+        }
+        log.println();
+
+        for (int i = 0; i < headers.size(); i++) {
+            String header = headers.get(i);
             if (header == null)
                 continue;
 
@@ -180,73 +221,73 @@ public class ExcelParser implements DataParser {
                     headerLower.equals("id")) {
                 if (!columnIndex.containsKey("id")) {
                     columnIndex.put("id", i);
-                    System.out.println("   ✓ Found ID at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found ID at column " + i + ": '" + header + "'");
                 }
             }
             // Email columns - prefer personal email over campus email
             else if (headerLower.contains("personal") && headerLower.contains("email")) {
                 columnIndex.put("email", i); // Override with personal email
-                System.out.println("   ✓ Found Personal Email at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Personal Email at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("campus") && headerLower.contains("email")) {
                 if (!columnIndex.containsKey("email")) {
                     columnIndex.put("email", i);
-                    System.out.println("   ✓ Found Campus Email at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Campus Email at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.equals("email") || headerLower.contains("e-mail")) {
                 if (!columnIndex.containsKey("email")) {
                     columnIndex.put("email", i);
-                    System.out.println("   ✓ Found Email at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Email at column " + i + ": '" + header + "'");
                 }
             }
             // Name columns - check for full name first, then first/last name
             else if (headerLower.equals("name") && !headerLower.contains("first") && !headerLower.contains("last")) {
                 if (!columnIndex.containsKey("name")) {
                     columnIndex.put("name", i);
-                    System.out.println("   ✓ Found Name at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Name at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.contains("first") && headerLower.contains("name")) {
                 columnIndex.put("first_name", i);
-                System.out.println("   ✓ Found First Name at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found First Name at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("given") && headerLower.contains("name")) {
                 columnIndex.put("first_name", i);
-                System.out.println("   ✓ Found Given Name at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Given Name at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("last") && headerLower.contains("name")) {
                 columnIndex.put("last_name", i);
-                System.out.println("   ✓ Found Last Name at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Last Name at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("surname") || headerLower.contains("primary name")) {
                 columnIndex.put("last_name", i);
-                System.out.println("   ✓ Found Surname at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Surname at column " + i + ": '" + header + "'");
             }
             // Phone columns - check for "updated number" and other variations
             else if (headerLower.contains("updated") && headerLower.contains("number")) {
                 if (!columnIndex.containsKey("phone_number")) {
                     columnIndex.put("phone_number", i);
-                    System.out.println("   ✓ Found Updated Number at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Updated Number at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.equals("phone")) {
                 if (!columnIndex.containsKey("phone_number")) {
                     columnIndex.put("phone_number", i);
-                    System.out.println("   ✓ Found Phone at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Phone at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.contains("phone") && !headerLower.contains("country")
                     && !headerLower.contains("code")) {
                 if (!columnIndex.containsKey("phone_number")) {
                     columnIndex.put("phone_number", i);
-                    System.out.println("   ✓ Found Phone (variant) at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Phone (variant) at column " + i + ": '" + header + "'");
                 }
             } else if (headerLower.contains("telephone") && headerLower.contains("u.s.")) {
                 columnIndex.put("us_telephone", i);
-                System.out.println("   ✓ Found US Telephone at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found US Telephone at column " + i + ": '" + header + "'");
             } else if (headerLower.contains("telephone") && headerLower.contains("foreign")
                     && !headerLower.contains("code")) {
                 columnIndex.put("foreign_telephone", i);
-                System.out.println("   ✓ Found Foreign Telephone at column " + i + ": '" + header + "'");
+                log.println("   ✓ Found Foreign Telephone at column " + i + ": '" + header + "'");
             }
             // Platform column
             else if (headerLower.equals("platform")) {
                 if (!columnIndex.containsKey("platform")) {
                     columnIndex.put("platform", i);
-                    System.out.println("   ✓ Found Platform at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Platform at column " + i + ": '" + header + "'");
                 }
             }
             // Country columns - FIXED: specifically check for "country" not just "count"
@@ -256,12 +297,12 @@ public class ExcelParser implements DataParser {
                     headerLower.contains("citizenship")) {
                 if (!columnIndex.containsKey("country")) {
                     columnIndex.put("country", i);
-                    System.out.println("   ✓ Found Country at column " + i + ": '" + header + "'");
+                    log.println("   ✓ Found Country at column " + i + ": '" + header + "'");
                 }
             }
         }
 
-        System.out.println();
+        log.println();
         return columnIndex;
     }
 
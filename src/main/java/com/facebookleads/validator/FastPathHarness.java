@@ -0,0 +1,212 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Differential test and micro-benchmark for RegionFastPath.
+ *
+ * For every compiled calling code it generates a corpus from libphonenumber's example numbers
+ * of each region and type (as-is, with digits replaced, inserted, dropped or truncated, and
+ * with leading zeros) plus random digit strings of every length up to 17, and checks that the
+ * fast path answers exactly as PhoneNumberUtil.isValidNumber does. Exits with status 1 on any
+ * difference.
+ *
+ * It then benchmarks both on the same corpus: WARMUP_ROUNDS untimed passes each, then --rounds
+ * timed passes alternating between the two, reported as median and best ns per number. The
+ * differential pass above also warms both paths up, so the JIT has compiled them by then.
+ *
+ * Usage: java -cp phone-validator.jar com.facebookleads.validator.FastPathHarness
+ *          [--regions US,BR,...] [--samples N] [--seed S] [--rounds N]
+ */
+public class FastPathHarness {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        List<String> regions = RegionFastPath.DEFAULT_REGIONS;
+        int samples = 1_000_000;
+        long seed = 42;
+        int rounds = 7;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--regions": regions = Arrays.asList(CliOptions.requireValue(args, ++i, "--regions").split(",")); break;
+                    case "--samples": samples = CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    case "--seed": seed = CliOptions.parseNonNegativeInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    case "--rounds": rounds = CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.out.println("Usage: FastPathHarness [--regions US,BR,...] [--samples N] [--seed S] [--rounds N]");
+            System.exit(1);
+            return;
+        }
+
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        long start = System.nanoTime();
+        RegionFastPath fastPath = RegionFastPath.compile(util, regions);
+        System.out.println(String.format("Compiled %s in %.1f ms (%d DFA states)", fastPath.describe(),
+                (System.nanoTime() - start) / 1e6, fastPath.getStateCount()));
+        for (String skipped : fastPath.getSkipped()) {
+            System.out.println("⚠️  Warning: Not compiled, stays on libphonenumber: " + skipped);
+        }
+
+        Random random = new Random(seed);
+        boolean allMatch = true;
+        for (String region : regions) {
+            int callingCode = util.getCountryCodeForRegion(region.trim().toUpperCase());
+            if (!fastPath.covers(callingCode)) {
+                continue;
+            }
+            PhoneNumber[] corpus = corpus(util, callingCode, samples, random);
+            int valid = 0;
+            int differences = 0;
+            for (PhoneNumber number : corpus) {
+                boolean expected = util.isValidNumber(number);
+                boolean actual = fastPath.check(number) == RegionFastPath.VALID;
+                if (expected) {
+                    valid++;
+                }
+                if (expected != actual) {
+                    if (differences++ < 10) {
+                        System.out.println("   DIFFERENCE +" + callingCode + " " + util.getNationalSignificantNumber(number)
+                                + ": libphonenumber " + expected + ", fast path " + actual);
+                    }
+                }
+            }
+            allMatch &= differences == 0;
+
+            Check lib = util::isValidNumber;
+            Check fast = n -> fastPath.check(n) == RegionFastPath.VALID;
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                time(corpus, lib);
+                time(corpus, fast);
+            }
+            double[] libNanos = new double[rounds];
+            double[] fastNanos = new double[rounds];
+            for (int round = 0; round < rounds; round++) {
+                libNanos[round] = time(corpus, lib);
+                fastNanos[round] = time(corpus, fast);
+            }
+            Arrays.sort(libNanos);
+            Arrays.sort(fastNanos);
+            double libMedian = libNanos[rounds / 2];
+            double fastMedian = fastNanos[rounds / 2];
+            System.out.println(String.format("+%-4d %,d numbers (%d valid): %d differences", callingCode, corpus.length, valid, differences));
+            System.out.println(String.format("      isValidNumber %.1f ns (best %.1f), fast path %.1f ns (best %.1f): %.1fx, median of %d rounds",
+                    libMedian, libNanos[0], fastMedian, fastNanos[0], libMedian / fastMedian, rounds));
+        }
+        if (!allMatch) {
+            System.err.println("❌ Error: Fast path differs from libphonenumber");
+            System.exit(1);
+        }
+    }
+
+    private interface Check {
+        boolean valid(PhoneNumber number);
+    }
+
+    private static double time(PhoneNumber[] corpus, Check check) {
+        long start = System.nanoTime();
+        int valid = 0;
+        for (PhoneNumber number : corpus) {
+            if (check.valid(number)) {
+                valid++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        if (valid < 0) {
+            System.out.println(valid); // keep the loop from being optimised away
+        }
+        return (double) nanos / corpus.length;
+    }
+
+    /** Example numbers of the calling code's regions, mutated, and random digit strings; see the class comment. */
+    static PhoneNumber[] corpus(PhoneNumberUtil util, int callingCode, int samples, Random random) {
+        List<String> seeds = new ArrayList<>();
+        for (String region : util.getRegionCodesForCountryCode(callingCode)) {
+            for (PhoneNumberUtil.PhoneNumberType type : PhoneNumberUtil.PhoneNumberType.values()) {
+                PhoneNumber example = util.getExampleNumberForType(region, type);
+                if (example != null) {
+                    seeds.add(util.getNationalSignificantNumber(example));
+                }
+            }
+        }
+        PhoneNumber[] corpus = new PhoneNumber[samples];
+        for (int i = 0; i < samples; i++) {
+            String nsn;
+            if (seeds.isEmpty() || random.nextInt(4) == 0) {
+                nsn = randomDigits(random, 1 + random.nextInt(17));
+            } else {
+                nsn = mutate(seeds.get(random.nextInt(seeds.size())), random);
+            }
+            corpus[i] = toNumber(callingCode, nsn);
+        }
+        return corpus;
+    }
+
+    private static String mutate(String nsn, Random random) {
+        StringBuilder digits = new StringBuilder(nsn);
+        int edits = random.nextInt(4);
+        for (int e = 0; e < edits; e++) {
+            int position = random.nextInt(digits.length() + 1);
+            switch (random.nextInt(5)) {
+                case 0:
+                case 1:
+                    if (position < digits.length()) {
+                        digits.setCharAt(position, (char) ('0' + random.nextInt(10)));
+                    }
+                    break;
+                case 2:
+                    digits.insert(position, (char) ('0' + random.nextInt(10)));
+                    break;
+                case 3:
+                    if (digits.length() > 2 && position < digits.length()) {
+                        digits.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    digits.setLength(Math.max(2, Math.min(digits.length(), position)));
+            }
+        }
+        if (random.nextInt(10) == 0) {
+            digits.insert(0, random.nextBoolean() ? "0" : "00");
+        }
+        if (digits.length() > 17) {
+            digits.setLength(17);
+        }
+        return digits.toString();
+    }
+
+    private static String randomDigits(Random random, int length) {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    /** The PhoneNumber libphonenumber's parser builds for this national significant number. */
+    private static PhoneNumber toNumber(int callingCode, String nsn) {
+        PhoneNumber number = new PhoneNumber().setCountryCode(callingCode).setNationalNumber(Long.parseLong(nsn));
+        if (nsn.length() > 1 && nsn.charAt(0) == '0') {
+            number.setItalianLeadingZero(true);
+            int zeros = 1;
+            while (zeros < nsn.length() - 1 && nsn.charAt(zeros) == '0') {
+                zeros++;
+            }
+            if (zeros != 1) {
+                number.setNumberOfLeadingZeros(zeros);
+            }
+        }
+        return number;
+    }
+}
@@ -0,0 +1,174 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+
+import java.util.*;
+
+/**
+ * The formatted forms of a valid number: E.164, international, national and number type.
+ *
+ * Holds the parsed number and formats each form with libphonenumber the first time it is
+ * asked for, keeping the result; forms nobody asks for (see OutputOptions.formats) are never
+ * computed. One instance is shared by a cached outcome and every record attached to it.
+ * Instances built from already formatted strings (records created by other code) just return
+ * those strings.
+ *
+ * The compact form used to persist parsed numbers is the E.164 number with a space after the
+ * calling code, followed by ";ext=" and the extension if there is one, e.g. "+55 34999983250".
+ */
+public final class FormattedNumber {
+
+    /** Formatted fields that can be selected for output. */
+    public enum Field {
+        E164, INTERNATIONAL, NATIONAL, TYPE;
+
+        /** Parse a comma-separated list such as "e164,national". */
+        public static Set<Field> parseList(String option, String value) {
+            Set<Field> fields = EnumSet.noneOf(Field.class);
+            for (String name : value.split(",")) {
+                if (name.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    fields.add(valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown format for " + option + ": " + name.trim()
+                            + " (expected e164, international, national, type)");
+                }
+            }
+            if (fields.isEmpty()) {
+                throw new IllegalArgumentException("No formats given for " + option);
+            }
+            return fields;
+        }
+    }
+
+    private static final String EXTENSION = ";ext=";
+
+    private final PhoneNumber number;  // null when built from formatted strings
+
+    // Filled on first use; racing threads compute identical strings
+    private String e164;
+    private String international;
+    private String national;
+    private String type;
+
+    private FormattedNumber(PhoneNumber number, String e164, String international, String national, String type) {
+        this.number = number;
+        this.e164 = e164;
+        this.international = international;
+        this.national = national;
+        this.type = type;
+    }
+
+    /** Wrap a parsed number; only the fields formatting reads are copied. */
+    public static FormattedNumber of(PhoneNumber parsed) {
+        PhoneNumber number = new PhoneNumber()
+                .setCountryCode(parsed.getCountryCode())
+                .setNationalNumber(parsed.getNationalNumber());
+        if (parsed.isItalianLeadingZero()) {
+            number.setItalianLeadingZero(true);
+            if (parsed.hasNumberOfLeadingZeros()) {
+                number.setNumberOfLeadingZeros(parsed.getNumberOfLeadingZeros());
+            }
+        }
+        if (parsed.hasExtension()) {
+            number.setExtension(parsed.getExtension());
+        }
+        return new FormattedNumber(number, null, null, null, null);
+    }
+
+    public static FormattedNumber preformatted(String e164, String international, String national, String type) {
+        return new FormattedNumber(null, e164, international, national, type);
+    }
+
+    /**
+     * Rebuild from {@link #getCompact()} without going through the parser.
+     * @throws IllegalArgumentException if the text is not in compact form
+     */
+    public static FormattedNumber fromCompact(String compact) {
+        int space = compact.indexOf(' ');
+        int extension = compact.indexOf(EXTENSION);
+        int end = extension >= 0 ? extension : compact.length();
+        if (!compact.startsWith("+") || space < 2 || space + 1 >= end) {
+            throw new IllegalArgumentException("Not a compact phone number: " + compact);
+        }
+        String nsn = compact.substring(space + 1, end);
+        PhoneNumber number;
+        try {
+            number = new PhoneNumber()
+                    .setCountryCode(Integer.parseInt(compact.substring(1, space)))
+                    .setNationalNumber(Long.parseLong(nsn));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a compact phone number: " + compact);
+        }
+        // Leading zeros as PhoneNumberUtil.parse records them: at least one digit stays in the number
+        if (nsn.length() > 1 && nsn.charAt(0) == '0') {
+            number.setItalianLeadingZero(true);
+            int zeros = 1;
+            while (zeros < nsn.length() - 1 && nsn.charAt(zeros) == '0') {
+                zeros++;
+            }
+            if (zeros != 1) {
+                number.setNumberOfLeadingZeros(zeros);
+            }
+        }
+        if (extension >= 0) {
+            number.setExtension(compact.substring(extension + EXTENSION.length()));
+        }
+        return new FormattedNumber(number, null, null, null, null);
+    }
+
+    /** Compact persistent form, or null for preformatted instances. */
+    public String getCompact() {
+        if (number == null) {
+            return null;
+        }
+        String compact = "+" + number.getCountryCode() + " "
+                + PhoneNumberUtil.getInstance().getNationalSignificantNumber(number);
+        return number.hasExtension() ? compact + EXTENSION + number.getExtension() : compact;
+    }
+
+    public String getE164() {
+        if (e164 == null && number != null) {
+            e164 = PhoneNumberUtil.getInstance().format(number, PhoneNumberFormat.E164);
+        }
+        return e164;
+    }
+
+    public String getInternational() {
+        if (international == null && number != null) {
+            international = PhoneNumberUtil.getInstance().format(number, PhoneNumberFormat.INTERNATIONAL);
+        }
+        return international;
+    }
+
+    public String getNational() {
+        if (national == null && number != null) {
+            national = PhoneNumberUtil.getInstance().format(number, PhoneNumberFormat.NATIONAL);
+        }
+        return national;
+    }
+
+    public String getType() {
+        if (type == null && number != null) {
+            type = PhoneNumberUtil.getInstance().getNumberType(number).toString();
+        }
+        return type;
+    }
+
+    /** The given field, or null if it is not in {@code selected}. */
+    public String get(Field field, Set<Field> selected) {
+        if (!selected.contains(field)) {
+            return null;
+        }
+        switch (field) {
+            case E164: return getE164();
+            case INTERNATIONAL: return getInternational();
+            case NATIONAL: return getNational();
+            default: return getType();
+        }
+    }
+}
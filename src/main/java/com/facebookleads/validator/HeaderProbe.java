@@ -0,0 +1,424 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Detects which columns of an input hold the ID, email, name, phone and country fields
+ * without parsing it, so the upload page can show the mapping right after a file is chosen.
+ *
+ * Only the header is read: the first record of a CSV file, the first INSERT INTO line of a
+ * SQL export (whose field positions are fixed, see SQLParser), or the first row of the first
+ * sheet of an .xlsx workbook. Workbooks are read as the zip they are: the sheet XML is
+ * streamed until its first row ends, and the shared strings only up to the last one the
+ * header uses, so the probe takes milliseconds however large the file. The mapping comes
+ * from the same detectColumns rules CSVParser and ExcelParser apply in a full parse.
+ * Legacy .xls workbooks are not supported (ExcelParser reads .xlsx only).
+ *
+ * CLI: java -cp phone-validator.jar com.facebookleads.validator.HeaderProbe &lt;input-file&gt;
+ *      prints the result as one line of JSON:
+ *      {"file", "format", "sheet" (xlsx), "columns": [header names],
+ *       "detected": {field: {"index", "header"}}, "has_phone", "elapsed_ms"}
+ */
+public class HeaderProbe {
+
+    /** Fields in the order they are reported; SQL exports have no name split or alternate phones. */
+    static final List<String> FIELDS = Arrays.asList("id", "email", "name", "first_name", "last_name",
+            "phone_number", "us_telephone", "foreign_telephone", "country", "platform");
+
+    /** A header longer than this is not a header. */
+    private static final int MAX_HEADER_CHARS = 1 << 20;
+
+    private static final PrintStream SILENT = new PrintStream(OutputStream.nullOutputStream());
+
+    private HeaderProbe() {
+    }
+
+    /** The header names of an input and the fields detected in them. */
+    public static final class Result {
+        private final String format;
+        private final String sheet;
+        private final List<String> columns;
+        private final Map<String, Integer> detected;
+
+        Result(String format, String sheet, List<String> columns, Map<String, Integer> detected) {
+            this.format = format;
+            this.sheet = sheet;
+            this.columns = columns;
+            this.detected = detected;
+        }
+
+        public String getFormat() { return format; }
+        /** Name of the sheet whose header was read; null for CSV and SQL. */
+        public String getSheet() { return sheet; }
+        public List<String> getColumns() { return columns; }
+        /** Column index by field name (id, email, phone_number, ...); fields not found are absent. */
+        public Map<String, Integer> getDetected() { return detected; }
+
+        public boolean hasPhone() {
+            return detected.containsKey("phone_number") || detected.containsKey("us_telephone")
+                    || detected.containsKey("foreign_telephone");
+        }
+
+        Map<String, Object> toJson(String file, long elapsedMillis) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("file", file);
+            json.put("format", format);
+            if (sheet != null) {
+                json.put("sheet", sheet);
+            }
+            json.put("columns", columns);
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (String field : FIELDS) {
+                Integer index = detected.get(field);
+                if (index != null) {
+                    Map<String, Object> column = new LinkedHashMap<>();
+                    column.put("index", index);
+                    column.put("header", index < columns.size() ? columns.get(index) : null);
+                    fields.put(field, column);
+                }
+            }
+            json.put("detected", fields);
+            json.put("has_phone", hasPhone());
+            json.put("elapsed_ms", elapsedMillis);
+            return json;
+        }
+    }
+
+    public static Result probe(String filePath) throws IOException {
+        String extension = ParserFactory.getFileExtension(filePath).toLowerCase();
+        switch (extension) {
+            case "csv":
+                return probeCsv(filePath);
+            case "sql":
+                return probeSql(filePath);
+            case "xlsx":
+                return probeXlsx(filePath);
+            case "xls":
+                throw new IOException("Legacy .xls workbooks are not supported; save the file as .xlsx");
+            default:
+                throw new IllegalArgumentException("Unsupported file format: " + extension);
+        }
+    }
+
+    /** The first record, ended by a newline outside quotes, as CSVParser splits records. */
+    private static Result probeCsv(String filePath) throws IOException {
+        StringBuilder header = new StringBuilder();
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            boolean inQuotes = false;
+            int c;
+            while ((c = reader.read()) >= 0) {
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                } else if (c == '\n' && !inQuotes) {
+                    if (header.toString().trim().isEmpty()) {
+                        header.setLength(0);
+                        continue;
+                    }
+                    break;
+                }
+                header.append((char) c);
+                if (header.length() > MAX_HEADER_CHARS) {
+                    throw new IOException("No header record in the first " + MAX_HEADER_CHARS + " characters");
+                }
+            }
+        }
+        if (header.toString().trim().isEmpty()) {
+            throw new IOException("CSV file is empty");
+        }
+        String[] headers = new CSVParser().parseCSVLine(header.toString().trim());
+        List<String> columns = new ArrayList<>();
+        for (String name : headers) {
+            columns.add(name != null ? name.trim() : "");
+        }
+        return new Result("csv", null, columns, CSVParser.detectColumns(headers, SILENT));
+    }
+
+    /** Column names from the first INSERT INTO line; the fields sit at SQLParser's fixed positions. */
+    private static Result probeSql(String filePath) throws IOException {
+        List<String> columns = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            long read = 0;
+            String line;
+            while ((line = reader.readLine()) != null && read < MAX_HEADER_CHARS) {
+                read += line.length() + 1;
+                int insert = line.indexOf("INSERT INTO");
+                if (insert < 0) {
+                    continue;
+                }
+                int open = line.indexOf('(', insert);
+                int close = open < 0 ? -1 : line.indexOf(')', open);
+                int values = line.toUpperCase(Locale.ROOT).indexOf("VALUES", insert);
+                if (close > open && (values < 0 || open < values)) {
+                    for (String name : line.substring(open + 1, close).split(",")) {
+                        columns.add(name.trim().replace("`", "").replace("\"", ""));
+                    }
+                }
+                break;
+            }
+        }
+        Map<String, Integer> detected = new HashMap<>();
+        detected.put("id", SQLParser.ID_COLUMN);
+        detected.put("email", SQLParser.EMAIL_COLUMN);
+        detected.put("name", SQLParser.NAME_COLUMN);
+        detected.put("phone_number", SQLParser.PHONE_COLUMN);
+        detected.put("country", SQLParser.COUNTRY_COLUMN);
+        detected.put("platform", SQLParser.PLATFORM_COLUMN);
+        return new Result("sql", null, columns, detected);
+    }
+
+    private static Result probeXlsx(String filePath) throws IOException {
+        try (ZipFile zip = new ZipFile(filePath)) {
+            Map<String, String> targets = new HashMap<>();
+            String sharedStrings = "xl/sharedStrings.xml";
+            ZipEntry rels = zip.getEntry("xl/_rels/workbook.xml.rels");
+            if (rels != null) {
+                XMLStreamReader xml = open(zip, rels);
+                try {
+                    while (xml.hasNext()) {
+                        if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("Relationship")) {
+                            String target = xml.getAttributeValue(null, "Target");
+                            target = target.startsWith("/") ? target.substring(1) : "xl/" + target;
+                            targets.put(xml.getAttributeValue(null, "Id"), target);
+                            String type = xml.getAttributeValue(null, "Type");
+                            if (type != null && type.endsWith("/sharedStrings")) {
+                                sharedStrings = target;
+                            }
+                        }
+                    }
+                } finally {
+                    close(xml);
+                }
+            }
+
+            // The first sheet in workbook order, as ExcelParser takes the header from sheet 0
+            String sheetName = null;
+            String sheetPath = "xl/worksheets/sheet1.xml";
+            ZipEntry workbook = zip.getEntry("xl/workbook.xml");
+            if (workbook != null) {
+                XMLStreamReader xml = open(zip, workbook);
+                try {
+                    while (xml.hasNext()) {
+                        if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("sheet")) {
+                            sheetName = xml.getAttributeValue(null, "name");
+                            for (int i = 0; i < xml.getAttributeCount(); i++) {
+                                // r:id, in the transitional or the strict relationships namespace
+                                if (xml.getAttributeLocalName(i).equals("id") && !xml.getAttributeNamespace(i).isEmpty()
+                                        && targets.containsKey(xml.getAttributeValue(i))) {
+                                    sheetPath = targets.get(xml.getAttributeValue(i));
+                                }
+                            }
+                            break;
+                        }
+                    }
+                } finally {
+                    close(xml);
+                }
+            }
+
+            ZipEntry sheet = zip.getEntry(sheetPath);
+            if (sheet == null) {
+                throw new IOException("Not an .xlsx workbook (no " + sheetPath + ")");
+            }
+            List<String[]> cells = readFirstRow(zip, sheet);
+
+            int maxShared = -1;
+            for (String[] cell : cells) {
+                if ("s".equals(cell[1]) && !cell[2].isEmpty()) {
+                    maxShared = Math.max(maxShared, Integer.parseInt(cell[2].trim()));
+                }
+            }
+            List<String> strings = maxShared >= 0 ? readSharedStrings(zip, zip.getEntry(sharedStrings), maxShared)
+                    : Collections.emptyList();
+
+            int width = 0;
+            for (String[] cell : cells) {
+                width = Math.max(width, Integer.parseInt(cell[0]) + 1);
+            }
+            List<String> headers = new ArrayList<>(Collections.nCopies(width, (String) null));
+            for (String[] cell : cells) {
+                headers.set(Integer.parseInt(cell[0]), cellValue(cell[1], cell[2], strings));
+            }
+            List<String> columns = new ArrayList<>();
+            for (String header : headers) {
+                columns.add(header != null ? header : "");
+            }
+            return new Result("xlsx", sheetName, columns, ExcelParser.detectColumns(headers, SILENT));
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Cannot read workbook header: " + e.getMessage(), e);
+        }
+    }
+
+    /** Cells of the sheet's first row as {column index, type, raw text}, stopping at the row's end. */
+    private static List<String[]> readFirstRow(ZipFile zip, ZipEntry sheet) throws IOException, XMLStreamException {
+        List<String[]> cells = new ArrayList<>();
+        XMLStreamReader xml = open(zip, sheet);
+        try {
+            boolean inRow = false;
+            boolean capture = false;
+            int column = -1;
+            String type = null;
+            StringBuilder text = new StringBuilder();
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("row")) {
+                        inRow = true;
+                    } else if (inRow && name.equals("c")) {
+                        String ref = xml.getAttributeValue(null, "r");
+                        column = ref != null ? columnOf(ref) : column + 1;
+                        type = xml.getAttributeValue(null, "t");
+                        text.setLength(0);
+                    } else if (inRow && (name.equals("v") || name.equals("t"))) {
+                        capture = true;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (capture) {
+                        text.append(xml.getText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("v") || name.equals("t")) {
+                        capture = false;
+                    } else if (inRow && name.equals("c")) {
+                        cells.add(new String[] {String.valueOf(column), type, text.toString()});
+                    } else if (name.equals("row")) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            close(xml);
+        }
+        return cells;
+    }
+
+    /** Shared strings 0..last, reading no further; phonetic runs (rPh) are left out as POI does. */
+    private static List<String> readSharedStrings(ZipFile zip, ZipEntry entry, int last) throws IOException, XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        if (entry == null) {
+            return strings;
+        }
+        XMLStreamReader xml = open(zip, entry);
+        try {
+            StringBuilder text = new StringBuilder();
+            boolean capture = false;
+            int phonetic = 0;
+            while (xml.hasNext() && strings.size() <= last) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("si")) {
+                        text.setLength(0);
+                    } else if (name.equals("rPh")) {
+                        phonetic++;
+                    } else if (name.equals("t") && phonetic == 0) {
+                        capture = true;
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (capture) {
+                        text.append(xml.getText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("t")) {
+                        capture = false;
+                    } else if (name.equals("rPh")) {
+                        phonetic--;
+                    } else if (name.equals("si")) {
+                        strings.add(text.toString());
+                    }
+                }
+            }
+        } finally {
+            close(xml);
+        }
+        return strings;
+    }
+
+    /** A header cell as ExcelParser.getCellValueAsString reads it; null for blank and error cells. */
+    private static String cellValue(String type, String raw, List<String> strings) {
+        if (type == null || type.equals("n")) {
+            if (raw.isEmpty()) {
+                return null;
+            }
+            double number = Double.parseDouble(raw);
+            return number == Math.floor(number) ? String.valueOf((long) number) : String.valueOf(number);
+        }
+        switch (type) {
+            case "s":
+                int index = Integer.parseInt(raw.trim());
+                return index < strings.size() ? strings.get(index).trim() : null;
+            case "inlineStr":
+            case "str":
+                return raw.trim();
+            case "b":
+                return String.valueOf(raw.trim().equals("1"));
+            default:
+                return null;
+        }
+    }
+
+    /** Zero-based column of a cell reference such as "AB1". */
+    private static int columnOf(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char ch = ref.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                break;
+            }
+            column = column * 26 + (ch - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static XMLStreamReader open(ZipFile zip, ZipEntry entry) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Uploaded files: no DTDs, no external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        InputStream in = new BufferedInputStream(zip.getInputStream(entry));
+        try {
+            return factory.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            in.close();
+            throw new IOException("Cannot read " + entry.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void close(XMLStreamReader xml) {
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            // Nothing to release beyond the zip, which the caller closes
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("❌ Error: Expected one input file");
+            System.out.println("Usage: HeaderProbe <input-file>");
+            System.exit(1);
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Result result = probe(args[0]);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println(new Gson().toJson(result.toJson(args[0], elapsedMillis)));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.facebookleads.validator;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sizes the pipeline's in-flight batches from heap occupancy, so one build runs on worker JVMs
+ * with different heaps without chunk sizes tuned by hand.
+ *
+ * Occupancy is the heap still in use after the last garbage collection (from GC notifications,
+ * summed over the heap pools), as a fraction of the max heap from the MemoryMXBean; before the
+ * first collection, or on a JVM without notifications, the current heap usage stands in. Each
+ * Adaptive size is reconsidered once per collection: it doubles while occupancy is below
+ * HEADROOM_BELOW, holds up to PRESSURE_FROM, halves above it and drops to its minimum from
+ * CRITICAL_FROM. Under pressure the stdin parser also waits for the validator to drain its
+ * queue (see throttle), which bounds the records in flight to one batch.
+ *
+ * The sizes and every change to them are reported by metrics(), served by ValidationService.
+ */
+public final class HeapMonitor {
+
+    public enum Level { HEADROOM, STEADY, PRESSURE, CRITICAL }
+
+    static final double HEADROOM_BELOW = 0.50;
+    static final double PRESSURE_FROM = 0.75;
+    static final double CRITICAL_FROM = 0.90;
+
+    private static final int RECENT_DECISIONS = 32;
+    private static final long THROTTLE_SLEEP_MILLIS = 5;
+    // Without GC notifications the heap is sampled, at most this often
+    private static final long SAMPLE_NANOS = 100_000_000L;
+
+    private static final HeapMonitor INSTANCE = new HeapMonitor();
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final long maxBytes;
+    private final Set<String> heapPools = new HashSet<>();
+    private final boolean listening;
+    private final AtomicLong collections = new AtomicLong();
+    private final List<Adaptive> sizes = new CopyOnWriteArrayList<>();
+    // Most recent size changes, oldest first, guarded by itself
+    private final Deque<Map<String, Object>> decisions = new ArrayDeque<>();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private volatile double occupancy;
+    private volatile long sampledAt;
+
+    // Records per batch handed from the stdin parser to the validator (RecordStream)
+    private final Adaptive parseBatch = adaptive("parse_batch", 128, 1024, 8192);
+    // Share of the --heap-budget results may fill before they spill to disk (ResultCollector, RecordStore)
+    private final Adaptive resultBudgetPercent = adaptive("result_budget_percent", 6, 100, 100);
+    // Write buffer of the large output files (OutputGenerator)
+    private final Adaptive outputBufferKb = adaptive("output_buffer_kb", 8, 64, 1024);
+
+    private HeapMonitor() {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        this.maxBytes = heap.getMax() > 0 ? heap.getMax() : Runtime.getRuntime().maxMemory();
+        this.occupancy = heap.getUsed() / (double) maxBytes;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        boolean emitters = false;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(this::onCollection,
+                        n -> GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(n.getType()),
+                        null);
+                emitters = true;
+            }
+        }
+        this.listening = emitters;
+    }
+
+    public static HeapMonitor get() {
+        return INSTANCE;
+    }
+
+    private void onCollection(Notification notification, Object handback) {
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long live = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                live += pool.getValue().getUsed();
+            }
+        }
+        occupancy = live / (double) maxBytes;
+        collections.incrementAndGet();
+    }
+
+    /** Heap in use after the last collection as a fraction of the max heap. */
+    public double getOccupancy() {
+        if (!listening || collections.get() == 0) {
+            long now = System.nanoTime();
+            if (now - sampledAt > SAMPLE_NANOS) {
+                sampledAt = now;
+                occupancy = memory.getHeapMemoryUsage().getUsed() / (double) maxBytes;
+                if (!listening) {
+                    // Each sample stands for a collection, so sizes keep adapting
+                    collections.incrementAndGet();
+                }
+            }
+        }
+        return occupancy;
+    }
+
+    public Level getLevel() {
+        double used = getOccupancy();
+        return used >= CRITICAL_FROM ? Level.CRITICAL
+                : used >= PRESSURE_FROM ? Level.PRESSURE
+                : used < HEADROOM_BELOW ? Level.HEADROOM
+                : Level.STEADY;
+    }
+
+    // Sizes are shared by all runs in the JVM, like the heap they follow
+    public Adaptive getParseBatch() { return parseBatch; }
+    public Adaptive getResultBudgetPercent() { return resultBudgetPercent; }
+    public Adaptive getOutputBufferKb() { return outputBufferKb; }
+
+    /** A size between min and max, starting at initial, registered for metrics under its name. */
+    private Adaptive adaptive(String name, int min, int initial, int max) {
+        Adaptive size = new Adaptive(name, min, initial, max);
+        sizes.add(size);
+        return size;
+    }
+
+    /**
+     * Backpressure for a producer: under pressure, wait until the consumer has drained what
+     * it was handed (drained returns true) before producing more. Returns at once otherwise.
+     */
+    public void throttle(BooleanSupplier drained) throws InterruptedException {
+        if (getLevel().compareTo(Level.PRESSURE) < 0 || drained.getAsBoolean()) {
+            return;
+        }
+        long start = System.nanoTime();
+        throttled.increment();
+        while (getLevel().compareTo(Level.PRESSURE) >= 0 && !drained.getAsBoolean()) {
+            Thread.sleep(THROTTLE_SLEEP_MILLIS);
+        }
+        throttledNanos.add(System.nanoTime() - start);
+    }
+
+    private void record(Adaptive size, int from, int to, Level level) {
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("size", size.name);
+        decision.put("from", from);
+        decision.put("to", to);
+        decision.put("level", level.name().toLowerCase(Locale.ROOT));
+        decision.put("occupancy", round(occupancy));
+        decision.put("at", System.currentTimeMillis());
+        synchronized (decisions) {
+            if (decisions.size() == RECENT_DECISIONS) {
+                decisions.removeFirst();
+            }
+            decisions.addLast(decision);
+        }
+    }
+
+    /** Occupancy, level, the current sizes, parser waits and the most recent size changes. */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("max_heap_mb", maxBytes / (1024 * 1024));
+        metrics.put("occupancy", round(getOccupancy()));
+        metrics.put("level", getLevel().name().toLowerCase(Locale.ROOT));
+        metrics.put("collections", collections.get());
+        Map<String, Object> current = new LinkedHashMap<>();
+        for (Adaptive size : sizes) {
+            current.put(size.name, size.metrics());
+        }
+        metrics.put("sizes", current);
+        metrics.put("parser_waits", throttled.sum());
+        metrics.put("parser_wait_ms", throttledNanos.sum() / 1_000_000);
+        synchronized (decisions) {
+            metrics.put("recent_decisions", new ArrayList<>(decisions));
+        }
+        return metrics;
+    }
+
+    /** One line for console summaries, e.g. "parse_batch 512, output_buffer_kb 64 (heap 81% after GC)". */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        for (Adaptive size : sizes) {
+            text.append(text.length() > 0 ? ", " : "").append(size.name).append(' ').append(size.current);
+        }
+        return text.append(String.format(" (heap %.0f%% after GC)", 100 * getOccupancy())).toString();
+    }
+
+    /** True once any size has moved from where it started. */
+    public boolean hasAdapted() {
+        for (Adaptive size : sizes) {
+            if (size.grows.sum() + size.shrinks.sum() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double round(double fraction) {
+        return Math.round(fraction * 1000) / 1000.0;
+    }
+
+    /** A batch or buffer size that follows heap occupancy; see HeapMonitor. */
+    public final class Adaptive {
+        private final String name;
+        private final int min;
+        private final int max;
+        private volatile int current;
+        private long seenCollections;
+        private final LongAdder grows = new LongAdder();
+        private final LongAdder shrinks = new LongAdder();
+
+        private Adaptive(String name, int min, int initial, int max) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+            this.current = initial;
+        }
+
+        /** The size to use now; reconsidered at most once per collection. */
+        public int get() {
+            getOccupancy();
+            long seen = collections.get();
+            if (seen != seenCollections) {
+                synchronized (this) {
+                    if (seen != seenCollections) {
+                        seenCollections = seen;
+                        adjust(getLevel());
+                    }
+                }
+            }
+            return current;
+        }
+
+        private void adjust(Level level) {
+            int from = current;
+            int to;
+            switch (level) {
+                case HEADROOM:
+                    to = (int) Math.min(max, from * 2L);
+                    break;
+                case PRESSURE:
+                    to = Math.max(min, from / 2);
+                    break;
+                case CRITICAL:
+                    to = min;
+                    break;
+                default:
+                    to = from;
+            }
+            if (to == from) {
+                return;
+            }
+            current = to;
+            (to > from ? grows : shrinks).increment();
+            record(this, from, to, level);
+        }
+
+        Map<String, Object> metrics() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("current", current);
+            metrics.put("min", min);
+            metrics.put("max", max);
+            metrics.put("grows", grows.sum());
+            metrics.put("shrinks", shrinks.sum());
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.facebookleads.validator;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * One input validated as its CLI options say: outputs restored from the result cache when it
+ * has them, otherwise the delta base and checkpoint opened, the input parsed and validated, the
+ * output files written and stored in the result cache. Main, BatchProcessor, ValidationService
+ * and ThroughputHarness all run inputs through here, so an option means the same in each.
+ * Options about the invocation as a whole (the inputs, --threads, --preview) are the caller's.
+ */
+public class InputRun {
+
+    private final CliOptions options;
+    private final PhoneNumberValidator validator;
+    private CancellationToken cancellation = CancellationToken.NONE;
+    private String deltaDir;
+    private int share = 1;
+    private boolean verbose = true;
+
+    public InputRun(CliOptions options, PhoneNumberValidator validator) {
+        this.options = options;
+        this.validator = validator;
+        this.deltaDir = options.getDeltaDir();
+    }
+
+    /** Stops the run early once cancelled; the rows validated so far make a partial result. */
+    public InputRun cancellation(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /** Previous output directory of this input, when it is not --delta itself (a batch sub-directory). */
+    public InputRun deltaDir(String deltaDir) {
+        this.deltaDir = deltaDir;
+        return this;
+    }
+
+    /**
+     * Run quietly beside share - 1 other runs: no progress output, and each gets an equal share
+     * of the heap budget and the dedupe memory.
+     */
+    public InputRun concurrent(int share) {
+        this.share = share;
+        this.verbose = false;
+        return this;
+    }
+
+    /**
+     * Validate inputFile ("-" reads standard input in --input-format) into outputDir. SQL and CSV
+     * on standard input are validated while they are read (see RecordStream).
+     *
+     * @return the result, for the caller to close; null if the outputs were restored from the
+     *         result cache instead
+     */
+    public ValidationResult run(String inputFile, String outputDir) throws IOException {
+        boolean stdin = Main.STDIN.equals(inputFile);
+        if (!stdin && !new File(inputFile).isFile()) {
+            throw new FileNotFoundException("Input file not found: " + inputFile);
+        }
+
+        // Standard input is not cached: the key needs the whole input first
+        ResultCache resultCache = null;
+        String cacheKey = null;
+        if (options.getResultCacheDir() != null && !stdin) {
+            long start = System.nanoTime();
+            resultCache = new ResultCache(Paths.get(options.getResultCacheDir()), options.getResultCacheBytes());
+            cacheKey = ResultCache.key(Paths.get(inputFile), ResultCache.fingerprint(inputFile, options));
+            if (resultCache.restore(cacheKey, Paths.get(outputDir))) {
+                if (verbose) {
+                    System.out.println(String.format("♻️  Same input and settings as cached run %s, outputs restored in %.0f ms",
+                            cacheKey.substring(0, 12), (System.nanoTime() - start) / 1e6));
+                    System.out.println("   Cached run:  " + resultCache.lookup(cacheKey));
+                    System.out.println("   Output dir:  " + outputDir);
+                    System.out.println();
+                }
+                return null;
+            }
+            if (verbose) {
+                System.out.println(String.format("🔑 No cached run for %s (input hashed in %.0f ms)",
+                        cacheKey.substring(0, 12), (System.nanoTime() - start) / 1e6));
+                System.out.println();
+            }
+        }
+
+        DeltaManifest prior = null;
+        if (deltaDir != null) {
+            prior = DeltaManifest.open(Paths.get(deltaDir));
+            if (verbose) {
+                if (prior == null) {
+                    System.out.println("⚠️  No usable manifest in " + deltaDir + ", validating all rows");
+                } else {
+                    System.out.println("♻️  Loaded manifest with " + prior.getEntryCount() + " previous results");
+                }
+                System.out.println();
+            }
+        }
+
+        ValidationContext context = new ValidationContext()
+                .showProgress(verbose)
+                .prior(prior)
+                .cancellation(cancellation)
+                .recordBudgetMillis(options.getRecordBudgetMillis())
+                .slowRecordMillis(options.getSlowRecordMillis())
+                .heapBudgetBytes(options.getHeapBudgetBytes() / share)
+                .dedupe(options.isDedupe(), options.isDropDuplicates())
+                .dedupeMemoryBytes(options.getDedupeMemoryBytes() / share);
+        OutputOptions outputOptions = new OutputOptions().e164Index(options.isE164Index())
+                .pageIndex(options.isPageIndex())
+                .searchIndex(options.isSearchIndex())
+                .formats(options.getFormats());
+
+        CheckpointManager checkpoint = null;
+        ValidationResult result;
+        try {
+            if (options.isCheckpoint()) {
+                checkpoint = CheckpointManager.open(inputFile, outputDir,
+                        options.getCheckpointIntervalSeconds(), options.isResume());
+                context.checkpoint(checkpoint);
+            }
+            result = validate(stdin ? readStdin() : parse(inputFile), outputDir, context, outputOptions);
+        } catch (Throwable t) {
+            if (checkpoint != null) {
+                checkpoint.abort();
+            }
+            throw t;
+        }
+
+        if (checkpoint != null) {
+            if (result.isPartial()) {
+                // Keep the progress so --resume continues after the rows flushed here
+                checkpoint.abort();
+            } else {
+                checkpoint.complete();
+            }
+        }
+        // A partial run is not the answer for this input
+        if (resultCache != null && !result.isPartial()) {
+            try {
+                resultCache.store(cacheKey, Paths.get(outputDir), result.getOutputFiles());
+            } catch (IOException | RuntimeException e) {
+                result.close();
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    private PhoneNumberData parse(String inputFile) throws IOException {
+        if (verbose) {
+            System.out.println("Step 1/3: Parsing input file...");
+        }
+        return ParserFactory.getParser(inputFile).parse(inputFile, cancellation);
+    }
+
+    /**
+     * Standard input becomes a started RecordStream. SQL and CSV records reach the validator as
+     * they are read; Excel needs its whole workbook first (see ExcelParser.parse(InputStream, ...)).
+     */
+    private PhoneNumberData readStdin() {
+        if (verbose) {
+            System.out.println("Step 1/3: Reading standard input...");
+        }
+        RecordStream stream = new RecordStream(ParserFactory.getParserForFormat(options.getInputFormat()),
+                System.in, cancellation);
+        stream.start();
+        if (verbose) {
+            System.out.println("   Validating records as they arrive");
+        }
+        return stream;
+    }
+
+    private ValidationResult validate(PhoneNumberData data, String outputDir, ValidationContext context,
+                                      OutputOptions outputOptions) throws IOException {
+        if (verbose) {
+            if (data.isComplete() && data.getRecords() instanceof ColumnarRecords) {
+                System.out.println(String.format("   Input held in %.1f MB (columnar)",
+                        ((ColumnarRecords) data.getRecords()).estimateHeapBytes() / (1024.0 * 1024.0)));
+            }
+            System.out.println();
+            System.out.println("Step 2/3: Validating phone numbers...");
+        }
+        ValidationResult result = validator.validate(data, context);
+        try {
+            if (verbose) {
+                System.out.println();
+                System.out.println("Step 3/3: Generating output files...");
+            }
+            new OutputGenerator(outputDir, outputOptions).generateAll(result, cancellation);
+            if (verbose) {
+                System.out.println();
+            }
+        } catch (IOException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+        return result;
+    }
+}
@@ -12,7 +12,8 @@ public class InvalidPhoneRecord {
     private final String email;
     private final String name;
     private final String originalPhoneNumber;
-    private final String error;
+    private final ErrorDetail error;
+    private final InvalidReason errorCode;
     private final String platform;
     private final String originalCountry;
     private final String e164;
@@ -48,12 +49,28 @@ public class InvalidPhoneRecord {
                              String originalPhoneNumber, String error, String platform, String originalCountry,
                              String e164, String international, String national, String countryCode,
                              String region, String type, String validationMethod, List<String> originalColumnValues) {
+        this(rowNumber, id, email, name, originalPhoneNumber, ErrorDetail.text(error), platform, originalCountry,
+             e164, international, national, countryCode, region, type, validationMethod, originalColumnValues);
+    }
+
+    public InvalidPhoneRecord(int rowNumber, String id, String email, String name,
+                             String originalPhoneNumber, ErrorDetail error, String platform, String originalCountry,
+                             List<String> originalColumnValues) {
+        this(rowNumber, id, email, name, originalPhoneNumber, error, platform, originalCountry,
+             null, null, null, null, null, null, null, originalColumnValues);
+    }
+
+    public InvalidPhoneRecord(int rowNumber, String id, String email, String name,
+                             String originalPhoneNumber, ErrorDetail error, String platform, String originalCountry,
+                             String e164, String international, String national, String countryCode,
+                             String region, String type, String validationMethod, List<String> originalColumnValues) {
         this.rowNumber = rowNumber;
         this.id = id;
         this.email = email;
         this.name = name;
         this.originalPhoneNumber = originalPhoneNumber;
         this.error = error;
+        this.errorCode = error != null ? error.getReason() : null;
         this.platform = platform;
         this.originalCountry = originalCountry;
         this.e164 = e164;
@@ -72,7 +89,9 @@ public class InvalidPhoneRecord {
     public String getEmail() { return email; }
     public String getName() { return name; }
     public String getOriginalPhoneNumber() { return originalPhoneNumber; }
-    public String getError() { return error; }
+    /** Message text, formatted on each call; use getErrorDetail() for the reason code. */
+    public String getError() { return error != null ? error.toString() : null; }
+    public ErrorDetail getErrorDetail() { return error; }
     public String getPlatform() { return platform; }
     public String getOriginalCountry() { return originalCountry; }
     public String getE164() { return e164; }
@@ -0,0 +1,61 @@
+package com.facebookleads.validator;
+
+/**
+ * Why a phone number was rejected. Results carry the code and its parameters (see ErrorDetail);
+ * the message text is only built from the template when text output is written, and the codes
+ * are what summary.json and validation_report.txt count.
+ *
+ * Adding, removing or rewording a reason changes validation outcomes: bump
+ * PhoneNumberValidator.RULES_VERSION.
+ */
+public enum InvalidReason {
+    EMPTY("Empty or NULL phone number"),
+    NO_DIGITS("No digits in phone number"),
+    /** Optional parameter: the region detected from the row's country. */
+    NOT_VALID("Number is not valid (tried: auto-detect, %s, US, forceful)") {
+        @Override
+        public String format(String[] args) {
+            return args.length == 0 ? "Number is not valid (tried: auto-detect, US, forceful)" : super.format(args);
+        }
+    },
+    /** Parameters: region and E.164 form the number only validated as. */
+    FORCEFUL_ONLY("Only validated through forceful testing as %s %s - data quality issue"),
+    /** Parameters: the per-record budget in ms and the first cascade stage skipped. */
+    TIME_BUDGET("Validation exceeded the %s ms time budget; skipped from %s on"),
+    /** Parameter: the exception message. */
+    UNEXPECTED_ERROR("Unexpected error: %s"),
+    /** Free text supplied by a caller; parameter: the text. */
+    OTHER("%s");
+
+    private static final InvalidReason[] VALUES = values();
+
+    private final String template;
+
+    InvalidReason(String template) {
+        this.template = template;
+    }
+
+    /** The reason with this ordinal, as stored by the checkpoint journal and spill files. */
+    public static InvalidReason fromCode(int code) {
+        if (code < 0 || code >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown invalid reason code: " + code);
+        }
+        return VALUES[code];
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /** Fill each %s of the template with the next parameter, as String.format would ("null" for null). */
+    public String format(String[] args) {
+        StringBuilder text = new StringBuilder(template.length() + 32);
+        int arg = 0;
+        int from = 0;
+        for (int at = template.indexOf("%s"); at >= 0; at = template.indexOf("%s", from)) {
+            text.append(template, from, at).append(arg < args.length ? args[arg++] : "");
+            from = at + 2;
+        }
+        return text.append(template, from, template.length()).toString();
+    }
+}
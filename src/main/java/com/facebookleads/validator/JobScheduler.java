@@ -0,0 +1,174 @@
+package com.facebookleads.validator;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-lane scheduler for a long-running validator process (see ValidationService).
+ *
+ * Single numbers and small batches go to the INTERACTIVE lane, files and large batches to the
+ * BULK lane. Each lane has its own threads and queue, so a long bulk job never sits in front
+ * of a lookup: an interactive task waits only for other interactive tasks. The bulk lane has
+ * few threads and a bounded queue, which caps how much of the machine bulk work can take;
+ * a full queue rejects new work instead of letting the backlog grow without limit.
+ *
+ * Each lane reports its queue depth, running tasks, and the time tasks waited in its queue
+ * (mean, p50, p95 over the last WAIT_SAMPLES tasks, and the maximum).
+ */
+public class JobScheduler implements AutoCloseable {
+
+    public enum Lane { INTERACTIVE, BULK }
+
+    /** Batches up to this many numbers are latency-sensitive and take the interactive lane. */
+    public static final int SMALL_BATCH_MAX = 100;
+
+    private static final int WAIT_SAMPLES = 1024;
+
+    private final LaneExecutor interactive;
+    private final LaneExecutor bulk;
+
+    public JobScheduler(int interactiveThreads, int interactiveQueue, int bulkThreads, int bulkQueue) {
+        this.interactive = new LaneExecutor("interactive", interactiveThreads, interactiveQueue);
+        this.bulk = new LaneExecutor("bulk", bulkThreads, bulkQueue);
+    }
+
+    /** The lane for a request validating this many numbers. */
+    public static Lane laneFor(int numbers) {
+        return numbers <= SMALL_BATCH_MAX ? Lane.INTERACTIVE : Lane.BULK;
+    }
+
+    /**
+     * Queue a task on a lane.
+     * @throws RejectedExecutionException if the lane's queue is full or the scheduler is closed
+     */
+    public <T> Future<T> submit(Lane lane, Callable<T> task) {
+        return executor(lane).submit(task);
+    }
+
+    public int getThreads(Lane lane) {
+        return executor(lane).threads;
+    }
+
+    private LaneExecutor executor(Lane lane) {
+        return lane == Lane.INTERACTIVE ? interactive : bulk;
+    }
+
+    /** Per-lane queue depth, throughput and wait times, keyed by lane name. */
+    public Map<String, Object> metrics() {
+        Map<String, Object> lanes = new LinkedHashMap<>();
+        lanes.put(interactive.name, interactive.metrics());
+        lanes.put(bulk.name, bulk.metrics());
+        return lanes;
+    }
+
+    @Override
+    public void close() {
+        interactive.pool.shutdown();
+        bulk.pool.shutdown();
+    }
+
+    private static final class LaneExecutor {
+        private final String name;
+        private final int threads;
+        private final ThreadPoolExecutor pool;
+        private final AtomicInteger running = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder runNanos = new LongAdder();
+        // Recent queue waits, a ring of WAIT_SAMPLES, guarded by this
+        private final long[] waits = new long[WAIT_SAMPLES];
+        private long waitCount;
+        private long waitTotalNanos;
+        private long waitMaxNanos;
+
+        LaneExecutor(String name, int threads, int queueCapacity) {
+            this.name = name;
+            this.threads = threads;
+            AtomicInteger index = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        <T> Future<T> submit(Callable<T> task) {
+            long queuedAt = System.nanoTime();
+            try {
+                return pool.submit(() -> {
+                    long start = System.nanoTime();
+                    recordWait(start - queuedAt);
+                    running.incrementAndGet();
+                    try {
+                        T result = task.call();
+                        completed.increment();
+                        return result;
+                    } catch (Exception | Error e) {
+                        failed.increment();
+                        throw e;
+                    } finally {
+                        running.decrementAndGet();
+                        runNanos.add(System.nanoTime() - start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw e;
+            }
+        }
+
+        private synchronized void recordWait(long nanos) {
+            waits[(int) (waitCount % WAIT_SAMPLES)] = nanos;
+            waitCount++;
+            waitTotalNanos += nanos;
+            waitMaxNanos = Math.max(waitMaxNanos, nanos);
+        }
+
+        Map<String, Object> metrics() {
+            long[] recent;
+            long count;
+            long total;
+            long max;
+            synchronized (this) {
+                count = waitCount;
+                recent = Arrays.copyOf(waits, (int) Math.min(count, WAIT_SAMPLES));
+                total = waitTotalNanos;
+                max = waitMaxNanos;
+            }
+            Arrays.sort(recent);
+            long finished = completed.sum() + failed.sum();
+
+            Map<String, Object> waitMs = new LinkedHashMap<>();
+            waitMs.put("mean", count > 0 ? round(total / (double) count / 1e6) : 0.0);
+            waitMs.put("p50", round(percentile(recent, 0.50) / 1e6));
+            waitMs.put("p95", round(percentile(recent, 0.95) / 1e6));
+            waitMs.put("max", round(max / 1e6));
+
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("threads", threads);
+            metrics.put("queued", pool.getQueue().size());
+            metrics.put("queue_capacity", pool.getQueue().size() + pool.getQueue().remainingCapacity());
+            metrics.put("running", running.get());
+            metrics.put("completed", completed.sum());
+            metrics.put("failed", failed.sum());
+            metrics.put("rejected", rejected.sum());
+            metrics.put("wait_ms", waitMs);
+            metrics.put("run_ms_mean", finished > 0 ? round(runNanos.sum() / (double) finished / 1e6) : 0.0);
+            return metrics;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+        }
+
+        private static double round(double ms) {
+            return Math.round(ms * 100) / 100.0;
+        }
+    }
+}
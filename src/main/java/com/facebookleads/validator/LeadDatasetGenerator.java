@@ -0,0 +1,485 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberType;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates deterministic, seedable synthetic lead exports for load testing.
+ * Writes the 23-column SQL dump layout SQLParser expects, CSV, or xlsx, streaming
+ * rows so tens of millions of records never sit in memory at once.
+ *
+ * Usage: java -cp phone-validator.jar com.facebookleads.validator.LeadDatasetGenerator
+ *          --rows 1000000 --seed 42 [--format sql|csv|xlsx]
+ *          [--countries BR=40,US=20,MX=15] [--duplicate-rate 0.05]
+ *          [--garbage-rate 0.05] [--missing-country-rate 0.10] &lt;output-file&gt;
+ */
+public class LeadDatasetGenerator {
+
+    /** Column names of the Facebook leads SQL export; positions match SQLParser. */
+    private static final String[] SQL_COLUMNS = {
+            "id", "created_time", "ad_id", "ad_name", "adset_id", "adset_name",
+            "campaign_id", "campaign_name", "form_id", "form_name", "is_organic",
+            "platform", "email", "full_name", "city", "state", "phone_number",
+            "zip_code", "lead_status", "inbox_url", "job_title", "country", "created_at"
+    };
+
+    private static final String[] CSV_COLUMNS = {
+            "ID", "Email", "First Name", "Last Name", "Phone", "Country", "Platform", "Campaign"
+    };
+
+    private static final String[] FIRST_NAMES = {
+            "Ana", "Bruno", "Carlos", "Daniela", "Eduardo", "Fernanda", "Gabriel", "Helena",
+            "Igor", "Juliana", "Kevin", "Luisa", "Mateo", "Nadia", "Omar", "Paula",
+            "Rafael", "Sofia", "Tomas", "Valentina", "Wei", "Yusuf", "Zara", "Priya"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "Silva", "Santos", "Garcia", "Rodriguez", "Martinez", "Lopez", "Gonzalez", "Perez",
+            "Smith", "Johnson", "Khan", "Ahmed", "Nguyen", "Kumar", "Hernandez", "Oliveira"
+    };
+
+    private static final String[] PLATFORMS = { "fb", "ig", "facebook", "instagram" };
+
+    private static final String[] CAMPAIGNS = {
+            "Spring Promo", "Webinar Leads", "Retargeting Q3", "Brand Awareness", "Lookalike 1%"
+    };
+
+    private static final String[] GARBAGE_NUMBERS = {
+            "NA", "NULL", "", "123", "0000000000", "n/a", "abc", "9",
+            "1234567890123456789012345", "+", "00000", "555"
+    };
+
+    /** Default country mix, roughly the shape of our real campaign exports. */
+    private static final String DEFAULT_COUNTRIES = "BR=30,US=20,MX=12,IN=8,PK=6,CO=6,ES=4,AR=4,EG=4,CL=3,PE=3";
+
+    private static final int RECENT_NUMBERS = 4096;
+    private static final int XLSX_ROWS_PER_SHEET = 1_000_000;
+
+    public enum Format { SQL, CSV, XLSX }
+
+    private final PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
+
+    private final long rows;
+    private final long seed;
+    private final Format format;
+    private final double duplicateRate;
+    private final double garbageRate;
+    private final double missingCountryRate;
+
+    private final String[] regions;
+    private final double[] cumulativeWeights;
+    private final NumberTemplate[][] templates;
+
+    /** Ring buffer of recently emitted numbers used to inject duplicates with bounded memory. */
+    private final String[] recentNumbers = new String[RECENT_NUMBERS];
+    private int recentCount = 0;
+
+    public LeadDatasetGenerator(long rows, long seed, Format format, String countryMix,
+                                double duplicateRate, double garbageRate, double missingCountryRate) {
+        this.rows = rows;
+        this.seed = seed;
+        this.format = format;
+        this.duplicateRate = duplicateRate;
+        this.garbageRate = garbageRate;
+        this.missingCountryRate = missingCountryRate;
+
+        Map<String, Double> mix = parseCountryMix(countryMix);
+        this.regions = mix.keySet().toArray(new String[0]);
+        this.cumulativeWeights = new double[regions.length];
+        this.templates = new NumberTemplate[regions.length][];
+        double total = 0;
+        for (double w : mix.values()) {
+            total += w;
+        }
+        double running = 0;
+        for (int i = 0; i < regions.length; i++) {
+            running += mix.get(regions[i]) / total;
+            cumulativeWeights[i] = running;
+            templates[i] = buildTemplates(regions[i]);
+        }
+    }
+
+    public static void main(String[] args) {
+        long rows = 100_000;
+        long seed = 42;
+        Format format = null;
+        String countries = DEFAULT_COUNTRIES;
+        double duplicateRate = 0.05;
+        double garbageRate = 0.05;
+        double missingCountryRate = 0.10;
+        String output = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--rows": rows = Long.parseLong(args[++i].replace("_", "")); break;
+                    case "--seed": seed = Long.parseLong(args[++i]); break;
+                    case "--format": format = Format.valueOf(args[++i].toUpperCase()); break;
+                    case "--countries": countries = args[++i]; break;
+                    case "--duplicate-rate": duplicateRate = Double.parseDouble(args[++i]); break;
+                    case "--garbage-rate": garbageRate = Double.parseDouble(args[++i]); break;
+                    case "--missing-country-rate": missingCountryRate = Double.parseDouble(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        output = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("❌ Error: Missing value for last option");
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+
+        if (output == null) {
+            System.out.println("Usage: LeadDatasetGenerator [--rows N] [--seed S] [--format sql|csv|xlsx]");
+            System.out.println("       [--countries BR=40,US=20,...] [--duplicate-rate R] [--garbage-rate R]");
+            System.out.println("       [--missing-country-rate R] <output-file>");
+            System.exit(1);
+        }
+        if (format == null) {
+            format = formatFromExtension(output);
+        }
+
+        try {
+            LeadDatasetGenerator generator = new LeadDatasetGenerator(rows, seed, format, countries,
+                    duplicateRate, garbageRate, missingCountryRate);
+            long start = System.nanoTime();
+            generator.writeTo(new File(output));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("✅ Wrote %d %s rows to %s in %.1fs", rows, format, output, seconds));
+        } catch (Exception e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public void writeTo(File output) throws IOException {
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        switch (format) {
+            case SQL:
+                writeSql(output, random);
+                break;
+            case CSV:
+                writeCsv(output, random);
+                break;
+            case XLSX:
+                writeXlsx(output, random);
+                break;
+        }
+    }
+
+    private void writeSql(File output, SplittableRandom random) throws IOException {
+        StringBuilder insert = new StringBuilder("INSERT INTO `facebook_leads` (");
+        for (int i = 0; i < SQL_COLUMNS.length; i++) {
+            if (i > 0) insert.append(", ");
+            insert.append('`').append(SQL_COLUMNS[i]).append('`');
+        }
+        insert.append(") VALUES");
+        String insertLine = insert.toString();
+
+        try (Writer writer = newWriter(output)) {
+            writer.write("-- Synthetic Facebook leads export (seed " + seed + ")\n");
+            StringBuilder line = new StringBuilder(512);
+            for (long row = 1; row <= rows; row++) {
+                Lead lead = nextLead(row, random);
+                String[] values = new String[SQL_COLUMNS.length];
+                values[0] = lead.id;
+                values[1] = lead.createdTime;
+                values[2] = String.valueOf(120000000000L + lead.campaign);
+                values[3] = "Ad " + lead.campaign;
+                values[4] = String.valueOf(130000000000L + lead.campaign);
+                values[5] = "Adset " + lead.campaign;
+                values[6] = String.valueOf(140000000000L + lead.campaign);
+                values[7] = CAMPAIGNS[lead.campaign];
+                values[8] = String.valueOf(150000000000L + lead.campaign);
+                values[9] = "Lead Form";
+                values[10] = "0";
+                values[11] = lead.platform;
+                values[12] = lead.email;
+                values[13] = lead.firstName + " " + lead.lastName;
+                values[14] = null;
+                values[15] = null;
+                values[16] = lead.phone;
+                values[17] = null;
+                values[18] = "CREATED";
+                values[19] = null;
+                values[20] = null;
+                values[21] = lead.country;
+                values[22] = lead.createdTime;
+
+                line.setLength(0);
+                line.append('(');
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) line.append(", ");
+                    appendSqlValue(line, values[i], i == 10);
+                }
+                line.append(");\n");
+
+                writer.write(insertLine);
+                writer.write('\n');
+                writer.append(line);
+            }
+        }
+    }
+
+    private void writeCsv(File output, SplittableRandom random) throws IOException {
+        try (Writer writer = newWriter(output)) {
+            writer.write(String.join(",", CSV_COLUMNS));
+            writer.write('\n');
+            StringBuilder line = new StringBuilder(256);
+            for (long row = 1; row <= rows; row++) {
+                Lead lead = nextLead(row, random);
+                line.setLength(0);
+                line.append(lead.id).append(',')
+                        .append(escapeCSV(lead.email)).append(',')
+                        .append(escapeCSV(lead.firstName)).append(',')
+                        .append(escapeCSV(lead.lastName)).append(',')
+                        .append(escapeCSV(lead.phone)).append(',')
+                        .append(escapeCSV(lead.country)).append(',')
+                        .append(lead.platform).append(',')
+                        .append(escapeCSV(CAMPAIGNS[lead.campaign])).append('\n');
+                writer.append(line);
+            }
+        }
+    }
+
+    private void writeXlsx(File output, SplittableRandom random) throws IOException {
+        // SXSSF keeps only a small window of rows in memory and flushes the rest to temp files
+        SXSSFWorkbook workbook = new SXSSFWorkbook(200);
+        try {
+            Sheet sheet = null;
+            int sheetRow = 0;
+            for (long row = 1; row <= rows; row++) {
+                if (sheet == null || sheetRow > XLSX_ROWS_PER_SHEET) {
+                    sheet = workbook.createSheet("Leads " + (workbook.getNumberOfSheets() + 1));
+                    Row header = sheet.createRow(0);
+                    for (int i = 0; i < CSV_COLUMNS.length; i++) {
+                        header.createCell(i).setCellValue(CSV_COLUMNS[i]);
+                    }
+                    sheetRow = 1;
+                }
+                Lead lead = nextLead(row, random);
+                Row r = sheet.createRow(sheetRow++);
+                r.createCell(0).setCellValue(lead.id);
+                r.createCell(1).setCellValue(lead.email);
+                r.createCell(2).setCellValue(lead.firstName);
+                r.createCell(3).setCellValue(lead.lastName);
+                r.createCell(4).setCellValue(lead.phone);
+                r.createCell(5).setCellValue(lead.country);
+                r.createCell(6).setCellValue(lead.platform);
+                r.createCell(7).setCellValue(CAMPAIGNS[lead.campaign]);
+            }
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+                workbook.write(out);
+            }
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Produce the next synthetic lead. All randomness flows through the seeded generator
+     * in a fixed order so the same seed always yields the same file.
+     */
+    private Lead nextLead(long row, SplittableRandom random) {
+        Lead lead = new Lead();
+        lead.id = String.valueOf(1000000000000000L + row);
+        lead.firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        lead.lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        lead.email = lead.firstName.toLowerCase() + "." + lead.lastName.toLowerCase() + row + "@example.com";
+        lead.platform = PLATFORMS[random.nextInt(PLATFORMS.length)];
+        lead.campaign = random.nextInt(CAMPAIGNS.length);
+        lead.createdTime = String.format("2024-%02d-%02d %02d:%02d:00",
+                1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60));
+
+        int regionIndex = pickRegion(random.nextDouble());
+        String region = regions[regionIndex];
+
+        double roll = random.nextDouble();
+        if (roll < garbageRate) {
+            lead.phone = GARBAGE_NUMBERS[random.nextInt(GARBAGE_NUMBERS.length)];
+        } else if (roll < garbageRate + duplicateRate && recentCount > 0) {
+            lead.phone = recentNumbers[random.nextInt(Math.min(recentCount, RECENT_NUMBERS))];
+        } else {
+            NumberTemplate[] regionTemplates = templates[regionIndex];
+            NumberTemplate template = regionTemplates[random.nextInt(regionTemplates.length)];
+            lead.phone = template.render(random);
+            recentNumbers[recentCount % RECENT_NUMBERS] = lead.phone;
+            recentCount++;
+        }
+
+        if (random.nextDouble() < missingCountryRate) {
+            lead.country = null;
+        } else {
+            lead.country = countryLabel(region, random);
+        }
+        return lead;
+    }
+
+    private int pickRegion(double r) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (r < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+
+    /** Mix English country names (various casings) and ISO codes like real form submissions. */
+    private String countryLabel(String region, SplittableRandom random) {
+        String name = new Locale("", region).getDisplayCountry(Locale.ENGLISH);
+        switch (random.nextInt(4)) {
+            case 0: return region;
+            case 1: return name.toUpperCase(Locale.ROOT);
+            case 2: return name.toLowerCase(Locale.ROOT);
+            default: return name;
+        }
+    }
+
+    /**
+     * Build number templates from libphonenumber example numbers for the region.
+     * Rendering keeps the example's leading digits and randomizes the tail.
+     */
+    private NumberTemplate[] buildTemplates(String region) {
+        List<NumberTemplate> result = new ArrayList<>();
+        int countryCode = phoneUtil.getCountryCodeForRegion(region);
+        if (countryCode == 0) {
+            throw new IllegalArgumentException("Unknown region in country mix: " + region);
+        }
+        for (PhoneNumberType type : new PhoneNumberType[] { PhoneNumberType.MOBILE, PhoneNumberType.FIXED_LINE }) {
+            PhoneNumber example = phoneUtil.getExampleNumberForType(region, type);
+            if (example != null) {
+                result.add(new NumberTemplate(String.valueOf(countryCode),
+                        phoneUtil.getNationalSignificantNumber(example)));
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("No example numbers available for region: " + region);
+        }
+        return result.toArray(new NumberTemplate[0]);
+    }
+
+    private static Map<String, Double> parseCountryMix(String countryMix) {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        for (String part : countryMix.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) continue;
+            String[] kv = trimmed.split("=");
+            double weight = kv.length > 1 ? Double.parseDouble(kv[1].trim()) : 1.0;
+            if (weight > 0) {
+                mix.put(kv[0].trim().toUpperCase(Locale.ROOT), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Country mix is empty: " + countryMix);
+        }
+        return mix;
+    }
+
+    static Format formatFromExtension(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".sql")) return Format.SQL;
+        if (lower.endsWith(".csv")) return Format.CSV;
+        if (lower.endsWith(".xlsx")) return Format.XLSX;
+        throw new IllegalArgumentException("Cannot infer format from file name, use --format: " + path);
+    }
+
+    private static Writer newWriter(File output) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static void appendSqlValue(StringBuilder out, String value, boolean numeric) {
+        if (value == null) {
+            out.append("NULL");
+        } else if (numeric) {
+            out.append(value);
+        } else {
+            out.append('\'');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\'') out.append('\'');
+                out.append(c);
+            }
+            out.append('\'');
+        }
+    }
+
+    private static String escapeCSV(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /** Mutable scratch holder for one generated row. */
+    private static class Lead {
+        String id;
+        String email;
+        String firstName;
+        String lastName;
+        String phone;
+        String country;
+        String platform;
+        String createdTime;
+        int campaign;
+    }
+
+    /**
+     * A real national number from libphonenumber metadata; rendering keeps its
+     * leading digits (area/mobile prefix) and randomizes the subscriber tail.
+     */
+    private static class NumberTemplate {
+        private final String countryCode;
+        private final char[] national;
+        private final int fixedPrefix;
+
+        NumberTemplate(String countryCode, String national) {
+            this.countryCode = countryCode;
+            this.national = national.toCharArray();
+            this.fixedPrefix = Math.max(1, national.length() - 4);
+        }
+
+        String render(SplittableRandom random) {
+            char[] digits = national.clone();
+            for (int i = fixedPrefix; i < digits.length; i++) {
+                digits[i] = (char) ('0' + random.nextInt(10));
+            }
+            String nsn = new String(digits);
+            // Presentation styles seen in real exports
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    return "+" + countryCode + nsn;
+                case 2:
+                    return countryCode + nsn;
+                case 3:
+                    return nsn;
+                case 4:
+                    return "+" + countryCode + " " + nsn.substring(0, 2) + " " + nsn.substring(2);
+                default:
+                    return "(" + nsn.substring(0, 2) + ") " + nsn.substring(2, Math.min(nsn.length(), 6))
+                            + (nsn.length() > 6 ? "-" + nsn.substring(6) : "");
+            }
+        }
+    }
+}
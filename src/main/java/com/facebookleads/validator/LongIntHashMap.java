@@ -0,0 +1,110 @@
+package com.facebookleads.validator;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from positive long keys to int values, with linear probing and no
+ * boxing: 12 bytes per slot. Key 0 marks an empty slot, which E.164 longs never are.
+ */
+public class LongIntHashMap {
+
+    private static final float MAX_LOAD = 0.85f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /** @param capacity slot count, rounded up to a power of two */
+    public LongIntHashMap(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(16, capacity - 1)) << 1);
+    }
+
+    /** Slots that fit in the given number of bytes (a power of two, at least 16). */
+    public static int capacityFor(long bytes) {
+        long slots = Math.max(16, Math.min(1 << 30, bytes / 12));
+        return Integer.highestOneBit((int) slots);
+    }
+
+    /**
+     * Insert the key with the value unless it is present.
+     * @return the existing value, or -1 if the key was inserted
+     */
+    public int putIfAbsent(long key, int value) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * MAX_LOAD) {
+            // Only when a partition is far larger than planned; keeps lookups short
+            rehash();
+        }
+        return -1;
+    }
+
+    /** @return the value for the key, or -1 if absent */
+    public int get(long key) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(long key) {
+        return (int) mix(key) & mask;
+    }
+
+    /** 64-bit finalizer (murmur3 fmix64); callers partitioning keys use the high bits. */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -1,58 +1,116 @@
 package com.facebookleads.validator;
 
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main entry point for the Facebook Leads Phone Number Validator
  */
 public class Main {
 
+    /** Input argument that reads standard input instead of a file. */
+    static final String STDIN = "-";
+
+    /** How long a shutdown signal waits for a run to write its partial results. */
+    private static final long SHUTDOWN_GRACE_SECONDS = 30;
+
     public static void main(String[] args) {
         printBanner();
 
         // Parse command line arguments
-        if (args.length < 2) {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            if (args.length > 0) {
+                System.err.println("❌ Error: " + e.getMessage());
+                System.err.println();
+            }
             printUsage();
             System.exit(1);
+            return;
+        }
+
+        installProcessOptions(options);
+
+        String outputDir = options.getOutputDir();
+
+        if (options.getPreviewSize() > 0) {
+            runPreview(options);
+            return;
         }
 
-        String inputFile = args[0];
-        String outputDir = args[1];
+        // Several inputs, a directory or a glob → batch mode in this JVM
+        String inputFile = options.getInputs().get(0);
+        boolean stdin = STDIN.equals(inputFile);
+        if (stdin || options.getInputs().contains(STDIN)) {
+            String problem = options.getInputs().size() > 1 ? "- (standard input) must be the only input"
+                    : options.getInputFormat() == null ? "- (standard input) needs --input-format sql|csv|xlsx"
+                    : options.isCheckpoint() ? "--checkpoint and --resume need an input file, not standard input"
+                    : null;
+            if (problem != null) {
+                System.err.println("❌ Error: " + problem);
+                System.exit(1);
+            }
+            if (options.getResultCacheDir() != null) {
+                System.out.println("⚠️  Warning: --result-cache ignored for standard input (the key needs the whole file first)");
+                System.out.println();
+            }
+        }
+        if (options.getInputs().size() > 1 || new File(inputFile).isDirectory() || BatchProcessor.isGlob(inputFile)) {
+            runBatch(options);
+            return;
+        }
 
         // Validate input file exists
         File file = new File(inputFile);
-        if (!file.exists()) {
+        if (!stdin && !file.exists()) {
             System.err.println("❌ Error: Input file not found: " + inputFile);
             System.exit(1);
         }
 
         System.out.println("📋 Configuration:");
-        System.out.println("   Input file:  " + inputFile);
+        System.out.println("   Input file:  " + (stdin ? "standard input (" + options.getInputFormat() + ")" : inputFile));
         System.out.println("   Output dir:  " + outputDir);
+        if (options.getDeltaDir() != null) {
+            System.out.println("   Delta base:  " + options.getDeltaDir());
+        }
+        if (options.isCheckpoint()) {
+            System.out.println("   Checkpoint:  every " + options.getCheckpointIntervalSeconds() + "s"
+                    + (options.isResume() ? " (resuming)" : ""));
+        }
+        if (options.getResultCacheDir() != null && !stdin) {
+            System.out.println("   Result cache: " + options.getResultCacheDir());
+        }
         System.out.println();
 
         try {
-            // Step 1: Parse file (auto-detect format)
-            System.out.println("Step 1/3: Parsing input file...");
-            DataParser parser = ParserFactory.getParser(inputFile);
-            PhoneNumberData data = parser.parse(inputFile);
-            System.out.println();
-
-            // Step 2: Validate phone numbers
-            System.out.println("Step 2/3: Validating phone numbers...");
-            PhoneNumberValidator validator = new PhoneNumberValidator();
-            ValidationResult result = validator.validate(data);
-            System.out.println();
-
-            // Step 3: Generate output files
-            System.out.println("Step 3/3: Generating output files...");
-            OutputGenerator generator = new OutputGenerator(outputDir);
-            generator.generateAll(result);
-            System.out.println();
+            CancellationToken cancellation = options.newCancellationToken();
+            InputRun run = new InputRun(options, new PhoneNumberValidator(new ValidationCache(options.getCacheSize())))
+                    .cancellation(cancellation);
+            ValidationResult result;
+            CountDownLatch flushed = cancelOnShutdown(cancellation);
+            try {
+                result = run.run(inputFile, outputDir);
+            } finally {
+                flushed.countDown();
+            }
+            if (result == null) {
+                // Restored from the result cache
+                return;
+            }
 
             // Print summary
-            printSummary(result, outputDir);
+            printSummary(result, outputDir, options);
+            result.close();
 
         } catch (FileNotFoundException e) {
             System.err.println("❌ Error: File not found: " + inputFile);
@@ -64,6 +122,94 @@ public class Main {
         }
     }
 
+    private static void runPreview(CliOptions options) {
+        String inputFile = options.getInputs().get(0);
+        if (options.getInputs().contains(STDIN)) {
+            System.err.println("❌ Error: --preview needs an input file to sample, not standard input");
+            System.exit(1);
+        }
+        if (options.getInputs().size() > 1 || new File(inputFile).isDirectory() || BatchProcessor.isGlob(inputFile)) {
+            System.err.println("❌ Error: --preview takes a single input file");
+            System.exit(1);
+        }
+        if (!new File(inputFile).exists()) {
+            System.err.println("❌ Error: Input file not found: " + inputFile);
+            System.exit(1);
+        }
+
+        long seed = options.getPreviewSeed() != null ? options.getPreviewSeed() : new Random().nextInt(Integer.MAX_VALUE);
+        try {
+            SamplePreview.Report report = new SamplePreview(options.getPreviewSize(), seed).run(inputFile);
+            report.print();
+            report.write(options.getOutputDir());
+            System.out.println("   ✓ " + options.getOutputDir() + "/" + SamplePreview.FILE_NAME + " created");
+            System.out.println();
+        } catch (Exception e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void runBatch(CliOptions options) {
+        try {
+            List<File> inputs = BatchProcessor.expandInputs(options.getInputs());
+            if (inputs.isEmpty()) {
+                System.err.println("❌ Error: No input files matched: " + options.getInputs());
+                System.exit(1);
+            }
+
+            System.out.println("📋 Configuration:");
+            System.out.println("   Input files: " + inputs.size());
+            System.out.println("   Output dir:  " + options.getOutputDir());
+            System.out.println("   Threads:     " + options.getThreads());
+            if (options.isCheckpoint()) {
+                System.out.println("   Checkpoint:  every " + options.getCheckpointIntervalSeconds() + "s"
+                        + (options.isResume() ? " (resuming)" : ""));
+            }
+            System.out.println();
+
+            CancellationToken cancellation = options.newCancellationToken();
+            BatchProcessor processor = new BatchProcessor(new ValidationCache(options.getCacheSize()), options, cancellation);
+            boolean allSucceeded;
+            CountDownLatch flushed = cancelOnShutdown(cancellation);
+            try {
+                allSucceeded = processor.run(inputs, options.getOutputDir());
+            } finally {
+                flushed.countDown();
+            }
+            if (!allSucceeded) {
+                System.exit(1);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * On SIGINT/SIGTERM, cancel the run and keep the JVM alive until it has flushed its partial
+     * results (at most SHUTDOWN_GRACE_SECONDS). Count the returned latch down when the run ends.
+     */
+    private static CountDownLatch cancelOnShutdown(CancellationToken cancellation) {
+        CountDownLatch flushed = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (flushed.getCount() == 0) {
+                return;
+            }
+            cancellation.cancel("interrupted");
+            System.out.println();
+            System.out.println("⏹️  Interrupted, writing the results so far...");
+            try {
+                flushed.await(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "cancel-on-shutdown"));
+        return flushed;
+    }
+
     private static void printBanner() {
         System.out.println();
         System.out.println("═══════════════════════════════════════════════════════════════");
@@ -73,31 +219,112 @@ public class Main {
         System.out.println();
     }
 
+    /**
+     * Load the country config and compile the fast path, which every validation in the process
+     * uses (ValidationService calls this too). Exits on a bad config or region list.
+     */
+    static void installProcessOptions(CliOptions options) {
+        if (options.getCountryConfig() != null) {
+            try {
+                CountryConfigWatcher.start(Paths.get(options.getCountryConfig()), CountryConfigWatcher.DEFAULT_POLL_SECONDS);
+                System.out.println("🌍 Country config: " + options.getCountryConfig() + " ("
+                        + CountryRegistry.current().getCountries().size() + " countries, reloaded on change)");
+                System.out.println();
+            } catch (IOException e) {
+                System.err.println("❌ Error: Cannot load country config: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (options.getFastPathRegions() != null) {
+            try {
+                long start = System.nanoTime();
+                RegionFastPath fastPath = RegionFastPath.compile(PhoneNumberUtil.getInstance(), options.getFastPathRegions());
+                for (String skipped : fastPath.getSkipped()) {
+                    System.out.println("⚠️  Warning: Fast path not compiled, using libphonenumber for " + skipped);
+                }
+                RegionFastPath.install(fastPath);
+                System.out.println(String.format("⚡ Fast path: %s (compiled in %.0f ms)",
+                        String.join(", ", fastPath.describe()), (System.nanoTime() - start) / 1e6));
+                System.out.println();
+            } catch (IllegalArgumentException e) {
+                System.err.println("❌ Error: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
     private static void printUsage() {
-        System.out.println("Usage: java -jar phone-validator.jar <input-file> <output-directory>");
+        System.out.println("Usage: java -jar phone-validator.jar [options] <input>... <output-directory>");
         System.out.println();
         System.out.println("Arguments:");
-        System.out.println("  <input-file>        Path to SQL (.sql), CSV (.csv), or Excel (.xlsx/.xls) file");
+        System.out.println("  <input>             SQL (.sql), CSV (.csv), or Excel (.xlsx/.xls) file, a directory, or a glob");
+        System.out.println("                      or - to read standard input (needs --input-format)");
         System.out.println("  <output-directory>  Directory where output files will be created");
         System.out.println();
+        System.out.println("Options:");
+        System.out.println("  --threads N         Files processed concurrently in batch mode (default: up to 4)");
+        System.out.println("  --cache-size N      Validation outcome cache entries, 0 disables (default: 200000)");
+        System.out.println("  --delta DIR         Reuse results for unchanged rows from a previous output directory");
+        System.out.println("  --checkpoint        Periodically save progress under <output-directory>/.checkpoint");
+        System.out.println("  --checkpoint-interval S  Seconds between checkpoints (default: 30, implies --checkpoint)");
+        System.out.println("  --resume            Continue an interrupted run from its last checkpoint");
+        System.out.println("  --heap-budget MB    Heap for buffered results before spilling to temp files, 0 = never");
+        System.out.println("                      (default: a quarter of the max heap)");
+        System.out.println("  --dedupe            Report valid numbers shared by several rows in duplicates.csv/json");
+        System.out.println("  --drop-duplicates   Also keep only the first row per number in valid_numbers.*");
+        System.out.println("  --dedupe-memory MB  Memory for duplicate detection; larger inputs take several passes (default: 256)");
+        System.out.println("  --e164-index        Also write valid_e164.idx for fast number lookups (see E164Index)");
+        System.out.println("  --page-index        Also write results.pages for sorted, filtered pages of records (see ResultPages)");
+        System.out.println("  --search-index      Also write search.idx for prefix search by number, email or name (see SearchIndex)");
+        System.out.println("  --formats F,..      Formats written for valid numbers: e164, international, national, type");
+        System.out.println("                      (default: all; the others are left empty and never computed)");
+        System.out.println("  --country-config F  Country names, calling codes and forceful regions from a JSON file,");
+        System.out.println("                      reloaded while running when it changes (default: built-in table)");
+        System.out.println("  --fast-path         Check numbers of the busiest calling codes (" + String.join(", ", RegionFastPath.DEFAULT_REGIONS) + ")");
+        System.out.println("                      with automata compiled from libphonenumber's patterns");
+        System.out.println("  --fast-regions R,.. Same, for the given regions (e.g. US,BR,CO)");
+        System.out.println("  --result-cache DIR  Reuse the outputs of an earlier run of the same file content and settings");
+        System.out.println("  --result-cache-size MB  Cache size, least recently used runs evicted first (default: 2048)");
+        System.out.println("  --preview K         Only estimate the valid rate, country mix and invalid reasons from");
+        System.out.println("                      K random rows, written to preview.json (see SamplePreview)");
+        System.out.println("  --preview-seed S    Seed for the preview sample, to repeat a preview");
+        System.out.println("  --deadline S        Stop after S seconds and write the results so far, marked");
+        System.out.println("                      \"partial\" in summary.json (Ctrl-C / SIGTERM does the same)");
+        System.out.println("  --record-budget MS  Time allowed per record; slower records skip the rest of the");
+        System.out.println("                      cascade and are invalid with TIME_BUDGET (default: no budget)");
+        System.out.println("  --slow-records MS   Log records taking at least MS ms, with the stages they went");
+        System.out.println("                      through, to slow_records.json");
+        System.out.println("  --input-format F    Format of standard input: sql, csv or xlsx; SQL and CSV are");
+        System.out.println("                      validated while they are read");
+        System.out.println();
         System.out.println("Examples:");
         System.out.println("  java -jar phone-validator.jar facebookleads.sql output/");
         System.out.println("  java -jar phone-validator.jar cleanup.csv output/");
         System.out.println("  java -jar phone-validator.jar leads.xlsx output/");
+        System.out.println("  java -jar phone-validator.jar --threads 8 'exports/*.csv' nightly/");
+        System.out.println("  java -jar phone-validator.jar --resume huge_export.sql output/");
+        System.out.println("  java -jar phone-validator.jar --preview 2000 huge_export.sql preview/");
+        System.out.println("  cat leads.csv | java -jar phone-validator.jar --input-format csv - output/");
         System.out.println();
     }
 
-    private static void printSummary(ValidationResult result, String outputDir) {
+    private static void printSummary(ValidationResult result, String outputDir, CliOptions options) {
         System.out.println("═══════════════════════════════════════════════════════════════");
-        System.out.println("✅ VALIDATION COMPLETED SUCCESSFULLY!");
+        System.out.println(result.isPartial()
+                ? "⏹️  VALIDATION STOPPED EARLY: " + result.getPartialReason()
+                : "✅ VALIDATION COMPLETED SUCCESSFULLY!");
         System.out.println("═══════════════════════════════════════════════════════════════");
         System.out.println();
-        System.out.println("📊 Results Summary:");
+        System.out.println(result.isPartial() ? "📊 Partial Results (rows validated before stopping):" : "📊 Results Summary:");
         System.out.println("   Total processed:  " + result.getTotalCount());
         System.out.println("   Valid numbers:    " + result.getValidCount() +
                 String.format(" (%.1f%%)", result.getSuccessRate()));
         System.out.println("   Invalid numbers:  " + result.getInvalidCount() +
                 String.format(" (%.1f%%)", 100.0 - result.getSuccessRate()));
+        if (HeapMonitor.get().hasAdapted()) {
+            System.out.println("   Adaptive sizes:   " + HeapMonitor.get().describe());
+        }
         System.out.println();
         System.out.println("📁 Output Files:");
         System.out.println("   " + outputDir + "/valid_numbers.json");
@@ -106,6 +333,28 @@ public class Main {
         System.out.println("   " + outputDir + "/valid_numbers.csv");
         System.out.println("   " + outputDir + "/invalid_numbers.csv");
         System.out.println("   " + outputDir + "/validation_report.txt");
+        if (result.isPartial()) {
+            // Neither the manifest nor the indexes are written for a stopped run
+            System.out.println();
+            System.out.println("💡 Rerun with --resume (if checkpointing) or without --deadline for complete results");
+            System.out.println("═══════════════════════════════════════════════════════════════");
+            System.out.println();
+            return;
+        }
+        System.out.println("   " + outputDir + "/" + DeltaManifest.FILE_NAME);
+        if (result.getDuplicates() != null) {
+            System.out.println("   " + outputDir + "/duplicates.json");
+            System.out.println("   " + outputDir + "/duplicates.csv");
+        }
+        if (options.isE164Index()) {
+            System.out.println("   " + outputDir + "/" + E164Index.FILE_NAME);
+        }
+        if (options.isPageIndex()) {
+            System.out.println("   " + outputDir + "/" + ResultPages.FILE_NAME);
+        }
+        if (options.isSearchIndex()) {
+            System.out.println("   " + outputDir + "/" + SearchIndex.FILE_NAME);
+        }
         System.out.println();
         System.out.println("💡 Tip: Check validation_report.txt for a detailed human-readable report");
         System.out.println("═══════════════════════════════════════════════════════════════");
@@ -0,0 +1,239 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonemetadata.PhoneMetadata;
+import com.google.i18n.phonenumbers.Phonemetadata.PhoneNumberDesc;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import com.google.i18n.phonenumbers.metadata.DefaultMetadataDependenciesProvider;
+import com.google.i18n.phonenumbers.metadata.source.MetadataSource;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap necessary conditions for PhoneNumberUtil.isValidNumber, built once from libphonenumber
+ * metadata.
+ *
+ * A number can only be valid if, for some region sharing its calling code, the national
+ * significant number has one of the region's possible lengths and can match the region's
+ * general number pattern. Both are packed per region into flat tables indexed by calling code:
+ * a bit mask of possible lengths and a 100-bit mask of possible two-digit leading prefixes
+ * (derived from the pattern with Matcher.hitEnd, so a prefix is only excluded when no longer
+ * input starting with it could match). A candidate failing both for every region is rejected
+ * without running libphonenumber's per-type regex matching; everything else still goes
+ * through isValidNumber, so accept/reject decisions are unchanged.
+ *
+ * If the metadata cannot be read (a different libphonenumber build), the filter is disabled
+ * and lets every candidate through.
+ */
+public final class MetadataPrefilter {
+
+    private static final int MAX_CALLING_CODE = 999;
+    static final int ALL_LENGTHS = -1;
+
+    private static final class Holder {
+        static final MetadataPrefilter INSTANCE = build(PhoneNumberUtil.getInstance());
+    }
+
+    // Regions of calling code c are entries [regionStart[c], regionStart[c + 1])
+    private final int[] regionStart;
+    private final int[] lengthMasks;
+    private final long[] prefixesLow;   // two-digit prefixes 00..63
+    private final long[] prefixesHigh;  // two-digit prefixes 64..99
+    private final boolean enabled;
+
+    private MetadataPrefilter(int[] regionStart, int[] lengthMasks, long[] prefixesLow, long[] prefixesHigh,
+                              boolean enabled) {
+        this.regionStart = regionStart;
+        this.lengthMasks = lengthMasks;
+        this.prefixesLow = prefixesLow;
+        this.prefixesHigh = prefixesHigh;
+        this.enabled = enabled;
+    }
+
+    /** The shared filter for the bundled libphonenumber metadata, built on first use. */
+    public static MetadataPrefilter get() {
+        return Holder.INSTANCE;
+    }
+
+    static MetadataPrefilter build(PhoneNumberUtil util) {
+        try {
+            MetadataSource source = DefaultMetadataDependenciesProvider.getInstance().getPhoneNumberMetadataSource();
+            int regions = 0;
+            for (int callingCode : util.getSupportedCallingCodes()) {
+                regions += util.getRegionCodesForCountryCode(callingCode).size();
+            }
+            int[] regionStart = new int[MAX_CALLING_CODE + 2];
+            int[] lengthMasks = new int[regions];
+            long[] prefixesLow = new long[regions];
+            long[] prefixesHigh = new long[regions];
+            int next = 0;
+            for (int callingCode = 0; callingCode <= MAX_CALLING_CODE; callingCode++) {
+                regionStart[callingCode] = next;
+                if (!util.getSupportedCallingCodes().contains(callingCode)) {
+                    continue;
+                }
+                for (String region : util.getRegionCodesForCountryCode(callingCode)) {
+                    PhoneMetadata metadata = "001".equals(region)
+                            ? source.getMetadataForNonGeographicalRegion(callingCode)
+                            : source.getMetadataForRegion(region);
+                    if (metadata == null || next == regions) {
+                        continue;
+                    }
+                    PhoneNumberDesc general = metadata.getGeneralDesc();
+                    lengthMasks[next] = lengthMask(general.getPossibleLengthList());
+                    long[] prefixes = prefixMask(general.getNationalNumberPattern());
+                    prefixesLow[next] = prefixes[0];
+                    prefixesHigh[next] = prefixes[1];
+                    next++;
+                }
+            }
+            regionStart[MAX_CALLING_CODE + 1] = next;
+            MetadataPrefilter filter = new MetadataPrefilter(regionStart, lengthMasks, prefixesLow, prefixesHigh, true);
+            String failed = filter.rejectedExample(util);
+            if (failed != null) {
+                System.err.println("⚠️  Warning: Pre-filter rejects the example number for " + failed + ", disabled");
+                return disabled();
+            }
+            return filter;
+        } catch (RuntimeException | LinkageError e) {
+            System.err.println("⚠️  Warning: libphonenumber metadata unavailable, pre-filter disabled: " + e);
+            return disabled();
+        }
+    }
+
+    private static MetadataPrefilter disabled() {
+        return new MetadataPrefilter(null, null, null, null, false);
+    }
+
+    /** Self-check against libphonenumber's own example numbers; returns the first region failing it. */
+    private String rejectedExample(PhoneNumberUtil util) {
+        for (String region : util.getSupportedRegions()) {
+            for (PhoneNumberUtil.PhoneNumberType type : PhoneNumberUtil.PhoneNumberType.values()) {
+                PhoneNumber example = util.getExampleNumberForType(region, type);
+                if (example != null && util.isValidNumber(example) && !couldBeValid(example)) {
+                    return region + " " + type;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** An empty list means libphonenumber does not check the length at all. */
+    static int lengthMask(List<Integer> possibleLengths) {
+        if (possibleLengths.isEmpty()) {
+            return ALL_LENGTHS;
+        }
+        int mask = 0;
+        for (int length : possibleLengths) {
+            if (length >= 32) {
+                return ALL_LENGTHS;
+            }
+            if (length > 0) {
+                mask |= 1 << length;
+            }
+        }
+        return mask;
+    }
+
+    private static long[] prefixMask(String nationalNumberPattern) {
+        long[] mask = new long[2];
+        if (nationalNumberPattern == null || nationalNumberPattern.isEmpty()) {
+            mask[0] = -1L;
+            mask[1] = -1L;
+            return mask;
+        }
+        Pattern pattern = Pattern.compile(nationalNumberPattern);
+        for (int prefix = 0; prefix < 100; prefix++) {
+            Matcher matcher = pattern.matcher(new String(new char[] {
+                    (char) ('0' + prefix / 10), (char) ('0' + prefix % 10) }));
+            // A failed match that never reached the end of the input cannot succeed on a longer one
+            if (matcher.matches() || matcher.hitEnd()) {
+                mask[prefix >> 6] |= 1L << (prefix & 63);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return false only if libphonenumber's isValidNumber is certain to return false
+     */
+    public boolean couldBeValid(PhoneNumber number) {
+        if (!enabled) {
+            return true;
+        }
+        int callingCode = number.getCountryCode();
+        if (callingCode < 0 || callingCode > MAX_CALLING_CODE) {
+            return true;
+        }
+
+        // Length and first two digits of getNationalSignificantNumber, without building it
+        long national = number.getNationalNumber();
+        if (national < 0) {
+            return true;
+        }
+        int zeros = number.isItalianLeadingZero() && number.getNumberOfLeadingZeros() > 0
+                ? number.getNumberOfLeadingZeros() : 0;
+        int digits = 1;
+        long leading = national;
+        while (leading >= 10) {
+            leading /= 10;
+            digits++;
+        }
+        int length = zeros + digits;
+        if (length < 2) {
+            return true;
+        }
+        int prefix;
+        if (zeros >= 2) {
+            prefix = 0;
+        } else if (zeros == 1) {
+            prefix = (int) leading;
+        } else {
+            long divisor = 1;
+            for (int i = 2; i < digits; i++) {
+                divisor *= 10;
+            }
+            prefix = (int) (national / divisor);
+        }
+
+        int lengthBit = length < 32 ? 1 << length : 0;
+        for (int i = regionStart[callingCode]; i < regionStart[callingCode + 1]; i++) {
+            int lengths = lengthMasks[i];
+            if (lengths != ALL_LENGTHS && (lengths & lengthBit) == 0) {
+                continue;
+            }
+            long prefixes = prefix < 64 ? prefixesLow[i] : prefixesHigh[i];
+            if ((prefixes & (1L << (prefix & 63))) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True for input libphonenumber can never turn into a number: no digit anywhere, and too
+     * few letters (under three) for its keypad-letter conversion to apply. The cascade only
+     * adds a calling code or a single leading 0/1 to what the lead typed, which never leaves
+     * two digits of national number.
+     */
+    public static boolean hasNoDigits(String phoneNumber) {
+        int letters = 0;
+        for (int i = 0; i < phoneNumber.length(); ) {
+            int c = phoneNumber.codePointAt(i);
+            if (Character.isDigit(c)) {
+                return false;
+            }
+            if (Character.isLetter(c)) {
+                letters++;
+            }
+            i += Character.charCount(c);
+        }
+        return letters < 3;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -1,6 +1,7 @@
 package com.facebookleads.validator;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.*;
 import java.nio.file.*;
@@ -12,22 +13,53 @@ import java.util.*;
  */
 public class OutputGenerator {
 
+    /** Every file a run may write to its output directory (see ResultCache). */
+    public static final List<String> OUTPUT_FILES = Collections.unmodifiableList(Arrays.asList(
+            "valid_numbers.json", "invalid_numbers.json", "summary.json", "valid_numbers.csv",
+            "invalid_numbers.csv", "validation_report.txt", "duplicates.json", "duplicates.csv",
+            SlowRecordLog.FILE_NAME, DeltaManifest.FILE_NAME, E164Index.FILE_NAME, ResultPages.FILE_NAME,
+            SearchIndex.FILE_NAME));
+
     private final String outputDir;
+    private final OutputOptions options;
+    private final Set<FormattedNumber.Field> formats;
     private final Gson gson;
     private final SimpleDateFormat dateFormat;
+    // Names written by the current generateAll, in order
+    private Set<String> written = new LinkedHashSet<>();
 
     public OutputGenerator(String outputDir) {
+        this(outputDir, new OutputOptions());
+    }
+
+    public OutputGenerator(String outputDir, OutputOptions options) {
         this.outputDir = outputDir;
+        this.options = options;
+        this.formats = options.getFormats();
         // Explicitly configure Gson to serialize nulls so we can see empty fields
         this.gson = new GsonBuilder()
                 .setPrettyPrinting()
                 .serializeNulls()  // Include null fields in JSON
+                .registerTypeAdapter(ValidPhoneRecord.class, new ValidPhoneRecord.Json(options.getFormats()))
                 .create();
         this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     }
 
     public void generateAll(ValidationResult result) throws IOException {
+        generateAll(result, CancellationToken.NONE);
+    }
+
+    /**
+     * Write the outputs. The JSON, CSV and report files are always written, so a cancelled run
+     * still flushes what it validated; the optional indexes are skipped once the token is
+     * cancelled. A partial result gets no delta manifest: that file marks a complete run
+     * (batch --resume skips such directories) and is only reused from complete runs.
+     * The names written are recorded on the result (ValidationResult.getOutputFiles).
+     */
+    public void generateAll(ValidationResult result, CancellationToken cancellation) throws IOException {
         System.out.println("📊 Generating output files...");
+        written = new LinkedHashSet<>();
+        result.setOutputFiles(written);
 
         // Create output directory if it doesn't exist
         Files.createDirectories(Paths.get(outputDir));
@@ -40,6 +72,50 @@ public class OutputGenerator {
 
         generateReport(result);
         System.out.println("   ✓ Report file created");
+
+        if (result.getDuplicates() != null) {
+            generateDuplicates(result.getDuplicates());
+            System.out.println("   ✓ Duplicate files created");
+        }
+
+        if (result.getSlowRecords() != null) {
+            try (FileWriter writer = new FileWriter(output(SlowRecordLog.FILE_NAME))) {
+                result.getSlowRecords().writeJson(gson.newJsonWriter(writer));
+            }
+            System.out.println("   ✓ Slow record log created");
+        }
+
+        if (result.isPartial()) {
+            // Nor may one from an earlier run into this directory stand for these outputs
+            Files.deleteIfExists(Paths.get(outputDir, DeltaManifest.FILE_NAME));
+            System.out.println("   ⏭️  Delta manifest skipped (partial results)");
+        } else {
+            writeFile(DeltaManifest.FILE_NAME, () -> DeltaManifest.write(result, Paths.get(outputDir)));
+            System.out.println("   ✓ Delta manifest created");
+        }
+
+        boolean indexes = options.isE164Index() || options.isPageIndex() || options.isSearchIndex();
+        if (indexes && cancellation.isCancelled()) {
+            System.out.println("   ⏭️  Indexes skipped: " + cancellation.getReason());
+            return;
+        }
+
+        if (options.isE164Index()) {
+            writeFile(E164Index.FILE_NAME, () -> E164Index.write(result, Paths.get(outputDir)));
+            System.out.println("   ✓ E.164 index created");
+        }
+
+        if (options.isPageIndex() && !cancellation.isCancelled()) {
+            writeFile(ResultPages.FILE_NAME, () -> ResultPages.write(exportedValidNumbers(result),
+                    result.getInvalidNumbers(), formats, Paths.get(outputDir)));
+            System.out.println("   ✓ Result pages created");
+        }
+
+        if (options.isSearchIndex() && !cancellation.isCancelled()) {
+            writeFile(SearchIndex.FILE_NAME, () -> SearchIndex.write(exportedValidNumbers(result),
+                    result.getInvalidNumbers(), Paths.get(outputDir)));
+            System.out.println("   ✓ Search index created");
+        }
     }
 
     /**
@@ -47,13 +123,13 @@ public class OutputGenerator {
      */
     private void generateJSON(ValidationResult result) throws IOException {
         // Valid numbers
-        try (FileWriter writer = new FileWriter(outputDir + "/valid_numbers.json")) {
-            gson.toJson(result.getValidNumbers(), writer);
+        try (Writer writer = openRecordFile("valid_numbers.json")) {
+            writeJsonArray(exportedValidNumbers(result), ValidPhoneRecord.class, writer);
         }
 
         // Invalid numbers
-        try (FileWriter writer = new FileWriter(outputDir + "/invalid_numbers.json")) {
-            gson.toJson(result.getInvalidNumbers(), writer);
+        try (Writer writer = openRecordFile("invalid_numbers.json")) {
+            writeJsonArray(result.getInvalidNumbers(), InvalidPhoneRecord.class, writer);
         }
 
         // Summary
@@ -63,23 +139,124 @@ public class OutputGenerator {
         summary.put("valid_count", result.getValidCount());
         summary.put("invalid_count", result.getInvalidCount());
         summary.put("success_rate", String.format("%.2f%%", result.getSuccessRate()));
+        summary.put("partial", result.isPartial());
+        if (result.isPartial()) {
+            summary.put("partial_reason", result.getPartialReason());
+        }
         if (result.getOriginalColumnNames() != null && !result.getOriginalColumnNames().isEmpty()) {
             summary.put("original_column_names", result.getOriginalColumnNames());
         }
+        if (result.getDuplicates() != null) {
+            summary.put("duplicate_groups", result.getDuplicates().getGroupCount());
+            summary.put("duplicate_count", result.getDuplicates().getDuplicateCount());
+            summary.put("duplicates_dropped", result.isDropDuplicates());
+        }
 
         // Count by country for valid numbers
-        Map<String, Integer> countryStats = new TreeMap<>();
-        for (ValidPhoneRecord record : result.getValidNumbers()) {
-            String region = record.getRegion();
-            countryStats.put(region, countryStats.getOrDefault(region, 0) + 1);
-        }
-        summary.put("valid_by_country", countryStats);
+        summary.put("valid_by_country", result.getValidByCountry());
+        summary.put("invalid_by_reason", result.getInvalidByReason());
 
-        try (FileWriter writer = new FileWriter(outputDir + "/summary.json")) {
+        try (FileWriter writer = new FileWriter(output("summary.json"))) {
             gson.toJson(summary, writer);
         }
     }
 
+    /**
+     * Generate duplicates.json and duplicates.csv: one entry per number shared by several valid rows
+     */
+    private void generateDuplicates(DuplicateGroups duplicates) throws IOException {
+        try (FileWriter writer = new FileWriter(output("duplicates.json"))) {
+            duplicates.writeJson(gson.newJsonWriter(writer));
+        }
+        try (Writer writer = new BufferedWriter(new FileWriter(output("duplicates.csv")))) {
+            duplicates.writeCsv(writer);
+        }
+    }
+
+    /** Valid records for valid_numbers.*: all of them, or the first row per number when dropping duplicates. */
+    private Iterable<ValidPhoneRecord> exportedValidNumbers(ValidationResult result) {
+        DuplicateGroups duplicates = result.getDuplicates();
+        if (duplicates == null || !result.isDropDuplicates()) {
+            return result.getValidNumbers();
+        }
+        return () -> new Iterator<ValidPhoneRecord>() {
+            private final Iterator<ValidPhoneRecord> records = result.getValidNumbers().iterator();
+            private int ordinal = -1;
+            private ValidPhoneRecord next = advance();
+
+            private ValidPhoneRecord advance() {
+                while (records.hasNext()) {
+                    ValidPhoneRecord record = records.next();
+                    if (!duplicates.isDuplicate(++ordinal)) {
+                        return record;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public ValidPhoneRecord next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                ValidPhoneRecord current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    /** A file in the output directory, recorded as written by this run. */
+    private String output(String fileName) {
+        written.add(fileName);
+        return outputDir + "/" + fileName;
+    }
+
+    private interface FileWrite {
+        void write() throws IOException;
+    }
+
+    /**
+     * Run a writer that may skip its file (too large, say), recording the file only if it was
+     * written; an older copy is deleted first so it cannot pass for this run's.
+     */
+    private void writeFile(String fileName, FileWrite write) throws IOException {
+        Path file = Paths.get(outputDir, fileName);
+        Files.deleteIfExists(file);
+        write.write();
+        if (Files.exists(file)) {
+            written.add(fileName);
+        }
+    }
+
+    /**
+     * Writer for a file with one entry per record. Its buffer follows heap occupancy (see
+     * HeapMonitor): large writes while there is headroom, a small buffer under pressure.
+     */
+    private Writer openRecordFile(String fileName) throws IOException {
+        return new BufferedWriter(new FileWriter(output(fileName)),
+                HeapMonitor.get().getOutputBufferKb().get() * 1024);
+    }
+
+    /**
+     * Stream records as a JSON array one element at a time, so spilled results never have to
+     * be materialized; the output is byte-for-byte what gson.toJson(list) produces.
+     */
+    private <T> void writeJsonArray(Iterable<T> records, Class<T> type, Writer writer) throws IOException {
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        jsonWriter.beginArray();
+        for (T record : records) {
+            gson.toJson(record, type, jsonWriter);
+        }
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+
     /**
      * Generate CSV output files.
      * When original columns are present (from CSV/Excel), exports original columns first, then validation columns.
@@ -89,7 +266,7 @@ public class OutputGenerator {
         boolean hasOriginalColumns = origCols != null && !origCols.isEmpty();
 
         // Valid numbers CSV
-        try (FileWriter writer = new FileWriter(outputDir + "/valid_numbers.csv")) {
+        try (Writer writer = openRecordFile("valid_numbers.csv")) {
             if (hasOriginalColumns) {
                 writer.append("Row,");
                 for (int i = 0; i < origCols.size(); i++) {
@@ -100,7 +277,7 @@ public class OutputGenerator {
             } else {
                 writer.append("Row,ID,Name,Email,Original Number,E.164,International,National,Country Code,Region,Type,Platform\n");
             }
-            for (ValidPhoneRecord record : result.getValidNumbers()) {
+            for (ValidPhoneRecord record : exportedValidNumbers(result)) {
                 writer.append(String.valueOf(record.getRowNumber())).append(",");
                 if (hasOriginalColumns) {
                     List<String> vals = record.getOriginalColumnValues();
@@ -115,12 +292,13 @@ public class OutputGenerator {
                             .append(escapeCSV(record.getEmail())).append(",")
                             .append(escapeCSV(record.getOriginalPhoneNumber())).append(",");
                 }
-                writer.append(escapeCSV(record.getE164())).append(",")
-                        .append(escapeCSV(record.getInternational())).append(",")
-                        .append(escapeCSV(record.getNational())).append(",")
+                FormattedNumber number = record.getNumber();
+                writer.append(escapeCSV(number.get(FormattedNumber.Field.E164, formats))).append(",")
+                        .append(escapeCSV(number.get(FormattedNumber.Field.INTERNATIONAL, formats))).append(",")
+                        .append(escapeCSV(number.get(FormattedNumber.Field.NATIONAL, formats))).append(",")
                         .append(escapeCSV(record.getCountryCode())).append(",")
                         .append(escapeCSV(record.getRegion())).append(",")
-                        .append(escapeCSV(record.getType())).append(",");
+                        .append(escapeCSV(number.get(FormattedNumber.Field.TYPE, formats))).append(",");
                 if (hasOriginalColumns) {
                     writer.append(escapeCSV(record.getValidationMethod())).append(",");
                 }
@@ -129,7 +307,7 @@ public class OutputGenerator {
         }
 
         // Invalid numbers CSV
-        try (FileWriter writer = new FileWriter(outputDir + "/invalid_numbers.csv")) {
+        try (Writer writer = openRecordFile("invalid_numbers.csv")) {
             if (hasOriginalColumns) {
                 writer.append("Row,");
                 for (int i = 0; i < origCols.size(); i++) {
@@ -165,7 +343,7 @@ public class OutputGenerator {
      * Generate human-readable text report
      */
     private void generateReport(ValidationResult result) throws IOException {
-        try (FileWriter writer = new FileWriter(outputDir + "/validation_report.txt")) {
+        try (FileWriter writer = new FileWriter(output("validation_report.txt"))) {
             String separator = new String(new char[80]).replace('\0', '=');
             String divider = new String(new char[80]).replace('\0', '-');
 
@@ -175,6 +353,10 @@ public class OutputGenerator {
             writer.append(separator).append("\n\n");
 
             writer.append("Generated: ").append(dateFormat.format(new Date())).append("\n\n");
+            if (result.isPartial()) {
+                writer.append("PARTIAL RESULTS: validation stopped early (").append(result.getPartialReason())
+                        .append("); only the rows below were validated\n\n");
+            }
 
             // Summary section
             writer.append("SUMMARY\n");
@@ -186,11 +368,7 @@ public class OutputGenerator {
                     result.getInvalidCount(), 100.0 - result.getSuccessRate()));
 
             // Statistics by country
-            Map<String, Integer> countryStats = new TreeMap<>();
-            for (ValidPhoneRecord record : result.getValidNumbers()) {
-                String region = record.getRegion();
-                countryStats.put(region, countryStats.getOrDefault(region, 0) + 1);
-            }
+            Map<String, Integer> countryStats = result.getValidByCountry();
 
             if (!countryStats.isEmpty()) {
                 writer.append("\nVALID NUMBERS BY COUNTRY\n");
@@ -202,22 +380,63 @@ public class OutputGenerator {
                 writer.append("\n");
             }
 
+            Map<String, Long> reasonStats = result.getInvalidByReason();
+            if (!reasonStats.isEmpty()) {
+                writer.append("\nINVALID NUMBERS BY REASON\n");
+                writer.append(divider).append("\n");
+                for (Map.Entry<String, Long> entry : reasonStats.entrySet()) {
+                    writer.append(String.format("  %-20s : %3d numbers\n",
+                            entry.getKey(), entry.getValue()));
+                }
+                writer.append("\n");
+            }
+
+            if (result.getDuplicates() != null) {
+                DuplicateGroups duplicates = result.getDuplicates();
+                if (result.isDropDuplicates()) {
+                    // The valid numbers below no longer contain these rows; only the dropped ones are listed here
+                    writer.append("\nDUPLICATE NUMBERS (DROPPED)\n");
+                    writer.append(divider).append("\n");
+                    writer.append(String.format("Numbers shared by several rows: %d (first row of each kept)\n",
+                            duplicates.getGroupCount()));
+                    writer.append(String.format("Dropped rows: %d (valid numbers written: %d)\n",
+                            duplicates.getDuplicateCount(),
+                            result.getValidCount() - duplicates.getDuplicateCount()));
+                    writer.append("See duplicates.csv / duplicates.json for the dropped rows of each number\n\n");
+                } else {
+                    writer.append("\nDUPLICATE NUMBERS\n");
+                    writer.append(divider).append("\n");
+                    writer.append(String.format("Numbers shared by several rows: %d\n", duplicates.getGroupCount()));
+                    writer.append(String.format("Repeated rows: %d\n", duplicates.getDuplicateCount()));
+                    writer.append("See duplicates.csv / duplicates.json for the rows of each group\n\n");
+                }
+            }
+
             // Valid numbers section
             writer.append("\n").append(separator).append("\n");
             writer.append("VALID PHONE NUMBERS\n");
             writer.append(separator).append("\n\n");
 
-            for (ValidPhoneRecord record : result.getValidNumbers()) {
+            for (ValidPhoneRecord record : exportedValidNumbers(result)) {
                 writer.append(String.format("Row %d: %s\n", record.getRowNumber(), record.getName()));
                 writer.append(String.format("  ID:            %s\n", record.getId()));
                 writer.append(String.format("  Email:         %s\n", record.getEmail()));
                 writer.append(String.format("  Original:      %s\n", record.getOriginalPhoneNumber()));
-                writer.append(String.format("  E.164:         %s\n", record.getE164()));
-                writer.append(String.format("  International: %s\n", record.getInternational()));
-                writer.append(String.format("  National:      %s\n", record.getNational()));
+                // Formats left out of the selection are left out of the report too
+                if (formats.contains(FormattedNumber.Field.E164)) {
+                    writer.append(String.format("  E.164:         %s\n", record.getE164()));
+                }
+                if (formats.contains(FormattedNumber.Field.INTERNATIONAL)) {
+                    writer.append(String.format("  International: %s\n", record.getInternational()));
+                }
+                if (formats.contains(FormattedNumber.Field.NATIONAL)) {
+                    writer.append(String.format("  National:      %s\n", record.getNational()));
+                }
                 writer.append(String.format("  Country:       %s (%s)\n",
                         record.getRegion(), record.getCountryCode()));
-                writer.append(String.format("  Type:          %s\n", record.getType()));
+                if (formats.contains(FormattedNumber.Field.TYPE)) {
+                    writer.append(String.format("  Type:          %s\n", record.getType()));
+                }
                 writer.append(String.format("  Platform:      %s\n", record.getPlatform()));
                 writer.append("\n");
             }
@@ -0,0 +1,48 @@
+package com.facebookleads.validator;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Optional outputs for OutputGenerator.
+ * Defaults write the standard JSON, CSV, report and manifest files only.
+ */
+public class OutputOptions {
+    private boolean e164Index;
+    private boolean pageIndex;
+    private boolean searchIndex;
+    private Set<FormattedNumber.Field> formats = EnumSet.allOf(FormattedNumber.Field.class);
+
+    /** Also write valid_e164.idx, a sorted membership index of the valid numbers. */
+    public OutputOptions e164Index(boolean e164Index) {
+        this.e164Index = e164Index;
+        return this;
+    }
+
+    /** Also write results.pages, fixed-width tables for serving sorted and filtered pages of records. */
+    public OutputOptions pageIndex(boolean pageIndex) {
+        this.pageIndex = pageIndex;
+        return this;
+    }
+
+    /** Also write search.idx, a prefix index over phone digits, emails and names. */
+    public OutputOptions searchIndex(boolean searchIndex) {
+        this.searchIndex = searchIndex;
+        return this;
+    }
+
+    /**
+     * Formatted fields written for valid numbers (all by default). The others are left empty
+     * in the JSON, CSV and report outputs and never computed.
+     */
+    public OutputOptions formats(Set<FormattedNumber.Field> formats) {
+        this.formats = EnumSet.copyOf(formats);
+        return this;
+    }
+
+    // Getters
+    public boolean isE164Index() { return e164Index; }
+    public boolean isPageIndex() { return pageIndex; }
+    public boolean isSearchIndex() { return searchIndex; }
+    public Set<FormattedNumber.Field> getFormats() { return formats; }
+}
@@ -6,8 +6,11 @@ package com.facebookleads.validator;
 public class ParserFactory {
     
     public static DataParser getParser(String filePath) {
-        String extension = getFileExtension(filePath).toLowerCase();
-        
+        return getParserForFormat(getFileExtension(filePath).toLowerCase());
+    }
+
+    /** Parser for a format name (sql, csv, xlsx, xls), for input without a file name such as stdin. */
+    public static DataParser getParserForFormat(String extension) {
         switch (extension) {
             case "sql":
                 System.out.println("📄 Selected SQL Parser");
@@ -27,7 +30,19 @@ public class ParserFactory {
         }
     }
     
-    private static String getFileExtension(String filePath) {
+    static boolean isSupportedFormat(String format) {
+        switch (format) {
+            case "sql":
+            case "csv":
+            case "xlsx":
+            case "xls":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static String getFileExtension(String filePath) {
         int lastDot = filePath.lastIndexOf('.');
         return lastDot > 0 ? filePath.substring(lastDot + 1) : "";
     }
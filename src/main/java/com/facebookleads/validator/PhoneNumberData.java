@@ -10,6 +10,7 @@ import java.util.List;
 public class PhoneNumberData {
     private final List<PhoneRecord> records;
     private final List<String> originalColumnNames;
+    private volatile boolean truncated;
 
     public PhoneNumberData(List<PhoneRecord> records) {
         this(records, null);
@@ -30,6 +31,25 @@ public class PhoneNumberData {
         return records.size();
     }
 
+    /** The records in input order, as the validator reads them; a RecordStream parses them on the way. */
+    public Iterable<PhoneRecord> recordsToValidate() {
+        return records;
+    }
+
+    /** False while records are still being read (getCount is then the number read so far). */
+    public boolean isComplete() {
+        return true;
+    }
+
+    /** True if the parser was cancelled before the end of the input. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void markTruncated() {
+        truncated = true;
+    }
+
     /** Original CSV/Excel column headers in order; null if not from CSV/Excel. */
     public List<String> getOriginalColumnNames() {
         return originalColumnNames;
@@ -4,613 +4,651 @@ import com.google.i18n.phonenumbers.*;
 import com.google.i18n.phonenumbers.PhoneNumberUtil.PhoneNumberFormat;
 import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Validates and formats phone numbers using Google libphonenumber
  */
 public class PhoneNumberValidator {
 
+    /**
+     * Version of the validation rules below. Bump whenever the cascade or the country
+     * tables change so outcomes persisted by earlier runs (delta manifests) are not reused.
+     */
+    public static final int RULES_VERSION = 3;
+
+    // Rows between checks of the cancellation token; a deadline costs a clock read per check
+    private static final int CANCEL_CHECK_ROWS = 256;
+
+    // Cascade stages, as named in the slow-record log and TIME_BUDGET outcomes
+    private static final String STAGE_COUNTRY_E164 = "country_e164";
+    private static final String STAGE_COUNTRY_NATIONAL = "country_national";
+    private static final String STAGE_EGYPT_PREFIX = "egypt_prefix";
+    private static final String STAGE_ORIGINAL = "original";
+    private static final String STAGE_US_FALLBACK = "us_fallback";
+    private static final String STAGE_FORCEFUL = "forceful";
+
+    // Parameterless outcomes, shared rather than allocated per record
+    private static final ValidationOutcome EMPTY_NUMBER = ValidationOutcome.invalid(InvalidReason.EMPTY);
+    private static final ValidationOutcome NO_DIGITS = ValidationOutcome.invalid(InvalidReason.NO_DIGITS);
+    private static final ValidationOutcome NOT_VALID = ValidationOutcome.invalid(InvalidReason.NOT_VALID);
+    // NOT_VALID per detected region, and "+cc" per calling code: a few hundred of each at most
+    private static final Map<String, ValidationOutcome> NOT_VALID_BY_REGION = new ConcurrentHashMap<>();
+    private static final String[] CALLING_CODES = new String[1000];
+
     private final PhoneNumberUtil phoneUtil = PhoneNumberUtil.getInstance();
 
-    // Map country names to ISO region codes
-    private static final Map<String, String> COUNTRY_TO_REGION = new HashMap<>();
-
-    // All country codes for forceful testing (Step 4 – last resort)
-    private static final String[] FORCEFUL_TEST_REGIONS = {
-            "US", "BR", "MX", "CO", "CR", "ES", "CA", "AR",
-            "BD", "BE", "BJ", "CL", "CN", "EC", "EG", "SV",
-            "HN", "IN", "IL", "KZ", "KG", "MA", "MY", "NP",
-            "NG", "OM", "PK", "PE", "RU", "SA", "SG", "TR",
-            "UZ", "VE", "VN", "ZM", "AE", "TZ", "PT", "FR",
-            "DE", "IT", "GB", "NL", "PL", "GR", "AT", "CH",
-            "GT", "PA", "NI", "DO", "UY", "PY", "BO", "BS", "JO", "ID",
-            "QA", "KW", "BH", "LB", "IQ", "YE", "ZA", "GH",
-            "ET", "UG", "RW", "SN", "CI", "DZ", "TN", "MG",
-            "MW", "MZ", "AZ", "RS", "KR", "MN"
-    };
-
-    static {
-        COUNTRY_TO_REGION.put("ARGENTINA", "AR");
-        COUNTRY_TO_REGION.put("BAHAMAS", "BS");
-        COUNTRY_TO_REGION.put("BANGLADESH", "BD");
-        COUNTRY_TO_REGION.put("BRAZIL", "BR");
-        COUNTRY_TO_REGION.put("CANADA", "CA");
-        COUNTRY_TO_REGION.put("CHILE", "CL");
-        COUNTRY_TO_REGION.put("CHINA", "CN");
-        COUNTRY_TO_REGION.put("COLOMBIA", "CO");
-        COUNTRY_TO_REGION.put("COSTA RICA", "CR");
-        COUNTRY_TO_REGION.put("ECUADOR", "EC");
-        COUNTRY_TO_REGION.put("EGYPT", "EG");
-        COUNTRY_TO_REGION.put("EL SALVADOR", "SV");
-        COUNTRY_TO_REGION.put("ELSALVADOR", "SV");
-        COUNTRY_TO_REGION.put("HONDURAS", "HN");
-        COUNTRY_TO_REGION.put("INDIA", "IN");
-        COUNTRY_TO_REGION.put("INDONESIA", "ID");
-        COUNTRY_TO_REGION.put("ISRAEL", "IL");
-        COUNTRY_TO_REGION.put("KAZAKHSTAN", "KZ");
-        COUNTRY_TO_REGION.put("KYRGYZSTAN", "KG");
-        COUNTRY_TO_REGION.put("MEXICO", "MX");
-        COUNTRY_TO_REGION.put("MOROCCO", "MA");
-        COUNTRY_TO_REGION.put("NEPAL", "NP");
-        COUNTRY_TO_REGION.put("NIGERIA", "NG");
-        COUNTRY_TO_REGION.put("PAKISTAN", "PK");
-        COUNTRY_TO_REGION.put("PERU", "PE");
-        COUNTRY_TO_REGION.put("RUSSIA", "RU");
-        COUNTRY_TO_REGION.put("RUSSIAN FEDERATION", "RU");
-        COUNTRY_TO_REGION.put("RUSSIAN FD", "RU");
-        COUNTRY_TO_REGION.put("SAUDI ARABIA", "SA");
-        COUNTRY_TO_REGION.put("SPAIN", "ES");
-        COUNTRY_TO_REGION.put("TURKEY", "TR");
-        COUNTRY_TO_REGION.put("UNITED STATES", "US");
-        COUNTRY_TO_REGION.put("US", "US");
-        COUNTRY_TO_REGION.put("USA", "US");
-        COUNTRY_TO_REGION.put("UZBEKISTAN", "UZ");
-        COUNTRY_TO_REGION.put("VENEZUELA", "VE");
-        COUNTRY_TO_REGION.put("VIET NAM", "VN");
-        COUNTRY_TO_REGION.put("VIETNAM", "VN");
-        COUNTRY_TO_REGION.put("ZAMBIA", "ZM");
-        COUNTRY_TO_REGION.put("TANZANIA", "TZ");
-        COUNTRY_TO_REGION.put("PORTUGAL", "PT");
-        COUNTRY_TO_REGION.put("FRANCE", "FR");
-        COUNTRY_TO_REGION.put("GERMANY", "DE");
-        COUNTRY_TO_REGION.put("ITALY", "IT");
-        COUNTRY_TO_REGION.put("UNITED KINGDOM", "GB");
-        COUNTRY_TO_REGION.put("UK", "GB");
-        COUNTRY_TO_REGION.put("NETHERLANDS", "NL");
-        COUNTRY_TO_REGION.put("POLAND", "PL");
-        COUNTRY_TO_REGION.put("GREECE", "GR");
-        COUNTRY_TO_REGION.put("AUSTRIA", "AT");
-        COUNTRY_TO_REGION.put("SWITZERLAND", "CH");
-        COUNTRY_TO_REGION.put("GUATEMALA", "GT");
-        COUNTRY_TO_REGION.put("PANAMA", "PA");
-        COUNTRY_TO_REGION.put("NICARAGUA", "NI");
-        COUNTRY_TO_REGION.put("DOMINICAN REPUBLIC", "DO");
-        COUNTRY_TO_REGION.put("URUGUAY", "UY");
-        COUNTRY_TO_REGION.put("PARAGUAY", "PY");
-        COUNTRY_TO_REGION.put("BOLIVIA", "BO");
-        COUNTRY_TO_REGION.put("JORDAN", "JO");
-        COUNTRY_TO_REGION.put("QATAR", "QA");
-        COUNTRY_TO_REGION.put("KUWAIT", "KW");
-        COUNTRY_TO_REGION.put("BAHRAIN", "BH");
-        COUNTRY_TO_REGION.put("LEBANON", "LB");
-        COUNTRY_TO_REGION.put("IRAQ", "IQ");
-        COUNTRY_TO_REGION.put("YEMEN", "YE");
-        COUNTRY_TO_REGION.put("SOUTH AFRICA", "ZA");
-        COUNTRY_TO_REGION.put("GHANA", "GH");
-        COUNTRY_TO_REGION.put("ETHIOPIA", "ET");
-        COUNTRY_TO_REGION.put("UGANDA", "UG");
-        COUNTRY_TO_REGION.put("RWANDA", "RW");
-        COUNTRY_TO_REGION.put("SENEGAL", "SN");
-        COUNTRY_TO_REGION.put("IVORY COAST", "CI");
-        COUNTRY_TO_REGION.put("COTE D'IVOIRE", "CI");
-        COUNTRY_TO_REGION.put("ALGERIA", "DZ");
-        COUNTRY_TO_REGION.put("TUNISIA", "TN");
-        COUNTRY_TO_REGION.put("MADAGASCAR", "MG");
-        COUNTRY_TO_REGION.put("MALAWI", "MW");
-        COUNTRY_TO_REGION.put("MOZAMBIQUE", "MZ");
-        COUNTRY_TO_REGION.put("AZERBAIJAN", "AZ");
-        COUNTRY_TO_REGION.put("SERBIA", "RS");
-        COUNTRY_TO_REGION.put("SOUTH KOREA", "KR");
-        COUNTRY_TO_REGION.put("KOREA", "KR");
-        COUNTRY_TO_REGION.put("STH KOREA", "KR");
-        COUNTRY_TO_REGION.put("MONGOLIA", "MN");
-
-        // Add missing countries
-        COUNTRY_TO_REGION.put("BELGIUM", "BE");
-        COUNTRY_TO_REGION.put("BENIN", "BJ");
-        COUNTRY_TO_REGION.put("OMAN", "OM");
-        COUNTRY_TO_REGION.put("SINGAPORE", "SG");
-        COUNTRY_TO_REGION.put("MALAYSIA", "MY");
-        COUNTRY_TO_REGION.put("UNITED ARAB EMIRATES", "AE");
-        COUNTRY_TO_REGION.put("UAE", "AE");
-
-        // Also add ISO codes directly for easier lookup
-        COUNTRY_TO_REGION.put("AR", "AR");
-        COUNTRY_TO_REGION.put("BD", "BD");
-        COUNTRY_TO_REGION.put("BR", "BR");
-        COUNTRY_TO_REGION.put("CA", "CA");
-        COUNTRY_TO_REGION.put("CL", "CL");
-        COUNTRY_TO_REGION.put("CN", "CN");
-        COUNTRY_TO_REGION.put("CO", "CO");
-        COUNTRY_TO_REGION.put("CR", "CR");
-        COUNTRY_TO_REGION.put("EC", "EC");
-        COUNTRY_TO_REGION.put("EG", "EG");
-        COUNTRY_TO_REGION.put("SV", "SV");
-        COUNTRY_TO_REGION.put("HN", "HN");
-        COUNTRY_TO_REGION.put("IN", "IN");
-        COUNTRY_TO_REGION.put("ID", "ID");
-        COUNTRY_TO_REGION.put("IL", "IL");
-        COUNTRY_TO_REGION.put("KZ", "KZ");
-        COUNTRY_TO_REGION.put("KG", "KG");
-        COUNTRY_TO_REGION.put("MX", "MX");
-        COUNTRY_TO_REGION.put("MA", "MA");
-        COUNTRY_TO_REGION.put("NP", "NP");
-        COUNTRY_TO_REGION.put("NG", "NG");
-        COUNTRY_TO_REGION.put("PK", "PK");
-        COUNTRY_TO_REGION.put("PE", "PE");
-        COUNTRY_TO_REGION.put("RU", "RU");
-        COUNTRY_TO_REGION.put("SA", "SA");
-        COUNTRY_TO_REGION.put("ES", "ES");
-        COUNTRY_TO_REGION.put("TR", "TR");
-        COUNTRY_TO_REGION.put("UZ", "UZ");
-        COUNTRY_TO_REGION.put("VE", "VE");
-        COUNTRY_TO_REGION.put("VN", "VN");
-        COUNTRY_TO_REGION.put("ZM", "ZM");
-        COUNTRY_TO_REGION.put("BE", "BE");
-        COUNTRY_TO_REGION.put("BJ", "BJ");
-        COUNTRY_TO_REGION.put("OM", "OM");
-        COUNTRY_TO_REGION.put("SG", "SG");
-        COUNTRY_TO_REGION.put("MY", "MY");
-        COUNTRY_TO_REGION.put("AE", "AE");
-        COUNTRY_TO_REGION.put("TZ", "TZ");
-        COUNTRY_TO_REGION.put("PT", "PT");
-        COUNTRY_TO_REGION.put("FR", "FR");
-        COUNTRY_TO_REGION.put("DE", "DE");
-        COUNTRY_TO_REGION.put("IT", "IT");
-        COUNTRY_TO_REGION.put("GB", "GB");
-        COUNTRY_TO_REGION.put("NL", "NL");
-        COUNTRY_TO_REGION.put("PL", "PL");
-        COUNTRY_TO_REGION.put("GR", "GR");
-        COUNTRY_TO_REGION.put("AT", "AT");
-        COUNTRY_TO_REGION.put("CH", "CH");
-        COUNTRY_TO_REGION.put("GT", "GT");
-        COUNTRY_TO_REGION.put("PA", "PA");
-        COUNTRY_TO_REGION.put("NI", "NI");
-        COUNTRY_TO_REGION.put("DO", "DO");
-        COUNTRY_TO_REGION.put("UY", "UY");
-        COUNTRY_TO_REGION.put("PY", "PY");
-        COUNTRY_TO_REGION.put("BO", "BO");
-        COUNTRY_TO_REGION.put("BS", "BS");
-        COUNTRY_TO_REGION.put("JO", "JO");
-        COUNTRY_TO_REGION.put("QA", "QA");
-        COUNTRY_TO_REGION.put("KW", "KW");
-        COUNTRY_TO_REGION.put("BH", "BH");
-        COUNTRY_TO_REGION.put("LB", "LB");
-        COUNTRY_TO_REGION.put("IQ", "IQ");
-        COUNTRY_TO_REGION.put("YE", "YE");
-        COUNTRY_TO_REGION.put("ZA", "ZA");
-        COUNTRY_TO_REGION.put("GH", "GH");
-        COUNTRY_TO_REGION.put("ET", "ET");
-        COUNTRY_TO_REGION.put("UG", "UG");
-        COUNTRY_TO_REGION.put("RW", "RW");
-        COUNTRY_TO_REGION.put("SN", "SN");
-        COUNTRY_TO_REGION.put("CI", "CI");
-        COUNTRY_TO_REGION.put("DZ", "DZ");
-        COUNTRY_TO_REGION.put("TN", "TN");
-        COUNTRY_TO_REGION.put("MG", "MG");
-        COUNTRY_TO_REGION.put("MW", "MW");
-        COUNTRY_TO_REGION.put("MZ", "MZ");
-        COUNTRY_TO_REGION.put("AZ", "AZ");
-        COUNTRY_TO_REGION.put("RS", "RS");
-        COUNTRY_TO_REGION.put("KR", "KR");
-        COUNTRY_TO_REGION.put("MN", "MN");
+    private final MetadataPrefilter prefilter = MetadataPrefilter.get();
+    private final LongAdder validityChecks = new LongAdder();
+    private final LongAdder prefilterRejects = new LongAdder();
+
+    private final ValidationCache cache;
+
+    public PhoneNumberValidator() {
+        this(new ValidationCache(ValidationCache.DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * @param cache outcome cache keyed by (number, detected region); may be shared by
+     *              validators running concurrently on different files
+     */
+    public PhoneNumberValidator(ValidationCache cache) {
+        this.cache = cache;
     }
 
     public ValidationResult validate(PhoneNumberData data) {
-        System.out.println("🔍 Validating " + data.getCount() + " phone numbers...");
+        try {
+            return validate(data, new ValidationContext());
+        } catch (IOException e) {
+            // Only checkpoint I/O can fail, and the default context has no checkpoint
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Validate all records. Safe to call concurrently from several threads as long as
+     * each call has its own context (and progress output is disabled).
+     * Outcomes are reused from the context's delta manifest where possible, and recorded
+     * to (and on resume restored from) its checkpoint.
+     */
+    public ValidationResult validate(PhoneNumberData data, ValidationContext context) throws IOException {
+        boolean showProgress = context.isShowProgress();
+        DeltaManifest prior = context.getPrior();
+        CheckpointManager checkpoint = context.getCheckpoint();
+        boolean streamed = !data.isComplete();
+        CancellationToken cancellation = context.getCancellation();
+        // One registry for the whole run, even if a config reload swaps it meanwhile
+        CountryRegistry registry = CountryRegistry.current();
+        long budgetNanos = context.getRecordBudgetMillis() * 1_000_000L;
+        SlowRecordLog slowLog = context.getSlowRecordMillis() > 0
+                ? new SlowRecordLog(context.getSlowRecordMillis() * 1_000_000L, budgetNanos)
+                : null;
+        if (showProgress) {
+            System.out.println(streamed
+                    ? "🔍 Validating phone numbers as they are read..."
+                    : "🔍 Validating " + data.getCount() + " phone numbers...");
+        }
 
-        List<ValidPhoneRecord> validNumbers = new ArrayList<>();
-        List<InvalidPhoneRecord> invalidNumbers = new ArrayList<>();
+        ResultCollector results = new ResultCollector(data.getRecords(), context.getHeapBudgetBytes());
+
+        // A truncated input is not the one the checkpoint counts rows of; nothing is validated then anyway
+        int restored = checkpoint != null && !data.isTruncated()
+                ? checkpoint.restore(data.getRecords(), results)
+                : 0;
+        // Invalid rows per reason, indexed by InvalidReason ordinal
+        long[] reasonCounts = new long[InvalidReason.count()];
+        if (restored > 0) {
+            for (InvalidPhoneRecord record : results.getInvalidNumbers()) {
+                reasonCounts[record.getErrorDetail().getReason().ordinal()]++;
+            }
+        }
 
+        long checksBefore = validityChecks.sum();
+        long rejectsBefore = prefilterRejects.sum();
         int processed = 0;
-        for (PhoneRecord record : data.getRecords()) {
+        int reused = 0;
+        boolean stopped = false;
+        for (PhoneRecord record : data.recordsToValidate()) {
+            if (processed % CANCEL_CHECK_ROWS == 0 && cancellation.isCancelled()) {
+                stopped = true;
+                break;
+            }
             processed++;
-            if (processed % 10 == 0) {
+            if (processed <= restored) {
+                continue;
+            }
+            if (showProgress && processed % 10 == 0) {
                 System.out.print(".");
                 if (processed % 50 == 0) {
-                    System.out.println(" " + processed + "/" + data.getCount());
+                    System.out.println(" " + processed + (streamed ? "" : "/" + data.getCount()));
                 }
             }
 
-            String phoneNumberStr = record.getPhoneNumber();
-            String countryHint = record.getCountry();
-
-            // Skip obviously invalid numbers
-            if (phoneNumberStr == null || phoneNumberStr.trim().isEmpty() ||
-                    phoneNumberStr.equals("NA") || phoneNumberStr.equals("NULL")) {
-                invalidNumbers.add(new InvalidPhoneRecord(
-                        record.getRowNumber(),
-                        record.getId(),
-                        record.getEmail(),
-                        record.getName(),
-                        phoneNumberStr,
-                        "Empty or NULL phone number",
-                        record.getPlatform(),
-                        countryHint,
-                        record.getOriginalColumnValues()));
-                continue;
+            ValidationOutcome outcome = prior != null ? prior.lookup(record) : null;
+            if (outcome != null) {
+                reused++;
+            } else {
+                outcome = validateNumber(record.getPhoneNumber(), record.getCountry(), registry,
+                        record.getRowNumber(), budgetNanos, slowLog);
             }
+            if (checkpoint != null) {
+                checkpoint.record(outcome);
+            }
+            results.add(outcome);
+            if (!outcome.isValid()) {
+                reasonCounts[outcome.getError().getReason().ordinal()]++;
+            }
+        }
 
-            try {
-                String originalPhoneNumber = phoneNumberStr; // SAVE ORIGINAL
+        if (showProgress) {
+            if (processed % 50 != 0) {
+                System.out.println();
+            }
 
-                // Get region code from country hint
-                String detectedRegion = getRegionFromCountry(countryHint);
+            if (stopped || data.isTruncated()) {
+                System.out.println("⏹️  Validation stopped after " + (results.getValidCount() + results.getInvalidCount())
+                        + " rows: " + stopReason(cancellation));
+            } else {
+                System.out.println("✅ Validation complete!");
+            }
+            System.out.println("   Valid: " + results.getValidCount());
+            System.out.println("   Invalid: " + results.getInvalidCount());
+            if (prior != null) {
+                System.out.println("   Reused from previous run: " + reused
+                        + " (re-validated: " + (processed - restored - reused) + ")");
+            }
+            if (checkpoint != null) {
+                System.out.println("   Checkpoints: " + checkpoint.describeOverhead());
+            }
+            if (budgetNanos > 0) {
+                System.out.println("   Over the " + context.getRecordBudgetMillis() + " ms record budget: "
+                        + reasonCounts[InvalidReason.TIME_BUDGET.ordinal()]);
+            }
+            if (slowLog != null) {
+                System.out.println(String.format("   Slow records: %d over %d ms (slowest %.1f ms)",
+                        slowLog.getSlowCount(), context.getSlowRecordMillis(), slowLog.getMaxNanos() / 1e6));
+            }
+            long checks = validityChecks.sum() - checksBefore;
+            if (prefilter.isEnabled() && checks > 0) {
+                System.out.println(String.format("   Pre-filter: %d of %d candidate checks rejected from metadata (%.1f%%)",
+                        prefilterRejects.sum() - rejectsBefore, checks,
+                        100.0 * (prefilterRejects.sum() - rejectsBefore) / checks));
+            }
+            int runs = results.getRunCount();
+            if (runs > 0) {
+                System.out.println(String.format("   Spilled to disk: %d run(s), %.1f MB (heap budget %d MB)", runs,
+                        results.getSpilledBytes() / (1024.0 * 1024.0),
+                        results.getLimitBytes() / (1024 * 1024)));
+            } else if (!results.isColumnar()) {
+                System.out.println("   Results outgrew the heap budget; kept as records that spill to disk");
+            }
+        }
 
-                boolean isValid = false;
-                PhoneNumber validPhoneNumber = null;
-                String validationMethod = null;
+        ValidationResult result = results.toResult(data.getOriginalColumnNames());
+        result.setInvalidReasonCounts(reasonCounts);
+        result.setSlowRecords(slowLog);
+        if (stopped || data.isTruncated()) {
+            result.setPartial(stopReason(cancellation));
+        } else if (context.isDedupe()) {
+            DuplicateGroups duplicates = DuplicateGroups.find(result.getValidNumbers(), result.getValidCount(),
+                    context.getDedupeMemoryBytes());
+            result.setDuplicates(duplicates, context.isDropDuplicates());
+            if (showProgress) {
+                System.out.println(String.format("   Duplicates: %d repeated number(s) in %d group(s)%s"
+                                + " (%d pass(es), %.1f MB table, %d spilled run(s))",
+                        duplicates.getDuplicateCount(), duplicates.getGroupCount(),
+                        context.isDropDuplicates() ? ", dropped from valid_numbers.*" : "",
+                        duplicates.getPasses(), duplicates.getTableBytes() / (1024.0 * 1024.0),
+                        duplicates.getRunCount()));
+            }
+        }
+        return result;
+    }
 
-                // Order: 1) country from form, 2) original format, 3) +1 fallback, 4) forceful
+    private static String stopReason(CancellationToken cancellation) {
+        // A parser may have been cancelled through a token other than the context's
+        return cancellation.getReason() != null ? cancellation.getReason() : "input truncated";
+    }
 
-                // Step 1: Country from form – try form country first so e.g. 525407802 + Chile → +56525407802
-                if (detectedRegion != null) {
-                    int expectedCountryCode = phoneUtil.getCountryCodeForRegion(detectedRegion);
-                    String phoneToTest = originalPhoneNumber;
-                    if (phoneToTest.startsWith("+")) {
-                        phoneToTest = phoneToTest.substring(1);
-                    }
-                    String countryCodeStr = String.valueOf(expectedCountryCode);
-
-                    // 1a: Parse as E.164 with form country (prepend CC if needed; avoids mis-detection as Egypt/Mexico etc.)
-                    String e164ToTry = null;
-                    if (phoneToTest.startsWith(countryCodeStr)) {
-                        e164ToTry = "+" + phoneToTest;
-                    } else {
-                        int expectedTotalLength = countryCodeStr.length() + 9;
-                        String testWithCountryCode = countryCodeStr + phoneToTest;
-                        if (testWithCountryCode.length() >= expectedTotalLength + 1 && phoneToTest.length() > 9) {
-                            String shortened = phoneToTest.substring(1);
-                            testWithCountryCode = countryCodeStr + shortened;
-                        }
-                        if (testWithCountryCode.length() <= expectedTotalLength + 2) {
-                            e164ToTry = "+" + testWithCountryCode;
-                        }
-                    }
-                    if (e164ToTry != null) {
-                        try {
-                            PhoneNumber phoneNumber = phoneUtil.parse(e164ToTry, null);
-                            if (phoneUtil.isValidNumber(phoneNumber)) {
-                                String detectedRegionFromNumber = phoneUtil.getRegionCodeForNumber(phoneNumber);
-                                if (detectedRegion.equals(detectedRegionFromNumber)) {
-                                    isValid = true;
-                                    validPhoneNumber = phoneNumber;
-                                    validationMethod = "country_code";
-                                }
-                            }
-                        } catch (NumberParseException e) {
-                            // continue to 1b
+    /**
+     * Run the validation cascade for one phone number and country hint.
+     * The outcome depends only on the number and the region resolved from the hint,
+     * so it is looked up in and stored to the shared cache under that key.
+     */
+    public ValidationOutcome validateNumber(String phoneNumberStr, String countryHint) {
+        return validateNumber(phoneNumberStr, countryHint, CountryRegistry.current(), 0, 0, null);
+    }
+
+    /**
+     * validateNumber against the registry of the run, with a time budget for the cascade (0 for
+     * none): once it is used up, the remaining stages are skipped and the record is invalid with
+     * TIME_BUDGET. Such outcomes depend on timing rather than on the number, so they are not
+     * cached. Cascades that take at least the slow log's threshold are logged under row, the
+     * record's input row number.
+     */
+    ValidationOutcome validateNumber(String phoneNumberStr, String countryHint, CountryRegistry registry,
+                                     int row, long budgetNanos, SlowRecordLog slowLog) {
+        // Skip obviously invalid numbers
+        if (phoneNumberStr == null || phoneNumberStr.trim().isEmpty() ||
+                phoneNumberStr.equals("NA") || phoneNumberStr.equals("NULL")) {
+            return EMPTY_NUMBER;
+        }
+        // No parse attempt below can succeed without digits; see MetadataPrefilter.hasNoDigits
+        if (MetadataPrefilter.hasNoDigits(phoneNumberStr)) {
+            return NO_DIGITS;
+        }
+
+        try {
+            // Get region code from country hint
+            String detectedRegion = registry.regionFor(countryHint);
+
+            String cacheKey = ValidationCache.key(phoneNumberStr, detectedRegion);
+            ValidationOutcome cached = cache.get(cacheKey, registry.getForcefulFingerprint());
+            if (cached != null) {
+                return cached;
+            }
+
+            CascadeTrace trace = budgetNanos > 0 || slowLog != null ? new CascadeTrace(budgetNanos) : null;
+            ValidationOutcome outcome = runCascade(phoneNumberStr, detectedRegion, registry, trace);
+            if (slowLog != null) {
+                slowLog.offer(row, phoneNumberStr, countryHint, detectedRegion, trace.elapsedNanos(), trace.stages(), outcome);
+            }
+            if (!outcome.isValid() && outcome.getError().getReason() == InvalidReason.TIME_BUDGET) {
+                return outcome;
+            }
+            // Invalid and forceful outcomes depend on the forceful region list; the rest stay
+            // valid across config reloads
+            boolean dependsOnForceful = !outcome.isValid() || "forceful".equals(outcome.getValidationMethod());
+            cache.put(cacheKey, outcome, dependsOnForceful ? registry.getForcefulFingerprint() : 0);
+            return outcome;
+        } catch (Exception e) {
+            return ValidationOutcome.invalid(InvalidReason.UNEXPECTED_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * PhoneNumberUtil.isValidNumber behind the metadata pre-filter, which answers most
+     * impossible candidates (wrong length or leading digits for the calling code) without
+     * libphonenumber's per-type pattern matching, and the compiled fast path when enabled.
+     */
+    private boolean isValidNumber(PhoneNumber phoneNumber) {
+        validityChecks.increment();
+        if (!prefilter.couldBeValid(phoneNumber)) {
+            prefilterRejects.increment();
+            return false;
+        }
+        RegionFastPath fastPath = RegionFastPath.current();
+        if (fastPath != null) {
+            int answer = fastPath.check(phoneNumber);
+            if (answer != RegionFastPath.NOT_COVERED) {
+                return answer == RegionFastPath.VALID;
+            }
+        }
+        return phoneUtil.isValidNumber(phoneNumber);
+    }
+
+    /** trace, when not null, times the cascade against its budget and notes the stages entered. */
+    private ValidationOutcome runCascade(String originalPhoneNumber, String detectedRegion, CountryRegistry registry,
+                                         CascadeTrace trace) {
+        boolean isValid = false;
+        PhoneNumber validPhoneNumber = null;
+        String validationMethod = null;
+
+        // Order: 1) country from form, 2) original format, 3) +1 fallback, 4) forceful
+
+        // Step 1: Country from form – try form country first so e.g. 525407802 + Chile → +56525407802
+        if (detectedRegion != null) {
+            int expectedCountryCode = phoneUtil.getCountryCodeForRegion(detectedRegion);
+            String phoneToTest = originalPhoneNumber;
+            if (phoneToTest.startsWith("+")) {
+                phoneToTest = phoneToTest.substring(1);
+            }
+            String countryCodeStr = String.valueOf(expectedCountryCode);
+
+            // 1a: Parse as E.164 with form country (prepend CC if needed; avoids mis-detection as Egypt/Mexico etc.)
+            String e164ToTry = null;
+            if (phoneToTest.startsWith(countryCodeStr)) {
+                e164ToTry = "+" + phoneToTest;
+            } else {
+                int expectedTotalLength = countryCodeStr.length() + 9;
+                String testWithCountryCode = countryCodeStr + phoneToTest;
+                if (testWithCountryCode.length() >= expectedTotalLength + 1 && phoneToTest.length() > 9) {
+                    String shortened = phoneToTest.substring(1);
+                    testWithCountryCode = countryCodeStr + shortened;
+                }
+                if (testWithCountryCode.length() <= expectedTotalLength + 2) {
+                    e164ToTry = "+" + testWithCountryCode;
+                }
+            }
+            if (e164ToTry != null) {
+                if (trace != null && !trace.enter(STAGE_COUNTRY_E164)) {
+                    return trace.overBudget();
+                }
+                try {
+                    PhoneNumber phoneNumber = phoneUtil.parse(e164ToTry, null);
+                    if (isValidNumber(phoneNumber)) {
+                        String detectedRegionFromNumber = phoneUtil.getRegionCodeForNumber(phoneNumber);
+                        if (detectedRegion.equals(detectedRegionFromNumber)) {
+                            isValid = true;
+                            validPhoneNumber = phoneNumber;
+                            validationMethod = "country_code";
                         }
                     }
+                } catch (NumberParseException e) {
+                    // continue to 1b
+                }
+            }
 
-                    // 1b: Parse as national format with form region
-                    if (!isValid) {
-                        try {
-                            PhoneNumber phoneNumber = phoneUtil.parse(phoneToTest, detectedRegion);
-                            if (phoneUtil.isValidNumber(phoneNumber)) {
-                                String detectedRegionFromNumber = phoneUtil.getRegionCodeForNumber(phoneNumber);
-                                if (detectedRegion.equals(detectedRegionFromNumber)) {
-                                    isValid = true;
-                                    validPhoneNumber = phoneNumber;
-                                    validationMethod = "country_code";
-                                }
-                            }
-                        } catch (NumberParseException e) {
-                            // continue to 1c for Egypt
+            // 1b: Parse as national format with form region
+            if (!isValid) {
+                if (trace != null && !trace.enter(STAGE_COUNTRY_NATIONAL)) {
+                    return trace.overBudget();
+                }
+                try {
+                    PhoneNumber phoneNumber = phoneUtil.parse(phoneToTest, detectedRegion);
+                    if (isValidNumber(phoneNumber)) {
+                        String detectedRegionFromNumber = phoneUtil.getRegionCodeForNumber(phoneNumber);
+                        if (detectedRegion.equals(detectedRegionFromNumber)) {
+                            isValid = true;
+                            validPhoneNumber = phoneNumber;
+                            validationMethod = "country_code";
                         }
                     }
+                } catch (NumberParseException e) {
+                    // continue to 1c for Egypt
+                }
+            }
 
-                    // 1c: Egypt-specific – 9-digit numbers often need leading 0 (national) or 1 (mobile 10/11/12/15)
-                    if (!isValid && "EG".equals(detectedRegion) && phoneToTest.length() == 9 && phoneToTest.matches("\\d{9}")) {
-                        for (String prefix : new String[] { "0", "1" }) {
-                            try {
-                                PhoneNumber phoneNumber = phoneUtil.parse(prefix + phoneToTest, detectedRegion);
-                                if (phoneUtil.isValidNumber(phoneNumber)) {
-                                    String detectedRegionFromNumber = phoneUtil.getRegionCodeForNumber(phoneNumber);
-                                    if (detectedRegion.equals(detectedRegionFromNumber)) {
-                                        isValid = true;
-                                        validPhoneNumber = phoneNumber;
-                                        validationMethod = "country_code";
-                                        break;
-                                    }
-                                }
-                            } catch (NumberParseException e) {
-                                // try next prefix
+            // 1c: Egypt-specific – 9-digit numbers often need leading 0 (national) or 1 (mobile 10/11/12/15)
+            if (!isValid && "EG".equals(detectedRegion) && phoneToTest.length() == 9 && phoneToTest.matches("\\d{9}")) {
+                if (trace != null && !trace.enter(STAGE_EGYPT_PREFIX)) {
+                    return trace.overBudget();
+                }
+                for (String prefix : new String[] { "0", "1" }) {
+                    try {
+                        PhoneNumber phoneNumber = phoneUtil.parse(prefix + phoneToTest, detectedRegion);
+                        if (isValidNumber(phoneNumber)) {
+                            String detectedRegionFromNumber = phoneUtil.getRegionCodeForNumber(phoneNumber);
+                            if (detectedRegion.equals(detectedRegionFromNumber)) {
+                                isValid = true;
+                                validPhoneNumber = phoneNumber;
+                                validationMethod = "country_code";
+                                break;
                             }
                         }
+                    } catch (NumberParseException e) {
+                        // try next prefix
                     }
                 }
+            }
+        }
 
-                // Step 2: Original format (with + prefix, auto-detect)
-                if (!isValid) {
-                    try {
-                        String attempt1 = originalPhoneNumber.startsWith("+")
-                                ? originalPhoneNumber
-                                : "+" + originalPhoneNumber;
+        // Step 2: Original format (with + prefix, auto-detect)
+        if (!isValid) {
+            if (trace != null && !trace.enter(STAGE_ORIGINAL)) {
+                return trace.overBudget();
+            }
+            try {
+                String attempt1 = originalPhoneNumber.startsWith("+")
+                        ? originalPhoneNumber
+                        : "+" + originalPhoneNumber;
+
+                PhoneNumber phoneNumber = phoneUtil.parse(attempt1, null);
+                if (isValidNumber(phoneNumber)) {
+                    isValid = true;
+                    validPhoneNumber = phoneNumber;
+                    validationMethod = "original";
+                }
+            } catch (NumberParseException e) {
+                // continue to step 3
+            }
+        }
 
-                        PhoneNumber phoneNumber = phoneUtil.parse(attempt1, null);
-                        if (phoneUtil.isValidNumber(phoneNumber)) {
-                            isValid = true;
-                            validPhoneNumber = phoneNumber;
-                            validationMethod = "original";
-                        }
-                    } catch (NumberParseException e) {
-                        // continue to step 3
+        // Step 3: +1 (US) fallback
+        if (!isValid) {
+            if (trace != null && !trace.enter(STAGE_US_FALLBACK)) {
+                return trace.overBudget();
+            }
+            try {
+                PhoneNumber phoneNumber = phoneUtil.parse(originalPhoneNumber, "US");
+                if (isValidNumber(phoneNumber)) {
+                    isValid = true;
+                    validPhoneNumber = phoneNumber;
+                    validationMethod = "us_fallback";
+                }
+            } catch (NumberParseException e) {
+                // continue to step 4
+            }
+        }
+
+        // Step 4: Forceful – try all supported country codes (last resort)
+        if (!isValid) {
+            for (String region : registry.getForcefulRegions()) {
+                // Checked per region: the forceful loop is where slow records spend their time
+                if (trace != null && !trace.enter(STAGE_FORCEFUL)) {
+                    return trace.overBudget();
+                }
+                int regionCountryCode = phoneUtil.getCountryCodeForRegion(region);
+                String countryCodeStr = String.valueOf(regionCountryCode);
+                String phoneToTest = originalPhoneNumber;
+
+                // Strip leading + if present
+                if (phoneToTest.startsWith("+")) {
+                    phoneToTest = phoneToTest.substring(1);
+                }
+
+                // Try format 1: Parse as-is with the region (libphonenumber handles national
+                // format)
+                try {
+                    PhoneNumber phoneNumber = phoneUtil.parse(phoneToTest, region);
+                    if (isValidNumber(phoneNumber)) {
+                        isValid = true;
+                        validPhoneNumber = phoneNumber;
+                        validationMethod = "forceful";
+                        break;
                     }
+                } catch (NumberParseException e) {
+                    // Continue to next format
                 }
 
-                // Step 3: +1 (US) fallback
-                if (!isValid) {
+                // Try format 2: If number starts with country code, parse with auto-detect
+                if (!isValid && phoneToTest.startsWith(countryCodeStr)) {
                     try {
-                        PhoneNumber phoneNumber = phoneUtil.parse(originalPhoneNumber, "US");
-                        if (phoneUtil.isValidNumber(phoneNumber)) {
+                        PhoneNumber phoneNumber = phoneUtil.parse("+" + phoneToTest, null);
+                        if (isValidNumber(phoneNumber)) {
                             isValid = true;
                             validPhoneNumber = phoneNumber;
-                            validationMethod = "us_fallback";
+                            validationMethod = "forceful";
+                            break;
                         }
                     } catch (NumberParseException e) {
-                        // continue to step 4
+                        // Continue to next format
                     }
                 }
 
-                // Step 4: Forceful – try all supported country codes (last resort)
-                if (!isValid) {
-                    for (String region : FORCEFUL_TEST_REGIONS) {
-                        int regionCountryCode = phoneUtil.getCountryCodeForRegion(region);
-                        String countryCodeStr = String.valueOf(regionCountryCode);
-                        String phoneToTest = originalPhoneNumber;
+                // Try format 3: National format with leading 0 (if applicable)
+                String nationalFormat = phoneToTest;
+                // Remove country code if present
+                if (nationalFormat.startsWith(countryCodeStr)) {
+                    nationalFormat = nationalFormat.substring(countryCodeStr.length());
+                }
 
-                        // Strip leading + if present
-                        if (phoneToTest.startsWith("+")) {
-                            phoneToTest = phoneToTest.substring(1);
+                // If number is too long (might have extra leading digit), try removing it
+                if (nationalFormat.length() > 9 && region.equals("EC")) {
+                    // Ecuador numbers should be 9 digits, try removing first digit
+                    String shortened = nationalFormat.substring(1);
+                    if (!shortened.startsWith("0")) {
+                        String testFormat = "0" + shortened;
+                        try {
+                            PhoneNumber phoneNumber = phoneUtil.parse(testFormat, region);
+                            if (isValidNumber(phoneNumber)) {
+                                isValid = true;
+                                validPhoneNumber = phoneNumber;
+                                validationMethod = "forceful";
+                                break;
+                            }
+                        } catch (NumberParseException e) {
+                            // Try original format
                         }
+                    }
+                }
 
-                        // Try format 1: Parse as-is with the region (libphonenumber handles national
-                        // format)
+                if (!nationalFormat.startsWith("0") && nationalFormat.length() > 0) {
+                    if (region.equals("EC") || region.equals("PE") ||
+                            region.equals("CO") || region.equals("CL") ||
+                            region.equals("AR") || region.equals("VE")) {
+                        nationalFormat = "0" + nationalFormat;
                         try {
-                            PhoneNumber phoneNumber = phoneUtil.parse(phoneToTest, region);
-                            if (phoneUtil.isValidNumber(phoneNumber)) {
+                            PhoneNumber phoneNumber = phoneUtil.parse(nationalFormat, region);
+                            if (isValidNumber(phoneNumber)) {
                                 isValid = true;
                                 validPhoneNumber = phoneNumber;
                                 validationMethod = "forceful";
                                 break;
                             }
                         } catch (NumberParseException e) {
-                            // Continue to next format
+                            // Continue to next region
                         }
-
-                        // Try format 2: If number starts with country code, parse with auto-detect
-                        if (!isValid && phoneToTest.startsWith(countryCodeStr)) {
+                    }
+                    // Egypt: 9-digit numbers may need leading 0 (national) or 1 (mobile)
+                    if (!isValid && region.equals("EG") && nationalFormat.matches("\\d{9}")) {
+                        for (String prefix : new String[] { "0", "1" }) {
                             try {
-                                PhoneNumber phoneNumber = phoneUtil.parse("+" + phoneToTest, null);
-                                if (phoneUtil.isValidNumber(phoneNumber)) {
+                                PhoneNumber phoneNumber = phoneUtil.parse(prefix + nationalFormat, region);
+                                if (isValidNumber(phoneNumber)) {
                                     isValid = true;
                                     validPhoneNumber = phoneNumber;
                                     validationMethod = "forceful";
                                     break;
                                 }
                             } catch (NumberParseException e) {
-                                // Continue to next format
+                                // try next prefix
                             }
                         }
+                    }
+                }
 
-                        // Try format 3: National format with leading 0 (if applicable)
-                        String nationalFormat = phoneToTest;
-                        // Remove country code if present
-                        if (nationalFormat.startsWith(countryCodeStr)) {
-                            nationalFormat = nationalFormat.substring(countryCodeStr.length());
-                        }
+                // Try format 4: Add country code prefix ONLY if it makes sense length-wise
+                if (!isValid && !phoneToTest.startsWith(countryCodeStr)) {
+                    // Only try if the resulting number would be reasonable length
+                    String testNumber = countryCodeStr + phoneToTest;
 
-                        // If number is too long (might have extra leading digit), try removing it
-                        if (nationalFormat.length() > 9 && region.equals("EC")) {
-                            // Ecuador numbers should be 9 digits, try removing first digit
-                            String shortened = nationalFormat.substring(1);
-                            if (!shortened.startsWith("0")) {
-                                String testFormat = "0" + shortened;
-                                try {
-                                    PhoneNumber phoneNumber = phoneUtil.parse(testFormat, region);
-                                    if (phoneUtil.isValidNumber(phoneNumber)) {
-                                        isValid = true;
-                                        validPhoneNumber = phoneNumber;
-                                        validationMethod = "forceful";
-                                        break;
-                                    }
-                                } catch (NumberParseException e) {
-                                    // Try original format
-                                }
-                            }
-                        }
+                    // If too long, try removing leading digit (might be area code prefix)
+                    if (testNumber.length() >= 13 && phoneToTest.length() > 9) {
+                        String shortened = phoneToTest.substring(1);
+                        testNumber = countryCodeStr + shortened;
+                    }
 
-                        if (!nationalFormat.startsWith("0") && nationalFormat.length() > 0) {
-                            if (region.equals("EC") || region.equals("PE") ||
-                                    region.equals("CO") || region.equals("CL") ||
-                                    region.equals("AR") || region.equals("VE")) {
-                                nationalFormat = "0" + nationalFormat;
-                                try {
-                                    PhoneNumber phoneNumber = phoneUtil.parse(nationalFormat, region);
-                                    if (phoneUtil.isValidNumber(phoneNumber)) {
-                                        isValid = true;
-                                        validPhoneNumber = phoneNumber;
-                                        validationMethod = "forceful";
-                                        break;
-                                    }
-                                } catch (NumberParseException e) {
-                                    // Continue to next region
-                                }
-                            }
-                            // Egypt: 9-digit numbers may need leading 0 (national) or 1 (mobile)
-                            if (!isValid && region.equals("EG") && nationalFormat.matches("\\d{9}")) {
-                                for (String prefix : new String[] { "0", "1" }) {
-                                    try {
-                                        PhoneNumber phoneNumber = phoneUtil.parse(prefix + nationalFormat, region);
-                                        if (phoneUtil.isValidNumber(phoneNumber)) {
-                                            isValid = true;
-                                            validPhoneNumber = phoneNumber;
-                                            validationMethod = "forceful";
-                                            break;
-                                        }
-                                    } catch (NumberParseException e) {
-                                        // try next prefix
-                                    }
-                                }
+                    if (testNumber.length() <= 13) { // Reasonable upper bound
+                        try {
+                            PhoneNumber phoneNumber = phoneUtil.parse("+" + testNumber, null);
+                            if (isValidNumber(phoneNumber)) {
+                                isValid = true;
+                                validPhoneNumber = phoneNumber;
+                                validationMethod = "forceful";
+                                break;
                             }
+                        } catch (NumberParseException e) {
+                            // Continue to next region
                         }
+                    }
+                }
+            }
+        }
 
-                        // Try format 4: Add country code prefix ONLY if it makes sense length-wise
-                        if (!isValid && !phoneToTest.startsWith(countryCodeStr)) {
-                            // Only try if the resulting number would be reasonable length
-                            String testNumber = countryCodeStr + phoneToTest;
 
-                            // If too long, try removing leading digit (might be area code prefix)
-                            if (testNumber.length() >= 13 && phoneToTest.length() > 9) {
-                                String shortened = phoneToTest.substring(1);
-                                testNumber = countryCodeStr + shortened;
-                            }
+        if (isValid && validPhoneNumber != null) {
+            String countryCode = callingCode(validPhoneNumber.getCountryCode());
+            String regionCode = phoneUtil.getRegionCodeForNumber(validPhoneNumber);
 
-                            if (testNumber.length() <= 13) { // Reasonable upper bound
-                                try {
-                                    PhoneNumber phoneNumber = phoneUtil.parse("+" + testNumber, null);
-                                    if (phoneUtil.isValidNumber(phoneNumber)) {
-                                        isValid = true;
-                                        validPhoneNumber = phoneNumber;
-                                        validationMethod = "forceful";
-                                        break;
-                                    }
-                                } catch (NumberParseException e) {
-                                    // Continue to next region
-                                }
-                            }
-                        }
-                    }
+            // If it only validated through forceful testing, check if it's a supported country
+            // If the region is in our supported list, accept it as valid
+            if ("forceful".equals(validationMethod)) {
+                if (!registry.isForcefulRegion(regionCode)) {
+                    return ValidationOutcome.invalid(InvalidReason.FORCEFUL_ONLY,
+                            regionCode,
+                            phoneUtil.format(validPhoneNumber, PhoneNumberFormat.E164));
                 }
+                // Valid number - country hint was missing/wrong but number is valid for supported country
+            }
 
-                if (isValid && validPhoneNumber != null) {
-                    String countryCode = "+" + validPhoneNumber.getCountryCode();
-                    String regionCode = phoneUtil.getRegionCodeForNumber(validPhoneNumber);
-                    String numberType = phoneUtil.getNumberType(validPhoneNumber).toString();
-
-                    // If it only validated through forceful testing, check if it's a supported country
-                    // If the region is in our supported list, accept it as valid
-                    if ("forceful".equals(validationMethod)) {
-                        boolean isSupportedCountry = false;
-                        for (String supportedRegion : FORCEFUL_TEST_REGIONS) {
-                            if (supportedRegion.equals(regionCode)) {
-                                isSupportedCountry = true;
-                                break;
-                            }
-                        }
-                        
-                        if (isSupportedCountry) {
-                            // Valid number - country hint was missing/wrong but number is valid for supported country
-                            validNumbers.add(new ValidPhoneRecord(
-                                    record.getRowNumber(),
-                                    record.getId(),
-                                    record.getEmail(),
-                                    record.getName(),
-                                    originalPhoneNumber,
-                                    phoneUtil.format(validPhoneNumber, PhoneNumberFormat.E164),
-                                    phoneUtil.format(validPhoneNumber, PhoneNumberFormat.INTERNATIONAL),
-                                    phoneUtil.format(validPhoneNumber, PhoneNumberFormat.NATIONAL),
-                                    countryCode,
-                                    regionCode != null ? regionCode : "Unknown",
-                                    numberType,
-                                    record.getPlatform(),
-                                    "forceful",
-                                    countryHint,
-                                    record.getOriginalColumnValues()));
-                        } else {
-                            invalidNumbers.add(new InvalidPhoneRecord(
-                                    record.getRowNumber(),
-                                    record.getId(),
-                                    record.getEmail(),
-                                    record.getName(),
-                                    originalPhoneNumber,
-                                    String.format("Only validated through forceful testing as %s %s - data quality issue",
-                                            regionCode,
-                                            phoneUtil.format(validPhoneNumber, PhoneNumberFormat.E164)),
-                                    record.getPlatform(),
-                                    countryHint,
-                                    record.getOriginalColumnValues()));
-                        }
-                    } else {
-                        // Valid number through normal validation
-                        validNumbers.add(new ValidPhoneRecord(
-                                record.getRowNumber(),
-                                record.getId(),
-                                record.getEmail(),
-                                record.getName(),
-                                originalPhoneNumber,
-                                phoneUtil.format(validPhoneNumber, PhoneNumberFormat.E164),
-                                phoneUtil.format(validPhoneNumber, PhoneNumberFormat.INTERNATIONAL),
-                                phoneUtil.format(validPhoneNumber, PhoneNumberFormat.NATIONAL),
-                                countryCode,
-                                regionCode != null ? regionCode : "Unknown",
-                                numberType,
-                                record.getPlatform(),
-                                validationMethod,
-                                countryHint,
-                                record.getOriginalColumnValues()));
-                    }
-                } else {
-                    String errorMsg = detectedRegion != null
-                            ? "Number is not valid (tried: auto-detect, " + detectedRegion + ", US, forceful)"
-                            : "Number is not valid (tried: auto-detect, US, forceful)";
-
-                    invalidNumbers.add(new InvalidPhoneRecord(
-                            record.getRowNumber(),
-                            record.getId(),
-                            record.getEmail(),
-                            record.getName(),
-                            originalPhoneNumber,
-                            errorMsg,
-                            record.getPlatform(),
-                            countryHint,
-                            record.getOriginalColumnValues()));
-                }
+            // Formats and number type are computed only when output asks for them
+            return ValidationOutcome.valid(
+                    FormattedNumber.of(validPhoneNumber),
+                    countryCode,
+                    regionCode != null ? regionCode : "Unknown",
+                    validationMethod);
+        }
 
-            } catch (Exception e) {
-                invalidNumbers.add(new InvalidPhoneRecord(
-                        record.getRowNumber(),
-                        record.getId(),
-                        record.getEmail(),
-                        record.getName(),
-                        phoneNumberStr,
-                        "Unexpected error: " + e.getMessage(),
-                        record.getPlatform(),
-                        countryHint,
-                        record.getOriginalColumnValues()));
+        return detectedRegion != null
+                ? NOT_VALID_BY_REGION.computeIfAbsent(detectedRegion,
+                        region -> ValidationOutcome.invalid(InvalidReason.NOT_VALID, region))
+                : NOT_VALID;
+    }
+
+    /**
+     * Time spent on one record's cascade against its budget, and the stages it entered; the
+     * forceful stage is entered once per region and listed once with the region count.
+     */
+    private static final class CascadeTrace {
+        private final long start = System.nanoTime();
+        private final long budgetNanos;
+        private final List<String> stages = new ArrayList<>(6);
+        private int forcefulRegions;
+        private String skipped;
+
+        CascadeTrace(long budgetNanos) {
+            this.budgetNanos = budgetNanos;
+        }
+
+        /** Note a stage about to run; false if the budget is used up and the stage must be skipped. */
+        boolean enter(String stage) {
+            if (budgetNanos > 0 && System.nanoTime() - start > budgetNanos) {
+                skipped = stage;
+                return false;
             }
+            if (STAGE_FORCEFUL.equals(stage)) {
+                forcefulRegions++;
+            } else {
+                stages.add(stage);
+            }
+            return true;
         }
 
-        if (processed % 50 != 0) {
-            System.out.println();
+        ValidationOutcome overBudget() {
+            return ValidationOutcome.invalid(InvalidReason.TIME_BUDGET,
+                    String.valueOf(budgetNanos / 1_000_000), skipped);
         }
 
-        System.out.println("✅ Validation complete!");
-        System.out.println("   Valid: " + validNumbers.size());
-        System.out.println("   Invalid: " + invalidNumbers.size());
+        long elapsedNanos() {
+            return System.nanoTime() - start;
+        }
 
-        return new ValidationResult(validNumbers, invalidNumbers, data.getOriginalColumnNames());
+        List<String> stages() {
+            List<String> entered = new ArrayList<>(stages);
+            if (forcefulRegions > 0) {
+                entered.add(STAGE_FORCEFUL + " (" + forcefulRegions + " regions)");
+            }
+            if (skipped != null) {
+                entered.add("over budget, skipped " + skipped);
+            }
+            return entered;
+        }
     }
 
-    /**
-     * Get ISO region code from country name or ISO code
-     */
-    private String getRegionFromCountry(String countryName) {
-        if (countryName == null || countryName.trim().isEmpty()) {
-            return null;
+    private static String callingCode(int code) {
+        if (code < 0 || code >= CALLING_CODES.length) {
+            return "+" + code;
+        }
+        String text = CALLING_CODES[code];
+        if (text == null) {
+            text = "+" + code;
+            CALLING_CODES[code] = text;  // racing threads store equal strings
         }
-        return COUNTRY_TO_REGION.get(countryName.toUpperCase().trim());
+        return text;
     }
-}
\ No newline at end of file
+}
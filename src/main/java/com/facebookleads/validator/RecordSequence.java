@@ -0,0 +1,14 @@
+package com.facebookleads.validator;
+
+/**
+ * Records of one kind in row order, as held by a ValidationResult: either a RecordStore or a
+ * view over ResultColumns. Iterate to the end so spilled runs are closed.
+ */
+public interface RecordSequence<T> extends Iterable<T> {
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,356 @@
+package com.facebookleads.validator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Append-only record list that keeps a bounded buffer on the heap and spills the rest to
+ * temporary files.
+ *
+ * Records are buffered until the shared {@link Budget} is exceeded; the largest buffer is then
+ * written out as one compact binary run (varint lengths, per-field dictionaries for repeated
+ * values) and dropped from the heap. Records arrive in row order, so every run is already
+ * sorted and iteration simply reads the runs back in order followed by the buffer; the result
+ * is the same sequence a plain list would hold. Iterate to the end so run files are closed,
+ * and close the store to delete them.
+ */
+public class RecordStore<T> implements RecordSequence<T>, Closeable {
+
+    /** Binary form and heap estimate of one record type. */
+    public interface Codec<T> {
+        void write(RecordOutput out, T record) throws IOException;
+        T read(RecordInput in) throws IOException;
+        long estimateHeapBytes(T record);
+    }
+
+    // Per-slot dictionary size limit; high-cardinality fields stop growing it and are written inline
+    private static final int MAX_DICTIONARY_ENTRIES = 1024;
+
+    private final Codec<T> codec;
+    private final Budget budget;
+    private final List<T> buffer;
+    private final List<Run> runs = new ArrayList<>();
+    private final Dictionary dictionary = new Dictionary();
+    private long bufferedBytes;
+    private long spilledBytes;
+    private int size;
+
+    public RecordStore(Codec<T> codec, Budget budget) {
+        this.codec = codec;
+        this.budget = budget;
+        this.buffer = new ArrayList<>();
+        if (budget != null) {
+            budget.stores.add(this);
+        }
+    }
+
+    /** Wrap an existing list; never spills. */
+    public static <T> RecordStore<T> of(List<T> records) {
+        RecordStore<T> store = new RecordStore<>(null, null);
+        store.buffer.addAll(records);
+        store.size = records.size();
+        return store;
+    }
+
+    public void add(T record) throws IOException {
+        buffer.add(record);
+        size++;
+        if (budget != null && budget.limitBytes > 0) {
+            long bytes = codec.estimateHeapBytes(record);
+            bufferedBytes += bytes;
+            budget.reserve(bytes);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /** Write the buffer out as one run; returns the estimated heap released. */
+    private long spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return 0;
+        }
+        Path file = Files.createTempFile("phone-validator-", ".run");
+        file.toFile().deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            RecordOutput recordOutput = new RecordOutput(out, dictionary);
+            for (T record : buffer) {
+                codec.write(recordOutput, record);
+            }
+        }
+        runs.add(new Run(file, buffer.size()));
+        spilledBytes += Files.size(file);
+        buffer.clear();
+        long released = bufferedBytes;
+        bufferedBytes = 0;
+        return released;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int runIndex;
+            private int remainingInRun = -1;
+            private DataInputStream in;
+            private RecordInput recordInput;
+            private Iterator<T> bufferIterator;
+
+            @Override
+            public boolean hasNext() {
+                if (advanceRun()) {
+                    return true;
+                }
+                if (bufferIterator == null) {
+                    bufferIterator = buffer.iterator();
+                }
+                return bufferIterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (bufferIterator != null) {
+                    return bufferIterator.next();
+                }
+                try {
+                    remainingInRun--;
+                    return codec.read(recordInput);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read spilled records", e);
+                }
+            }
+
+            /** Position on a run with records left; false once all runs are consumed. */
+            private boolean advanceRun() {
+                try {
+                    while (remainingInRun <= 0) {
+                        if (in != null) {
+                            in.close();
+                            in = null;
+                        }
+                        if (runIndex >= runs.size()) {
+                            return false;
+                        }
+                        Run run = runs.get(runIndex++);
+                        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file), 1 << 16));
+                        recordInput = new RecordInput(in, dictionary);
+                        remainingInRun = run.count;
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read spilled records", e);
+                }
+            }
+        };
+    }
+
+    /** Delete the run files. */
+    @Override
+    public void close() {
+        for (Run run : runs) {
+            run.file.toFile().delete();
+        }
+        runs.clear();
+    }
+
+    private static class Run {
+        final Path file;
+        final int count;
+
+        Run(Path file, int count) {
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    /** Values of the shared fields, per slot; kept on the heap so runs only store ids. */
+    private static class Dictionary {
+        private final List<Map<String, Integer>> ids = new ArrayList<>();
+        private final List<List<String>> values = new ArrayList<>();
+
+        /** Id of the value in its slot, adding it if there is room; -1 if the slot is full. */
+        int id(int slot, String value) {
+            while (ids.size() <= slot) {
+                ids.add(new HashMap<>());
+                values.add(new ArrayList<>());
+            }
+            Integer id = ids.get(slot).get(value);
+            if (id == null) {
+                List<String> slotValues = values.get(slot);
+                if (slotValues.size() >= MAX_DICTIONARY_ENTRIES) {
+                    return -1;
+                }
+                id = slotValues.size();
+                slotValues.add(value);
+                ids.get(slot).put(value, id);
+            }
+            return id;
+        }
+
+        String value(int slot, int id) {
+            return values.get(slot).get(id);
+        }
+    }
+
+    /** Encoder handed to codecs while spilling. */
+    public static class RecordOutput {
+        private final DataOutputStream out;
+        private final Dictionary dictionary;
+
+        RecordOutput(DataOutputStream out, Dictionary dictionary) {
+            this.out = out;
+            this.dictionary = dictionary;
+        }
+
+        public void writeInt(int value) throws IOException {
+            // Unsigned LEB128; row numbers and lengths are small and non-negative
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        /** Free text such as names, emails and numbers: written inline. */
+        public void writeText(String value) throws IOException {
+            if (value == null) {
+                writeInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(1);
+            writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /** Repeating values such as region or platform: a dictionary id per slot where possible. */
+        public void writeShared(int slot, String value) throws IOException {
+            int id = value == null ? -1 : dictionary.id(slot, value);
+            if (id < 0) {
+                writeText(value);
+            } else {
+                writeInt(id + 2);
+            }
+        }
+
+        public void writeStrings(int firstSlot, List<String> values) throws IOException {
+            if (values == null) {
+                writeInt(0);
+                return;
+            }
+            writeInt(values.size() + 1);
+            for (int i = 0; i < values.size(); i++) {
+                writeShared(firstSlot + i, values.get(i));
+            }
+        }
+    }
+
+    /** Decoder handed to codecs while reading runs back. */
+    public static class RecordInput {
+        private final DataInputStream in;
+        private final Dictionary dictionary;
+
+        RecordInput(DataInputStream in, Dictionary dictionary) {
+            this.in = in;
+            this.dictionary = dictionary;
+        }
+
+        public int readInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        public String readText() throws IOException {
+            return readShared(-1);
+        }
+
+        public String readShared(int slot) throws IOException {
+            int tag = readInt();
+            if (tag == 0) {
+                return null;
+            }
+            if (tag >= 2) {
+                return dictionary.value(slot, tag - 2);
+            }
+            byte[] bytes = new byte[readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public List<String> readStrings(int firstSlot) throws IOException {
+            int count = readInt() - 1;
+            if (count < 0) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readShared(firstSlot + i));
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Heap allowance shared by the stores of one result. When it is exceeded the store with
+     * the largest buffer spills. A limit of 0 keeps everything in memory. Under heap pressure
+     * only a share of the limit is used (see HeapMonitor), so results spill sooner.
+     */
+    public static class Budget {
+        private final long limitBytes;
+        private final List<RecordStore<?>> stores = new ArrayList<>();
+        private long usedBytes;
+
+        public Budget(long limitBytes) {
+            this.limitBytes = limitBytes;
+        }
+
+        private void reserve(long bytes) throws IOException {
+            usedBytes += bytes;
+            if (usedBytes <= getEffectiveLimitBytes()) {
+                return;
+            }
+            RecordStore<?> largest = null;
+            for (RecordStore<?> store : stores) {
+                if (largest == null || store.bufferedBytes > largest.bufferedBytes) {
+                    largest = store;
+                }
+            }
+            if (largest != null) {
+                usedBytes -= largest.spill();
+            }
+        }
+
+        public long getLimitBytes() { return limitBytes; }
+
+        /** The share of the limit that may be used at the current heap occupancy. */
+        public long getEffectiveLimitBytes() {
+            return limitBytes / 100 * HeapMonitor.get().getResultBudgetPercent().get();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.facebookleads.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input read from a stream (stdin, "-") while it is validated: a parser thread reads the
+ * stream with DataParser.parse(InputStream, RecordSink) and hands records over in batches;
+ * the validator appends each to the ColumnarRecords of this data as it takes it. Reading
+ * the upload, parsing and validating thus overlap, and only the outputs wait for the end
+ * of the input.
+ *
+ * At most QUEUE_BATCHES batches wait between the threads, so a validator that falls behind
+ * slows down reading instead of filling the heap. Batches follow heap occupancy (see
+ * HeapMonitor): they grow while there is headroom and shrink under pressure, when the
+ * parser also waits for the queue to drain before handing over the next one. A parse
+ * failure is rethrown to the validator once the records before it are consumed. After
+ * cancellation the parser stops waiting for the queue and ends, releasing the input.
+ */
+public class RecordStream extends PhoneNumberData {
+
+    private static final int QUEUE_BATCHES = 64;
+    private static final List<PhoneRecord> END = new ArrayList<>(0);
+    /** How often a parser waiting for room in the queue checks for cancellation. */
+    private static final long PUT_POLL_MILLIS = 100;
+
+    private final DataParser parser;
+    private final InputStream in;
+    private final CancellationToken cancellation;
+    private final BlockingQueue<List<PhoneRecord>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private volatile List<String> originalColumnNames;
+    private volatile Throwable failure;
+    private Thread reader;
+    private boolean complete;
+
+    public RecordStream(DataParser parser, InputStream in) {
+        this(parser, in, CancellationToken.NONE);
+    }
+
+    /** Reading stops, and the data is marked truncated, once the token is cancelled. */
+    public RecordStream(DataParser parser, InputStream in, CancellationToken cancellation) {
+        super(new ColumnarRecords());
+        this.parser = parser;
+        this.in = in;
+        this.cancellation = cancellation;
+    }
+
+    /** Start reading; records become available to recordsToValidate as they are parsed. */
+    public void start() {
+        reader = new Thread(this::read, "stream-parser");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void read() {
+        HeapMonitor.Adaptive batchSize = HeapMonitor.get().getParseBatch();
+        List<PhoneRecord> batch = new ArrayList<>();
+        try {
+            parser.parse(in, new DataParser.RecordSink() {
+                @Override
+                public void columnNames(List<String> names) {
+                    originalColumnNames = names == null || names.isEmpty() ? null : names;
+                }
+
+                @Override
+                public void record(PhoneRecord record) {
+                    batch.add(record);
+                    if (batch.size() >= batchSize.get()) {
+                        cancellation.throwIfCancelled();
+                        put(new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                }
+            });
+            if (!batch.isEmpty()) {
+                put(batch);
+            }
+        } catch (CancellationException e) {
+            markTruncated();
+        } catch (Throwable t) {
+            failure = t;
+            // The records read before the failure are still validated first
+            if (!batch.isEmpty()) {
+                try {
+                    put(batch);
+                } catch (CancellationException e) {
+                    markTruncated();
+                }
+            }
+        } finally {
+            put(END);
+        }
+    }
+
+    /**
+     * Once cancelled, the validator stops taking batches, so the queue is not waited on: a
+     * batch is dropped (CancellationException), and END clears the queue to make room.
+     */
+    private void put(List<PhoneRecord> batch) {
+        try {
+            HeapMonitor.get().throttle(() -> queue.isEmpty() || cancellation.isCancelled());
+            while (!queue.offer(batch, PUT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancellation.isCancelled()) {
+                    if (batch != END) {
+                        throw new CancellationException(cancellation.getReason());
+                    }
+                    queue.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading input", e);
+        }
+    }
+
+    @Override
+    public Iterable<PhoneRecord> recordsToValidate() {
+        if (reader == null) {
+            throw new IllegalStateException("RecordStream not started");
+        }
+        return () -> new Iterator<PhoneRecord>() {
+            private List<PhoneRecord> batch = new ArrayList<>(0);
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == batch.size() && !complete) {
+                    try {
+                        batch = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for input", e);
+                    }
+                    next = 0;
+                    if (batch == END) {
+                        complete = true;
+                        if (failure != null) {
+                            throw failure instanceof IOException
+                                    ? new UncheckedIOException((IOException) failure)
+                                    : new IllegalStateException("Reading input failed: " + failure.getMessage(), failure);
+                        }
+                    }
+                }
+                return next < batch.size();
+            }
+
+            @Override
+            public PhoneRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                PhoneRecord record = batch.get(next++);
+                getRecords().add(record);
+                return record;
+            }
+        };
+    }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public List<String> getOriginalColumnNames() {
+        return originalColumnNames;
+    }
+}
@@ -0,0 +1,259 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonemetadata.PhoneMetadata;
+import com.google.i18n.phonenumbers.Phonemetadata.PhoneNumberDesc;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import com.google.i18n.phonenumbers.metadata.DefaultMetadataDependenciesProvider;
+import com.google.i18n.phonenumbers.metadata.source.MetadataSource;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Optional replacement for PhoneNumberUtil.isValidNumber on the highest-volume calling codes,
+ * enabled with --fast-path / --fast-regions.
+ *
+ * For each configured region, every region sharing its calling code (all of NANPA for US) is
+ * compiled from libphonenumber metadata into DigitDfa automata, and isValidNumber is replayed
+ * on the national significant number exactly as libphonenumber does it:
+ *   - with several regions on the code, the first whose leading-digits pattern matches a
+ *     prefix, or that has no such pattern but recognises a number type, is chosen;
+ *   - the number is valid for that region if the general description and at least one type
+ *     description match, each checking its own possible lengths first.
+ * Mobile is skipped where the metadata marks it identical to fixed line, as libphonenumber does.
+ * A calling code whose patterns cannot all be compiled is left to libphonenumber;
+ * FastPathHarness checks the answers against libphonenumber on generated corpora.
+ */
+public final class RegionFastPath {
+
+    public static final List<String> DEFAULT_REGIONS = Collections.unmodifiableList(
+            Arrays.asList("US", "BR", "MX", "IN", "PK"));
+
+    /** Results of {@link #check}. */
+    public static final int INVALID = 0;
+    public static final int VALID = 1;
+    public static final int NOT_COVERED = -1;
+
+    private static final int MAX_CALLING_CODE = 999;
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private static final AtomicReference<RegionFastPath> CURRENT = new AtomicReference<>();
+
+    /** Automata for one region; pattern 0 of {@code descriptions} is the general description. */
+    private static final class CompiledRegion {
+        final String region;
+        final DigitDfa leadingDigits;
+        final DigitDfa descriptions;
+        final int[] lengthMasks;
+
+        CompiledRegion(String region, DigitDfa leadingDigits, DigitDfa descriptions, int[] lengthMasks) {
+            this.region = region;
+            this.leadingDigits = leadingDigits;
+            this.descriptions = descriptions;
+            this.lengthMasks = lengthMasks;
+        }
+    }
+
+    private final CompiledRegion[][] byCallingCode = new CompiledRegion[MAX_CALLING_CODE + 1][];
+    private final List<String> skipped = new ArrayList<>();
+    private int stateCount;
+
+    private RegionFastPath() {
+    }
+
+    /** The installed fast path, or null when disabled. */
+    public static RegionFastPath current() {
+        return CURRENT.get();
+    }
+
+    public static void install(RegionFastPath fastPath) {
+        CURRENT.set(fastPath);
+    }
+
+    /**
+     * Compile the calling codes of the given regions. Codes whose metadata uses pattern syntax
+     * DigitDfa does not support are listed by {@link #getSkipped} and keep using libphonenumber.
+     * @throws IllegalArgumentException for an unknown region or unreadable metadata
+     */
+    public static RegionFastPath compile(PhoneNumberUtil util, Collection<String> regions) {
+        MetadataSource source;
+        try {
+            source = DefaultMetadataDependenciesProvider.getInstance().getPhoneNumberMetadataSource();
+        } catch (LinkageError e) {
+            throw new IllegalArgumentException("libphonenumber metadata is not accessible: " + e);
+        }
+        RegionFastPath fastPath = new RegionFastPath();
+        for (String region : regions) {
+            int callingCode = util.getCountryCodeForRegion(region.trim().toUpperCase(Locale.ROOT));
+            if (callingCode <= 0 || callingCode > MAX_CALLING_CODE) {
+                throw new IllegalArgumentException("Unknown region for fast path: " + region);
+            }
+            if (fastPath.byCallingCode[callingCode] != null) {
+                continue;
+            }
+            List<String> shared = util.getRegionCodesForCountryCode(callingCode);
+            CompiledRegion[] compiled = new CompiledRegion[shared.size()];
+            try {
+                for (int i = 0; i < compiled.length; i++) {
+                    String code = shared.get(i);
+                    PhoneMetadata metadata = "001".equals(code)
+                            ? source.getMetadataForNonGeographicalRegion(callingCode)
+                            : source.getMetadataForRegion(code);
+                    if (metadata == null) {
+                        throw new IllegalArgumentException("No metadata for " + code);
+                    }
+                    compiled[i] = compileRegion(code, metadata);
+                    fastPath.stateCount += compiled[i].descriptions.getStateCount()
+                            + (compiled[i].leadingDigits != null ? compiled[i].leadingDigits.getStateCount() : 0);
+                }
+                fastPath.byCallingCode[callingCode] = compiled;
+            } catch (IllegalArgumentException e) {
+                fastPath.skipped.add("+" + callingCode + " (" + e.getMessage() + ")");
+            }
+        }
+        return fastPath;
+    }
+
+    private static CompiledRegion compileRegion(String region, PhoneMetadata metadata) {
+        List<PhoneNumberDesc> descriptions = new ArrayList<>(Arrays.asList(
+                metadata.getGeneralDesc(),
+                metadata.getPremiumRate(), metadata.getTollFree(), metadata.getSharedCost(),
+                metadata.getVoip(), metadata.getPersonalNumber(), metadata.getPager(),
+                metadata.getUan(), metadata.getVoicemail(), metadata.getFixedLine()));
+        if (!metadata.getSameMobileAndFixedLinePattern()) {
+            descriptions.add(metadata.getMobile());
+        }
+
+        // An empty pattern never matches; it stays in the list as null so indexes line up
+        List<String> patterns = new ArrayList<>();
+        int[] lengthMasks = new int[descriptions.size()];
+        for (int i = 0; i < descriptions.size(); i++) {
+            PhoneNumberDesc description = descriptions.get(i);
+            String pattern = description.getNationalNumberPattern();
+            if (pattern.isEmpty()) {
+                patterns.add(null);
+                lengthMasks[i] = 0;
+            } else {
+                patterns.add(pattern);
+                lengthMasks[i] = MetadataPrefilter.lengthMask(description.getPossibleLengthList());
+            }
+        }
+        DigitDfa leadingDigits = metadata.hasLeadingDigits() ? DigitDfa.compile(metadata.getLeadingDigits()) : null;
+        return new CompiledRegion(region, leadingDigits, DigitDfa.compile(patterns), lengthMasks);
+    }
+
+    /**
+     * @return {@link #VALID} or {@link #INVALID} as PhoneNumberUtil.isValidNumber would answer,
+     *         or {@link #NOT_COVERED} if the number's calling code is not compiled
+     */
+    public int check(PhoneNumber number) {
+        int callingCode = number.getCountryCode();
+        CompiledRegion[] regions = callingCode >= 0 && callingCode <= MAX_CALLING_CODE
+                ? byCallingCode[callingCode] : null;
+        long national = number.getNationalNumber();
+        if (regions == null || national < 0) {
+            return NOT_COVERED;
+        }
+        int zeros = number.isItalianLeadingZero() && number.getNumberOfLeadingZeros() > 0
+                ? number.getNumberOfLeadingZeros() : 0;
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && national >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+
+        if (regions.length == 1) {
+            return isValidFor(regions[0], zeros, national, digits) ? VALID : INVALID;
+        }
+        for (CompiledRegion region : regions) {
+            if (region.leadingDigits != null) {
+                if (startsWith(region.leadingDigits, zeros, national, digits)) {
+                    return isValidFor(region, zeros, national, digits) ? VALID : INVALID;
+                }
+            } else if (isValidFor(region, zeros, national, digits)) {
+                return VALID;
+            }
+        }
+        return INVALID;
+    }
+
+    private static boolean isValidFor(CompiledRegion region, int zeros, long national, int digits) {
+        DigitDfa dfa = region.descriptions;
+        int state = dfa.start();
+        for (int i = 0; i < zeros && state >= 0; i++) {
+            state = dfa.step(state, 0);
+        }
+        for (int i = digits - 1; i >= 0 && state >= 0; i--) {
+            state = dfa.step(state, (int) (national / POWERS_OF_TEN[i] % 10));
+        }
+        if (state < 0) {
+            return false;
+        }
+        int length = zeros + digits;
+        int matched = dfa.acceptsAt(state);
+        if ((matched & 1) == 0 || !hasLength(region.lengthMasks[0], length)) {
+            return false;
+        }
+        for (int i = 1; i < region.lengthMasks.length; i++) {
+            if ((matched & (1 << i)) != 0 && hasLength(region.lengthMasks[i], length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Matcher.lookingAt: some prefix of the number, possibly empty, matches. */
+    private static boolean startsWith(DigitDfa dfa, int zeros, long national, int digits) {
+        int state = dfa.start();
+        if (dfa.acceptsAt(state) != 0) {
+            return true;
+        }
+        for (int i = 0; i < zeros + digits; i++) {
+            int digit = i < zeros ? 0 : (int) (national / POWERS_OF_TEN[zeros + digits - 1 - i] % 10);
+            state = dfa.step(state, digit);
+            if (state < 0) {
+                return false;
+            }
+            if (dfa.acceptsAt(state) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasLength(int mask, int length) {
+        return mask == MetadataPrefilter.ALL_LENGTHS || (length < 32 && (mask & (1 << length)) != 0);
+    }
+
+    /** Compiled calling codes, e.g. "+1 (25 regions)". */
+    public List<String> describe() {
+        List<String> codes = new ArrayList<>();
+        for (int callingCode = 0; callingCode <= MAX_CALLING_CODE; callingCode++) {
+            CompiledRegion[] regions = byCallingCode[callingCode];
+            if (regions != null) {
+                codes.add("+" + callingCode + (regions.length == 1
+                        ? " (" + regions[0].region + ")" : " (" + regions.length + " regions)"));
+            }
+        }
+        return codes;
+    }
+
+    public boolean covers(int callingCode) {
+        return callingCode >= 0 && callingCode <= MAX_CALLING_CODE && byCallingCode[callingCode] != null;
+    }
+
+    public List<String> getSkipped() {
+        return Collections.unmodifiableList(skipped);
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+}
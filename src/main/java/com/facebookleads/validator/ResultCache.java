@@ -0,0 +1,206 @@
+package com.facebookleads.validator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of finished runs keyed by input content (--result-cache DIR), so an export
+ * uploaded twice is validated once.
+ *
+ * The key is the SHA-256 of a settings fingerprint followed by the input bytes, read in 1 MB
+ * chunks. The fingerprint covers everything besides the content that shapes the outputs: the
+ * rules, libphonenumber and country config (DeltaManifest.configFingerprint), the input format
+ * and the output options. An entry is a directory DIR/&lt;key&gt;/ with exactly the files the
+ * run wrote (ValidationResult.getOutputFiles). Entries are published by renaming a complete
+ * temp directory, so a reader never sees half of one; a hit removes any other output files an
+ * earlier run left in the output directory, copies the entry's files in (copies, not links:
+ * the next run into that directory rewrites its files in place) and touches the entry. After each store
+ * the least recently used entries are deleted until the cache fits its size limit.
+ */
+public class ResultCache {
+
+    public static final long DEFAULT_MAX_BYTES = 2048L * 1024 * 1024;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final String TEMP_MARKER = ".tmp";
+    /** Temp directories older than this were left by a run that died while storing. */
+    private static final long STALE_TEMP_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final Path dir;
+    private final long maxBytes;
+
+    public ResultCache(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Settings besides the input content that change the outputs of a single-file run. */
+    public static String fingerprint(String inputFile, CliOptions options) {
+        return DeltaManifest.configFingerprint()
+                + ";format=" + ParserFactory.getFileExtension(inputFile).toLowerCase()
+                + ";formats=" + options.getFormats()
+                + ";dedupe=" + options.isDedupe() + "," + options.isDropDuplicates()
+                + ";timing=" + options.getRecordBudgetMillis() + "," + options.getSlowRecordMillis()
+                + ";indexes=" + options.isE164Index() + "," + options.isPageIndex() + "," + options.isSearchIndex()
+                + ";pages=" + ResultPages.VERSION;
+    }
+
+    /** Hex SHA-256 of the fingerprint and the input's bytes. */
+    public static String key(Path input, String fingerprint) throws IOException {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        sha.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) 0);
+        byte[] buffer = new byte[BUFFER_BYTES];
+        try (InputStream in = Files.newInputStream(input)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                sha.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : sha.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /** The entry directory for a key, or null on a miss. */
+    public Path lookup(String key) {
+        Path entry = dir.resolve(key);
+        return Files.isDirectory(entry) ? entry : null;
+    }
+
+    /**
+     * Make outputDir hold a cached run's outputs and mark the entry as recently used: output
+     * files the entry does not have (an index from an earlier run, say) are deleted, the others
+     * replaced. Returns false on a miss, including an entry evicted while it was being copied.
+     */
+    public boolean restore(String key, Path outputDir) throws IOException {
+        Path entry = lookup(key);
+        if (entry == null) {
+            return false;
+        }
+        Files.createDirectories(outputDir);
+        try {
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> entryFiles = Files.newDirectoryStream(entry)) {
+                entryFiles.forEach(files::add);
+            }
+            Set<String> names = new HashSet<>();
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+            for (String name : OutputGenerator.OUTPUT_FILES) {
+                if (!names.contains(name)) {
+                    Files.deleteIfExists(outputDir.resolve(name));
+                }
+            }
+            for (Path file : files) {
+                Files.copy(file, outputDir.resolve(file.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Keep the files a run wrote to outputDir under key, then evict least recently used
+     * entries down to the size limit.
+     * @param files names of the files in outputDir, as recorded by ValidationResult.getOutputFiles
+     */
+    public void store(String key, Path outputDir, Collection<String> files) throws IOException {
+        if (lookup(key) != null) {
+            return;
+        }
+        Files.createDirectories(dir);
+        Path temp = Files.createTempDirectory(dir, key + TEMP_MARKER);
+        try {
+            for (String file : files) {
+                Files.copy(outputDir.resolve(file), temp.resolve(file));
+            }
+            try {
+                Files.move(temp, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // Stored meanwhile by a concurrent run of the same input
+            }
+        } finally {
+            if (Files.exists(temp)) {
+                CheckpointManager.deleteRecursively(temp);
+            }
+        }
+        evict(key);
+    }
+
+    /** Delete least recently used entries (never keep) until the cache fits maxBytes. */
+    private void evict(String keep) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, Long> used = new HashMap<>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            for (Path child : children) {
+                long modified = Files.getLastModifiedTime(child).toMillis();
+                if (child.getFileName().toString().contains(TEMP_MARKER)) {
+                    if (now - modified > STALE_TEMP_MILLIS) {
+                        CheckpointManager.deleteRecursively(child);
+                    }
+                    continue;
+                }
+                long size = sizeOf(child);
+                total += size;
+                sizes.put(child, size);
+                used.put(child, modified);
+                entries.add(child);
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparing(used::get));
+        int evicted = 0;
+        long freed = 0;
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (entry.getFileName().toString().equals(keep)) {
+                continue;
+            }
+            CheckpointManager.deleteRecursively(entry);
+            total -= sizes.get(entry);
+            freed += sizes.get(entry);
+            evicted++;
+        }
+        System.out.println(String.format("🧹 Result cache: evicted %d least recently used run(s), %.1f MB",
+                evicted, freed / (1024.0 * 1024.0)));
+    }
+
+    private static long sizeOf(Path entry) throws IOException {
+        try (Stream<Path> files = Files.list(entry)) {
+            return files.mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.facebookleads.validator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Collects the outcome of each input row, in row order, during one validation run.
+ *
+ * Outcomes go into ResultColumns, which only add a bit and a reference per row to the
+ * input already in memory. With a heap budget, the estimated heap of the columns and the
+ * outcomes they hold is tracked; if it is exceeded (or the share of it left under heap
+ * pressure, see RecordStore.Budget), the rows so far are moved into RecordStores and the
+ * rest of the run goes there too, spilling to temp files as before.
+ */
+public class ResultCollector {
+
+    // Heap of an outcome no other row shares: ValidationOutcome, FormattedNumber and its
+    // PhoneNumber (formats are only added when written). Invalid outcomes are mostly shared.
+    private static final int VALID_OUTCOME_BYTES = 160;
+    private static final int INVALID_OUTCOME_BYTES = 32;
+
+    private final List<PhoneRecord> rows;
+    private final RecordStore.Budget budget;
+    private ResultColumns columns;
+    private RecordStore<ValidPhoneRecord> validNumbers;
+    private RecordStore<InvalidPhoneRecord> invalidNumbers;
+    private int size;
+
+    /** @param heapBudgetBytes heap for results before they spill to temp files; 0 never spills */
+    public ResultCollector(List<PhoneRecord> rows, long heapBudgetBytes) {
+        this.rows = rows;
+        this.budget = new RecordStore.Budget(heapBudgetBytes);
+        this.columns = new ResultColumns(rows);
+    }
+
+    /** Record the outcome of the next row. */
+    public void add(ValidationOutcome outcome) throws IOException {
+        int index = size++;
+        if (columns != null) {
+            columns.add(outcome);
+            if (budget.getLimitBytes() > 0 && estimateColumnBytes() > budget.getEffectiveLimitBytes()) {
+                moveToStores();
+            }
+        } else if (outcome.isValid()) {
+            validNumbers.add(outcome.toValidRecord(rows.get(index)));
+        } else {
+            invalidNumbers.add(outcome.toInvalidRecord(rows.get(index)));
+        }
+    }
+
+    private long estimateColumnBytes() {
+        return columns.estimateHeapBytes() + (long) columns.getValidCount() * VALID_OUTCOME_BYTES
+                + (long) columns.getInvalidCount() * INVALID_OUTCOME_BYTES;
+    }
+
+    private void moveToStores() throws IOException {
+        validNumbers = ValidationResult.newValidStore(budget);
+        invalidNumbers = ValidationResult.newInvalidStore(budget);
+        ResultColumns moved = columns;
+        columns = null;
+        for (int i = 0; i < moved.size(); i++) {
+            ValidationOutcome outcome = moved.getOutcome(i);
+            if (outcome.isValid()) {
+                validNumbers.add(outcome.toValidRecord(moved.getRow(i)));
+            } else {
+                invalidNumbers.add(outcome.toInvalidRecord(moved.getRow(i)));
+            }
+        }
+    }
+
+    public int getValidCount() {
+        return columns != null ? columns.getValidCount() : validNumbers.size();
+    }
+
+    public int getInvalidCount() {
+        return columns != null ? columns.getInvalidCount() : invalidNumbers.size();
+    }
+
+    /** Invalid rows collected so far, e.g. to count the reasons of restored rows. */
+    public RecordSequence<InvalidPhoneRecord> getInvalidNumbers() {
+        return columns != null ? columns.invalidRecords() : invalidNumbers;
+    }
+
+    /** True while results are held as columns rather than spillable record stores. */
+    public boolean isColumnar() {
+        return columns != null;
+    }
+
+    public int getRunCount() {
+        return columns != null ? 0 : validNumbers.getRunCount() + invalidNumbers.getRunCount();
+    }
+
+    public long getSpilledBytes() {
+        return columns != null ? 0 : validNumbers.getSpilledBytes() + invalidNumbers.getSpilledBytes();
+    }
+
+    public long getLimitBytes() {
+        return budget.getLimitBytes();
+    }
+
+    public ValidationResult toResult(List<String> originalColumnNames) {
+        return columns != null
+                ? new ValidationResult(columns, originalColumnNames)
+                : new ValidationResult(validNumbers, invalidNumbers, originalColumnNames);
+    }
+}
@@ -0,0 +1,153 @@
+package com.facebookleads.validator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Column-oriented validation results for one input, referencing the input rows by index
+ * instead of copying their fields.
+ *
+ * Per row there is one bit (valid or not) and one reference to the row's ValidationOutcome,
+ * which holds everything the cascade computed. Outcomes are immutable and shared: the cache
+ * hands the same instance to every row with the same number and country, and parameterless
+ * invalid outcomes are constants. ValidPhoneRecord and InvalidPhoneRecord views are rebuilt
+ * from the input row and its outcome while iterating, so the outputs are exactly what the
+ * record lists produced. The input list may grow (a RecordStream) but must not otherwise
+ * change while the columns are in use.
+ */
+public class ResultColumns {
+
+    private final List<PhoneRecord> rows;
+    private final BitSet valid;
+    private ValidationOutcome[] outcomes;
+    private int size;
+    private int validCount;
+
+    public ResultColumns(List<PhoneRecord> rows) {
+        this.rows = rows;
+        this.valid = new BitSet(rows.size());
+        this.outcomes = new ValidationOutcome[rows.size()];
+    }
+
+    /** Record the outcome of the next row. */
+    public void add(ValidationOutcome outcome) {
+        if (size == outcomes.length) {
+            if (rows.size() <= size) {
+                throw new IllegalStateException("More outcomes than input rows (" + rows.size() + ")");
+            }
+            // Streamed input: rows are appended while they are validated
+            outcomes = Arrays.copyOf(outcomes, Math.max(rows.size(), size + (size >> 1) + 1024));
+        }
+        if (outcome.isValid()) {
+            valid.set(size);
+            validCount++;
+        }
+        outcomes[size++] = outcome;
+    }
+
+    /** Rows recorded so far. */
+    public int size() {
+        return size;
+    }
+
+    public int getValidCount() {
+        return validCount;
+    }
+
+    public int getInvalidCount() {
+        return size - validCount;
+    }
+
+    public boolean isValid(int row) {
+        return valid.get(row);
+    }
+
+    public ValidationOutcome getOutcome(int row) {
+        return outcomes[row];
+    }
+
+    public PhoneRecord getRow(int row) {
+        return rows.get(row);
+    }
+
+    /** Heap held by the columns, not counting the (shared) outcomes or the input. */
+    public long estimateHeapBytes() {
+        return 4L * outcomes.length + valid.size() / 8;
+    }
+
+    /** Valid rows in row order, as ValidPhoneRecord views. */
+    public RecordSequence<ValidPhoneRecord> validRecords() {
+        return new RecordSequence<ValidPhoneRecord>() {
+            @Override
+            public int size() {
+                return validCount;
+            }
+
+            @Override
+            public Iterator<ValidPhoneRecord> iterator() {
+                return new RowIterator<ValidPhoneRecord>(true) {
+                    @Override
+                    ValidPhoneRecord view(int row) {
+                        return outcomes[row].toValidRecord(rows.get(row));
+                    }
+                };
+            }
+        };
+    }
+
+    /** Invalid rows in row order, as InvalidPhoneRecord views. */
+    public RecordSequence<InvalidPhoneRecord> invalidRecords() {
+        return new RecordSequence<InvalidPhoneRecord>() {
+            @Override
+            public int size() {
+                return size - validCount;
+            }
+
+            @Override
+            public Iterator<InvalidPhoneRecord> iterator() {
+                return new RowIterator<InvalidPhoneRecord>(false) {
+                    @Override
+                    InvalidPhoneRecord view(int row) {
+                        return outcomes[row].toInvalidRecord(rows.get(row));
+                    }
+                };
+            }
+        };
+    }
+
+    /** Walks the rows whose valid bit equals {@code validRows}. */
+    private abstract class RowIterator<T> implements Iterator<T> {
+        private final boolean validRows;
+        private int next;
+
+        RowIterator(boolean validRows) {
+            this.validRows = validRows;
+            this.next = find(0);
+        }
+
+        private int find(int from) {
+            int row = validRows ? valid.nextSetBit(from) : valid.nextClearBit(from);
+            return row < 0 || row >= size ? -1 : row;
+        }
+
+        abstract T view(int row);
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public T next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            int row = next;
+            next = find(row + 1);
+            return view(row);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the heap that holding validation results adds on top of the input, per record:
+ * once as ValidPhoneRecord/InvalidPhoneRecord lists (what an all-in-heap RecordStore keeps)
+ * and once as ResultColumns over the same input.
+ *
+ * Builds N synthetic rows in a ColumnarRecords store, like the parsers do, and one outcome per
+ * row: valid rows get their own parsed number, invalid rows share the per-region outcomes the
+ * validator hands out. Heap is read from the MemoryMXBean after forcing GC, so run it with
+ * enough -Xmx for the record lists and nothing else in the JVM.
+ *
+ * Usage: java -cp phone-validator.jar com.facebookleads.validator.ResultHeapHarness
+ *          [--records N] [--invalid-percent P] [--seed S]
+ */
+public class ResultHeapHarness {
+
+    private static final String[] REGIONS = { "BR", "US", "MX", "AR", "CO" };
+    private static final int[] CALLING_CODES = { 55, 1, 52, 54, 57 };
+
+    public static void main(String[] args) {
+        int records = 1_000_000;
+        int invalidPercent = 20;
+        long seed = 42;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--records": records = CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    case "--invalid-percent": invalidPercent = CliOptions.parseNonNegativeInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    case "--seed": seed = CliOptions.parseNonNegativeInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (invalidPercent > 100) {
+                throw new IllegalArgumentException("--invalid-percent must be at most 100");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.out.println("Usage: ResultHeapHarness [--records N] [--invalid-percent P] [--seed S]");
+            System.exit(1);
+            return;
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Random random = new Random(seed);
+        ColumnarRecords rows = new ColumnarRecords();
+        ValidationOutcome[] outcomes = new ValidationOutcome[records];
+        ValidationOutcome[] notValid = new ValidationOutcome[REGIONS.length];
+        for (int r = 0; r < REGIONS.length; r++) {
+            notValid[r] = ValidationOutcome.invalid(InvalidReason.NOT_VALID, REGIONS[r]);
+        }
+        for (int i = 0; i < records; i++) {
+            int r = random.nextInt(REGIONS.length);
+            long nationalNumber = 1_000_000_000L + (random.nextLong() & Long.MAX_VALUE) % 9_000_000_000L;
+            String id = "l:" + (100_000_000_000L + i);
+            String email = "lead" + i + "@example.com";
+            String name = "Lead " + i;
+            String phone = "+" + CALLING_CODES[r] + nationalNumber;
+            String platform = i % 2 == 0 ? "fb" : "ig";
+            rows.add(new PhoneRecord(i + 2, id, email, name, phone, REGIONS[r], platform,
+                    String.join(",", id, email, name, phone, REGIONS[r], platform),
+                    Arrays.asList(id, email, name, phone, REGIONS[r], platform)));
+            if (random.nextInt(100) < invalidPercent) {
+                outcomes[i] = notValid[r];
+            } else {
+                PhoneNumber number = new PhoneNumber().setCountryCode(CALLING_CODES[r]).setNationalNumber(nationalNumber);
+                outcomes[i] = ValidationOutcome.valid(FormattedNumber.of(number), "+" + CALLING_CODES[r], REGIONS[r], "auto-detect");
+            }
+        }
+        long inputBytes = usedHeap(memory);
+        System.out.println(String.format("Input: %,d rows, %d%% invalid, ~%.1f MB in ColumnarRecords (estimate)",
+                records, invalidPercent, rows.estimateHeapBytes() / (1024.0 * 1024.0)));
+
+        // Records copied out of the input, as before
+        long before = usedHeap(memory);
+        List<ValidPhoneRecord> valid = new ArrayList<>();
+        List<InvalidPhoneRecord> invalid = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            if (outcomes[i].isValid()) {
+                valid.add(outcomes[i].toValidRecord(rows.get(i)));
+            } else {
+                invalid.add(outcomes[i].toInvalidRecord(rows.get(i)));
+            }
+        }
+        long listBytes = usedHeap(memory) - before;
+        int held = valid.size() + invalid.size();
+        valid = null;
+        invalid = null;
+
+        // Columns referencing the input
+        before = usedHeap(memory);
+        ResultColumns columns = new ResultColumns(rows);
+        for (ValidationOutcome outcome : outcomes) {
+            columns.add(outcome);
+        }
+        long columnBytes = usedHeap(memory) - before;
+
+        System.out.println(String.format("Record lists:  %,12d bytes  %7.1f bytes/record", listBytes, listBytes / (double) held));
+        System.out.println(String.format("ResultColumns: %,12d bytes  %7.1f bytes/record", columnBytes, columnBytes / (double) columns.size()));
+        System.out.println(String.format("Saving: %.1f bytes/record (heap for input and outcomes: %.1f MB)",
+                (listBytes - columnBytes) / (double) records, inputBytes / (1024.0 * 1024.0)));
+        // Keep the input and outcomes reachable until the measurements are done
+        if (rows.size() != outcomes.length) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,723 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Paged access to the valid and invalid records of a run, written as results.pages with
+ * --page-index, so a page of a large job can be served sorted and filtered without parsing
+ * valid_numbers.json and invalid_numbers.json.
+ *
+ * Layout (big-endian, like manifest.bin):
+ *   header  magic "PVPAGES1", int version, int column count, then per table (valid, invalid)
+ *           long row count and long table offset, long text offset, long text bytes (64 bytes)
+ *   table   rows:   one fixed-width entry per row, in output order: long text offset (from the
+ *                   text section), int text length, one short dictionary code per column
+ *           sorted: per column, the row indexes ordered by that column's value (stable)
+ *           dicts:  per column, int value count n; for codes 0..n the int start and int count
+ *                   of that value's rows in the sorted table; then values 1..n, each an int
+ *                   byte length and UTF-8. Code 0 is "no value"; codes follow the values' sort order
+ *   text    each record as compact JSON, the same fields as valid_numbers.json/invalid_numbers.json
+ *
+ * The columns are the region (for invalid rows without one, the input country as a region
+ * code, or as given when it is not a known country), the number
+ * type, the validation method and the error code (the InvalidReason name).
+ *
+ * Since codes are assigned in sort order, the rows with one value are a contiguous slice of
+ * that column's sorted table. A page filtered on one column, in row order or sorted by that
+ * column, is read straight from the slice; other combinations walk the slice of the most
+ * selective filter (or the sort table) and check the remaining codes in the row table.
+ * The row and sort tables are memory-mapped; record text is read per page.
+ *
+ * CLI: java -cp phone-validator.jar com.facebookleads.validator.ResultPages &lt;pages-file&gt;
+ *        [--invalid] [--region R] [--type T] [--method M] [--error E] [--sort column] [--desc]
+ *        [--offset N] [--limit N] | --stats | --bench [--pages N]
+ */
+public class ResultPages implements Closeable {
+
+    public static final String FILE_NAME = "results.pages";
+
+    private static final byte[] MAGIC = "PVPAGES1".getBytes(StandardCharsets.US_ASCII);
+    // 2: dictionary values are length-prefixed UTF-8 rather than writeUTF's 64 KB-limited form
+    static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int ROW_FIXED_BYTES = 12;
+    private static final int MAX_CODES = 0xFFFF;
+
+    /** The two record tables: valid_numbers and invalid_numbers. */
+    public enum Table { VALID, INVALID }
+
+    /** Columns pages can be filtered and sorted by. */
+    public enum Column {
+        REGION, TYPE, METHOD, ERROR;
+
+        /** Parse a column name such as "region" or "error". */
+        public static Column parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown column: " + name + " (expected region, type, method, error)");
+            }
+        }
+    }
+
+    private static final int COLUMNS = Column.values().length;
+    private static final int ROW_BYTES = ROW_FIXED_BYTES + 2 * COLUMNS;
+
+    /** Filters, sort order and window of one page request. */
+    public static class Query {
+        private Table table = Table.VALID;
+        private final Map<Column, String> filters = new EnumMap<>(Column.class);
+        private Column sort;
+        private boolean descending;
+        private int offset;
+        private int limit = 50;
+
+        public Query table(Table table) {
+            this.table = table;
+            return this;
+        }
+
+        /** Keep only rows whose column has this value. */
+        public Query filter(Column column, String value) {
+            filters.put(column, value);
+            return this;
+        }
+
+        /** Order by a column's value, rows with equal values in output order; null keeps output order. */
+        public Query sort(Column column, boolean descending) {
+            this.sort = column;
+            this.descending = descending;
+            return this;
+        }
+
+        public Query offset(int offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        public Query limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    /** One page of records, as JSON text, and the number of rows matching the query. */
+    public static class Page {
+        private final int total;
+        private final int offset;
+        private final List<String> records;
+
+        Page(int total, int offset, List<String> records) {
+            this.total = total;
+            this.offset = offset;
+            this.records = records;
+        }
+
+        public int getTotal() { return total; }
+        public int getOffset() { return offset; }
+        public List<String> getRecords() { return records; }
+
+        /** {"total": n, "offset": n, "records": [...]}, with the records embedded as written. */
+        public void writeJson(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("total").value(total);
+            out.name("offset").value(offset);
+            out.name("records").beginArray();
+            for (String record : records) {
+                out.jsonValue(record);
+            }
+            out.endArray();
+            out.endObject();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Writing
+
+    /** Codes and text lengths of one table while it is written. */
+    private static final class TableBuilder {
+        private final List<Map<String, Integer>> codes = new ArrayList<>();
+        private final List<List<String>> values = new ArrayList<>();
+        private char[][] rowCodes = new char[COLUMNS][1024];
+        private int[] lengths = new int[1024];
+        private int count;
+        private int[][] sorted;
+        private byte[] dictionary;
+
+        TableBuilder() {
+            for (int c = 0; c < COLUMNS; c++) {
+                codes.add(new HashMap<>());
+                values.add(new ArrayList<>());
+            }
+        }
+
+        void add(int length, String... columnValues) throws IOException {
+            if (count == lengths.length) {
+                lengths = Arrays.copyOf(lengths, count * 2);
+                for (int c = 0; c < COLUMNS; c++) {
+                    rowCodes[c] = Arrays.copyOf(rowCodes[c], count * 2);
+                }
+            }
+            lengths[count] = length;
+            for (int c = 0; c < COLUMNS; c++) {
+                rowCodes[c][count] = (char) code(c, columnValues[c]);
+            }
+            count++;
+        }
+
+        /** Provisional code in order of first appearance; renumbered in sort order by finish(). */
+        private int code(int column, String value) throws IOException {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(column).get(value);
+            if (code == null) {
+                if (values.get(column).size() == MAX_CODES) {
+                    throw new IOException("Too many distinct " + Column.values()[column].name().toLowerCase() + " values");
+                }
+                values.get(column).add(value);
+                code = values.get(column).size();
+                codes.get(column).put(value, code);
+            }
+            return code;
+        }
+
+        /** Renumber codes in value order and build the sorted tables and dictionaries. */
+        void finish() throws IOException {
+            sorted = new int[COLUMNS][];
+            ByteArrayOutputStream dictionaries = new ByteArrayOutputStream();
+            DataOutputStream dict = new DataOutputStream(dictionaries);
+            for (int c = 0; c < COLUMNS; c++) {
+                List<String> distinct = values.get(c);
+                Integer[] order = new Integer[distinct.size()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, Comparator.comparing(distinct::get));
+                char[] remap = new char[distinct.size() + 1];
+                for (int i = 0; i < order.length; i++) {
+                    remap[order[i] + 1] = (char) (i + 1);
+                }
+                // Counting sort by code keeps rows with equal values in output order
+                int[] starts = new int[distinct.size() + 2];
+                for (int row = 0; row < count; row++) {
+                    rowCodes[c][row] = remap[rowCodes[c][row]];
+                    starts[rowCodes[c][row] + 1]++;
+                }
+                for (int code = 1; code < starts.length; code++) {
+                    starts[code] += starts[code - 1];
+                }
+                dict.writeInt(distinct.size());
+                for (int code = 0; code <= distinct.size(); code++) {
+                    dict.writeInt(starts[code]);
+                    dict.writeInt(starts[code + 1] - starts[code]);
+                }
+                for (Integer index : order) {
+                    byte[] value = distinct.get(index).getBytes(StandardCharsets.UTF_8);
+                    dict.writeInt(value.length);
+                    dict.write(value);
+                }
+                int[] next = Arrays.copyOf(starts, starts.length - 1);
+                sorted[c] = new int[count];
+                for (int row = 0; row < count; row++) {
+                    sorted[c][next[rowCodes[c][row]]++] = row;
+                }
+            }
+            dict.flush();
+            dictionary = dictionaries.toByteArray();
+        }
+
+        /** Bytes of the finished table. */
+        long size() {
+            return (long) count * (ROW_BYTES + 4 * COLUMNS) + dictionary.length;
+        }
+
+        /** Write the finished table; returns the text offset following its last record. */
+        long writeTo(DataOutputStream out, long textStart) throws IOException {
+            long offset = textStart;
+            for (int row = 0; row < count; row++) {
+                out.writeLong(offset);
+                out.writeInt(lengths[row]);
+                for (int c = 0; c < COLUMNS; c++) {
+                    out.writeShort(rowCodes[c][row]);
+                }
+                offset += lengths[row];
+            }
+            for (int[] column : sorted) {
+                for (int row : column) {
+                    out.writeInt(row);
+                }
+            }
+            out.write(dictionary);
+            return offset;
+        }
+    }
+
+    /**
+     * Write the records of a result, valid ones as exported (e.g. without dropped duplicates).
+     * @param formats formatted fields written for valid numbers, as in the JSON outputs
+     */
+    public static void write(Iterable<ValidPhoneRecord> valid, Iterable<InvalidPhoneRecord> invalid,
+                             Set<FormattedNumber.Field> formats, Path outputDir) throws IOException {
+        Gson gson = new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(ValidPhoneRecord.class, new ValidPhoneRecord.Json(formats))
+                .create();
+        Path target = outputDir.resolve(FILE_NAME);
+        Path temp = outputDir.resolve(FILE_NAME + ".tmp");
+        Path text = outputDir.resolve(FILE_NAME + ".text.tmp");
+        try {
+            TableBuilder validTable = new TableBuilder();
+            TableBuilder invalidTable = new TableBuilder();
+            long textBytes = 0;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(text), 1 << 16)) {
+                for (ValidPhoneRecord record : valid) {
+                    byte[] json = gson.toJson(record, ValidPhoneRecord.class).getBytes(StandardCharsets.UTF_8);
+                    out.write(json);
+                    textBytes += json.length;
+                    validTable.add(json.length, record.getRegion(),
+                            formats.contains(FormattedNumber.Field.TYPE) ? record.getType() : null,
+                            record.getValidationMethod(), null);
+                }
+                for (InvalidPhoneRecord record : invalid) {
+                    byte[] json = gson.toJson(record, InvalidPhoneRecord.class).getBytes(StandardCharsets.UTF_8);
+                    out.write(json);
+                    textBytes += json.length;
+                    ErrorDetail error = record.getErrorDetail();
+                    // Invalid rows rarely have a region; filter them by the country they came with
+                    String region = record.getRegion() != null ? record.getRegion() : countryRegion(record);
+                    invalidTable.add(json.length, region, record.getType(),
+                            record.getValidationMethod(), error != null ? error.getReason().name() : null);
+                }
+            }
+
+            validTable.finish();
+            invalidTable.finish();
+            long validOffset = HEADER_BYTES;
+            long invalidOffset = validOffset + validTable.size();
+            long textOffset = invalidOffset + invalidTable.size();
+            if (textOffset > Integer.MAX_VALUE) {
+                // Tables are kept to a single 2 GB mapping (about 40M rows)
+                System.err.println("⚠️  Warning: Too many records for " + FILE_NAME + ", skipping");
+                return;
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(COLUMNS);
+                out.writeLong(validTable.count);
+                out.writeLong(validOffset);
+                out.writeLong(invalidTable.count);
+                out.writeLong(invalidOffset);
+                out.writeLong(textOffset);
+                out.writeLong(textBytes);
+                long validTextBytes = validTable.writeTo(out, 0);
+                invalidTable.writeTo(out, validTextBytes);
+                Files.copy(text, out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(text);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Region code of the country an invalid row came with, so "Brazil", " brazil " and "BR" are
+     * one filter value; the trimmed text when it is not a known country, null when blank.
+     */
+    private static String countryRegion(InvalidPhoneRecord record) {
+        String country = record.getOriginalCountry();
+        if (country == null || country.trim().isEmpty()) {
+            return null;
+        }
+        String region = CountryRegistry.current().regionFor(country);
+        return region != null ? region : country.trim();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Reading
+
+    /** Dictionary and offsets of one mapped table. */
+    private static final class TableView {
+        final int count;
+        final int rowsOffset;
+        final int sortedOffset;
+        final List<Map<String, Integer>> codes = new ArrayList<>();
+        final List<String[]> values = new ArrayList<>();
+        final List<int[]> starts = new ArrayList<>();
+        final List<int[]> counts = new ArrayList<>();
+
+        TableView(ByteBuffer buffer, int count, int offset) throws IOException {
+            this.count = count;
+            this.rowsOffset = offset;
+            this.sortedOffset = offset + count * ROW_BYTES;
+            ByteBuffer dict = buffer.duplicate();
+            dict.position(sortedOffset + COLUMNS * count * 4);
+            DataInputStream in = new DataInputStream(new ByteBufferInput(dict));
+            for (int c = 0; c < COLUMNS; c++) {
+                int n = in.readInt();
+                int[] columnStarts = new int[n + 1];
+                int[] columnCounts = new int[n + 1];
+                for (int code = 0; code <= n; code++) {
+                    columnStarts[code] = in.readInt();
+                    columnCounts[code] = in.readInt();
+                }
+                String[] columnValues = new String[n + 1];
+                Map<String, Integer> columnCodes = new HashMap<>();
+                for (int code = 1; code <= n; code++) {
+                    byte[] value = new byte[in.readInt()];
+                    in.readFully(value);
+                    columnValues[code] = new String(value, StandardCharsets.UTF_8);
+                    columnCodes.put(columnValues[code], code);
+                }
+                starts.add(columnStarts);
+                counts.add(columnCounts);
+                values.add(columnValues);
+                codes.add(columnCodes);
+            }
+        }
+    }
+
+    /** Reads a ByteBuffer as a stream, for the dictionaries. */
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final TableView[] tables;
+    private final long textOffset;
+
+    private ResultPages(FileChannel channel, ByteBuffer buffer, TableView[] tables, long textOffset) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.tables = tables;
+        this.textOffset = textOffset;
+    }
+
+    /** Map the tables of a pages file; record text stays on disk until a page asks for it. */
+    public static ResultPages open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a results pages file: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a results pages file: " + file);
+                }
+            }
+            if (header.getInt(8) != VERSION || header.getInt(12) != COLUMNS) {
+                throw new IOException("Unsupported results pages version " + header.getInt(8) + ": " + file);
+            }
+            long textOffset = header.getLong(48);
+            long textBytes = header.getLong(56);
+            if (textOffset < HEADER_BYTES || textOffset > Integer.MAX_VALUE || textOffset + textBytes != channel.size()) {
+                throw new IOException("Results pages file is truncated: " + file);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, textOffset);
+            TableView[] tables = new TableView[Table.values().length];
+            for (Table table : Table.values()) {
+                long count = header.getLong(16 + 16 * table.ordinal());
+                long offset = header.getLong(24 + 16 * table.ordinal());
+                if (count < 0 || offset < HEADER_BYTES || offset + count * (ROW_BYTES + 4L * COLUMNS) > textOffset) {
+                    throw new IOException("Results pages file is truncated: " + file);
+                }
+                tables[table.ordinal()] = new TableView(buffer, (int) count, (int) offset);
+            }
+            return new ResultPages(channel, buffer, tables, textOffset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getCount(Table table) {
+        return tables[table.ordinal()].count;
+    }
+
+    /** Distinct values of a column with their row counts, in sort order; e.g. for filter menus. */
+    public Map<String, Integer> getValues(Table table, Column column) {
+        TableView view = tables[table.ordinal()];
+        String[] values = view.values.get(column.ordinal());
+        int[] counts = view.counts.get(column.ordinal());
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int code = 1; code < values.length; code++) {
+            result.put(values[code], counts[code]);
+        }
+        return result;
+    }
+
+    public Page query(Query query) throws IOException {
+        TableView view = tables[query.table.ordinal()];
+        int offset = Math.max(0, query.offset);
+        int limit = Math.max(0, query.limit);
+
+        int[] wanted = new int[COLUMNS];
+        Arrays.fill(wanted, -1);
+        for (Map.Entry<Column, String> filter : query.filters.entrySet()) {
+            Integer code = view.codes.get(filter.getKey().ordinal()).get(filter.getValue());
+            if (code == null) {
+                return new Page(0, offset, Collections.emptyList());
+            }
+            wanted[filter.getKey().ordinal()] = code;
+        }
+
+        // Rows to walk: a sort table, narrowed to one value's slice when the sort column is
+        // filtered; otherwise, in output order, the slice of the most selective filter
+        int driving = -1;
+        int from = 0;
+        int to = view.count;
+        if (query.sort != null) {
+            driving = query.sort.ordinal();
+        } else {
+            for (int c = 0; c < COLUMNS; c++) {
+                if (wanted[c] >= 0 && (driving < 0 || view.counts.get(c)[wanted[c]] < view.counts.get(driving)[wanted[driving]])) {
+                    driving = c;
+                }
+            }
+        }
+        if (driving >= 0 && wanted[driving] >= 0) {
+            from = view.starts.get(driving)[wanted[driving]];
+            to = from + view.counts.get(driving)[wanted[driving]];
+        }
+        boolean others = false;
+        for (int c = 0; c < COLUMNS; c++) {
+            others |= c != driving && wanted[c] >= 0;
+        }
+
+        int length = to - from;
+        List<Integer> rows = new ArrayList<>(Math.min(limit, Math.max(0, length - offset)));
+        int total;
+        if (!others) {
+            total = length;
+            for (int i = offset; i < length && rows.size() < limit; i++) {
+                rows.add(rowAt(view, driving, from, to, i, query.descending));
+            }
+        } else {
+            total = 0;
+            for (int i = 0; i < length; i++) {
+                int row = rowAt(view, driving, from, to, i, query.descending);
+                if (matches(view, row, wanted, driving)) {
+                    if (total >= offset && rows.size() < limit) {
+                        rows.add(row);
+                    }
+                    total++;
+                }
+            }
+        }
+
+        List<String> records = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            records.add(readText(view, row));
+        }
+        return new Page(total, offset, records);
+    }
+
+    /** The i-th row of the walk: a sort table position, or a row index in output order. */
+    private int rowAt(TableView view, int driving, int from, int to, int i, boolean descending) {
+        int position = descending ? to - 1 - i : from + i;
+        return driving < 0 ? position : buffer.getInt(view.sortedOffset + 4 * (driving * view.count + position));
+    }
+
+    private boolean matches(TableView view, int row, int[] wanted, int driving) {
+        int codes = view.rowsOffset + row * ROW_BYTES + ROW_FIXED_BYTES;
+        for (int c = 0; c < COLUMNS; c++) {
+            if (c != driving && wanted[c] >= 0 && (buffer.getShort(codes + 2 * c) & 0xFFFF) != wanted[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readText(TableView view, int row) throws IOException {
+        int entry = view.rowsOffset + row * ROW_BYTES;
+        long position = textOffset + buffer.getLong(entry);
+        ByteBuffer text = ByteBuffer.allocate(buffer.getInt(entry + 8));
+        while (text.hasRemaining()) {
+            if (channel.read(text, position + text.position()) < 0) {
+                throw new EOFException("Results pages file is truncated");
+            }
+        }
+        return new String(text.array(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // CLI
+
+    public static void main(String[] args) {
+        List<String> positional = new ArrayList<>();
+        Query query = new Query();
+        Column sort = null;
+        boolean descending = false;
+        boolean stats = false;
+        boolean bench = false;
+        int benchPages = 200;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--invalid": query.table(Table.INVALID); break;
+                    case "--region": query.filter(Column.REGION, CliOptions.requireValue(args, ++i, "--region")); break;
+                    case "--type": query.filter(Column.TYPE, CliOptions.requireValue(args, ++i, "--type")); break;
+                    case "--method": query.filter(Column.METHOD, CliOptions.requireValue(args, ++i, "--method")); break;
+                    case "--error": query.filter(Column.ERROR, CliOptions.requireValue(args, ++i, "--error")); break;
+                    case "--sort": sort = Column.parse(CliOptions.requireValue(args, ++i, "--sort")); break;
+                    case "--desc": descending = true; break;
+                    case "--offset": query.offset(CliOptions.parseNonNegativeInt(args[i], CliOptions.requireValue(args, ++i, args[i]))); break;
+                    case "--limit": query.limit(CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i]))); break;
+                    case "--stats": stats = true; break;
+                    case "--bench": bench = true; break;
+                    case "--pages": benchPages = CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        positional.add(args[i]);
+                }
+            }
+            if (positional.size() != 1) {
+                throw new IllegalArgumentException("Expected one pages file");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.out.println("Usage: ResultPages <pages-file> [--invalid] [--region R] [--type T] [--method M] [--error E]");
+            System.out.println("         [--sort region|type|method|error] [--desc] [--offset N] [--limit N]");
+            System.out.println("       ResultPages <pages-file> --stats | --bench [--pages N]");
+            System.exit(1);
+            return;
+        }
+        query.sort(sort, descending);
+
+        long start = System.nanoTime();
+        try (ResultPages pages = open(Paths.get(positional.get(0)))) {
+            long openNanos = System.nanoTime() - start;
+            if (stats) {
+                Map<String, Object> out = new LinkedHashMap<>();
+                out.put("open_ms", Math.round(openNanos / 1e4) / 100.0);
+                for (Table table : Table.values()) {
+                    Map<String, Object> columns = new LinkedHashMap<>();
+                    columns.put("count", pages.getCount(table));
+                    for (Column column : Column.values()) {
+                        columns.put(column.name().toLowerCase(), pages.getValues(table, column));
+                    }
+                    out.put(table.name().toLowerCase(), columns);
+                }
+                System.out.println(new GsonBuilder().setPrettyPrinting().create().toJson(out));
+            } else if (bench) {
+                pages.bench(benchPages);
+            } else {
+                Writer writer = new OutputStreamWriter(new BufferedOutputStream(System.out, 1 << 16), StandardCharsets.UTF_8);
+                JsonWriter json = new JsonWriter(writer);
+                pages.query(query).writeJson(json);
+                json.flush();
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Time random 50-row pages for typical dashboard requests on each table: output order,
+     * sorted by each column, filtered by each column's most common value, filtered and sorted
+     * by another column, and the same at deep offsets. Prints p50/p99/max in milliseconds.
+     */
+    private void bench(int pagesPerCase) throws IOException {
+        Random random = new Random(42);
+        for (Table table : Table.values()) {
+            int count = getCount(table);
+            System.out.println(String.format("%s: %,d rows", table.name().toLowerCase(), count));
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Query[]> cases = new LinkedHashMap<>();
+            cases.put("output order", queries(table, pagesPerCase, random, count, null, null, null));
+            for (Column column : Column.values()) {
+                cases.put("sorted by " + column.name().toLowerCase(),
+                        queries(table, pagesPerCase, random, count, column, null, null));
+                String common = mostCommon(table, column);
+                if (common != null) {
+                    int matching = getValues(table, column).get(common);
+                    cases.put(column.name().toLowerCase() + "=" + common,
+                            queries(table, pagesPerCase, random, matching, null, column, common));
+                    Column other = Column.values()[(column.ordinal() + 1) % COLUMNS];
+                    cases.put(column.name().toLowerCase() + "=" + common + " sorted by " + other.name().toLowerCase(),
+                            queries(table, pagesPerCase, random, matching, other, column, common));
+                }
+            }
+            for (Map.Entry<String, Query[]> entry : cases.entrySet()) {
+                long[] nanos = new long[entry.getValue().length];
+                for (int i = 0; i < nanos.length; i++) {
+                    long start = System.nanoTime();
+                    query(entry.getValue()[i]);
+                    nanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+                System.out.println(String.format("   %-45s p50 %7.3f ms   p99 %7.3f ms   max %7.3f ms", entry.getKey(),
+                        nanos[nanos.length / 2] / 1e6, nanos[(int) (nanos.length * 0.99)] / 1e6, nanos[nanos.length - 1] / 1e6));
+            }
+        }
+    }
+
+    private static Query[] queries(Table table, int n, Random random, int rows, Column sort, Column filter, String value) {
+        Query[] queries = new Query[n];
+        for (int i = 0; i < n; i++) {
+            queries[i] = new Query().table(table).offset(random.nextInt(Math.max(1, rows))).limit(50)
+                    .sort(sort, random.nextBoolean());
+            if (filter != null) {
+                queries[i].filter(filter, value);
+            }
+        }
+        return queries;
+    }
+
+    private String mostCommon(Table table, Column column) {
+        String best = null;
+        int bestCount = 0;
+        for (Map.Entry<String, Integer> entry : getValues(table, column).entrySet()) {
+            if (entry.getValue() > bestCount) {
+                best = entry.getKey();
+                bestCount = entry.getValue();
+            }
+        }
+        return best;
+    }
+}
@@ -1,51 +1,88 @@
 package com.facebookleads.validator;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.regex.*;
 
 /**
  * Parses phone numbers from Facebook leads SQL export file
  */
 public class SQLParser implements DataParser {
+
+    // Positions of the fields read from each VALUES row of the export (also reported by HeaderProbe)
+    static final int ID_COLUMN = 0;
+    static final int PLATFORM_COLUMN = 11;
+    static final int EMAIL_COLUMN = 12;
+    static final int NAME_COLUMN = 13;
+    static final int PHONE_COLUMN = 16;
+    static final int COUNTRY_COLUMN = 21;
     
-    public PhoneNumberData parse(String filePath) throws IOException {
+    @Override
+    public PhoneNumberData parse(String filePath, CancellationToken cancellation) throws IOException {
         System.out.println("📄 Reading SQL file: " + filePath);
         
-        List<PhoneRecord> records = new ArrayList<>();
-        List<String> lines = Files.readAllLines(Paths.get(filePath));
+        List<PhoneRecord> records = new ColumnarRecords();
+        boolean truncated = false;
+        try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+            parse(in, new RecordSink() {
+                public void columnNames(List<String> names) {
+                }
+
+                public void record(PhoneRecord record) {
+                    if (records.size() % CANCEL_CHECK_ROWS == 0) {
+                        cancellation.throwIfCancelled();
+                    }
+                    records.add(record);
+                }
+            });
+        } catch (CancellationException e) {
+            truncated = true;
+            System.out.println("⏹️  Stopped reading after " + records.size() + " records: " + e.getMessage());
+        }
+        
+        System.out.println("✅ Parsed " + records.size() + " phone records from SQL file");
+        PhoneNumberData data = new PhoneNumberData(records);
+        if (truncated) {
+            data.markTruncated();
+        }
+        return data;
+    }
+    
+    @Override
+    public void parse(InputStream in, RecordSink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
         
         int rowNumber = 0;
         String previousLine = "";
         
-        for (String line : lines) {
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
             line = line.trim();
             
             // Check if this line has VALUES (data line)
             if (line.startsWith("(") && line.endsWith(");")) {
                 // This is a VALUES line, use the previous INSERT line
                 if (previousLine.contains("INSERT INTO")) {
+                    PhoneRecord record = null;
                     try {
                         rowNumber++;
-                        PhoneRecord record = parseInsertStatement(rowNumber, previousLine + " " + line);
-                        if (record != null) {
-                            records.add(record);
-                        }
+                        record = parseInsertStatement(rowNumber, previousLine + " " + line);
                     } catch (Exception e) {
                         System.err.println("⚠️  Warning: Failed to parse line " + rowNumber + ": " + e.getMessage());
                     }
+                    if (record != null) {
+                        sink.record(record);
+                    }
                 }
             }
             
             previousLine = line;
         }
-        
-        System.out.println("✅ Parsed " + records.size() + " phone records from SQL file");
-        return new PhoneNumberData(records);
     }
     
-    private PhoneRecord parseInsertStatement(int rowNumber, String fullStatement) {
+    PhoneRecord parseInsertStatement(int rowNumber, String fullStatement) {
         // Extract the VALUES part
         Pattern valuesPattern = Pattern.compile("VALUES\\s*\\((.+)\\);?$", Pattern.CASE_INSENSITIVE);
         Matcher matcher = valuesPattern.matcher(fullStatement);
@@ -63,12 +100,12 @@ public class SQLParser implements DataParser {
         }
         
         // Extract the relevant fields by position
-        String id = cleanValue(values.get(0));           // Column 0: id
-        String email = cleanValue(values.get(12));       // Column 12: email
-        String name = cleanValue(values.get(13));        // Column 13: name
-        String phoneNumber = cleanValue(values.get(16)); // Column 16: phone_number
-        String country = cleanValue(values.get(21));     // Column 21: country
-        String platform = cleanValue(values.get(11));    // Column 22: platform
+        String id = cleanValue(values.get(ID_COLUMN));
+        String email = cleanValue(values.get(EMAIL_COLUMN));
+        String name = cleanValue(values.get(NAME_COLUMN));
+        String phoneNumber = cleanValue(values.get(PHONE_COLUMN));
+        String country = cleanValue(values.get(COUNTRY_COLUMN));
+        String platform = cleanValue(values.get(PLATFORM_COLUMN));
         
         // Always create a record, even if phone number is missing - validator will mark it as invalid
         // Use empty string instead of null for missing phone numbers to ensure it's processed
@@ -0,0 +1,505 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Quick quality estimate of an input before a full run (--preview K): validates a uniform
+ * random sample of K rows and reports the valid rate, the country mix of the valid numbers and
+ * the most common invalid reasons, each with a 95% Wilson score interval, in preview.json.
+ *
+ * SQL and CSV files of SEEK_THRESHOLD_BYTES or more are not parsed. Random byte offsets are
+ * drawn and each is read back to the record holding it (a VALUES line with its INSERT INTO
+ * line, or a CSV line with the header's column count); offsets outside records (DDL, the
+ * header) are drawn again. An offset lands in a record with probability proportional to its
+ * length, so a hit is kept with probability reference / length, the reference being the
+ * shortest record length seen so far; every record is then equally likely to be kept. When a
+ * shorter record turns up, the reference drops and the rows already kept are thinned by
+ * new / old reference, as if they had been drawn under it. The row count is estimated from the same
+ * draws (file bytes times the mean of 1 / length over all draws). A preview costs about K
+ * small reads whatever the file size. Draws are with replacement, and records spanning lines
+ * (quoted CSV fields with newlines) are not sampled.
+ *
+ * Smaller files, and Excel workbooks (no seekable layout), are parsed as usual and sampled
+ * with reservoir sampling; the row count is then exact.
+ */
+public class SamplePreview {
+
+    public static final String FILE_NAME = "preview.json";
+
+    /** Below this size a full parse takes a second or two and gives an exact row count. */
+    static final long SEEK_THRESHOLD_BYTES = 64L * 1024 * 1024;
+
+    private static final int WINDOW_BYTES = 4096;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final int PILOT_DRAWS = 200;
+    /** Give up after this many draws per wanted row (an input that is mostly not records). */
+    private static final int MAX_DRAWS_PER_ROW = 100;
+    private static final int TOP = 10;
+    private static final double Z_95 = 1.959964;
+
+    private final int sampleSize;
+    private final long seed;
+    private final Random random;
+    private final PhoneNumberValidator validator = new PhoneNumberValidator();
+
+    public SamplePreview(int sampleSize, long seed) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("Sample size must be greater than 0");
+        }
+        this.sampleSize = sampleSize;
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    /** Sample and validate one input file. */
+    public Report run(String inputFile) throws IOException {
+        long start = System.nanoTime();
+        Path path = Paths.get(inputFile);
+        String extension = ParserFactory.getFileExtension(inputFile).toLowerCase();
+        boolean seekable = extension.equals("sql") || extension.equals("csv");
+
+        Sample sample = seekable && Files.size(path) >= SEEK_THRESHOLD_BYTES
+                ? seekSample(path, extension.equals("sql"))
+                : reservoirSample(inputFile);
+
+        int valid = 0;
+        Map<String, Integer> byRegion = new HashMap<>();
+        Map<InvalidReason, Integer> byReason = new EnumMap<>(InvalidReason.class);
+        for (PhoneRecord record : sample.records) {
+            ValidationOutcome outcome = validator.validateNumber(record.getPhoneNumber(), record.getCountry());
+            if (outcome.isValid()) {
+                valid++;
+                String region = outcome.getRegion() != null ? outcome.getRegion() : "Unknown";
+                byRegion.merge(region, 1, Integer::sum);
+            } else {
+                byReason.merge(outcome.getError().getReason(), 1, Integer::sum);
+            }
+        }
+
+        int n = sample.records.size();
+        List<Proportion> regions = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : byRegion.entrySet()) {
+            regions.add(new Proportion(entry.getKey(), entry.getValue(), valid));
+        }
+        List<Proportion> reasons = new ArrayList<>();
+        for (Map.Entry<InvalidReason, Integer> entry : byReason.entrySet()) {
+            reasons.add(new Proportion(entry.getKey().name(), entry.getValue(), n - valid));
+        }
+        return new Report(inputFile, sample, seed, new Proportion("valid", valid, n),
+                top(regions), top(reasons), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static List<Proportion> top(List<Proportion> proportions) {
+        proportions.sort((a, b) -> a.count != b.count ? Integer.compare(b.count, a.count) : a.label.compareTo(b.label));
+        return proportions.size() > TOP ? new ArrayList<>(proportions.subList(0, TOP)) : proportions;
+    }
+
+    /** Parse the whole file and keep K rows with reservoir sampling (Algorithm R). */
+    private Sample reservoirSample(String inputFile) throws IOException {
+        DataParser parser = ParserFactory.getParser(inputFile);
+        PhoneNumberData data = parser.parse(inputFile);
+        List<PhoneRecord> reservoir = new ArrayList<>(Math.min(sampleSize, data.getRecords().size()));
+        int seen = 0;
+        for (PhoneRecord record : data.getRecords()) {
+            seen++;
+            if (reservoir.size() < sampleSize) {
+                reservoir.add(record);
+            } else {
+                int slot = random.nextInt(seen);
+                if (slot < sampleSize) {
+                    reservoir.set(slot, record);
+                }
+            }
+        }
+        return new Sample("reservoir", reservoir, seen, true);
+    }
+
+    /** Draw K records from random offsets without parsing the file; see the class comment. */
+    private Sample seekSample(Path path, boolean sql) throws IOException {
+        System.out.println((sql ? "📄" : "📊") + " Sampling " + path + " by random offsets");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            RecordReader reader = sql ? new SqlRecords(channel) : new CsvRecords(channel);
+            long size = channel.size();
+            long draws = 0;
+            double inverseLengths = 0;
+
+            List<Hit> pilot = new ArrayList<>();
+            for (int i = 0; i < PILOT_DRAWS; i++) {
+                Hit hit = reader.at(nextOffset(size));
+                draws++;
+                if (hit != null) {
+                    pilot.add(hit);
+                    inverseLengths += 1.0 / hit.length();
+                }
+            }
+            if (pilot.isEmpty()) {
+                throw new IOException("No records found at " + PILOT_DRAWS + " random offsets of " + path);
+            }
+            long reference = Long.MAX_VALUE;
+            for (Hit hit : pilot) {
+                reference = Math.min(reference, hit.length());
+            }
+
+            // The pilot hits are draws like any other: run them through the acceptance test first
+            List<PhoneRecord> records = new ArrayList<>(sampleSize);
+            long maxDraws = PILOT_DRAWS + (long) MAX_DRAWS_PER_ROW * sampleSize;
+            int next = 0;
+            int accepted = 0;
+            while (records.size() < sampleSize) {
+                Hit hit;
+                if (next < pilot.size()) {
+                    hit = pilot.get(next++);
+                } else if (draws < maxDraws) {
+                    hit = reader.at(nextOffset(size));
+                    draws++;
+                    if (hit == null) {
+                        continue;
+                    }
+                    inverseLengths += 1.0 / hit.length();
+                    if (hit.length() < reference) {
+                        double keep = hit.length() / (double) reference;
+                        records.removeIf(record -> random.nextDouble() >= keep);
+                        reference = hit.length();
+                    }
+                } else {
+                    System.out.println("⚠️  Warning: Only " + records.size() + " records found in " + draws + " draws");
+                    break;
+                }
+                if (random.nextDouble() * hit.length() < reference) {
+                    PhoneRecord record = reader.parse(++accepted, hit.text);
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+            }
+            return new Sample("seek", records, Math.round(size * inverseLengths / draws), false);
+        }
+    }
+
+    private long nextOffset(long size) {
+        return (long) (random.nextDouble() * size);
+    }
+
+    /** Rows drawn from an input, with its (possibly estimated) row count. */
+    private static final class Sample {
+        final String method;
+        final List<PhoneRecord> records;
+        final long rows;
+        final boolean rowsExact;
+
+        Sample(String method, List<PhoneRecord> records, long rows, boolean rowsExact) {
+            this.method = method;
+            this.records = records;
+            this.rows = rows;
+            this.rowsExact = rowsExact;
+        }
+    }
+
+    /** A record found at a random offset: the bytes [start, end) it owns, newlines included. */
+    private static final class Hit {
+        final long start;
+        final long end;
+        final String text;
+
+        Hit(long start, long end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        long length() {
+            return end - start;
+        }
+    }
+
+    /** Finds the record holding a byte offset of one file format, and parses it. */
+    private abstract static class RecordReader {
+        final FileChannel channel;
+        final long size;
+
+        RecordReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /** The record holding offset, or null if the offset is not inside one. */
+        abstract Hit at(long offset) throws IOException;
+
+        abstract PhoneRecord parse(int rowNumber, String text);
+
+        /** Bounds [start, end) of the line holding offset, its newline included; null if too long. */
+        long[] lineAround(long offset) throws IOException {
+            for (int window = WINDOW_BYTES; window <= MAX_RECORD_BYTES; window *= 4) {
+                long from = Math.max(0, offset - window);
+                long to = Math.min(size, offset + window);
+                ByteBuffer buffer = read(from, to);
+                long start = from == 0 ? 0 : -1;
+                for (long p = offset - 1; p >= from; p--) {
+                    if (buffer.get((int) (p - from)) == '\n') {
+                        start = p + 1;
+                        break;
+                    }
+                }
+                long end = to == size ? size : -1;
+                for (long p = offset; p < to; p++) {
+                    if (buffer.get((int) (p - from)) == '\n') {
+                        end = p + 1;
+                        break;
+                    }
+                }
+                if (start >= 0 && end >= 0) {
+                    return new long[] {start, end};
+                }
+            }
+            return null;
+        }
+
+        String text(long[] line) throws IOException {
+            ByteBuffer buffer = read(line[0], line[1]);
+            return new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8).trim();
+        }
+
+        private ByteBuffer read(long from, long to) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /** An INSERT INTO line followed by its VALUES line, as SQLParser reads them. */
+    private static final class SqlRecords extends RecordReader {
+        private final SQLParser parser = new SQLParser();
+
+        SqlRecords(FileChannel channel) throws IOException {
+            super(channel);
+        }
+
+        @Override
+        Hit at(long offset) throws IOException {
+            long[] line = lineAround(offset);
+            if (line == null) {
+                return null;
+            }
+            String text = text(line);
+            if (isValuesLine(text)) {
+                if (line[0] == 0) {
+                    return null;
+                }
+                long[] insert = lineAround(line[0] - 1);
+                if (insert == null) {
+                    return null;
+                }
+                String insertText = text(insert);
+                return insertText.contains("INSERT INTO") ? new Hit(insert[0], line[1], insertText + " " + text) : null;
+            }
+            if (text.contains("INSERT INTO") && line[1] < size) {
+                long[] values = lineAround(line[1]);
+                if (values == null) {
+                    return null;
+                }
+                String valuesText = text(values);
+                return isValuesLine(valuesText) ? new Hit(line[0], values[1], text + " " + valuesText) : null;
+            }
+            return null;
+        }
+
+        private static boolean isValuesLine(String line) {
+            return line.startsWith("(") && line.endsWith(");");
+        }
+
+        @Override
+        PhoneRecord parse(int rowNumber, String text) {
+            return parser.parseInsertStatement(rowNumber, text);
+        }
+    }
+
+    /** One CSV line with as many fields as the header (first line). */
+    private static final class CsvRecords extends RecordReader {
+        private final CSVParser parser = new CSVParser();
+        private final Map<String, Integer> columnIndex;
+        private final int columns;
+
+        CsvRecords(FileChannel channel) throws IOException {
+            super(channel);
+            long[] header = lineAround(0);
+            if (header == null) {
+                throw new IOException("CSV header line is longer than " + MAX_RECORD_BYTES + " bytes");
+            }
+            String headerLine = text(header);
+            this.columns = parser.parseCSVLine(headerLine).length;
+            this.columnIndex = parser.parseHeader(headerLine);
+            if (columnIndex.isEmpty()) {
+                throw new IOException("Could not detect required columns in CSV header");
+            }
+        }
+
+        @Override
+        Hit at(long offset) throws IOException {
+            long[] line = lineAround(offset);
+            if (line == null || line[0] == 0) {
+                return null;
+            }
+            String text = text(line);
+            // An odd number of quotes means the line is part of a record spanning lines
+            int quotes = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '"') {
+                    quotes++;
+                }
+            }
+            if (text.isEmpty() || quotes % 2 != 0 || parser.parseCSVLine(text).length != columns) {
+                return null;
+            }
+            return new Hit(line[0], line[1], text);
+        }
+
+        @Override
+        PhoneRecord parse(int rowNumber, String text) {
+            return parser.parseCSVRow(rowNumber, text, columnIndex, columns);
+        }
+    }
+
+    /** A share of a sample with its 95% Wilson score interval. */
+    public static final class Proportion {
+        final String label;
+        final int count;
+        final int of;
+        final double low;
+        final double high;
+
+        Proportion(String label, int count, int of) {
+            this.label = label;
+            this.count = count;
+            this.of = of;
+            if (of == 0) {
+                this.low = 0;
+                this.high = 1;
+            } else {
+                double p = count / (double) of;
+                double z2 = Z_95 * Z_95;
+                double center = (p + z2 / (2 * of)) / (1 + z2 / of);
+                double margin = Z_95 * Math.sqrt(p * (1 - p) / of + z2 / (4.0 * of * of)) / (1 + z2 / of);
+                this.low = Math.max(0, center - margin);
+                this.high = Math.min(1, center + margin);
+            }
+        }
+
+        public double share() {
+            return of == 0 ? 0 : count / (double) of;
+        }
+
+        Map<String, Object> toJson(String labelName) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            if (labelName != null) {
+                json.put(labelName, label);
+            }
+            json.put("sample_count", count);
+            json.put("share", round(share()));
+            json.put("low", round(low));
+            json.put("high", round(high));
+            return json;
+        }
+
+        String describe() {
+            return String.format("%5.1f%% (%.1f%% – %.1f%%)", share() * 100, low * 100, high * 100);
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 10000) / 10000.0;
+        }
+    }
+
+    /** The estimates for one input. */
+    public static final class Report {
+        private final String inputFile;
+        private final Sample sample;
+        private final long seed;
+        private final Proportion validRate;
+        private final List<Proportion> regions;
+        private final List<Proportion> reasons;
+        private final long elapsedMillis;
+
+        Report(String inputFile, Sample sample, long seed, Proportion validRate,
+               List<Proportion> regions, List<Proportion> reasons, long elapsedMillis) {
+            this.inputFile = inputFile;
+            this.sample = sample;
+            this.seed = seed;
+            this.validRate = validRate;
+            this.regions = regions;
+            this.reasons = reasons;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public Proportion getValidRate() { return validRate; }
+        public long getRows() { return sample.rows; }
+
+        public void print() {
+            System.out.println();
+            System.out.println(String.format("🎲 Preview of %s: %,d sampled rows (%s sampling) of %s%,d rows",
+                    inputFile, validRate.of, sample.method, sample.rowsExact ? "" : "~", sample.rows));
+            System.out.println(String.format("   Valid rate: %s → ~%,d valid", validRate.describe().trim(),
+                    Math.round(sample.rows * validRate.share())));
+            if (!regions.isEmpty()) {
+                System.out.println("   Valid numbers by country:");
+                for (Proportion region : regions) {
+                    System.out.println(String.format("     %-16s %s", region.label, region.describe()));
+                }
+            }
+            if (!reasons.isEmpty()) {
+                System.out.println("   Top invalid reasons:");
+                for (Proportion reason : reasons) {
+                    System.out.println(String.format("     %-16s %s", reason.label, reason.describe()));
+                }
+            }
+            System.out.println(String.format("   95%% confidence intervals; seed %d; took %.1f s",
+                    seed, elapsedMillis / 1000.0));
+        }
+
+        public void write(String outputDir) throws IOException {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("input", inputFile);
+            json.put("sampling", sample.method);
+            json.put("seed", seed);
+            json.put("sample_size", validRate.of);
+            json.put("rows", sample.rows);
+            json.put("rows_exact", sample.rowsExact);
+            json.put("confidence", 0.95);
+            json.put("valid_rate", validRate.toJson(null));
+            json.put("estimated_valid", Math.round(sample.rows * validRate.share()));
+            List<Map<String, Object>> regionJson = new ArrayList<>();
+            for (Proportion region : regions) {
+                regionJson.add(region.toJson("region"));
+            }
+            json.put("valid_by_country", regionJson);
+            List<Map<String, Object>> reasonJson = new ArrayList<>();
+            for (Proportion reason : reasons) {
+                reasonJson.add(reason.toJson("reason"));
+            }
+            json.put("invalid_reasons", reasonJson);
+            json.put("elapsed_ms", elapsedMillis);
+
+            Files.createDirectories(Paths.get(outputDir));
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            try (FileWriter writer = new FileWriter(outputDir + "/" + FILE_NAME)) {
+                gson.toJson(json, writer);
+            }
+        }
+    }
+}
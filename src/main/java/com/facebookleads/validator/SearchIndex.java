@@ -0,0 +1,607 @@
+package com.facebookleads.validator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Prefix search over the records of a run, written as search.idx with --search-index, so
+ * support staff can find rows by the start of a phone number, email or name without scanning
+ * the outputs.
+ *
+ * Keys per record: E.164 digits and the national number (the digits after the calling code)
+ * of valid records, the digits of the original number of invalid ones; the lowercase email;
+ * the lowercase name and, for names of several words, each word. Keys are capped at 255 bytes,
+ * cut before the character that would cross the cap, and so are search prefixes.
+ *
+ * Layout (big-endian, like manifest.bin):
+ *   header  magic "PVSRCH01", int version, int field count, then per field long entry count,
+ *           long block count, long block table offset, long data offset (112 bytes)
+ *   field   block table: one long per block, the block's offset in the data
+ *           data: keys sorted as unsigned bytes, front-coded in blocks of 16:
+ *           per entry a byte with the length shared with the previous key (0 for the first
+ *           in a block), a byte with the suffix length, the suffix, and the int row number
+ *
+ * The file is memory-mapped. A query binary-searches the first keys of the blocks and then
+ * decodes entries forward while they start with the prefix, so its cost grows with the
+ * number of matches read, not with the size of the run.
+ *
+ * CLI: java -cp phone-validator.jar com.facebookleads.validator.SearchIndex
+ *        &lt;index-file&gt; [--field e164|email|name] [--limit N] &lt;prefix&gt;... | --stats | --bench [--queries N]
+ */
+public class SearchIndex {
+
+    public static final String FILE_NAME = "search.idx";
+
+    private static final byte[] MAGIC = "PVSRCH01".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 16;
+    private static final int MAX_KEY_BYTES = 255;
+
+    /** Searchable fields. */
+    public enum Field {
+        E164, EMAIL, NAME;
+
+        /** Parse a field name such as "email". */
+        public static Field parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown search field: " + name + " (expected e164, email, name)");
+            }
+        }
+
+        /** A query or key as stored: digits only for numbers, lowercase with single spaces otherwise. */
+        public String normalize(String text) {
+            StringBuilder normalized = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char ch = text.charAt(i);
+                if (this == E164) {
+                    if (ch >= '0' && ch <= '9') {
+                        normalized.append(ch);
+                    }
+                } else if (!Character.isWhitespace(ch)) {
+                    normalized.append(ch);
+                } else if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                    normalized.append(' ');
+                }
+            }
+            int end = normalized.length();
+            if (end > 0 && normalized.charAt(end - 1) == ' ') {
+                normalized.setLength(end - 1);
+            }
+            return this == E164 ? normalized.toString() : normalized.toString().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final int FIELDS = Field.values().length;
+    private static final int HEADER_BYTES = 16 + 32 * FIELDS;
+
+    // ---------------------------------------------------------------------------------------
+    // Writing
+
+    /** Keys of one field in a byte arena, with the row each came from. */
+    private static final class KeyBuffer {
+        private byte[] arena = new byte[1 << 16];
+        private int used;
+        private int[] offsets = new int[1024];
+        private int[] rows = new int[1024];
+        // First 8 key bytes, big-endian: most comparisons are settled without reading the arena
+        private long[] prefixes = new long[1024];
+        private int count;
+
+        void add(String key, int row) throws IOException {
+            if (key.isEmpty()) {
+                return;
+            }
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            int length = keyLength(bytes);
+            if ((long) used + length + 1 > Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many search keys");
+            }
+            if (used + length + 1 > arena.length) {
+                arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * arena.length, used + length + 1)));
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                rows = Arrays.copyOf(rows, count * 2);
+                prefixes = Arrays.copyOf(prefixes, count * 2);
+            }
+            long prefix = 0;
+            for (int i = 0; i < 8; i++) {
+                prefix = prefix << 8 | (i < length ? bytes[i] & 0xFF : 0);
+            }
+            offsets[count] = used;
+            rows[count] = row;
+            prefixes[count] = prefix;
+            arena[used++] = (byte) length;
+            System.arraycopy(bytes, 0, arena, used, length);
+            used += length;
+            count++;
+        }
+
+        /** Compare the keys of two entries. */
+        int compare(int a, int b) {
+            int c = Long.compareUnsigned(prefixes[a], prefixes[b]);
+            if (c != 0) {
+                return c;
+            }
+            return compareKeys(arena, offsets[a] + 1, arena[offsets[a]] & 0xFF, arena, offsets[b] + 1, arena[offsets[b]] & 0xFF);
+        }
+
+        /**
+         * Entry positions in key order, equal keys in the order they were added; a bottom-up
+         * merge sort on int[] to avoid boxing, moving each position's key prefix along with it
+         * so most comparisons read memory in sequence.
+         */
+        int[] sortedPositions() {
+            int[] positions = new int[count];
+            long[] keys = Arrays.copyOf(prefixes, count);
+            for (int i = 0; i < count; i++) {
+                positions[i] = i;
+            }
+            int[] scratch = new int[count];
+            long[] scratchKeys = new long[count];
+            for (int width = 1; width < count; width *= 2) {
+                for (int lo = 0; lo < count; lo += 2 * width) {
+                    int mid = Math.min(lo + width, count);
+                    int hi = Math.min(lo + 2 * width, count);
+                    int a = lo, b = mid, out = lo;
+                    while (a < mid && b < hi) {
+                        int c = Long.compareUnsigned(keys[a], keys[b]);
+                        if (c < 0 || (c == 0 && compare(positions[a], positions[b]) <= 0)) {
+                            scratchKeys[out] = keys[a];
+                            scratch[out++] = positions[a++];
+                        } else {
+                            scratchKeys[out] = keys[b];
+                            scratch[out++] = positions[b++];
+                        }
+                    }
+                    System.arraycopy(positions, a, scratch, out, mid - a);
+                    System.arraycopy(keys, a, scratchKeys, out, mid - a);
+                    out += mid - a;
+                    System.arraycopy(positions, b, scratch, out, hi - b);
+                    System.arraycopy(keys, b, scratchKeys, out, hi - b);
+                }
+                int[] swap = positions;
+                positions = scratch;
+                scratch = swap;
+                long[] swapKeys = keys;
+                keys = scratchKeys;
+                scratchKeys = swapKeys;
+            }
+            return positions;
+        }
+
+        /**
+         * Write the sorted, front-coded entries to {@code out}, dropping repeated (key, row)
+         * pairs. Returns the block offsets; {@code entries[0]} receives the entry count.
+         */
+        long[] writeBlocks(OutputStream out, long[] entries) throws IOException {
+            int[] positions = sortedPositions();
+            long[] blocks = new long[(count + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            int blockCount = 0;
+            long offset = 0;
+            int written = 0;
+            int previous = -1;
+            for (int position : positions) {
+                if (previous >= 0 && rows[previous] == rows[position] && compare(previous, position) == 0) {
+                    continue;
+                }
+                int start = offsets[position] + 1;
+                int length = arena[offsets[position]] & 0xFF;
+                int shared = 0;
+                if (written % BLOCK_SIZE == 0) {
+                    blocks[blockCount++] = offset;
+                } else {
+                    int previousStart = offsets[previous] + 1;
+                    int previousLength = arena[offsets[previous]] & 0xFF;
+                    while (shared < length && shared < previousLength && arena[start + shared] == arena[previousStart + shared]) {
+                        shared++;
+                    }
+                }
+                out.write(shared);
+                out.write(length - shared);
+                out.write(arena, start + shared, length - shared);
+                int row = rows[position];
+                out.write(row >>> 24);
+                out.write(row >>> 16);
+                out.write(row >>> 8);
+                out.write(row);
+                offset += 2 + length - shared + 4;
+                written++;
+                previous = position;
+            }
+            entries[0] = written;
+            return Arrays.copyOf(blocks, blockCount);
+        }
+    }
+
+    /** Write the search keys of a run's records. */
+    public static void write(Iterable<ValidPhoneRecord> valid, Iterable<InvalidPhoneRecord> invalid,
+                             Path outputDir) throws IOException {
+        KeyBuffer[] keys = new KeyBuffer[FIELDS];
+        for (int f = 0; f < FIELDS; f++) {
+            keys[f] = new KeyBuffer();
+        }
+        try {
+            for (ValidPhoneRecord record : valid) {
+                String e164 = record.getE164();
+                if (e164 != null) {
+                    String digits = Field.E164.normalize(e164);
+                    keys[Field.E164.ordinal()].add(digits, record.getRowNumber());
+                    String callingCode = record.getCountryCode() != null ? Field.E164.normalize(record.getCountryCode()) : "";
+                    if (!callingCode.isEmpty() && digits.startsWith(callingCode)) {
+                        keys[Field.E164.ordinal()].add(digits.substring(callingCode.length()), record.getRowNumber());
+                    }
+                }
+                addText(keys, record.getEmail(), record.getName(), record.getRowNumber());
+            }
+            for (InvalidPhoneRecord record : invalid) {
+                if (record.getOriginalPhoneNumber() != null) {
+                    keys[Field.E164.ordinal()].add(Field.E164.normalize(record.getOriginalPhoneNumber()), record.getRowNumber());
+                }
+                addText(keys, record.getEmail(), record.getName(), record.getRowNumber());
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  Warning: " + e.getMessage() + " for " + FILE_NAME + ", skipping");
+            return;
+        }
+
+        Path target = outputDir.resolve(FILE_NAME);
+        Path temp = outputDir.resolve(FILE_NAME + ".tmp");
+        Path[] data = new Path[FIELDS];
+        try {
+            long[][] blocks = new long[FIELDS][];
+            long[] entries = new long[FIELDS];
+            long[] dataBytes = new long[FIELDS];
+            for (int f = 0; f < FIELDS; f++) {
+                data[f] = outputDir.resolve(FILE_NAME + "." + f + ".tmp");
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(data[f]), 1 << 16)) {
+                    long[] count = new long[1];
+                    blocks[f] = keys[f].writeBlocks(out, count);
+                    entries[f] = count[0];
+                }
+                dataBytes[f] = Files.size(data[f]);
+                keys[f] = null;
+            }
+
+            long offset = HEADER_BYTES;
+            long[] blockOffsets = new long[FIELDS];
+            long[] dataOffsets = new long[FIELDS];
+            for (int f = 0; f < FIELDS; f++) {
+                blockOffsets[f] = offset;
+                dataOffsets[f] = offset + 8L * blocks[f].length;
+                offset = dataOffsets[f] + dataBytes[f];
+            }
+            if (offset > Integer.MAX_VALUE) {
+                // Kept to a single 2 GB mapping
+                System.err.println("⚠️  Warning: Too many search keys for " + FILE_NAME + ", skipping");
+                return;
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(FIELDS);
+                for (int f = 0; f < FIELDS; f++) {
+                    out.writeLong(entries[f]);
+                    out.writeLong(blocks[f].length);
+                    out.writeLong(blockOffsets[f]);
+                    out.writeLong(dataOffsets[f]);
+                }
+                for (int f = 0; f < FIELDS; f++) {
+                    for (long block : blocks[f]) {
+                        out.writeLong(block);
+                    }
+                    Files.copy(data[f], out);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            for (Path path : data) {
+                if (path != null) {
+                    Files.deleteIfExists(path);
+                }
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void addText(KeyBuffer[] keys, String email, String name, int row) throws IOException {
+        if (email != null) {
+            keys[Field.EMAIL.ordinal()].add(Field.EMAIL.normalize(email), row);
+        }
+        if (name != null) {
+            String normalized = Field.NAME.normalize(name);
+            keys[Field.NAME.ordinal()].add(normalized, row);
+            if (normalized.indexOf(' ') >= 0) {
+                for (String word : normalized.split(" ")) {
+                    keys[Field.NAME.ordinal()].add(word, row);
+                }
+            }
+        }
+    }
+
+    private static int compareKeys(byte[] a, int aStart, int aLength, byte[] b, int bStart, int bLength) {
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int c = (a[aStart + i] & 0xFF) - (b[bStart + i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Reading
+
+    private final ByteBuffer buffer;
+    private final long[] entryCounts = new long[FIELDS];
+    private final int[] blockCounts = new int[FIELDS];
+    private final int[] blockTables = new int[FIELDS];
+    private final int[] dataOffsets = new int[FIELDS];
+
+    private SearchIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public static SearchIndex open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a search index: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                throw new IOException("Not a search index: " + file);
+            }
+        }
+        if (buffer.getInt(8) != VERSION || buffer.getInt(12) != FIELDS) {
+            throw new IOException("Unsupported search index version " + buffer.getInt(8) + ": " + file);
+        }
+        SearchIndex index = new SearchIndex(buffer);
+        for (int f = 0; f < FIELDS; f++) {
+            int at = 16 + 32 * f;
+            long blocks = buffer.getLong(at + 8);
+            long blockTable = buffer.getLong(at + 16);
+            long data = buffer.getLong(at + 24);
+            if (blocks < 0 || blockTable < HEADER_BYTES || blockTable + 8 * blocks > data || data > buffer.capacity()) {
+                throw new IOException("Search index is truncated: " + file);
+            }
+            index.entryCounts[f] = buffer.getLong(at);
+            index.blockCounts[f] = (int) blocks;
+            index.blockTables[f] = (int) blockTable;
+            index.dataOffsets[f] = (int) data;
+        }
+        return index;
+    }
+
+    public long getEntryCount(Field field) {
+        return entryCounts[field.ordinal()];
+    }
+
+    /**
+     * Row numbers of records with a key of {@code field} starting with {@code prefix}, sorted,
+     * at most {@code limit} of them (the first ones in key order).
+     */
+    public int[] search(Field field, String prefix, int limit) {
+        byte[] wanted = capped(field.normalize(prefix));
+        if (wanted.length == 0 || limit <= 0) {
+            return new int[0];
+        }
+        Set<Integer> rows = new TreeSet<>();
+        collect(field.ordinal(), wanted, limit, rows);
+        return toArray(rows);
+    }
+
+    /** Row numbers matching the prefix in any field, sorted, at most {@code limit}. */
+    public int[] search(String prefix, int limit) {
+        Set<Integer> rows = new TreeSet<>();
+        for (Field field : Field.values()) {
+            byte[] wanted = capped(field.normalize(prefix));
+            if (wanted.length > 0 && rows.size() < limit) {
+                collect(field.ordinal(), wanted, limit, rows);
+            }
+        }
+        return toArray(rows);
+    }
+
+    /** Bytes of a key kept in the index: at most MAX_KEY_BYTES, never ending inside a character. */
+    static int keyLength(byte[] utf8) {
+        int length = Math.min(utf8.length, MAX_KEY_BYTES);
+        while (length < utf8.length && (utf8[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+
+    /** A search prefix as UTF-8, capped like the keys so a long one still finds its key. */
+    private static byte[] capped(String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        return bytes.length > MAX_KEY_BYTES ? Arrays.copyOf(bytes, keyLength(bytes)) : bytes;
+    }
+
+    private void collect(int field, byte[] prefix, int limit, Set<Integer> rows) {
+        int blocks = blockCounts[field];
+        if (blocks == 0) {
+            return;
+        }
+        byte[] key = new byte[MAX_KEY_BYTES];
+        // Last block whose first key sorts before the prefix; matches can start at its end
+        int low = 0;
+        int high = blocks - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int entry = blockStart(field, mid);
+            if (compareKeys(buffer, entry + 2, buffer.get(entry + 1) & 0xFF, prefix) < 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int position = blockStart(field, low);
+        int end = low + 1 < blocks ? blockStart(field, low + 1) : blockEnd(field);
+        int block = low;
+        while (true) {
+            if (position >= end) {
+                if (++block >= blocks) {
+                    return;
+                }
+                end = block + 1 < blocks ? blockStart(field, block + 1) : blockEnd(field);
+            }
+            int shared = buffer.get(position) & 0xFF;
+            int suffix = buffer.get(position + 1) & 0xFF;
+            for (int i = 0; i < suffix; i++) {
+                key[shared + i] = buffer.get(position + 2 + i);
+            }
+            int length = shared + suffix;
+            int row = buffer.getInt(position + 2 + suffix);
+            position += 2 + suffix + 4;
+
+            int c = compareKeys(key, 0, Math.min(length, prefix.length), prefix, 0, prefix.length);
+            if (c > 0) {
+                return;
+            }
+            if (c == 0 && length >= prefix.length) {
+                rows.add(row);
+                if (rows.size() >= limit) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int blockStart(int field, int block) {
+        return dataOffsets[field] + (int) buffer.getLong(blockTables[field] + 8 * block);
+    }
+
+    private int blockEnd(int field) {
+        return field + 1 < FIELDS ? blockTables[field + 1] : buffer.capacity();
+    }
+
+    private int compareKeys(ByteBuffer data, int start, int length, byte[] prefix) {
+        int n = Math.min(length, prefix.length);
+        for (int i = 0; i < n; i++) {
+            int c = (data.get(start + i) & 0xFF) - (prefix[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - prefix.length;
+    }
+
+    private static int[] toArray(Set<Integer> rows) {
+        int[] result = new int[rows.size()];
+        int i = 0;
+        for (int row : rows) {
+            result[i++] = row;
+        }
+        return result;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // CLI
+
+    public static void main(String[] args) {
+        List<String> positional = new ArrayList<>();
+        Field field = null;
+        int limit = 100;
+        boolean stats = false;
+        boolean bench = false;
+        int queries = 10_000;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--field": field = Field.parse(CliOptions.requireValue(args, ++i, "--field")); break;
+                    case "--limit": limit = CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    case "--stats": stats = true; break;
+                    case "--bench": bench = true; break;
+                    case "--queries": queries = CliOptions.parsePositiveInt(args[i], CliOptions.requireValue(args, ++i, args[i])); break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        positional.add(args[i]);
+                }
+            }
+            if (positional.isEmpty() || (positional.size() == 1 && !stats && !bench)) {
+                throw new IllegalArgumentException("Expected an index file and prefixes, --stats or --bench");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.out.println("Usage: SearchIndex <index-file> [--field e164|email|name] [--limit N] <prefix>...");
+            System.out.println("       SearchIndex <index-file> --stats | --bench [--queries N]");
+            System.exit(1);
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            SearchIndex index = open(Paths.get(positional.get(0)));
+            long openNanos = System.nanoTime() - start;
+            if (stats) {
+                System.out.println(String.format("Opened in %.2f ms", openNanos / 1e6));
+                for (Field f : Field.values()) {
+                    System.out.println(String.format("   %-6s %,d keys in %,d blocks", f.name().toLowerCase(),
+                            index.getEntryCount(f), index.blockCounts[f.ordinal()]));
+                }
+            }
+            if (bench) {
+                index.bench(queries, limit);
+            }
+            for (String prefix : positional.subList(1, positional.size())) {
+                int[] rows = field != null ? index.search(field, prefix, limit) : index.search(prefix, limit);
+                StringBuilder line = new StringBuilder(prefix).append(':');
+                for (int row : rows) {
+                    line.append(' ').append(row);
+                }
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Time prefix queries taken from random stored keys (3 to 8 bytes long) per field,
+     * printing p50/p99/max in microseconds.
+     */
+    private void bench(int queries, int limit) {
+        Random random = new Random(42);
+        for (Field field : Field.values()) {
+            int f = field.ordinal();
+            if (blockCounts[f] == 0) {
+                continue;
+            }
+            String[] prefixes = new String[queries];
+            for (int i = 0; i < queries; i++) {
+                int entry = blockStart(f, random.nextInt(blockCounts[f]));
+                int length = buffer.get(entry + 1) & 0xFF;
+                byte[] key = new byte[Math.min(length, 3 + random.nextInt(6))];
+                for (int k = 0; k < key.length; k++) {
+                    key[k] = buffer.get(entry + 2 + k);
+                }
+                prefixes[i] = new String(key, StandardCharsets.UTF_8);
+            }
+            long[] nanos = new long[queries];
+            long matches = 0;
+            for (int i = 0; i < queries; i++) {
+                long start = System.nanoTime();
+                matches += search(field, prefixes[i], limit).length;
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.println(String.format("   %-6s p50 %8.1f us   p99 %8.1f us   max %8.1f us   (%.1f rows/query, limit %d)",
+                    field.name().toLowerCase(), nanos[queries / 2] / 1e3, nanos[(int) (queries * 0.99)] / 1e3,
+                    nanos[queries - 1] / 1e3, (double) matches / queries, limit));
+        }
+    }
+}
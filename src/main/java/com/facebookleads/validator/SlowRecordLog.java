@@ -0,0 +1,141 @@
+package com.facebookleads.validator;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Records whose validation cascade took longer than a threshold (--slow-records MS), with the
+ * stages each went through, for tuning the rules. Written as slow_records.json.
+ *
+ * Every slow record is counted, but only the MAX_RECORDS slowest are kept (a min-heap on
+ * latency), so an input full of pathological numbers does not grow the log without bound.
+ * Safe for concurrent use.
+ */
+public class SlowRecordLog {
+
+    public static final String FILE_NAME = "slow_records.json";
+
+    static final int MAX_RECORDS = 1000;
+
+    private final long thresholdNanos;
+    private final long budgetNanos;
+    private final PriorityQueue<Entry> slowest = new PriorityQueue<>(Comparator.comparingLong((Entry e) -> e.nanos));
+    private long slowCount;
+    private long maxNanos;
+
+    /**
+     * @param thresholdNanos cascades at least this long are logged
+     * @param budgetNanos    the per-record budget in force, reported alongside; 0 for none
+     */
+    public SlowRecordLog(long thresholdNanos, long budgetNanos) {
+        this.thresholdNanos = thresholdNanos;
+        this.budgetNanos = budgetNanos;
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * Log a record if its cascade took at least the threshold.
+     * @param row the record's row number in the input, as in the Row column of the outputs
+     */
+    public void offer(int row, String phoneNumber, String country, String region, long nanos,
+                      List<String> stages, ValidationOutcome outcome) {
+        if (nanos < thresholdNanos) {
+            return;
+        }
+        synchronized (this) {
+            slowCount++;
+            maxNanos = Math.max(maxNanos, nanos);
+            if (slowest.size() == MAX_RECORDS) {
+                if (slowest.peek().nanos >= nanos) {
+                    return;
+                }
+                slowest.poll();
+            }
+            slowest.add(new Entry(row, phoneNumber, country, region, nanos, stages,
+                    outcome.isValid() ? outcome.getValidationMethod() : outcome.getError().getReason().name()));
+        }
+    }
+
+    public synchronized long getSlowCount() {
+        return slowCount;
+    }
+
+    public synchronized long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /** The summary counts and the kept records, slowest first. */
+    public void writeJson(JsonWriter writer) throws IOException {
+        List<Entry> entries;
+        long count;
+        long max;
+        synchronized (this) {
+            entries = new ArrayList<>(slowest);
+            count = slowCount;
+            max = maxNanos;
+        }
+        entries.sort(Comparator.comparingLong((Entry e) -> e.nanos).reversed());
+
+        writer.beginObject();
+        writer.name("threshold_ms").value(millis(thresholdNanos));
+        if (budgetNanos > 0) {
+            writer.name("budget_ms").value(millis(budgetNanos));
+        }
+        writer.name("slow_count").value(count);
+        writer.name("max_ms").value(millis(max));
+        writer.name("logged").value(entries.size());
+        writer.name("records").beginArray();
+        for (Entry entry : entries) {
+            writer.beginObject();
+            writer.name("row").value(entry.row);
+            writer.name("phone_number").value(entry.phoneNumber);
+            writer.name("country").value(entry.country);
+            writer.name("region").value(entry.region);
+            writer.name("ms").value(millis(entry.nanos));
+            writer.name("stages").beginArray();
+            for (String stage : entry.stages) {
+                writer.value(stage);
+            }
+            writer.endArray();
+            writer.name("outcome").value(entry.outcome);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private static final class Entry {
+        final int row;
+        final String phoneNumber;
+        final String country;
+        final String region;
+        final long nanos;
+        final List<String> stages;
+        /** Validation method when valid, InvalidReason name otherwise. */
+        final String outcome;
+
+        Entry(int row, String phoneNumber, String country, String region, long nanos,
+              List<String> stages, String outcome) {
+            this.row = row;
+            this.phoneNumber = phoneNumber;
+            this.country = country;
+            this.region = region;
+            this.nanos = nanos;
+            this.stages = stages;
+            this.outcome = outcome;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * End-to-end throughput harness: runs Main's full parse → validate → output pipeline
+ * on each input and records records/sec, peak RSS and GC pauses into a JSON report
+ * that can be diffed between builds.
+ *
+ * Usage: java -cp phone-validator.jar com.facebookleads.validator.ThroughputHarness
+ *          [--iterations N] [--label name] [--report report.json] &lt;input-file&gt;...
+ */
+public class ThroughputHarness {
+
+    private static final int REPORT_SCHEMA_VERSION = 1;
+
+    public static void main(String[] args) {
+        int iterations = 1;
+        String label = "default";
+        String reportPath = "throughput_report.json";
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                    case "--label": label = args[++i]; break;
+                    case "--report": reportPath = args[++i]; break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        inputs.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("❌ Error: Missing value for last option");
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+
+        if (inputs.isEmpty()) {
+            System.out.println("Usage: ThroughputHarness [--iterations N] [--label name] [--report report.json] <input-file>...");
+            System.exit(1);
+        }
+
+        try {
+            Map<String, Object> report = new ThroughputHarness().run(inputs, iterations, label);
+            Gson gson = new GsonBuilder().setPrettyPrinting().serializeNulls().create();
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(reportPath), StandardCharsets.UTF_8)) {
+                gson.toJson(report, writer);
+            }
+            System.out.println("📈 Throughput report written to " + reportPath);
+        } catch (Exception e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public Map<String, Object> run(List<String> inputs, int iterations, String label) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("schema_version", REPORT_SCHEMA_VERSION);
+        report.put("label", label);
+        report.put("timestamp", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        report.put("environment", environment());
+
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (String input : inputs) {
+            for (int iteration = 1; iteration <= iterations; iteration++) {
+                runs.add(runOnce(input, iteration));
+            }
+        }
+        report.put("runs", runs);
+        return report;
+    }
+
+    private Map<String, Object> runOnce(String input, int iteration) throws IOException {
+        Path outputDir = Files.createTempDirectory("throughput-");
+        try {
+            System.gc();
+            boolean peakReset = resetPeakRss();
+            Map<String, long[]> gcBefore = gcSnapshot();
+            long start = System.nanoTime();
+
+            ValidationResult result = new InputRun(CliOptions.parseSettings(new String[0]), new PhoneNumberValidator())
+                    .run(input, outputDir.toString());
+            result.close();
+
+            long elapsedNanos = System.nanoTime() - start;
+            Map<String, long[]> gcAfter = gcSnapshot();
+
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("input", input);
+            run.put("iteration", iteration);
+            run.put("input_bytes", new File(input).length());
+            run.put("records", result.getTotalCount());
+            run.put("valid", result.getValidCount());
+            run.put("invalid", result.getInvalidCount());
+            run.put("elapsed_ms", elapsedNanos / 1_000_000);
+            run.put("records_per_sec", elapsedNanos > 0
+                    ? Math.round(result.getTotalCount() / (elapsedNanos / 1e9)) : 0);
+            run.put("peak_rss_bytes", readProcStatusBytes("VmHWM"));
+            run.put("peak_rss_reset", peakReset);
+            run.put("gc", gcDelta(gcBefore, gcAfter));
+
+            System.out.println(String.format("⏱️  %s #%d: %d records in %d ms (%s records/sec)",
+                    input, iteration, result.getTotalCount(), elapsedNanos / 1_000_000, run.get("records_per_sec")));
+            return run;
+        } finally {
+            deleteRecursively(outputDir);
+        }
+    }
+
+    private static Map<String, Object> environment() {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("java_version", System.getProperty("java.version"));
+        env.put("vm_name", System.getProperty("java.vm.name"));
+        env.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        env.put("available_processors", Runtime.getRuntime().availableProcessors());
+        env.put("max_heap_bytes", Runtime.getRuntime().maxMemory());
+        env.put("jvm_args", ManagementFactory.getRuntimeMXBean().getInputArguments());
+        return env;
+    }
+
+    /** Collection count and accumulated pause time per collector. */
+    private static Map<String, long[]> gcSnapshot() {
+        Map<String, long[]> snapshot = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            snapshot.put(gc.getName(), new long[] { gc.getCollectionCount(), gc.getCollectionTime() });
+        }
+        return snapshot;
+    }
+
+    private static Map<String, Object> gcDelta(Map<String, long[]> before, Map<String, long[]> after) {
+        long totalCount = 0;
+        long totalMillis = 0;
+        Map<String, Object> collectors = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : after.entrySet()) {
+            long[] b = before.getOrDefault(entry.getKey(), new long[] { 0, 0 });
+            long count = entry.getValue()[0] - b[0];
+            long millis = entry.getValue()[1] - b[1];
+            totalCount += count;
+            totalMillis += millis;
+            Map<String, Object> collector = new LinkedHashMap<>();
+            collector.put("collections", count);
+            collector.put("pause_ms", millis);
+            collectors.put(entry.getKey(), collector);
+        }
+        Map<String, Object> gc = new LinkedHashMap<>();
+        gc.put("collections", totalCount);
+        gc.put("pause_ms", totalMillis);
+        gc.put("collectors", collectors);
+        return gc;
+    }
+
+    /**
+     * Reset the kernel's peak RSS counter so VmHWM reflects this run only.
+     * Only supported on Linux; returns false elsewhere (peak is then process-lifetime).
+     */
+    private static boolean resetPeakRss() {
+        try (Writer writer = new FileWriter("/proc/self/clear_refs")) {
+            writer.write("5");
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Read a "kB" field from /proc/self/status; -1 when unavailable. */
+    private static long readProcStatusBytes(String field) {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith(field + ":")) {
+                    String value = line.substring(field.length() + 1).trim();
+                    return Long.parseLong(value.split("\\s+")[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // fall through
+        }
+        return -1;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -1,23 +1,34 @@
 package com.facebookleads.validator;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Represents a validated phone number with formatted outputs
+ * Represents a validated phone number with formatted outputs.
+ * The formats are computed on first use (see FormattedNumber).
  */
+@JsonAdapter(ValidPhoneRecord.Json.class)
 public class ValidPhoneRecord {
     private final int rowNumber;
     private final String id;
     private final String email;
     private final String name;
     private final String originalPhoneNumber;
-    private final String e164;
-    private final String international;
-    private final String national;
+    private final FormattedNumber number;
     private final String countryCode;
     private final String region;
-    private final String type;
     private final String platform;
     private final String validationMethod;
     private final String originalCountry;
@@ -35,17 +46,23 @@ public class ValidPhoneRecord {
                            String originalPhoneNumber, String e164, String international,
                            String national, String countryCode, String region, String type, String platform,
                            String validationMethod, String originalCountry, List<String> originalColumnValues) {
+        this(rowNumber, id, email, name, originalPhoneNumber,
+                FormattedNumber.preformatted(e164, international, national, type), countryCode, region,
+                platform, validationMethod, originalCountry, originalColumnValues);
+    }
+
+    public ValidPhoneRecord(int rowNumber, String id, String email, String name,
+                           String originalPhoneNumber, FormattedNumber number, String countryCode, String region,
+                           String platform, String validationMethod, String originalCountry,
+                           List<String> originalColumnValues) {
         this.rowNumber = rowNumber;
         this.id = id;
         this.email = email;
         this.name = name;
         this.originalPhoneNumber = originalPhoneNumber;
-        this.e164 = e164;
-        this.international = international;
-        this.national = national;
+        this.number = number;
         this.countryCode = countryCode;
         this.region = region;
-        this.type = type;
         this.platform = platform;
         this.validationMethod = validationMethod;
         this.originalCountry = originalCountry;
@@ -58,14 +75,113 @@ public class ValidPhoneRecord {
     public String getEmail() { return email; }
     public String getName() { return name; }
     public String getOriginalPhoneNumber() { return originalPhoneNumber; }
-    public String getE164() { return e164; }
-    public String getInternational() { return international; }
-    public String getNational() { return national; }
+    public String getE164() { return number.getE164(); }
+    public String getInternational() { return number.getInternational(); }
+    public String getNational() { return number.getNational(); }
     public String getCountryCode() { return countryCode; }
     public String getRegion() { return region; }
-    public String getType() { return type; }
+    public String getType() { return number.getType(); }
+    public FormattedNumber getNumber() { return number; }
     public String getPlatform() { return platform; }
     public String getValidationMethod() { return validationMethod; }
     public String getOriginalCountry() { return originalCountry; }
     public List<String> getOriginalColumnValues() { return originalColumnValues; }
-}
\ No newline at end of file
+
+    /**
+     * JSON form of a record, with the same fields in the same order as gson's reflective
+     * serialization of the original string fields. Formats left out of the selection are
+     * written as null without being computed, and read back as null.
+     */
+    public static final class Json extends TypeAdapter<ValidPhoneRecord> {
+        private final Set<FormattedNumber.Field> formats;
+
+        public Json() {
+            this(EnumSet.allOf(FormattedNumber.Field.class));
+        }
+
+        public Json(Set<FormattedNumber.Field> formats) {
+            this.formats = formats;
+        }
+
+        @Override
+        public void write(JsonWriter out, ValidPhoneRecord record) throws IOException {
+            if (record == null) {
+                out.nullValue();
+                return;
+            }
+            FormattedNumber number = record.number;
+            out.beginObject();
+            out.name("rowNumber").value(record.rowNumber);
+            out.name("id").value(record.id);
+            out.name("email").value(record.email);
+            out.name("name").value(record.name);
+            out.name("originalPhoneNumber").value(record.originalPhoneNumber);
+            out.name("e164").value(number.get(FormattedNumber.Field.E164, formats));
+            out.name("international").value(number.get(FormattedNumber.Field.INTERNATIONAL, formats));
+            out.name("national").value(number.get(FormattedNumber.Field.NATIONAL, formats));
+            out.name("countryCode").value(record.countryCode);
+            out.name("region").value(record.region);
+            out.name("type").value(number.get(FormattedNumber.Field.TYPE, formats));
+            out.name("platform").value(record.platform);
+            out.name("validationMethod").value(record.validationMethod);
+            out.name("originalCountry").value(record.originalCountry);
+            out.name("originalColumnValues");
+            if (record.originalColumnValues == null) {
+                out.nullValue();
+            } else {
+                out.beginArray();
+                for (String value : record.originalColumnValues) {
+                    out.value(value);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        /** Reads what write() wrote; unknown fields are skipped, missing ones are null. */
+        @Override
+        public ValidPhoneRecord read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Map<String, String> fields = new HashMap<>();
+            int rowNumber = 0;
+            List<String> originalColumnValues = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if (field.equals("rowNumber")) {
+                    rowNumber = in.nextInt();
+                } else if (field.equals("originalColumnValues")) {
+                    originalColumnValues = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        originalColumnValues.add(nextString(in));
+                    }
+                    in.endArray();
+                } else if (in.peek() == JsonToken.STRING) {
+                    fields.put(field, in.nextString());
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ValidPhoneRecord(rowNumber, fields.get("id"), fields.get("email"), fields.get("name"),
+                    fields.get("originalPhoneNumber"), fields.get("e164"), fields.get("international"),
+                    fields.get("national"), fields.get("countryCode"), fields.get("region"), fields.get("type"),
+                    fields.get("platform"), fields.get("validationMethod"), fields.get("originalCountry"),
+                    originalColumnValues);
+        }
+
+        private static String nextString(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextString();
+        }
+    }
+}
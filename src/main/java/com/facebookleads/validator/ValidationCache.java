@@ -0,0 +1,110 @@
+package com.facebookleads.validator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe LRU cache of validation outcomes keyed by (number, detected region).
+ * Striped into independently locked segments so concurrent batch workers rarely contend.
+ *
+ * An outcome can be stored with a dependency tag (the forceful region list's fingerprint);
+ * it is only returned while the caller asks with the same tag, so a country config reload
+ * retires exactly those outcomes while everything else stays warm.
+ */
+public class ValidationCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 200_000;
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** @param maxEntries total capacity across all segments; 0 disables caching */
+    public ValidationCache(int maxEntries) {
+        this.segments = new Segment[SEGMENTS];
+        int perSegment = maxEntries <= 0 ? 0 : Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    static String key(String phoneNumber, String detectedRegion) {
+        return detectedRegion == null ? phoneNumber : phoneNumber + '\u0001' + detectedRegion;
+    }
+
+    /**
+     * @param tag current dependency tag; entries stored under a different non-zero tag miss
+     */
+    public ValidationOutcome get(String key, long tag) {
+        Segment segment = segmentFor(key);
+        if (segment.capacity == 0) {
+            return null;
+        }
+        Tagged entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        ValidationOutcome outcome = entry != null && (entry.tag == 0 || entry.tag == tag) ? entry.outcome : null;
+        (outcome != null ? hits : misses).incrementAndGet();
+        return outcome;
+    }
+
+    /** @param tag what the outcome depends on, or 0 if it holds regardless */
+    public void put(String key, ValidationOutcome outcome, long tag) {
+        Segment segment = segmentFor(key);
+        if (segment.capacity == 0) {
+            return;
+        }
+        synchronized (segment) {
+            segment.put(key, new Tagged(outcome, tag));
+        }
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Tagged {
+        final ValidationOutcome outcome;
+        final long tag;
+
+        Tagged(ValidationOutcome outcome, long tag) {
+            this.outcome = outcome;
+            this.tag = tag;
+        }
+    }
+
+    /** Access-ordered map that evicts its least recently used entry once over capacity. */
+    private static class Segment extends LinkedHashMap<String, Tagged> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Tagged> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.facebookleads.validator;
+
+/**
+ * Per-call settings for PhoneNumberValidator.validate.
+ * Defaults match a plain single-file run: progress output on, no delta base, no checkpoints,
+ * all results kept in memory.
+ */
+public class ValidationContext {
+    private boolean showProgress = true;
+    private DeltaManifest prior;
+    private CheckpointManager checkpoint;
+    private long heapBudgetBytes;
+    private boolean dedupe;
+    private boolean dropDuplicates;
+    private long dedupeMemoryBytes = DuplicateGroups.DEFAULT_MEMORY_BYTES;
+    private CancellationToken cancellation = CancellationToken.NONE;
+    private long recordBudgetMillis;
+    private long slowRecordMillis;
+
+    /** Print progress dots and the closing counts; best disabled when validating concurrently. */
+    public ValidationContext showProgress(boolean showProgress) {
+        this.showProgress = showProgress;
+        return this;
+    }
+
+    /** Manifest of a previous run whose outcomes are reused for unchanged rows, or null. */
+    public ValidationContext prior(DeltaManifest prior) {
+        this.prior = prior;
+        return this;
+    }
+
+    /** Journal that records progress and restores it on resume, or null. */
+    public ValidationContext checkpoint(CheckpointManager checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /** Heap allowed for buffered result records before they spill to temp files; 0 never spills. */
+    public ValidationContext heapBudgetBytes(long heapBudgetBytes) {
+        this.heapBudgetBytes = heapBudgetBytes;
+        return this;
+    }
+
+    /** Group valid records sharing an E.164 number; optionally leave repeats out of valid_numbers.*. */
+    public ValidationContext dedupe(boolean dedupe, boolean dropDuplicates) {
+        this.dedupe = dedupe || dropDuplicates;
+        this.dropDuplicates = dropDuplicates;
+        return this;
+    }
+
+    /** Memory for the dedupe hash table; more numbers than fit are handled in several passes. */
+    public ValidationContext dedupeMemoryBytes(long dedupeMemoryBytes) {
+        this.dedupeMemoryBytes = dedupeMemoryBytes;
+        return this;
+    }
+
+    /** Stops validation early once cancelled; the rows validated so far make a partial result. */
+    public ValidationContext cancellation(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /** Time allowed for one record's validation cascade before its remaining stages are skipped; 0 for none. */
+    public ValidationContext recordBudgetMillis(long recordBudgetMillis) {
+        this.recordBudgetMillis = recordBudgetMillis;
+        return this;
+    }
+
+    /** Log records whose cascade takes at least this long to slow_records.json; 0 for no log. */
+    public ValidationContext slowRecordMillis(long slowRecordMillis) {
+        this.slowRecordMillis = slowRecordMillis;
+        return this;
+    }
+
+    // Getters
+    public boolean isShowProgress() { return showProgress; }
+    public DeltaManifest getPrior() { return prior; }
+    public CheckpointManager getCheckpoint() { return checkpoint; }
+    public long getHeapBudgetBytes() { return heapBudgetBytes; }
+    public boolean isDedupe() { return dedupe; }
+    public boolean isDropDuplicates() { return dropDuplicates; }
+    public long getDedupeMemoryBytes() { return dedupeMemoryBytes; }
+    public CancellationToken getCancellation() { return cancellation; }
+    public long getRecordBudgetMillis() { return recordBudgetMillis; }
+    public long getSlowRecordMillis() { return slowRecordMillis; }
+}
@@ -0,0 +1,153 @@
+package com.facebookleads.validator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Result of the validation cascade for one (phone number, detected region) pair.
+ * Holds no row data, so a single instance can be cached and shared by every record
+ * (in any file) carrying the same number and country.
+ */
+public class ValidationOutcome {
+    private final boolean valid;
+    private final FormattedNumber number;
+    private final String countryCode;
+    private final String region;
+    private final String validationMethod;
+    private final ErrorDetail error;
+
+    private ValidationOutcome(boolean valid, FormattedNumber number, String countryCode, String region,
+                              String validationMethod, ErrorDetail error) {
+        this.valid = valid;
+        this.number = number;
+        this.countryCode = countryCode;
+        this.region = region;
+        this.validationMethod = validationMethod;
+        this.error = error;
+    }
+
+    /** @param number formatted on demand, when output asks for a format */
+    public static ValidationOutcome valid(FormattedNumber number, String countryCode, String region,
+                                          String validationMethod) {
+        return new ValidationOutcome(true, number, countryCode, region, validationMethod, null);
+    }
+
+    public static ValidationOutcome invalid(InvalidReason reason, String... args) {
+        return invalid(ErrorDetail.of(reason, args));
+    }
+
+    public static ValidationOutcome invalid(ErrorDetail error) {
+        return new ValidationOutcome(false, null, null, null, null, error);
+    }
+
+    /** Attach this outcome to the row it was computed for. */
+    public ValidPhoneRecord toValidRecord(PhoneRecord record) {
+        return new ValidPhoneRecord(
+                record.getRowNumber(),
+                record.getId(),
+                record.getEmail(),
+                record.getName(),
+                record.getPhoneNumber(),
+                number,
+                countryCode,
+                region,
+                record.getPlatform(),
+                validationMethod,
+                record.getCountry(),
+                record.getOriginalColumnValues());
+    }
+
+    /** Attach this outcome to the row it was computed for. */
+    public InvalidPhoneRecord toInvalidRecord(PhoneRecord record) {
+        return new InvalidPhoneRecord(
+                record.getRowNumber(),
+                record.getId(),
+                record.getEmail(),
+                record.getName(),
+                record.getPhoneNumber(),
+                error,
+                record.getPlatform(),
+                record.getCountry(),
+                record.getOriginalColumnValues());
+    }
+
+    /** Compact binary form, used by the checkpoint journal. */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(valid);
+        if (valid) {
+            String compact = number.getCompact();
+            writeNullable(out, compact);
+            if (compact == null) {
+                writeNullable(out, number.getE164());
+                writeNullable(out, number.getInternational());
+                writeNullable(out, number.getNational());
+                writeNullable(out, number.getType());
+            }
+            writeNullable(out, countryCode);
+            writeNullable(out, region);
+            writeNullable(out, validationMethod);
+        } else {
+            out.writeByte(error.getReason().ordinal());
+            out.writeByte(error.getArgCount());
+            for (int i = 0; i < error.getArgCount(); i++) {
+                writeNullable(out, error.getArg(i));
+            }
+        }
+    }
+
+    public static ValidationOutcome readFrom(DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            String compact = readNullable(in);
+            FormattedNumber number;
+            try {
+                number = compact != null
+                        ? FormattedNumber.fromCompact(compact)
+                        : FormattedNumber.preformatted(readNullable(in), readNullable(in), readNullable(in), readNullable(in));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+            return valid(number, readNullable(in), readNullable(in), readNullable(in));
+        }
+        int code = in.readUnsignedByte();
+        if (code >= InvalidReason.count()) {
+            throw new IOException("Unknown invalid reason code " + code);
+        }
+        InvalidReason reason = InvalidReason.fromCode(code);
+        String[] args = new String[in.readUnsignedByte()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readNullable(in);
+        }
+        return invalid(reason, args);
+    }
+
+    // Length-prefixed UTF-8 rather than writeUTF, which is limited to 64 KB
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Getters
+    public boolean isValid() { return valid; }
+    public FormattedNumber getNumber() { return number; }
+    public String getCountryCode() { return countryCode; }
+    public String getRegion() { return region; }
+    public String getValidationMethod() { return validationMethod; }
+    public ErrorDetail getError() { return error; }
+}
@@ -1,15 +1,31 @@
 package com.facebookleads.validator;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
- * Contains the results of phone number validation
+ * Contains the results of phone number validation.
+ * Records are held either as ResultColumns over the input rows, or in RecordStores, which may
+ * have spilled part of them to temporary files; close the result once its outputs are written.
  */
-public class ValidationResult {
-    private final List<ValidPhoneRecord> validNumbers;
-    private final List<InvalidPhoneRecord> invalidNumbers;
+public class ValidationResult implements Closeable {
+    private final RecordSequence<ValidPhoneRecord> validNumbers;
+    private final RecordSequence<InvalidPhoneRecord> invalidNumbers;
+    private final ResultColumns columns;  // null when held in RecordStores
     private final List<String> originalColumnNames;
+    private Map<String, Integer> validByCountry;
+    private long[] invalidReasonCounts;
+    private DuplicateGroups duplicates;
+    private Set<String> outputFiles;
+    private boolean dropDuplicates;
+    private String partialReason;
+    private SlowRecordLog slowRecords;
 
     public ValidationResult(List<ValidPhoneRecord> validNumbers,
                            List<InvalidPhoneRecord> invalidNumbers) {
@@ -19,18 +35,46 @@ public class ValidationResult {
     public ValidationResult(List<ValidPhoneRecord> validNumbers,
                            List<InvalidPhoneRecord> invalidNumbers,
                            List<String> originalColumnNames) {
+        this(RecordStore.of(validNumbers), RecordStore.of(invalidNumbers), originalColumnNames);
+    }
+
+    public ValidationResult(RecordStore<ValidPhoneRecord> validNumbers,
+                           RecordStore<InvalidPhoneRecord> invalidNumbers,
+                           List<String> originalColumnNames) {
+        this(validNumbers, invalidNumbers, null, originalColumnNames);
+    }
+
+    /** Results as columns over the input rows, which must stay alive until outputs are written. */
+    public ValidationResult(ResultColumns columns, List<String> originalColumnNames) {
+        this(columns.validRecords(), columns.invalidRecords(), columns, originalColumnNames);
+    }
+
+    private ValidationResult(RecordSequence<ValidPhoneRecord> validNumbers,
+                             RecordSequence<InvalidPhoneRecord> invalidNumbers,
+                             ResultColumns columns,
+                             List<String> originalColumnNames) {
         this.validNumbers = validNumbers;
         this.invalidNumbers = invalidNumbers;
+        this.columns = columns;
         this.originalColumnNames = originalColumnNames == null || originalColumnNames.isEmpty()
                 ? null
                 : Collections.unmodifiableList(originalColumnNames);
     }
 
-    public List<ValidPhoneRecord> getValidNumbers() {
+    /** Empty stores for a validation run sharing one heap budget (0 bytes = never spill). */
+    public static RecordStore<ValidPhoneRecord> newValidStore(RecordStore.Budget budget) {
+        return new RecordStore<>(VALID_CODEC, budget);
+    }
+
+    public static RecordStore<InvalidPhoneRecord> newInvalidStore(RecordStore.Budget budget) {
+        return new RecordStore<>(INVALID_CODEC, budget);
+    }
+
+    public RecordSequence<ValidPhoneRecord> getValidNumbers() {
         return validNumbers;
     }
 
-    public List<InvalidPhoneRecord> getInvalidNumbers() {
+    public RecordSequence<InvalidPhoneRecord> getInvalidNumbers() {
         return invalidNumbers;
     }
 
@@ -38,21 +82,320 @@ public class ValidationResult {
     public List<String> getOriginalColumnNames() {
         return originalColumnNames;
     }
-    
+
     public int getTotalCount() {
         return validNumbers.size() + invalidNumbers.size();
     }
-    
+
     public int getValidCount() {
         return validNumbers.size();
     }
-    
+
     public int getInvalidCount() {
         return invalidNumbers.size();
     }
-    
+
     public double getSuccessRate() {
         return getTotalCount() > 0 ? (validNumbers.size() * 100.0 / getTotalCount()) : 0.0;
     }
-}
 
+    /** Valid numbers per region, sorted by region; computed once since it needs a pass over the records. */
+    public synchronized Map<String, Integer> getValidByCountry() {
+        if (validByCountry == null) {
+            Map<String, Integer> countryStats = new TreeMap<>();
+            if (columns != null) {
+                // Straight from the outcomes, without building record views
+                for (int row = 0; row < columns.size(); row++) {
+                    if (columns.isValid(row)) {
+                        countryStats.merge(columns.getOutcome(row).getRegion(), 1, Integer::sum);
+                    }
+                }
+            } else {
+                for (ValidPhoneRecord record : validNumbers) {
+                    countryStats.merge(record.getRegion(), 1, Integer::sum);
+                }
+            }
+            validByCountry = Collections.unmodifiableMap(countryStats);
+        }
+        return validByCountry;
+    }
+
+    /** Counts per InvalidReason ordinal, as tallied by the validator while it built the stores. */
+    public synchronized void setInvalidReasonCounts(long[] counts) {
+        this.invalidReasonCounts = counts.clone();
+    }
+
+    /**
+     * Invalid numbers per reason code, in InvalidReason order, leaving out reasons that did not
+     * occur. Uses the validator's counts; results built from plain lists are counted here once.
+     */
+    public synchronized Map<String, Long> getInvalidByReason() {
+        if (invalidReasonCounts == null) {
+            long[] counts = new long[InvalidReason.count()];
+            for (InvalidPhoneRecord record : invalidNumbers) {
+                ErrorDetail error = record.getErrorDetail();
+                counts[(error != null ? error.getReason() : InvalidReason.OTHER).ordinal()]++;
+            }
+            invalidReasonCounts = counts;
+        }
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        for (InvalidReason reason : InvalidReason.values()) {
+            if (invalidReasonCounts[reason.ordinal()] > 0) {
+                byReason.put(reason.name(), invalidReasonCounts[reason.ordinal()]);
+            }
+        }
+        return Collections.unmodifiableMap(byReason);
+    }
+
+    /**
+     * Attach duplicate groups found among the valid numbers.
+     * @param drop leave repeated numbers out of valid_numbers.json/csv
+     */
+    public void setDuplicates(DuplicateGroups duplicates, boolean drop) {
+        this.duplicates = duplicates;
+        this.dropDuplicates = drop;
+    }
+
+    /** Duplicate groups when validated in dedupe mode; null otherwise. */
+    public DuplicateGroups getDuplicates() {
+        return duplicates;
+    }
+
+    public boolean isDropDuplicates() {
+        return dropDuplicates;
+    }
+
+    /** Validation stopped before the end of the input (see CancellationToken); the results cover the rows before. */
+    public void setPartial(String reason) {
+        this.partialReason = reason;
+    }
+
+    public boolean isPartial() {
+        return partialReason != null;
+    }
+
+    /** Why validation stopped early, or null for a complete result. */
+    public String getPartialReason() {
+        return partialReason;
+    }
+
+    /** Names of the files written for this result in its output directory (see OutputGenerator). */
+    public void setOutputFiles(Set<String> outputFiles) {
+        this.outputFiles = outputFiles;
+    }
+
+    /** The files OutputGenerator wrote for this result; empty before it has run. */
+    public Set<String> getOutputFiles() {
+        return outputFiles != null ? Collections.unmodifiableSet(outputFiles) : Collections.emptySet();
+    }
+
+    public void setSlowRecords(SlowRecordLog slowRecords) {
+        this.slowRecords = slowRecords;
+    }
+
+    /** Records whose validation was slow, when validated with a slow-record threshold; null otherwise. */
+    public SlowRecordLog getSlowRecords() {
+        return slowRecords;
+    }
+
+    /** Number of spill runs written to disk for this result. */
+    public int getSpilledRunCount() {
+        return columns != null ? 0 : validStore().getRunCount() + invalidStore().getRunCount();
+    }
+
+    public long getSpilledBytes() {
+        return columns != null ? 0 : validStore().getSpilledBytes() + invalidStore().getSpilledBytes();
+    }
+
+    /** Delete any spilled runs. */
+    @Override
+    public void close() {
+        if (columns == null) {
+            validStore().close();
+            invalidStore().close();
+        }
+        if (duplicates != null) {
+            duplicates.close();
+        }
+    }
+
+    private RecordStore<ValidPhoneRecord> validStore() {
+        return (RecordStore<ValidPhoneRecord>) validNumbers;
+    }
+
+    private RecordStore<InvalidPhoneRecord> invalidStore() {
+        return (RecordStore<InvalidPhoneRecord>) invalidNumbers;
+    }
+
+    // Rough heap cost of a record: object header and fields, plus each String's header and bytes
+    private static final int RECORD_OVERHEAD = 96;
+    // FormattedNumber and its PhoneNumber; formats computed later are not counted
+    private static final int NUMBER_BYTES = 96;
+    private static final int STRING_OVERHEAD = 40;
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length();
+    }
+
+    private static long columnBytes(List<String> values) {
+        if (values == null) {
+            return 0;
+        }
+        long bytes = 64 + 4L * values.size();
+        for (String value : values) {
+            bytes += stringBytes(value);
+        }
+        return bytes;
+    }
+
+    // Dictionary slots for the repeating fields; original column i uses slot COLUMN_SLOTS + i
+    private static final int SLOT_COUNTRY_CODE = 0;
+    private static final int SLOT_REGION = 1;
+    private static final int SLOT_TYPE = 2;
+    private static final int SLOT_PLATFORM = 3;
+    private static final int SLOT_METHOD = 4;
+    private static final int SLOT_COUNTRY = 5;
+    private static final int SLOT_ERROR_ARG = 6;
+    private static final int COLUMN_SLOTS = 7;
+
+    private static final RecordStore.Codec<ValidPhoneRecord> VALID_CODEC = new RecordStore.Codec<ValidPhoneRecord>() {
+        @Override
+        public void write(RecordStore.RecordOutput out, ValidPhoneRecord record) throws IOException {
+            out.writeInt(record.getRowNumber());
+            out.writeText(record.getId());
+            out.writeText(record.getEmail());
+            out.writeText(record.getName());
+            out.writeText(record.getOriginalPhoneNumber());
+            writeNumber(out, record.getNumber());
+            out.writeShared(SLOT_COUNTRY_CODE, record.getCountryCode());
+            out.writeShared(SLOT_REGION, record.getRegion());
+            out.writeShared(SLOT_PLATFORM, record.getPlatform());
+            out.writeShared(SLOT_METHOD, record.getValidationMethod());
+            out.writeShared(SLOT_COUNTRY, record.getOriginalCountry());
+            out.writeStrings(COLUMN_SLOTS, record.getOriginalColumnValues());
+        }
+
+        @Override
+        public ValidPhoneRecord read(RecordStore.RecordInput in) throws IOException {
+            return new ValidPhoneRecord(in.readInt(), in.readText(), in.readText(), in.readText(),
+                    in.readText(), readNumber(in),
+                    in.readShared(SLOT_COUNTRY_CODE), in.readShared(SLOT_REGION),
+                    in.readShared(SLOT_PLATFORM), in.readShared(SLOT_METHOD), in.readShared(SLOT_COUNTRY),
+                    in.readStrings(COLUMN_SLOTS));
+        }
+
+        @Override
+        public long estimateHeapBytes(ValidPhoneRecord record) {
+            return RECORD_OVERHEAD + stringBytes(record.getId()) + stringBytes(record.getEmail())
+                    + stringBytes(record.getName()) + stringBytes(record.getOriginalPhoneNumber())
+                    + NUMBER_BYTES + stringBytes(record.getCountryCode()) + stringBytes(record.getRegion())
+                    + stringBytes(record.getPlatform()) + stringBytes(record.getValidationMethod())
+                    + stringBytes(record.getOriginalCountry()) + columnBytes(record.getOriginalColumnValues());
+        }
+    };
+
+    private static final RecordStore.Codec<InvalidPhoneRecord> INVALID_CODEC = new RecordStore.Codec<InvalidPhoneRecord>() {
+        @Override
+        public void write(RecordStore.RecordOutput out, InvalidPhoneRecord record) throws IOException {
+            out.writeInt(record.getRowNumber());
+            out.writeText(record.getId());
+            out.writeText(record.getEmail());
+            out.writeText(record.getName());
+            out.writeText(record.getOriginalPhoneNumber());
+            writeError(out, record.getErrorDetail());
+            out.writeShared(SLOT_PLATFORM, record.getPlatform());
+            out.writeShared(SLOT_COUNTRY, record.getOriginalCountry());
+            out.writeText(record.getE164());
+            out.writeText(record.getInternational());
+            out.writeText(record.getNational());
+            out.writeShared(SLOT_COUNTRY_CODE, record.getCountryCode());
+            out.writeShared(SLOT_REGION, record.getRegion());
+            out.writeShared(SLOT_TYPE, record.getType());
+            out.writeShared(SLOT_METHOD, record.getValidationMethod());
+            out.writeStrings(COLUMN_SLOTS, record.getOriginalColumnValues());
+        }
+
+        @Override
+        public InvalidPhoneRecord read(RecordStore.RecordInput in) throws IOException {
+            return new InvalidPhoneRecord(in.readInt(), in.readText(), in.readText(), in.readText(),
+                    in.readText(), readError(in), in.readShared(SLOT_PLATFORM),
+                    in.readShared(SLOT_COUNTRY), in.readText(), in.readText(), in.readText(),
+                    in.readShared(SLOT_COUNTRY_CODE), in.readShared(SLOT_REGION), in.readShared(SLOT_TYPE),
+                    in.readShared(SLOT_METHOD), in.readStrings(COLUMN_SLOTS));
+        }
+
+        @Override
+        public long estimateHeapBytes(InvalidPhoneRecord record) {
+            return RECORD_OVERHEAD + stringBytes(record.getId()) + stringBytes(record.getEmail())
+                    + stringBytes(record.getName()) + stringBytes(record.getOriginalPhoneNumber())
+                    + errorBytes(record.getErrorDetail()) + stringBytes(record.getPlatform())
+                    + stringBytes(record.getOriginalCountry()) + columnBytes(record.getOriginalColumnValues());
+        }
+    };
+
+    // Compact form of a parsed number (see FormattedNumber), or 0 and the four formatted strings
+    private static void writeNumber(RecordStore.RecordOutput out, FormattedNumber number) throws IOException {
+        String compact = number.getCompact();
+        if (compact != null) {
+            out.writeText(compact);
+            return;
+        }
+        out.writeInt(0);
+        out.writeText(number.getE164());
+        out.writeText(number.getInternational());
+        out.writeText(number.getNational());
+        out.writeShared(SLOT_TYPE, number.getType());
+    }
+
+    private static FormattedNumber readNumber(RecordStore.RecordInput in) throws IOException {
+        String compact = in.readText();
+        if (compact == null) {
+            return FormattedNumber.preformatted(in.readText(), in.readText(), in.readText(), in.readShared(SLOT_TYPE));
+        }
+        try {
+            return FormattedNumber.fromCompact(compact);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    // Reason code + 1 (0 = no error), parameter count, then the parameters
+    private static void writeError(RecordStore.RecordOutput out, ErrorDetail error) throws IOException {
+        if (error == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(error.getReason().ordinal() + 1);
+        out.writeInt(error.getArgCount());
+        for (int i = 0; i < error.getArgCount(); i++) {
+            // The first parameter (usually a region) repeats; later ones such as E.164 numbers do not
+            if (i == 0) {
+                out.writeShared(SLOT_ERROR_ARG, error.getArg(i));
+            } else {
+                out.writeText(error.getArg(i));
+            }
+        }
+    }
+
+    private static ErrorDetail readError(RecordStore.RecordInput in) throws IOException {
+        int code = in.readInt();
+        if (code == 0) {
+            return null;
+        }
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = i == 0 ? in.readShared(SLOT_ERROR_ARG) : in.readText();
+        }
+        return ErrorDetail.of(InvalidReason.fromCode(code - 1), args);
+    }
+
+    private static long errorBytes(ErrorDetail error) {
+        long bytes = 0;
+        if (error != null) {
+            for (int i = 0; i < error.getArgCount(); i++) {
+                bytes += stringBytes(error.getArg(i));
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,511 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running validator process, so requests don't pay for a JVM start each and share one
+ * validator and outcome cache. Work is scheduled on the two lanes of a JobScheduler:
+ *
+ *   POST /validate   {"phone": "...", "country": "..."} or {"numbers": [{"phone", "country",
+ *                    "id", "email", "name", "platform"}, ...]}; answered directly with
+ *                    valid_numbers/invalid_numbers in the output file format. Up to
+ *                    JobScheduler.SMALL_BATCH_MAX numbers run on the interactive lane,
+ *                    larger batches on the bulk lane.
+ *   POST /jobs       {"input": file, "output": dir, "args": ["--page-index", ...]}; validates
+ *                    a file on the bulk lane like a CLI run with those options, returns a job id
+ *   GET  /jobs/{id}  job status, queue wait and counts
+ *   POST /jobs/{id}/cancel  stop a job; a running one writes its results so far, marked partial
+ *   GET  /metrics    per-lane queue depth, throughput and wait times; heap occupancy and the
+ *                    batch sizes adapted to it (see HeapMonitor)
+ *
+ * Usage: java -cp phone-validator.jar com.facebookleads.validator.ValidationService
+ *            [--port N] [--interactive-threads N] [--bulk-threads N] [--bulk-queue N] [options]
+ *
+ * Any other options are CLI options (see Main). --country-config, --fast-path/--fast-regions and
+ * --cache-size set up the process and its shared cache; the rest are defaults for every job,
+ * which its own "args" add to or override. A job asking for another country config, fast path
+ * or cache size is rejected rather than run with the service's. A job validates one file as
+ * InputRun does, so several inputs, a directory or glob, --preview, --input-format and --threads
+ * are rejected as well.
+ *
+ * Binds to localhost only: it reads and writes whatever paths a job names.
+ */
+public class ValidationService {
+
+    public static final int DEFAULT_PORT = 8090;
+
+    private static final int INTERACTIVE_QUEUE = 10_000;
+    /** Jobs kept for GET /jobs/{id}; the oldest finished ones are forgotten first. */
+    private static final int MAX_JOBS = 1000;
+    /** HTTP handler threads per interactive lane thread; a quarter of them may wait on the bulk lane. */
+    private static final int HANDLERS_PER_INTERACTIVE_THREAD = 4;
+    /** Longest a /validate request waits for its batch before it is cancelled. */
+    private static final long VALIDATE_TIMEOUT_SECONDS = 60;
+
+    private final String[] settings;
+    private final CliOptions defaults;
+    private final ValidationCache cache;
+    private final PhoneNumberValidator validator;
+    private final JobScheduler scheduler;
+    private final Gson gson;
+    private final long startMillis = System.currentTimeMillis();
+    private final AtomicLong jobIds = new AtomicLong();
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    // Handler threads waiting on a /validate batch in the bulk lane, so lookups always find a free one
+    private final Semaphore bulkWaiters;
+    private HttpServer server;
+    private ExecutorService handlers;
+
+    /** @param settings CLI options without paths, see CliOptions.parseSettings */
+    public ValidationService(List<String> settings, JobScheduler scheduler) {
+        this.settings = settings.toArray(new String[0]);
+        this.defaults = CliOptions.parseSettings(this.settings);
+        this.cache = new ValidationCache(defaults.getCacheSize());
+        this.validator = new PhoneNumberValidator(cache);
+        this.scheduler = scheduler;
+        this.bulkWaiters = new Semaphore(scheduler.getThreads(JobScheduler.Lane.INTERACTIVE));
+        this.gson = new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(ValidPhoneRecord.class, new ValidPhoneRecord.Json())
+                .create();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int interactiveThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        int bulkThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        int bulkQueue = 64;
+        List<String> settings = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--port":
+                        port = CliOptions.parsePositiveInt(arg, CliOptions.requireValue(args, ++i, arg));
+                        break;
+                    case "--interactive-threads":
+                        interactiveThreads = CliOptions.parsePositiveInt(arg, CliOptions.requireValue(args, ++i, arg));
+                        break;
+                    case "--bulk-threads":
+                        bulkThreads = CliOptions.parsePositiveInt(arg, CliOptions.requireValue(args, ++i, arg));
+                        break;
+                    case "--bulk-queue":
+                        bulkQueue = CliOptions.parsePositiveInt(arg, CliOptions.requireValue(args, ++i, arg));
+                        break;
+                    default:
+                        // A CLI option (or its value), checked by CliOptions below
+                        settings.add(arg);
+                }
+            }
+            String unsupported = unsupported(CliOptions.parseSettings(settings.toArray(new String[0])));
+            if (unsupported != null) {
+                throw new IllegalArgumentException(unsupported);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Error: " + e.getMessage());
+            System.err.println("Usage: ValidationService [--port N] [--interactive-threads N] [--bulk-threads N]"
+                    + " [--bulk-queue N] [--cache-size N] [--country-config FILE] [--fast-path] [CLI options]");
+            System.exit(1);
+            return;
+        }
+
+        JobScheduler scheduler = new JobScheduler(interactiveThreads, INTERACTIVE_QUEUE, bulkThreads, bulkQueue);
+        ValidationService service = new ValidationService(settings, scheduler);
+        Main.installProcessOptions(service.defaults);
+        HttpServer server = service.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+        System.out.println("🚦 Validation service on http://localhost:" + server.getAddress().getPort()
+                + " (interactive lane: " + interactiveThreads + " thread(s), bulk lane: " + bulkThreads
+                + " thread(s), " + bulkQueue + " queued job(s) max)");
+    }
+
+    /** Bind the HTTP endpoints on localhost; port 0 picks a free port. */
+    public HttpServer start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/validate", exchange -> handle(exchange, "POST", this::validateNumbers));
+        server.createContext("/jobs", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/jobs")) {
+                handle(exchange, "POST", this::submitJob);
+            } else if (path.endsWith("/cancel")) {
+                handle(exchange, "POST", this::cancelJob);
+            } else {
+                handle(exchange, "GET", this::jobStatus);
+            }
+        });
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", ignored -> metrics()));
+        // Handlers block until their task is done; the lanes do the validating
+        handlers = Executors.newFixedThreadPool(
+                scheduler.getThreads(JobScheduler.Lane.INTERACTIVE) * HANDLERS_PER_INTERACTIVE_THREAD);
+        server.setExecutor(handlers);
+        server.start();
+        return server;
+    }
+
+    /** Stop serving, and stop the handler threads and the scheduler's lanes. */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            handlers.shutdownNow();
+        }
+        scheduler.close();
+    }
+
+    private interface Handler {
+        Object handle(HttpExchange exchange) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        int status = 200;
+        Object body;
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                status = 405;
+                body = error("Use " + method);
+            } else {
+                body = handler.handle(exchange);
+                if (body == null) {
+                    status = 404;
+                    body = error("Not found: " + exchange.getRequestURI().getPath());
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            status = 503;
+            body = error("Lane is full, retry later; submit large batches as a file to /jobs");
+        } catch (TimeoutException e) {
+            status = 504;
+            body = error("Not validated within " + VALIDATE_TIMEOUT_SECONDS + " s; submit large batches as a file to /jobs");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = error(e instanceof ExecutionException ? String.valueOf(e.getCause()) : String.valueOf(e));
+        }
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Collections.singletonMap("error", message);
+    }
+
+    private static JsonObject readJson(HttpExchange exchange) throws IOException {
+        JsonElement json;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            json = JsonParser.parseReader(reader);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getMessage());
+        }
+        if (!json.isJsonObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return json.getAsJsonObject();
+    }
+
+    private static String string(JsonObject json, String field) {
+        JsonElement value = json.get(field);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private Object validateNumbers(HttpExchange exchange) throws Exception {
+        JsonObject json = readJson(exchange);
+        List<PhoneRecord> records = new ArrayList<>();
+        if (json.has("numbers")) {
+            JsonArray numbers = json.getAsJsonArray("numbers");
+            for (int i = 0; i < numbers.size(); i++) {
+                records.add(toRecord(i + 1, numbers.get(i).getAsJsonObject()));
+            }
+        } else {
+            records.add(toRecord(1, json));
+        }
+
+        JobScheduler.Lane lane = JobScheduler.laneFor(records.size());
+        // Only some handler threads may wait on the bulk lane, behind file jobs
+        boolean bulk = lane == JobScheduler.Lane.BULK;
+        if (bulk && !bulkWaiters.tryAcquire()) {
+            throw new RejectedExecutionException("Too many large batches waiting");
+        }
+        try {
+            return validateOnLane(lane, records);
+        } finally {
+            if (bulk) {
+                bulkWaiters.release();
+            }
+        }
+    }
+
+    private Map<String, Object> validateOnLane(JobScheduler.Lane lane, List<PhoneRecord> records) throws Exception {
+        long queuedAt = System.nanoTime();
+        Future<Map<String, Object>> future = scheduler.submit(lane, () -> {
+            long waitNanos = System.nanoTime() - queuedAt;
+            List<ValidPhoneRecord> valid = new ArrayList<>();
+            List<InvalidPhoneRecord> invalid = new ArrayList<>();
+            for (PhoneRecord record : records) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Cancelled after the request timed out
+                    return null;
+                }
+                ValidationOutcome outcome = validator.validateNumber(record.getPhoneNumber(), record.getCountry());
+                if (outcome.isValid()) {
+                    valid.add(outcome.toValidRecord(record));
+                } else {
+                    invalid.add(outcome.toInvalidRecord(record));
+                }
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("total_numbers", records.size());
+            result.put("valid_numbers", valid);
+            result.put("invalid_numbers", invalid);
+            result.put("lane", lane.name().toLowerCase());
+            result.put("wait_ms", Math.round(waitNanos / 1e4) / 100.0);
+            return result;
+        });
+        try {
+            return future.get(VALIDATE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // Free the lane: a queued task never starts, a running one stops at the next record
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    private static PhoneRecord toRecord(int rowNumber, JsonObject number) {
+        String phone = string(number, "phone");
+        if (phone == null || phone.trim().isEmpty()) {
+            throw new IllegalArgumentException("Phone number cannot be empty (row " + rowNumber + ")");
+        }
+        return new PhoneRecord(rowNumber, string(number, "id"), string(number, "email"), string(number, "name"),
+                phone.trim(), string(number, "country"), string(number, "platform"), null);
+    }
+
+    private Object submitJob(HttpExchange exchange) throws IOException {
+        JsonObject json = readJson(exchange);
+        String input = string(json, "input");
+        String output = string(json, "output");
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("A job needs \"input\" and \"output\"");
+        }
+        if (Main.STDIN.equals(input)) {
+            throw new IllegalArgumentException("Jobs read files; use the CLI for standard input");
+        }
+        // The service's options first, so the job's own override them
+        List<String> args = new ArrayList<>(Arrays.asList(settings));
+        if (json.has("args")) {
+            for (JsonElement arg : json.getAsJsonArray("args")) {
+                args.add(arg.getAsString());
+            }
+        }
+        args.add(input);
+        args.add(output);
+        CliOptions options = CliOptions.parse(args.toArray(new String[0]));
+        if (options.getInputs().size() > 1) {
+            throw new IllegalArgumentException("A job validates one input file, not " + options.getInputs());
+        }
+        if (new File(input).isDirectory() || BatchProcessor.isGlob(input)) {
+            throw new IllegalArgumentException("A job validates one input file, not a directory or glob: " + input);
+        }
+        String unsupported = unsupported(options);
+        if (unsupported != null) {
+            throw new IllegalArgumentException(unsupported);
+        }
+        if (!Objects.equals(options.getCountryConfig(), defaults.getCountryConfig())
+                || !Objects.equals(options.getFastPathRegions(), defaults.getFastPathRegions())
+                || options.getCacheSize() != defaults.getCacheSize()) {
+            throw new IllegalArgumentException("--country-config, --fast-path, --fast-regions and --cache-size"
+                    + " apply to the whole service; set them when starting it");
+        }
+
+        Job job = new Job("job-" + jobIds.incrementAndGet(), input, output, options.newCancellationToken());
+        addJob(job);
+        try {
+            scheduler.submit(JobScheduler.Lane.BULK, () -> job.run(options));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job.status();
+    }
+
+    /** Why a job cannot run with these options, or null if it can. */
+    private static String unsupported(CliOptions options) {
+        if (options.getPreviewSize() > 0 || options.getPreviewSeed() != null) {
+            return "--preview is not supported by the service: a job validates the whole file";
+        }
+        if (options.getInputFormat() != null) {
+            return "--input-format is not supported by the service: a job reads a file, whose extension gives its format";
+        }
+        if (options.getThreads() != CliOptions.parseSettings(new String[0]).getThreads()) {
+            return "--threads is not supported by the service: a job validates one file; use --bulk-threads";
+        }
+        return null;
+    }
+
+    /** Track a job, forgetting the oldest finished jobs beyond MAX_JOBS; refused if MAX_JOBS are unfinished. */
+    private void addJob(Job job) {
+        synchronized (jobs) {
+            Iterator<Job> oldest = jobs.values().iterator();
+            while (jobs.size() >= MAX_JOBS && oldest.hasNext()) {
+                if (oldest.next().isFinished()) {
+                    oldest.remove();
+                }
+            }
+            if (jobs.size() >= MAX_JOBS) {
+                throw new RejectedExecutionException(MAX_JOBS + " jobs unfinished");
+            }
+            jobs.put(job.id, job);
+        }
+    }
+
+    private Object jobStatus(HttpExchange exchange) {
+        String id = exchange.getRequestURI().getPath().substring("/jobs/".length());
+        Job job = jobs.get(id);
+        return job != null ? job.status() : null;
+    }
+
+    private Object cancelJob(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        Job job = jobs.get(path.substring("/jobs/".length(), path.length() - "/cancel".length()));
+        if (job == null) {
+            return null;
+        }
+        if (!job.isFinished()) {
+            job.cancellation.cancel("cancelled");
+        }
+        return job.status();
+    }
+
+    private Object metrics() {
+        Map<String, Integer> states = new TreeMap<>();
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                states.merge(job.state, 1, Integer::sum);
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("uptime_s", (System.currentTimeMillis() - startMillis) / 1000);
+        metrics.put("lanes", scheduler.metrics());
+        metrics.put("jobs", states);
+        Map<String, Object> outcomeCache = new LinkedHashMap<>();
+        outcomeCache.put("entries", cache.size());
+        outcomeCache.put("hits", cache.getHits());
+        outcomeCache.put("misses", cache.getMisses());
+        metrics.put("outcome_cache", outcomeCache);
+        metrics.put("heap", HeapMonitor.get().metrics());
+        return metrics;
+    }
+
+    /** A file validation on the bulk lane. */
+    private final class Job {
+        private final String id;
+        private final String input;
+        private final String output;
+        private final CancellationToken cancellation;
+        private final long submittedMillis = System.currentTimeMillis();
+        private volatile String state = "queued";
+        private volatile long startedMillis;
+        private volatile long finishedMillis;
+        private volatile boolean cached;
+        private volatile int totalCount;
+        private volatile int validCount;
+        private volatile int invalidCount;
+        private volatile String error;
+        private volatile String partialReason;
+
+        Job(String id, String input, String output, CancellationToken cancellation) {
+            this.id = id;
+            this.input = input;
+            this.output = output;
+            this.cancellation = cancellation;
+        }
+
+        boolean isFinished() {
+            return finishedMillis > 0;
+        }
+
+        /** Validate the input as a single-file CLI run with these options would (see InputRun). */
+        Void run(CliOptions options) {
+            startedMillis = System.currentTimeMillis();
+            if (cancellation.isCancelled()) {
+                // Cancelled (or past its deadline) while queued: free the lane without starting
+                error = cancellation.getReason() + " before start";
+                state = "cancelled";
+                finishedMillis = startedMillis;
+                return null;
+            }
+            state = "running";
+            try {
+                // Bulk jobs run side by side, so each gets an equal share of the heap budget
+                InputRun run = new InputRun(options, validator)
+                        .cancellation(cancellation)
+                        .concurrent(scheduler.getThreads(JobScheduler.Lane.BULK));
+                try (ValidationResult result = run.run(input, output)) {
+                    if (result == null) {
+                        cached = true;
+                    } else {
+                        partialReason = result.getPartialReason();
+                        totalCount = result.getTotalCount();
+                        validCount = result.getValidCount();
+                        invalidCount = result.getInvalidCount();
+                    }
+                }
+                state = "completed";
+            } catch (Exception e) {
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                state = "failed";
+                System.err.println("❌ " + id + " (" + input + ") failed: " + error);
+            } finally {
+                finishedMillis = System.currentTimeMillis();
+            }
+            return null;
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("job_id", id);
+            status.put("status", state);
+            status.put("input", input);
+            status.put("output", output);
+            long started = startedMillis;
+            long finished = finishedMillis;
+            status.put("wait_ms", (started > 0 ? started : System.currentTimeMillis()) - submittedMillis);
+            if (started > 0) {
+                status.put("run_ms", (finished > 0 ? finished : System.currentTimeMillis()) - started);
+            }
+            if (cached) {
+                status.put("cached", true);
+            }
+            if (partialReason != null) {
+                status.put("partial", partialReason);
+            }
+            if (state.equals("completed") && !cached) {
+                status.put("total_numbers", totalCount);
+                status.put("valid_count", validCount);
+                status.put("invalid_count", invalidCount);
+            }
+            if (error != null) {
+                status.put("error", error);
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointManagerTest {
+
+    private static final int ROWS = 50;
+    private static final int COMMITTED = 20;
+    // Checkpoints are only committed explicitly here
+    private static final long INTERVAL_SECONDS = 3600;
+
+    private static final List<PhoneRecord> RECORDS = new ArrayList<>();
+    private static final List<ValidationOutcome> OUTCOMES = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    private String input;
+    private String output;
+
+    @BeforeAll
+    static void validate() {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        for (int i = 0; i < ROWS; i++) {
+            String phone = i % 4 == 0 ? "12" + i : "+55 11 9" + (12340000 + i);
+            PhoneRecord record = new PhoneRecord(i + 1, String.valueOf(i), null, "Zoë " + i, phone, "BR", "fb", null);
+            RECORDS.add(record);
+            OUTCOMES.add(validator.validateNumber(phone, "BR"));
+        }
+    }
+
+    @BeforeEach
+    void writeInput() throws IOException {
+        Path file = dir.resolve("leads.csv");
+        Files.write(file, "id,phone\n".getBytes(StandardCharsets.UTF_8));
+        input = file.toString();
+        output = dir.resolve("out").toString();
+    }
+
+    @Test
+    void journalCutMidRecordResumesFromTheLastCheckpoint() throws IOException {
+        checkpointAfter(COMMITTED);
+        // Killed while the journal was being appended to: later rows and half a record past the checkpoint
+        Path journal = dir.resolve("out").resolve(CheckpointManager.DIR_NAME).resolve("journal.bin");
+        long committedBytes = Files.size(journal);
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(tail);
+        for (int i = COMMITTED; i < COMMITTED + 5; i++) {
+            OUTCOMES.get(i).writeTo(out);
+        }
+        byte[] bytes = tail.toByteArray();
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 3), StandardOpenOption.APPEND);
+
+        CheckpointManager checkpoint = CheckpointManager.open(input, output, INTERVAL_SECONDS, true);
+        ResultCollector results = new ResultCollector(RECORDS, 0);
+        assertEquals(COMMITTED, checkpoint.restore(RECORDS, results));
+        assertEquals(committedBytes, Files.size(journal));
+        for (int i = COMMITTED; i < ROWS; i++) {
+            checkpoint.record(OUTCOMES.get(i));
+            results.add(OUTCOMES.get(i));
+        }
+        assertEquals(ROWS, checkpoint.getRowsDone());
+        checkpoint.complete();
+        assertFalse(CheckpointManager.exists(output));
+
+        assertSameAsUninterrupted(results.toResult(null));
+    }
+
+    @Test
+    void resumeAfterAbortContinuesAtTheSavedRow() throws IOException {
+        CheckpointManager first = CheckpointManager.open(input, output, INTERVAL_SECONDS, false);
+        first.restore(RECORDS, new ResultCollector(RECORDS, 0));
+        for (int i = 0; i < 33; i++) {
+            first.record(OUTCOMES.get(i));
+        }
+        first.abort();
+        assertTrue(CheckpointManager.exists(output));
+
+        CheckpointManager checkpoint = CheckpointManager.open(input, output, INTERVAL_SECONDS, true);
+        ResultCollector results = new ResultCollector(RECORDS, 0);
+        assertEquals(33, checkpoint.restore(RECORDS, results));
+        for (int i = 33; i < ROWS; i++) {
+            checkpoint.record(OUTCOMES.get(i));
+            results.add(OUTCOMES.get(i));
+        }
+        checkpoint.complete();
+        assertSameAsUninterrupted(results.toResult(null));
+    }
+
+    @Test
+    void checkpointOfAChangedInputIsNotResumed() throws IOException {
+        checkpointAfter(COMMITTED);
+        Files.write(Paths.get(input), "1,+55 11 912340000\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertStartsOver();
+
+        checkpointAfter(COMMITTED);
+        assertTrue(Paths.get(input).toFile().setLastModified(Paths.get(input).toFile().lastModified() - 60_000));
+        assertStartsOver();
+    }
+
+    @Test
+    void checkpointOfAnotherInputPathIsNotResumed() throws IOException {
+        checkpointAfter(COMMITTED);
+        // Same size and modification time, different file
+        Path other = dir.resolve("other.csv");
+        Files.copy(Paths.get(input), other);
+        assertTrue(other.toFile().setLastModified(Paths.get(input).toFile().lastModified()));
+        input = other.toString();
+        assertStartsOver();
+    }
+
+    @Test
+    void checkpointOfAnotherConfigurationIsNotResumed() throws IOException {
+        checkpointAfter(COMMITTED);
+        CountryRegistry previous = CountryRegistry.install(
+                new CountryRegistry(CountryRegistry.getDefault().getCountries(), Arrays.asList("US")));
+        try {
+            assertStartsOver();
+        } finally {
+            CountryRegistry.install(previous);
+        }
+    }
+
+    @Test
+    void journalShorterThanTheCheckpointIsNotResumed() throws IOException {
+        checkpointAfter(COMMITTED);
+        Path journal = dir.resolve("out").resolve(CheckpointManager.DIR_NAME).resolve("journal.bin");
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 1));
+        assertStartsOver();
+    }
+
+    @Test
+    void inputWithAnotherRowCountIsRefused() throws IOException {
+        checkpointAfter(COMMITTED);
+        CheckpointManager checkpoint = CheckpointManager.open(input, output, INTERVAL_SECONDS, true);
+        List<PhoneRecord> fewer = RECORDS.subList(0, ROWS - 1);
+        assertThrows(IOException.class, () -> checkpoint.restore(fewer, new ResultCollector(fewer, 0)));
+    }
+
+    /** Validate the first rows and stop with their checkpoint saved, as after a failure. */
+    private void checkpointAfter(int rows) throws IOException {
+        CheckpointManager checkpoint = CheckpointManager.open(input, output, INTERVAL_SECONDS, false);
+        assertEquals(0, checkpoint.restore(RECORDS, new ResultCollector(RECORDS, 0)));
+        for (int i = 0; i < rows; i++) {
+            checkpoint.record(OUTCOMES.get(i));
+        }
+        checkpoint.commit();
+        checkpoint.abort();
+    }
+
+    private void assertStartsOver() throws IOException {
+        CheckpointManager checkpoint = CheckpointManager.open(input, output, INTERVAL_SECONDS, true);
+        ResultCollector results = new ResultCollector(RECORDS, 0);
+        assertEquals(0, checkpoint.restore(RECORDS, results));
+        assertEquals(0, results.getValidCount() + results.getInvalidCount());
+        // The stale journal is gone rather than appended to
+        Path journal = dir.resolve("out").resolve(CheckpointManager.DIR_NAME).resolve("journal.bin");
+        assertEquals(0, Files.size(journal));
+        checkpoint.abort();
+    }
+
+    private static void assertSameAsUninterrupted(ValidationResult result) {
+        List<String> expectedValid = new ArrayList<>();
+        List<String> expectedInvalid = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            ValidationOutcome outcome = OUTCOMES.get(i);
+            if (outcome.isValid()) {
+                ValidPhoneRecord record = outcome.toValidRecord(RECORDS.get(i));
+                expectedValid.add(record.getRowNumber() + " " + record.getE164() + " " + record.getValidationMethod());
+            } else {
+                InvalidPhoneRecord record = outcome.toInvalidRecord(RECORDS.get(i));
+                expectedInvalid.add(record.getRowNumber() + " " + record.getError());
+            }
+        }
+        List<String> valid = new ArrayList<>();
+        for (ValidPhoneRecord record : result.getValidNumbers()) {
+            valid.add(record.getRowNumber() + " " + record.getE164() + " " + record.getValidationMethod());
+        }
+        List<String> invalid = new ArrayList<>();
+        for (InvalidPhoneRecord record : result.getInvalidNumbers()) {
+            invalid.add(record.getRowNumber() + " " + record.getError());
+        }
+        assertEquals(expectedValid, valid);
+        assertEquals(expectedInvalid, invalid);
+    }
+}
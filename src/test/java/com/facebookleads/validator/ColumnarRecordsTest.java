@@ -0,0 +1,91 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ColumnarRecordsTest {
+
+    @Test
+    void rowsReadBackAsAdded() {
+        List<PhoneRecord> rows = Arrays.asList(
+                new PhoneRecord(1, "1", "ana@example.com", "Ana", "+1 202 555 0143", "US", "fb", "1,ana@example.com,...",
+                        Arrays.asList("1", "ana@example.com", "Ana")),
+                new PhoneRecord(2, null, null, null, null, null, null, null, null),
+                new PhoneRecord(3, "", "", "", "", "", "", "", Arrays.asList("", null)),
+                new PhoneRecord(7, "3", "joão@exemplo.com.br", "João Çağrı 张伟 🙂", "(11) 91234-5678", "Brasil", "ig",
+                        "3,joão@exemplo.com.br,João Çağrı 张伟 🙂", Arrays.asList("3", "joão", "张伟", "🙂")));
+        ColumnarRecords records = new ColumnarRecords();
+        records.addAll(rows);
+
+        assertRecordsEqual(rows, records);
+    }
+
+    @Test
+    void sqlLinesSharingAPrefixReadBackWhole() {
+        String prefix = "INSERT INTO `leads` (`id`, `email`, `name`, `phone`, `country`) VALUES ";
+        List<PhoneRecord> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // Rows without original values, as SQLParser makes them
+            rows.add(new PhoneRecord(i + 1, String.valueOf(i), "u" + i + "@example.com", "Zoë " + i, "+55 11 9" + (10000000 + i),
+                    "BR", "fb", prefix + "(" + i + ", 'u" + i + "@example.com', 'Zoë " + i + "');"));
+        }
+        ColumnarRecords records = new ColumnarRecords();
+        records.addAll(rows);
+
+        assertRecordsEqual(rows, records);
+        assertNull(records.get(0).getOriginalColumnValues());
+    }
+
+    @Test
+    void dictionaryColumnsOutgrowingTheirDictionaryReadBack() {
+        List<PhoneRecord> rows = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            // Country and the original columns start dictionary-encoded and switch to text past 4096 values
+            String country = i % 7 == 0 ? null : "País " + i;
+            rows.add(new PhoneRecord(i + 1, String.valueOf(i), null, null, String.valueOf(5_550_000 + i), country,
+                    i % 2 == 0 ? "fb" : "ig", null, Arrays.asList(String.valueOf(i), country, "Ünïcödé " + (i % 3))));
+        }
+        ColumnarRecords records = new ColumnarRecords();
+        records.addAll(rows);
+
+        assertRecordsEqual(rows, records);
+    }
+
+    @Test
+    void originalValuesAppearingAfterRowsWithoutThem() {
+        List<PhoneRecord> rows = Arrays.asList(
+                new PhoneRecord(1, "1", null, null, "123", "US", null, null),
+                new PhoneRecord(2, "2", null, null, "456", "US", null, null, Arrays.asList("a", "b")),
+                new PhoneRecord(3, "3", null, null, "789", "US", null, null, Arrays.asList("c", "d", "e")),
+                new PhoneRecord(4, "4", null, null, "000", "US", null, null, Arrays.asList("f")));
+        ColumnarRecords records = new ColumnarRecords();
+        records.addAll(rows);
+
+        assertRecordsEqual(rows, records);
+    }
+
+    private static void assertRecordsEqual(List<PhoneRecord> expected, ColumnarRecords actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PhoneRecord want = expected.get(i);
+            PhoneRecord got = actual.get(i);
+            String row = "row " + i;
+            assertEquals(want.getRowNumber(), got.getRowNumber(), row);
+            assertEquals(want.getId(), got.getId(), row);
+            assertEquals(want.getEmail(), got.getEmail(), row);
+            assertEquals(want.getName(), got.getName(), row);
+            assertEquals(want.getPhoneNumber(), got.getPhoneNumber(), row);
+            assertEquals(want.getCountry(), got.getCountry(), row);
+            assertEquals(want.getPlatform(), got.getPlatform(), row);
+            assertEquals(want.getOriginalLine(), got.getOriginalLine(), row);
+            assertEquals(want.getOriginalColumnValues(), got.getOriginalColumnValues() == null
+                    ? null : new ArrayList<>(got.getOriginalColumnValues()), row);
+        }
+    }
+}
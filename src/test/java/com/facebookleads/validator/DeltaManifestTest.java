@@ -0,0 +1,149 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DeltaManifestTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyRowOfThePreviousRunReadsBackItsOutcome() throws IOException {
+        List<PhoneRecord> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Ids on most rows, none on every fifth; valid, invalid and repeated outcomes
+            String id = i % 5 == 0 ? null : "id-" + i;
+            String phone = i % 7 == 0 ? "12" + i : "+55 11 9" + (12340000 + i % 900);
+            rows.add(new PhoneRecord(i + 1, id, null, "Zoë " + i, phone, i % 3 == 0 ? "Brasil" : "BR", "fb", null));
+        }
+        List<ValidationOutcome> outcomes = write(rows);
+
+        DeltaManifest manifest = DeltaManifest.open(dir);
+        assertNotNull(manifest);
+        assertEquals(rows.size(), manifest.getEntryCount());
+        for (int i = 0; i < rows.size(); i++) {
+            assertSameOutcome(rows.get(i), outcomes.get(i), manifest.lookup(rows.get(i)));
+        }
+    }
+
+    @Test
+    void deltaRowsAreClassifiedByKeyAndContent() throws IOException {
+        PhoneRecord unchanged = row(1, "1", "+1 202 555 0143", "US");
+        PhoneRecord changed = row(2, "2", "+55 11 91234 5678", "BR");
+        PhoneRecord removed = row(3, "3", "+52 55 1234 5678", "MX");
+        PhoneRecord withoutId = row(4, null, "+91 98765 43210", "IN");
+        List<ValidationOutcome> outcomes = write(Arrays.asList(unchanged, changed, removed, withoutId));
+        DeltaManifest manifest = DeltaManifest.open(dir);
+        assertNotNull(manifest);
+
+        // Unchanged: same id and content, even at another row number
+        assertSameOutcome(unchanged, outcomes.get(0), manifest.lookup(row(10, "1", "+1 202 555 0143", "US")));
+        // Changed: same id, new number or new country
+        assertNull(manifest.lookup(row(2, "2", "+55 11 91234 5679", "BR")));
+        assertNull(manifest.lookup(row(2, "2", "+55 11 91234 5678", "Brazil")));
+        // New: an id the previous run did not have
+        assertNull(manifest.lookup(row(5, "5", "+1 202 555 0143", "US")));
+        // Rows without an id match on content wherever they moved
+        assertSameOutcome(withoutId, outcomes.get(3), manifest.lookup(row(1, null, "+91 98765 43210", "IN")));
+        assertNull(manifest.lookup(row(1, null, "+91 98765 43211", "IN")));
+        // Removed rows are simply never looked up; the others are unaffected by their absence
+        assertEquals(4, manifest.getEntryCount());
+        assertSameOutcome(changed, outcomes.get(1), manifest.lookup(changed));
+    }
+
+    @Test
+    void rowsCutOffByTheTimeBudgetAreValidatedAgain() throws IOException {
+        PhoneRecord row = row(1, "1", "+1 202 555 0143", "US");
+        ValidationResult result = new ValidationResult(new ArrayList<>(), new ArrayList<>(Arrays.asList(
+                ValidationOutcome.invalid(InvalidReason.TIME_BUDGET, "5", "forceful").toInvalidRecord(row))));
+        DeltaManifest.write(result, dir);
+
+        DeltaManifest manifest = DeltaManifest.open(dir);
+        assertNotNull(manifest);
+        assertEquals(1, manifest.getEntryCount());
+        assertNull(manifest.lookup(row));
+    }
+
+    @Test
+    void manifestOfAnotherCountryConfigIsIgnored() throws IOException {
+        write(Arrays.asList(row(1, "1", "+1 202 555 0143", "US")));
+        CountryRegistry defaults = CountryRegistry.getDefault();
+        CountryRegistry previous = CountryRegistry.install(
+                new CountryRegistry(defaults.getCountries(), Arrays.asList("US")));
+        try {
+            assertNull(DeltaManifest.open(dir));
+        } finally {
+            CountryRegistry.install(previous);
+        }
+        assertNotNull(DeltaManifest.open(dir));
+    }
+
+    @Test
+    void missingOrTruncatedManifestIsIgnored() throws IOException {
+        assertNull(DeltaManifest.open(dir));
+
+        write(Arrays.asList(row(1, "1", "+1 202 555 0143", "US"), row(2, "2", "+55 11 91234 5678", "BR")));
+        Path file = dir.resolve(DeltaManifest.FILE_NAME);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        assertNull(DeltaManifest.open(dir));
+    }
+
+    /** Validate the rows and write their manifest; returns the outcomes in row order. */
+    private List<ValidationOutcome> write(List<PhoneRecord> rows) throws IOException {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        List<ValidationOutcome> outcomes = new ArrayList<>();
+        List<ValidPhoneRecord> valid = new ArrayList<>();
+        List<InvalidPhoneRecord> invalid = new ArrayList<>();
+        for (PhoneRecord row : rows) {
+            ValidationOutcome outcome = validator.validateNumber(row.getPhoneNumber(), row.getCountry());
+            outcomes.add(outcome);
+            if (outcome.isValid()) {
+                valid.add(outcome.toValidRecord(row));
+            } else {
+                invalid.add(outcome.toInvalidRecord(row));
+            }
+        }
+        DeltaManifest.write(new ValidationResult(valid, invalid), dir);
+        return outcomes;
+    }
+
+    private static void assertSameOutcome(PhoneRecord row, ValidationOutcome want, ValidationOutcome got) {
+        String message = "row " + row.getRowNumber();
+        assertNotNull(got, message);
+        assertEquals(want.isValid(), got.isValid(), message);
+        if (want.isValid()) {
+            ValidPhoneRecord expected = want.toValidRecord(row);
+            ValidPhoneRecord actual = got.toValidRecord(row);
+            assertEquals(expected.getE164(), actual.getE164(), message);
+            assertEquals(expected.getInternational(), actual.getInternational(), message);
+            assertEquals(expected.getNational(), actual.getNational(), message);
+            assertEquals(expected.getCountryCode(), actual.getCountryCode(), message);
+            assertEquals(expected.getRegion(), actual.getRegion(), message);
+            assertEquals(expected.getType(), actual.getType(), message);
+            assertEquals(expected.getValidationMethod(), actual.getValidationMethod(), message);
+        } else {
+            assertEquals(want.getError().getReason(), got.getError().getReason(), message);
+            assertEquals(want.toInvalidRecord(row).getError(), got.toInvalidRecord(row).getError(), message);
+        }
+    }
+
+    private static PhoneRecord row(int rowNumber, String id, String phone, String country) {
+        return new PhoneRecord(rowNumber, id, null, null, phone, country, "fb", null);
+    }
+}
@@ -0,0 +1,165 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class E164IndexTest {
+
+    private static final TreeSet<Long> NUMBERS = new TreeSet<>();
+    private static final List<ValidPhoneRecord> VALID = new ArrayList<>();
+
+    @TempDir
+    static Path dir;
+
+    private static Path file;
+
+    @BeforeAll
+    static void writeIndex() throws IOException {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        List<String> phones = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 3) {
+            phones.add("+1 202 555 " + (1000 + i));
+            phones.add("+55 11 9" + (12340000 + 7 * i));
+            phones.add("+91 98765 " + (10000 + i));
+        }
+        // Repeats are stored once
+        phones.addAll(phones.subList(0, 50));
+        for (int i = 0; i < phones.size(); i++) {
+            PhoneRecord row = new PhoneRecord(i + 1, String.valueOf(i), null, null, phones.get(i), null, "fb", null);
+            ValidationOutcome outcome = validator.validateNumber(row.getPhoneNumber(), null);
+            assertTrue(outcome.isValid(), phones.get(i));
+            ValidPhoneRecord record = outcome.toValidRecord(row);
+            VALID.add(record);
+            NUMBERS.add(E164.encode(record.getE164()));
+        }
+        E164Index.write(new ValidationResult(VALID, new ArrayList<>()), dir);
+        file = dir.resolve(E164Index.FILE_NAME);
+    }
+
+    @ParameterizedTest
+    @EnumSource(E164Index.Search.class)
+    void everyNumberWrittenIsFound(E164Index.Search search) throws IOException {
+        E164Index index = E164Index.open(file, search);
+        assertEquals(NUMBERS.size(), index.getCount());
+        for (ValidPhoneRecord record : VALID) {
+            assertTrue(index.contains(record.getE164()), record.getE164());
+        }
+        assertTrue(index.contains(NUMBERS.first()));
+        assertTrue(index.contains(NUMBERS.last()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(E164Index.Search.class)
+    void numbersNotWrittenAreMisses(E164Index.Search search) throws IOException {
+        E164Index index = E164Index.open(file, search);
+        // Either side of the first and last keys, and in every gap between keys
+        assertFalse(index.contains(NUMBERS.first() - 1));
+        assertFalse(index.contains(NUMBERS.last() + 1));
+        assertFalse(index.contains(1L));
+        assertFalse(index.contains(Long.MAX_VALUE));
+        for (long number : NUMBERS) {
+            if (!NUMBERS.contains(number + 1)) {
+                assertFalse(index.contains(number + 1), String.valueOf(number + 1));
+            }
+        }
+        // Not E.164 at all
+        assertFalse(index.contains("12025551000"));
+        assertFalse(index.contains("+0"));
+        assertFalse(index.contains((String) null));
+    }
+
+    @ParameterizedTest
+    @EnumSource(E164Index.Search.class)
+    void batchQueriesInAnyOrderMatchSingleLookups(E164Index.Search search) throws IOException {
+        E164Index index = E164Index.open(file, search);
+        Random random = new Random(42);
+        Long[] keys = NUMBERS.toArray(new Long[0]);
+        long[] queries = new long[5000];
+        boolean[] expected = new boolean[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            long key = keys[random.nextInt(keys.length)];
+            // Hits, misses next to hits, repeated queries and the extremes
+            queries[i] = i % 4 == 0 ? key + 1 : i % 97 == 0 ? keys[0] : i % 89 == 0 ? keys[keys.length - 1] : key;
+            expected[i] = NUMBERS.contains(queries[i]);
+        }
+        assertArrayEquals(expected, index.containsAll(queries));
+        assertArrayEquals(new boolean[0], index.containsAll(new long[0]));
+    }
+
+    @Test
+    void emptyResultWritesAnEmptyIndex() throws IOException {
+        Path empty = dir.resolve("empty");
+        Files.createDirectories(empty);
+        E164Index.write(new ValidationResult(new ArrayList<>(), new ArrayList<>()), empty);
+        E164Index index = E164Index.open(empty.resolve(E164Index.FILE_NAME), E164Index.Search.EYTZINGER);
+        assertEquals(0, index.getCount());
+        assertFalse(index.contains(NUMBERS.first()));
+        assertArrayEquals(new boolean[] {false}, E164Index.open(empty.resolve(E164Index.FILE_NAME),
+                E164Index.Search.BINARY).containsAll(new long[] {NUMBERS.first()}));
+    }
+
+    @Test
+    void truncatedOrForeignFilesAreRefused() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = dir.resolve("truncated.idx");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> E164Index.open(truncated, E164Index.Search.BINARY));
+
+        Path foreign = dir.resolve("foreign.idx");
+        Files.write(foreign, Arrays.copyOfRange(bytes, 8, bytes.length));
+        assertThrows(IOException.class, () -> E164Index.open(foreign, E164Index.Search.BINARY));
+    }
+
+    @Test
+    void lookupToolAnswersEachQuery() throws IOException {
+        String first = E164.decode(NUMBERS.first());
+        String last = E164.decode(NUMBERS.last());
+        Path batch = dir.resolve("queries.txt");
+        Files.write(batch, Arrays.asList(last, "", "  +1 (202) 555-1000  ", "+1 202 555 0999"), StandardCharsets.UTF_8);
+
+        List<String> lines = runTool(file.toString(), first.substring(1), "+" + (NUMBERS.last() + 1),
+                "not a number", "--batch", batch.toString());
+        assertEquals(Arrays.asList(
+                first.substring(1) + ",true",
+                "+" + (NUMBERS.last() + 1) + ",false",
+                "not a number,false",
+                last + ",true",
+                "+1 (202) 555-1000,true",
+                "+1 202 555 0999,false"), lines);
+
+        assertEquals(runTool(file.toString(), first, last), runTool("--eytzinger", file.toString(), first, last));
+    }
+
+    private static List<String> runTool(String... args) throws IOException {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, "UTF-8"));
+        try {
+            E164Index.main(args);
+        } finally {
+            System.setOut(stdout);
+        }
+        return Arrays.asList(captured.toString("UTF-8").split("\\R"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.facebookleads.validator;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Cancellation and deadlines stop the parser, the validator and the output step. */
+class InputRunTest {
+
+    private static final int ROWS = 5000;
+    private static final String[] INDEXES = {"--e164-index", "--page-index", "--search-index"};
+
+    @TempDir
+    Path dir;
+
+    private Path input;
+    private Path out;
+
+    @BeforeEach
+    void writeInput() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("id,phone,country");
+        for (int i = 0; i < ROWS; i++) {
+            lines.add(i + ",+1 202 555 " + (1000 + i % 9000) + ",US");
+        }
+        input = dir.resolve("leads.csv");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        out = dir.resolve("out");
+    }
+
+    @Test
+    void completeRunIsNotPartial() throws IOException {
+        try (ValidationResult result = run(CancellationToken.NONE, INDEXES)) {
+            assertFalse(result.isPartial());
+            assertEquals(ROWS, result.getTotalCount());
+        }
+        assertFalse(summary().get("partial").getAsBoolean());
+        for (String file : new String[] {E164Index.FILE_NAME, ResultPages.FILE_NAME, SearchIndex.FILE_NAME,
+                DeltaManifest.FILE_NAME}) {
+            assertTrue(Files.exists(out.resolve(file)), file);
+        }
+    }
+
+    @Test
+    void alreadyCancelledRunStopsEveryStepAndIsMarkedPartial() throws IOException {
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel("cancelled by client");
+        try (ValidationResult result = run(cancellation, INDEXES)) {
+            // The parser stopped at its first check, the validator before its first row
+            assertTrue(result.isPartial());
+            assertEquals(0, result.getTotalCount());
+        }
+        assertPartialOutputs("cancelled by client");
+    }
+
+    @Test
+    void validatorStopsOnACancelledTokenWithTheInputAlreadyRead() throws IOException {
+        PhoneNumberData data = new CSVParser().parse(input.toString());
+        assertEquals(ROWS, data.getCount());
+        CancellationToken cancellation = new CancellationToken();
+        cancellation.cancel("shutdown");
+        ValidationContext context = new ValidationContext().showProgress(false).cancellation(cancellation);
+        try (ValidationResult result = new PhoneNumberValidator().validate(data, context)) {
+            assertTrue(result.isPartial());
+            assertEquals("shutdown", result.getPartialReason());
+            assertTrue(result.getTotalCount() < ROWS);
+        }
+    }
+
+    @Test
+    void deadlineStopsAStreamThatNeverEnds() throws IOException {
+        String[] settings = {"--input-format", "csv", "--deadline", "1", "--e164-index", "--search-index"};
+        CliOptions options = CliOptions.parseSettings(settings);
+        InputStream stdin = System.in;
+        System.setIn(new EndlessCsv());
+        long start = System.nanoTime();
+        try (ValidationResult result = new InputRun(options, new PhoneNumberValidator())
+                .cancellation(options.newCancellationToken())
+                .run(Main.STDIN, out.toString())) {
+            assertTrue(result.isPartial());
+            assertTrue(result.getTotalCount() > 0);
+        } finally {
+            System.setIn(stdin);
+        }
+        assertTrue(System.nanoTime() - start < 30_000_000_000L, "stopped long after the deadline");
+        assertPartialOutputs("deadline exceeded");
+    }
+
+    private void assertPartialOutputs(String reason) throws IOException {
+        JsonObject summary = summary();
+        assertTrue(summary.get("partial").getAsBoolean());
+        assertEquals(reason, summary.get("partial_reason").getAsString());
+        // The plain outputs are written for the rows done; indexes and the delta manifest are not
+        assertTrue(Files.exists(out.resolve("valid_numbers.json")));
+        assertTrue(Files.exists(out.resolve("validation_report.txt")));
+        for (String file : new String[] {E164Index.FILE_NAME, ResultPages.FILE_NAME, SearchIndex.FILE_NAME,
+                DeltaManifest.FILE_NAME}) {
+            assertFalse(Files.exists(out.resolve(file)), file);
+        }
+    }
+
+    private ValidationResult run(CancellationToken cancellation, String... settings) throws IOException {
+        return new InputRun(CliOptions.parseSettings(settings), new PhoneNumberValidator())
+                .cancellation(cancellation)
+                .run(input.toString(), out.toString());
+    }
+
+    private JsonObject summary() throws IOException {
+        return JsonParser.parseString(new String(Files.readAllBytes(out.resolve("summary.json")),
+                StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    /** A CSV upload that never ends. */
+    private static final class EndlessCsv extends InputStream {
+        private byte[] line = "id,phone,country\n".getBytes(StandardCharsets.US_ASCII);
+        private int position;
+        private long row;
+
+        @Override
+        public int read() {
+            if (position == line.length) {
+                row++;
+                line = (row + ",+1 202 555 " + (1000 + row % 9000) + ",US\n").getBytes(StandardCharsets.US_ASCII);
+                position = 0;
+            }
+            return line[position++];
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The pre-filter may only reject numbers PhoneNumberUtil.isValidNumber rejects too. */
+class MetadataPrefilterTest {
+
+    private static final int SAMPLES_PER_CALLING_CODE = 400;
+
+    private static PhoneNumberUtil util;
+    private static MetadataPrefilter prefilter;
+
+    @BeforeAll
+    static void build() {
+        util = PhoneNumberUtil.getInstance();
+        prefilter = MetadataPrefilter.build(util);
+    }
+
+    @Test
+    void bundledMetadataEnablesTheFilter() {
+        assertTrue(prefilter.isEnabled());
+    }
+
+    @Test
+    void rejectsOnlyNumbersIsValidNumberRejects() {
+        Random random = new Random(42);
+        List<String> differences = new ArrayList<>();
+        int rejected = 0;
+        int valid = 0;
+        for (int callingCode : util.getSupportedCallingCodes()) {
+            List<PhoneNumber> corpus = new ArrayList<>();
+            for (String region : util.getRegionCodesForCountryCode(callingCode)) {
+                for (PhoneNumberUtil.PhoneNumberType type : PhoneNumberUtil.PhoneNumberType.values()) {
+                    PhoneNumber example = "001".equals(region)
+                            ? util.getExampleNumberForNonGeoEntity(callingCode)
+                            : util.getExampleNumberForType(region, type);
+                    if (example != null) {
+                        addMutations(corpus, callingCode, util.getNationalSignificantNumber(example), random);
+                    }
+                }
+            }
+            for (int i = 0; i < SAMPLES_PER_CALLING_CODE; i++) {
+                // Random lengths (wrong ones included) and random leading digits
+                addParsed(corpus, callingCode, randomDigits(random, 1 + random.nextInt(17)));
+            }
+            for (int length = 1; length <= 17; length++) {
+                addParsed(corpus, callingCode, repeat('0', length));
+                corpus.add(new PhoneNumber().setCountryCode(callingCode).setNationalNumber(0)
+                        .setItalianLeadingZero(true).setNumberOfLeadingZeros(length));
+            }
+
+            for (PhoneNumber number : corpus) {
+                boolean isValid = util.isValidNumber(number);
+                boolean couldBeValid = prefilter.couldBeValid(number);
+                if (isValid) {
+                    valid++;
+                }
+                if (!couldBeValid) {
+                    rejected++;
+                    if (isValid && differences.size() < 10) {
+                        differences.add("+" + callingCode + " " + util.getNationalSignificantNumber(number)
+                                + " (" + util.getRegionCodeForNumber(number) + ") is valid but was rejected");
+                    }
+                }
+            }
+        }
+        assertEquals(new ArrayList<String>(), differences);
+        // Both answers must be exercised for the comparison to mean anything
+        assertTrue(valid > 0, "no valid numbers in the corpus");
+        assertTrue(rejected > 0, "nothing rejected by the pre-filter");
+    }
+
+    @Test
+    void wrongLengthsAndPrefixesAreRejected() {
+        // US numbers are 10 digits and never start with 0 or 1
+        assertFalse(prefilter.couldBeValid(number(1, 202555014L)));
+        assertFalse(prefilter.couldBeValid(number(1, 20255501430L)));
+        assertFalse(prefilter.couldBeValid(number(1, 1025550143L)));
+        assertTrue(prefilter.couldBeValid(number(1, 2025550143L)));
+        // No region uses calling code 999, so nothing under it is valid
+        assertFalse(util.isValidNumber(number(999, 12345L)));
+        assertFalse(prefilter.couldBeValid(number(999, 12345L)));
+    }
+
+    @Test
+    void lettersOnlyInputWithoutKeypadWordsHasNoDigits() {
+        for (String input : Arrays.asList("", " ", "n/a", "--", "Ñ", "x", "tel:", "(  ) -", "٠")) {
+            boolean noDigits = MetadataPrefilter.hasNoDigits(input);
+            if (noDigits) {
+                for (String region : Arrays.asList("US", "BR", "DE", "IN", "ZZ")) {
+                    assertFalse(parsesValid(input, region), input + " in " + region);
+                }
+            }
+        }
+        assertTrue(MetadataPrefilter.hasNoDigits("n/a"));
+        assertTrue(MetadataPrefilter.hasNoDigits("xy"));
+        // Arabic-Indic digits are digits to libphonenumber too
+        assertFalse(MetadataPrefilter.hasNoDigits("٠"));
+        // Three or more letters may be a keypad word (1-800-FLOWERS), so they are left to the parser
+        assertFalse(MetadataPrefilter.hasNoDigits("FLOWERS"));
+        assertFalse(MetadataPrefilter.hasNoDigits("none"));
+    }
+
+    private static void addMutations(List<PhoneNumber> corpus, int callingCode, String national, Random random) {
+        addParsed(corpus, callingCode, national);
+        // One digit short and one too many
+        addParsed(corpus, callingCode, national.substring(0, national.length() - 1));
+        addParsed(corpus, callingCode, national + random.nextInt(10));
+        // Every other leading digit
+        for (char first = '0'; first <= '9'; first++) {
+            addParsed(corpus, callingCode, first + national.substring(1));
+        }
+        addParsed(corpus, callingCode, repeat('0', national.length()));
+    }
+
+    /** Parsed the way PhoneNumberValidator builds numbers from an international string. */
+    private static void addParsed(List<PhoneNumber> corpus, int callingCode, String national) {
+        if (national.isEmpty()) {
+            return;
+        }
+        try {
+            corpus.add(util.parse("+" + callingCode + national, "ZZ"));
+        } catch (NumberParseException e) {
+            // Too short or too long to parse: never reaches the filter
+        }
+    }
+
+    private static boolean parsesValid(String input, String region) {
+        try {
+            return util.isValidNumber(util.parse(input, region));
+        } catch (NumberParseException e) {
+            return false;
+        }
+    }
+
+    private static PhoneNumber number(int callingCode, long national) {
+        return new PhoneNumber().setCountryCode(callingCode).setNationalNumber(national);
+    }
+
+    private static String randomDigits(Random random, int length) {
+        char[] digits = new char[length];
+        for (int i = 0; i < length; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(digits);
+    }
+
+    private static String repeat(char c, int times) {
+        char[] chars = new char[times];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,176 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordStreamTest {
+
+    // Queued batches (64) of the largest batch size (8192), plus the batch being handed over and the one being filled
+    private static final int MAX_BUFFERED_RECORDS = (64 + 2) * 8192;
+
+    @Test
+    void recordsArriveInInputOrder() {
+        RecordStream stream = new RecordStream(new StubParser(20_000, null), input());
+        stream.start();
+        int row = 0;
+        for (PhoneRecord record : stream.recordsToValidate()) {
+            assertEquals(++row, record.getRowNumber());
+        }
+        assertEquals(20_000, row);
+        assertTrue(stream.isComplete());
+        assertFalse(stream.isTruncated());
+        assertEquals(20_000, stream.getRecords().size());
+        assertEquals(Arrays.asList("id", "phone"), stream.getOriginalColumnNames());
+    }
+
+    @Test
+    void parseFailureIsRethrownAfterTheRecordsBeforeIt() {
+        IOException failure = new IOException("Unexpected end of input");
+        RecordStream stream = new RecordStream(new StubParser(5000, failure), input());
+        stream.start();
+        Iterator<PhoneRecord> records = stream.recordsToValidate().iterator();
+        for (int row = 1; row <= 5000; row++) {
+            assertTrue(records.hasNext());
+            assertEquals(row, records.next().getRowNumber());
+        }
+        UncheckedIOException thrown = assertThrows(UncheckedIOException.class, records::hasNext);
+        assertSame(failure, thrown.getCause());
+        assertTrue(stream.isComplete());
+    }
+
+    @Test
+    void uncheckedParseFailureIsRethrownToo() {
+        RuntimeException failure = new IllegalArgumentException("Bad row");
+        RecordStream stream = new RecordStream(new StubParser(10, failure), input());
+        stream.start();
+        Iterator<PhoneRecord> records = stream.recordsToValidate().iterator();
+        for (int row = 1; row <= 10; row++) {
+            records.next();
+        }
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, records::hasNext);
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void parserWaitsForTheValidatorToCatchUp() throws InterruptedException {
+        int total = 1_000_000;
+        StubParser parser = new StubParser(total, null);
+        RecordStream stream = new RecordStream(parser, input());
+        stream.start();
+
+        int buffered = awaitStalled(parser.produced);
+        assertTrue(buffered < total, "parser did not wait: " + buffered + " records read");
+        assertTrue(buffered <= MAX_BUFFERED_RECORDS, buffered + " records buffered");
+
+        // Taking records lets it continue to the end
+        int row = 0;
+        for (PhoneRecord record : stream.recordsToValidate()) {
+            assertEquals(++row, record.getRowNumber());
+        }
+        assertEquals(total, row);
+        assertTrue(parser.finished.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancellationWithAFullQueueReleasesTheParser() throws InterruptedException {
+        CancellationToken cancellation = new CancellationToken();
+        StubParser parser = new StubParser(Integer.MAX_VALUE, null);
+        RecordStream stream = new RecordStream(parser, input(), cancellation);
+        stream.start();
+
+        // Nobody takes records: the parser blocks on the full queue
+        awaitStalled(parser.produced);
+        assertEquals(1, parser.finished.getCount());
+
+        cancellation.cancel("Deadline of 1 s exceeded");
+        assertTrue(parser.finished.await(10, TimeUnit.SECONDS), "parser still blocked after cancellation");
+        assertTrue(parser.thrown.get() instanceof CancellationException, String.valueOf(parser.thrown.get()));
+        assertTrue(stream.isTruncated());
+
+        // The validator, if it looks again, finds the end rather than waiting forever
+        int taken = 0;
+        for (PhoneRecord ignored : stream.recordsToValidate()) {
+            taken++;
+        }
+        assertTrue(stream.isComplete());
+        assertTrue(taken < parser.produced.get());
+    }
+
+    /** Wait until the parser stops producing; returns how many records it read by then. */
+    private static int awaitStalled(AtomicInteger produced) throws InterruptedException {
+        int last = -1;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(300);
+            int now = produced.get();
+            if (now == last && now > 0) {
+                return now;
+            }
+            last = now;
+        }
+        throw new AssertionError("parser never stalled: " + produced.get() + " records read");
+    }
+
+    private static InputStream input() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    /** Hands out numbered records, then fails if given a failure; records what ended the parse. */
+    private static final class StubParser implements DataParser {
+        final AtomicInteger produced = new AtomicInteger();
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        private final int count;
+        private final Exception failure;
+
+        StubParser(int count, Exception failure) {
+            this.count = count;
+            this.failure = failure;
+        }
+
+        @Override
+        public PhoneNumberData parse(String filePath, CancellationToken cancellation) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void parse(InputStream in, RecordSink sink) throws IOException {
+            try {
+                List<String> names = Arrays.asList("id", "phone");
+                sink.columnNames(names);
+                for (int i = 1; i <= count; i++) {
+                    sink.record(new PhoneRecord(i, null, null, null, "+1 202 555 0143", "US", null, null));
+                    produced.incrementAndGet();
+                }
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else if (failure != null) {
+                    throw (RuntimeException) failure;
+                }
+            } catch (IOException | RuntimeException e) {
+                thrown.set(e);
+                throw e;
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+}
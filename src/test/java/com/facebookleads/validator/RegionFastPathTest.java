@@ -0,0 +1,68 @@
+package com.facebookleads.validator;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The fast path must answer exactly as PhoneNumberUtil.isValidNumber; FastPathHarness does the same at scale. */
+class RegionFastPathTest {
+
+    private static final int SAMPLES = 20_000;
+
+    private static PhoneNumberUtil util;
+    private static RegionFastPath fastPath;
+
+    @BeforeAll
+    static void compile() {
+        util = PhoneNumberUtil.getInstance();
+        fastPath = RegionFastPath.compile(util, RegionFastPath.DEFAULT_REGIONS);
+    }
+
+    @Test
+    void defaultRegionsAllCompile() {
+        assertTrue(fastPath.getSkipped().isEmpty(), "skipped: " + fastPath.getSkipped());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"US", "BR", "MX", "IN", "PK"})
+    void answersAsIsValidNumber(String region) {
+        int callingCode = util.getCountryCodeForRegion(region);
+        assertTrue(fastPath.covers(callingCode));
+
+        PhoneNumber[] corpus = FastPathHarness.corpus(util, callingCode, SAMPLES, new Random(callingCode));
+        int valid = 0;
+        List<String> differences = new ArrayList<>();
+        for (PhoneNumber number : corpus) {
+            boolean expected = util.isValidNumber(number);
+            int actual = fastPath.check(number);
+            if (expected) {
+                valid++;
+            }
+            if (actual != (expected ? RegionFastPath.VALID : RegionFastPath.INVALID) && differences.size() < 10) {
+                differences.add("+" + callingCode + " " + util.getNationalSignificantNumber(number)
+                        + ": isValidNumber " + expected + ", fast path " + actual);
+            }
+        }
+        assertEquals(new ArrayList<String>(), differences);
+        // Both answers must be exercised for the comparison to mean anything
+        assertTrue(valid > 0 && valid < corpus.length, valid + " of " + corpus.length + " valid");
+    }
+
+    @Test
+    void otherCallingCodesAreNotCovered() {
+        PhoneNumber uk = new PhoneNumber().setCountryCode(44).setNationalNumber(7400123456L);
+        assertFalse(fastPath.covers(44));
+        assertEquals(RegionFastPath.NOT_COVERED, fastPath.check(uk));
+    }
+}
@@ -0,0 +1,155 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private Path input;
+    private Path cacheDir;
+
+    @BeforeEach
+    void writeInput() throws IOException {
+        input = dir.resolve("leads.csv");
+        Files.write(input, Arrays.asList(
+                "id,name,email,phone,country",
+                "1,Zoë,zoe@example.com,+55 11 91234 5678,BR",
+                "2,Ana,ana@example.com,+1 202 555 0143,US",
+                "3,Bo,bo@example.com,12345,US"), StandardCharsets.UTF_8);
+        cacheDir = dir.resolve("cache");
+    }
+
+    @Test
+    void keyFollowsContentAndEverySetting() throws IOException {
+        String defaults = fingerprint();
+        String key = ResultCache.key(input, defaults);
+        assertEquals(key, ResultCache.key(input, fingerprint()));
+
+        for (String[] settings : Arrays.asList(new String[] {"--formats", "e164"}, new String[] {"--e164-index"},
+                new String[] {"--page-index"}, new String[] {"--search-index"}, new String[] {"--dedupe"},
+                new String[] {"--record-budget", "5"}, new String[] {"--slow-records", "5"})) {
+            String fingerprint = fingerprint(settings);
+            assertNotEquals(defaults, fingerprint, settings[0]);
+            assertNotEquals(key, ResultCache.key(input, fingerprint), settings[0]);
+        }
+        // Another input format, and another country config
+        assertNotEquals(defaults, ResultCache.fingerprint("leads.txt", CliOptions.parseSettings(new String[0])));
+        CountryRegistry previous = CountryRegistry.install(
+                new CountryRegistry(CountryRegistry.getDefault().getCountries(), Arrays.asList("US")));
+        try {
+            assertNotEquals(defaults, fingerprint());
+        } finally {
+            CountryRegistry.install(previous);
+        }
+
+        Files.write(input, Arrays.asList("5,Cy,cy@example.com,+1 202 555 0199,US"), StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        assertNotEquals(key, ResultCache.key(input, defaults));
+    }
+
+    @Test
+    void sameInputAndSettingsRestoreAndChangedSettingsMiss() throws IOException {
+        Path out = dir.resolve("out");
+        assertNotNull(run(out));
+        byte[] summary = Files.readAllBytes(out.resolve("summary.json"));
+        // Same input and settings: restored, nothing validated
+        Files.delete(out.resolve("summary.json"));
+        assertNull(run(out));
+        assertArrayEquals(summary, Files.readAllBytes(out.resolve("summary.json")));
+
+        // A setting that changes the outputs misses, and is then cached on its own
+        assertNotNull(run(out, "--e164-index"));
+        assertTrue(Files.isRegularFile(out.resolve(E164Index.FILE_NAME)));
+        assertNull(run(out, "--e164-index"));
+        assertNotNull(run(out, "--formats", "e164"));
+
+        // Restoring the first run removes the index a later run left behind
+        assertNull(run(out));
+        assertFalse(Files.exists(out.resolve(E164Index.FILE_NAME)));
+        assertArrayEquals(summary, Files.readAllBytes(out.resolve("summary.json")));
+    }
+
+    @Test
+    void restoreDeletesStaleOutputsAndReplacesTheOthers() throws IOException {
+        Path run = dir.resolve("run");
+        Files.createDirectories(run);
+        Files.write(run.resolve("summary.json"), "cached".getBytes(StandardCharsets.UTF_8));
+        Files.write(run.resolve("valid_numbers.json"), "[]".getBytes(StandardCharsets.UTF_8));
+        ResultCache cache = new ResultCache(cacheDir, ResultCache.DEFAULT_MAX_BYTES);
+        cache.store("k1", run, Arrays.asList("summary.json", "valid_numbers.json"));
+
+        Path out = dir.resolve("out");
+        Files.createDirectories(out);
+        Files.write(out.resolve("summary.json"), "stale".getBytes(StandardCharsets.UTF_8));
+        Files.write(out.resolve(SearchIndex.FILE_NAME), new byte[] {1});
+        Files.write(out.resolve(DeltaManifest.FILE_NAME), new byte[] {1});
+        Files.write(out.resolve("notes.txt"), "mine".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(cache.restore("k1", out));
+        assertEquals("cached", new String(Files.readAllBytes(out.resolve("summary.json")), StandardCharsets.UTF_8));
+        assertEquals("[]", new String(Files.readAllBytes(out.resolve("valid_numbers.json")), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(out.resolve(SearchIndex.FILE_NAME)));
+        assertFalse(Files.exists(out.resolve(DeltaManifest.FILE_NAME)));
+        // Not an output file: left alone
+        assertTrue(Files.exists(out.resolve("notes.txt")));
+
+        assertFalse(cache.restore("k2", out));
+        assertTrue(Files.exists(out.resolve("summary.json")));
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedFirst() throws IOException {
+        Path run = dir.resolve("run");
+        Files.createDirectories(run);
+        Files.write(run.resolve("summary.json"), new byte[1000]);
+        // Room for two entries
+        ResultCache cache = new ResultCache(cacheDir, 2500);
+        cache.store("old", run, Arrays.asList("summary.json"));
+        cache.store("used", run, Arrays.asList("summary.json"));
+        Files.setLastModifiedTime(cacheDir.resolve("old"), FileTime.fromMillis(1_000_000));
+        Files.setLastModifiedTime(cacheDir.resolve("used"), FileTime.fromMillis(2_000_000));
+        // A restore marks the older entry as used
+        assertTrue(cache.restore("old", dir.resolve("out")));
+
+        cache.store("new", run, Arrays.asList("summary.json"));
+        assertNotNull(cache.lookup("old"));
+        assertNull(cache.lookup("used"));
+        assertNotNull(cache.lookup("new"));
+    }
+
+    private ValidationResult run(Path out, String... settings) throws IOException {
+        String[] args = Arrays.copyOf(settings, settings.length + 2);
+        args[settings.length] = "--result-cache";
+        args[settings.length + 1] = cacheDir.toString();
+        ValidationResult result = new InputRun(CliOptions.parseSettings(args), new PhoneNumberValidator())
+                .run(input.toString(), out.toString());
+        if (result != null) {
+            result.close();
+        }
+        return result;
+    }
+
+    private String fingerprint(String... settings) {
+        return ResultCache.fingerprint(input.toString(), CliOptions.parseSettings(settings));
+    }
+}
@@ -0,0 +1,161 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultCollectorTest {
+
+    // Far below what 3,000 rows take, so results spill many times over
+    private static final long TINY_BUDGET_BYTES = 16 * 1024;
+
+    @Test
+    void spilledResultsReadBackInOrderWithEveryField() throws IOException {
+        List<PhoneRecord> rows = new ArrayList<>();
+        List<ValidationOutcome> outcomes = new ArrayList<>();
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        String[] countries = {"BR", "Brasil", "US", "México", "日本", null, "IN"};
+        for (int i = 0; i < 3000; i++) {
+            String country = countries[i % countries.length];
+            String phone = i % 5 == 0 ? "12" + i
+                    : i % 5 == 1 ? "+1 202 555 " + (1000 + i % 9000)
+                    : i % 5 == 2 ? "(11) 9" + (12340000 + i)
+                    : i % 5 == 3 ? "+91 98765 " + (10000 + i) : "";
+            rows.add(new PhoneRecord(i + 1, i % 11 == 0 ? null : "id-" + i, "lead" + i + "@exämple.com",
+                    "Zoë Ångström 张伟 " + i, phone, country, i % 2 == 0 ? "fb" : "ig", null,
+                    Arrays.asList(String.valueOf(i), "Zoë " + i, phone, i % 3 == 0 ? null : "🙂")));
+            ValidationOutcome outcome;
+            if (i % 97 == 0) {
+                outcome = ValidationOutcome.invalid(InvalidReason.TIME_BUDGET, "5", "forceful");
+            } else if (i % 89 == 0) {
+                outcome = ValidationOutcome.invalid(InvalidReason.OTHER, "Ünïcödé ✓ " + i);
+            } else {
+                outcome = validator.validateNumber(phone, country);
+            }
+            outcomes.add(outcome);
+        }
+
+        ResultCollector spilled = new ResultCollector(rows, TINY_BUDGET_BYTES);
+        ResultCollector inMemory = new ResultCollector(rows, 0);
+        for (ValidationOutcome outcome : outcomes) {
+            spilled.add(outcome);
+            inMemory.add(outcome);
+        }
+        assertFalse(spilled.isColumnar());
+        assertTrue(inMemory.isColumnar());
+        assertTrue(spilled.getRunCount() > 1, spilled.getRunCount() + " run(s)");
+        assertTrue(spilled.getSpilledBytes() > 0);
+
+        List<ValidPhoneRecord> expectedValid = new ArrayList<>();
+        List<InvalidPhoneRecord> expectedInvalid = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (outcomes.get(i).isValid()) {
+                expectedValid.add(outcomes.get(i).toValidRecord(rows.get(i)));
+            } else {
+                expectedInvalid.add(outcomes.get(i).toInvalidRecord(rows.get(i)));
+            }
+        }
+        assertTrue(!expectedValid.isEmpty() && !expectedInvalid.isEmpty());
+        try (ValidationResult result = spilled.toResult(null)) {
+            assertEquals(expectedValid.size(), result.getValidCount());
+            assertEquals(expectedInvalid.size(), result.getInvalidCount());
+            assertValidEqual(expectedValid, result.getValidNumbers());
+            assertInvalidEqual(expectedInvalid, result.getInvalidNumbers());
+            // Iterating twice reads the runs again from the start
+            assertValidEqual(expectedValid, result.getValidNumbers());
+        }
+        try (ValidationResult result = inMemory.toResult(null)) {
+            assertValidEqual(expectedValid, result.getValidNumbers());
+            assertInvalidEqual(expectedInvalid, result.getInvalidNumbers());
+        }
+    }
+
+    @Test
+    void rowsCollectedBeforeTheBudgetRunsOutAreKept() throws IOException {
+        List<PhoneRecord> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rows.add(new PhoneRecord(i + 1, String.valueOf(i), null, null, "+1 202 555 " + (1000 + i), "US", "fb", null));
+        }
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        ResultCollector results = new ResultCollector(rows, TINY_BUDGET_BYTES);
+        for (int i = 0; i < rows.size(); i++) {
+            // Counts carry over when the columns are moved into record stores
+            assertEquals(results.getValidCount() + results.getInvalidCount(), i);
+            results.add(validator.validateNumber(rows.get(i).getPhoneNumber(), "US"));
+        }
+        assertFalse(results.isColumnar());
+        try (ValidationResult result = results.toResult(null)) {
+            int row = 1;
+            for (ValidPhoneRecord record : result.getValidNumbers()) {
+                assertEquals(row++, record.getRowNumber());
+            }
+            assertEquals(rows.size() + 1, row);
+        }
+    }
+
+    private static void assertValidEqual(List<ValidPhoneRecord> expected, RecordSequence<ValidPhoneRecord> actual) {
+        Iterator<ValidPhoneRecord> records = actual.iterator();
+        for (ValidPhoneRecord want : expected) {
+            assertTrue(records.hasNext(), "missing row " + want.getRowNumber());
+            ValidPhoneRecord got = records.next();
+            String row = "row " + want.getRowNumber();
+            assertEquals(want.getRowNumber(), got.getRowNumber(), row);
+            assertEquals(want.getId(), got.getId(), row);
+            assertEquals(want.getEmail(), got.getEmail(), row);
+            assertEquals(want.getName(), got.getName(), row);
+            assertEquals(want.getOriginalPhoneNumber(), got.getOriginalPhoneNumber(), row);
+            assertEquals(want.getE164(), got.getE164(), row);
+            assertEquals(want.getInternational(), got.getInternational(), row);
+            assertEquals(want.getNational(), got.getNational(), row);
+            assertEquals(want.getCountryCode(), got.getCountryCode(), row);
+            assertEquals(want.getRegion(), got.getRegion(), row);
+            assertEquals(want.getType(), got.getType(), row);
+            assertEquals(want.getPlatform(), got.getPlatform(), row);
+            assertEquals(want.getValidationMethod(), got.getValidationMethod(), row);
+            assertEquals(want.getOriginalCountry(), got.getOriginalCountry(), row);
+            assertEquals(want.getOriginalColumnValues(), got.getOriginalColumnValues() == null
+                    ? null : new ArrayList<>(got.getOriginalColumnValues()), row);
+        }
+        assertFalse(records.hasNext());
+    }
+
+    private static void assertInvalidEqual(List<InvalidPhoneRecord> expected, RecordSequence<InvalidPhoneRecord> actual) {
+        Iterator<InvalidPhoneRecord> records = actual.iterator();
+        for (InvalidPhoneRecord want : expected) {
+            assertTrue(records.hasNext(), "missing row " + want.getRowNumber());
+            InvalidPhoneRecord got = records.next();
+            String row = "row " + want.getRowNumber();
+            assertEquals(want.getRowNumber(), got.getRowNumber(), row);
+            assertEquals(want.getId(), got.getId(), row);
+            assertEquals(want.getEmail(), got.getEmail(), row);
+            assertEquals(want.getName(), got.getName(), row);
+            assertEquals(want.getOriginalPhoneNumber(), got.getOriginalPhoneNumber(), row);
+            assertEquals(want.getErrorDetail().getReason(), got.getErrorDetail().getReason(), row);
+            assertEquals(want.getErrorDetail().getArgCount(), got.getErrorDetail().getArgCount(), row);
+            for (int i = 0; i < want.getErrorDetail().getArgCount(); i++) {
+                assertEquals(want.getErrorDetail().getArg(i), got.getErrorDetail().getArg(i), row);
+            }
+            assertEquals(want.getError(), got.getError(), row);
+            assertEquals(want.getPlatform(), got.getPlatform(), row);
+            assertEquals(want.getOriginalCountry(), got.getOriginalCountry(), row);
+            assertEquals(want.getE164(), got.getE164(), row);
+            assertEquals(want.getInternational(), got.getInternational(), row);
+            assertEquals(want.getNational(), got.getNational(), row);
+            assertEquals(want.getCountryCode(), got.getCountryCode(), row);
+            assertEquals(want.getRegion(), got.getRegion(), row);
+            assertEquals(want.getType(), got.getType(), row);
+            assertEquals(want.getValidationMethod(), got.getValidationMethod(), row);
+            assertEquals(want.getOriginalColumnValues(), got.getOriginalColumnValues() == null
+                    ? null : new ArrayList<>(got.getOriginalColumnValues()), row);
+        }
+        assertFalse(records.hasNext());
+    }
+}
@@ -0,0 +1,83 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResultColumnsTest {
+
+    private static final List<PhoneRecord> ROWS = Arrays.asList(
+            new PhoneRecord(1, "1", "ana@example.com", "Ana", "+1 202 555 0143", "US", "fb", null,
+                    Arrays.asList("1", "Ana", "+1 202 555 0143")),
+            new PhoneRecord(2, "2", "bo@example.com", "Bo", "123", "Brazil", "ig", null, Arrays.asList("2", "Bo", "123")),
+            new PhoneRecord(3, "3", "zoe@example.com", "Zoë", "(11) 91234-5678", "BR", "fb", null,
+                    Arrays.asList("3", "Zoë", "(11) 91234-5678")),
+            new PhoneRecord(4, "4", null, null, "", null, null, null, null),
+            new PhoneRecord(5, "5", "ana@example.com", "Ana", "+1 202 555 0143", "US", "fb", null, null));
+
+    @Test
+    void viewsMatchTheRecordsBuiltFromEachRow() {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        ColumnarRecords input = new ColumnarRecords();
+        input.addAll(ROWS);
+        ResultColumns columns = new ResultColumns(input);
+        List<ValidPhoneRecord> expectedValid = new ArrayList<>();
+        List<InvalidPhoneRecord> expectedInvalid = new ArrayList<>();
+        for (PhoneRecord row : ROWS) {
+            ValidationOutcome outcome = validator.validateNumber(row.getPhoneNumber(), row.getCountry());
+            columns.add(outcome);
+            if (outcome.isValid()) {
+                expectedValid.add(outcome.toValidRecord(row));
+            } else {
+                expectedInvalid.add(outcome.toInvalidRecord(row));
+            }
+        }
+
+        assertEquals(ROWS.size(), columns.size());
+        assertEquals(3, columns.getValidCount());
+        assertEquals(expectedValid.size(), columns.validRecords().size());
+        assertEquals(expectedInvalid.size(), columns.invalidRecords().size());
+
+        int i = 0;
+        for (ValidPhoneRecord got : columns.validRecords()) {
+            ValidPhoneRecord want = expectedValid.get(i++);
+            assertEquals(want.getRowNumber(), got.getRowNumber());
+            assertEquals(want.getId(), got.getId());
+            assertEquals(want.getEmail(), got.getEmail());
+            assertEquals(want.getName(), got.getName());
+            assertEquals(want.getOriginalPhoneNumber(), got.getOriginalPhoneNumber());
+            assertEquals(want.getE164(), got.getE164());
+            assertEquals(want.getInternational(), got.getInternational());
+            assertEquals(want.getNational(), got.getNational());
+            assertEquals(want.getCountryCode(), got.getCountryCode());
+            assertEquals(want.getRegion(), got.getRegion());
+            assertEquals(want.getType(), got.getType());
+            assertEquals(want.getPlatform(), got.getPlatform());
+            assertEquals(want.getValidationMethod(), got.getValidationMethod());
+            assertEquals(want.getOriginalCountry(), got.getOriginalCountry());
+            assertEquals(want.getOriginalColumnValues(), got.getOriginalColumnValues() == null
+                    ? null : new ArrayList<>(got.getOriginalColumnValues()));
+        }
+        i = 0;
+        for (InvalidPhoneRecord got : columns.invalidRecords()) {
+            InvalidPhoneRecord want = expectedInvalid.get(i++);
+            assertEquals(want.getRowNumber(), got.getRowNumber());
+            assertEquals(want.getId(), got.getId());
+            assertEquals(want.getOriginalPhoneNumber(), got.getOriginalPhoneNumber());
+            assertEquals(want.getError(), got.getError());
+            assertEquals(want.getOriginalCountry(), got.getOriginalCountry());
+        }
+    }
+
+    @Test
+    void moreOutcomesThanRowsAreRejected() {
+        ResultColumns columns = new ResultColumns(new ArrayList<>(ROWS.subList(0, 1)));
+        columns.add(ValidationOutcome.invalid(InvalidReason.EMPTY));
+        assertThrows(IllegalStateException.class, () -> columns.add(ValidationOutcome.invalid(InvalidReason.EMPTY)));
+    }
+}
@@ -0,0 +1,253 @@
+package com.facebookleads.validator;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultPagesTest {
+
+    // Longer than writeUTF's 64 KB limit, in multi-byte characters
+    private static final String LONG_COUNTRY = repeat("Ñ", 40_000);
+    private static final List<String> COUNTRIES = Arrays.asList("日本", "Côte d’Ivoire", "Ελλάδα", "🏳️", LONG_COUNTRY);
+
+    // Read by api/tests/test_result_pages.py; rewrite both with -DupdateFixtures=true after a format change
+    private static final Path FIXTURES = Paths.get("api", "tests", "fixtures");
+    private static final String EXPECTED_QUERIES = "result_pages_queries.json";
+
+    private static final List<ValidPhoneRecord> VALID = new ArrayList<>();
+    private static final List<InvalidPhoneRecord> INVALID = new ArrayList<>();
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void validate() {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        List<PhoneRecord> rows = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            String name = i % 3 == 0 ? "Zoë Ångström " + i : i % 3 == 1 ? "张伟 " + i : "Ali " + i;
+            rows.add(new PhoneRecord(rows.size() + 1, String.valueOf(i), "lead" + i + "@exämple.com", name,
+                    "+55 11 9" + (12340000 + i), "Brazil", "fb", null));
+            // Unknown countries stay as given in the region column of invalid rows
+            rows.add(new PhoneRecord(rows.size() + 1, String.valueOf(i), null, name, "12" + i,
+                    COUNTRIES.get(i % COUNTRIES.size()), "ig", null));
+        }
+        rows.add(new PhoneRecord(rows.size() + 1, "x", null, null, "", null, null, null));
+        for (PhoneRecord row : rows) {
+            ValidationOutcome outcome = validator.validateNumber(row.getPhoneNumber(), row.getCountry());
+            if (outcome.isValid()) {
+                VALID.add(outcome.toValidRecord(row));
+            } else {
+                INVALID.add(outcome.toInvalidRecord(row));
+            }
+        }
+    }
+
+    @Test
+    void pagesReadBackTheRecordsAsWritten() throws IOException {
+        Set<FormattedNumber.Field> formats = EnumSet.allOf(FormattedNumber.Field.class);
+        try (ResultPages pages = write(formats)) {
+            assertEquals(VALID.size(), pages.getCount(ResultPages.Table.VALID));
+            assertEquals(INVALID.size(), pages.getCount(ResultPages.Table.INVALID));
+
+            Gson gson = gson(formats);
+            List<String> valid = new ArrayList<>();
+            for (ValidPhoneRecord record : VALID) {
+                valid.add(gson.toJson(record, ValidPhoneRecord.class));
+            }
+            List<String> invalid = new ArrayList<>();
+            for (InvalidPhoneRecord record : INVALID) {
+                invalid.add(gson.toJson(record, InvalidPhoneRecord.class));
+            }
+            assertEquals(valid, readAll(pages, new ResultPages.Query()));
+            assertEquals(invalid, readAll(pages, new ResultPages.Query().table(ResultPages.Table.INVALID)));
+
+            // A window of the output order
+            ResultPages.Page page = pages.query(new ResultPages.Query().offset(10).limit(7));
+            assertEquals(VALID.size(), page.getTotal());
+            assertEquals(valid.subList(10, 17), page.getRecords());
+        }
+    }
+
+    @Test
+    void dictionaryValuesReadBackInSortOrderWithTheirCounts() throws IOException {
+        try (ResultPages pages = write(EnumSet.allOf(FormattedNumber.Field.class))) {
+            Map<String, Integer> expected = new LinkedHashMap<>();
+            COUNTRIES.stream().sorted().forEach(country -> expected.put(country, 0));
+            for (InvalidPhoneRecord record : INVALID) {
+                if (record.getOriginalCountry() != null) {
+                    expected.merge(record.getOriginalCountry(), 1, Integer::sum);
+                }
+            }
+            Map<String, Integer> values = pages.getValues(ResultPages.Table.INVALID, ResultPages.Column.REGION);
+            assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(values.entrySet()));
+            assertEquals(LONG_COUNTRY.length(), values.keySet().stream().mapToInt(String::length).max().getAsInt());
+        }
+    }
+
+    @Test
+    void nonAsciiFilterValuesSelectTheirRows() throws IOException {
+        Gson gson = gson(EnumSet.allOf(FormattedNumber.Field.class));
+        try (ResultPages pages = write(EnumSet.allOf(FormattedNumber.Field.class))) {
+            for (String country : COUNTRIES) {
+                List<String> expected = new ArrayList<>();
+                for (InvalidPhoneRecord record : INVALID) {
+                    if (country.equals(record.getOriginalCountry())) {
+                        expected.add(gson.toJson(record, InvalidPhoneRecord.class));
+                    }
+                }
+                ResultPages.Query query = new ResultPages.Query().table(ResultPages.Table.INVALID)
+                        .filter(ResultPages.Column.REGION, country);
+                assertFalse(expected.isEmpty());
+                assertEquals(expected, readAll(pages, query));
+            }
+        }
+    }
+
+    @Test
+    void sortedPagesFollowTheDictionaryOrder() throws IOException {
+        try (ResultPages pages = write(EnumSet.allOf(FormattedNumber.Field.class))) {
+            List<String> order = new ArrayList<>(pages.getValues(ResultPages.Table.INVALID, ResultPages.Column.REGION).keySet());
+            List<String> descending = readAll(pages, new ResultPages.Query().table(ResultPages.Table.INVALID)
+                    .sort(ResultPages.Column.REGION, true));
+            assertEquals(INVALID.size(), descending.size());
+            // Rows without a region (code 0) sort first, so they come last when descending
+            assertTrue(descending.get(0).contains(order.get(order.size() - 1)));
+            assertTrue(descending.get(descending.size() - 1).contains("\"originalPhoneNumber\":\"\""),
+                    descending.get(descending.size() - 1));
+        }
+    }
+
+    @Test
+    void pythonReaderFixtureMatchesTheWriter() throws IOException {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        List<ValidPhoneRecord> valid = new ArrayList<>();
+        List<InvalidPhoneRecord> invalid = new ArrayList<>();
+        // Number prefix, country, and the first of the suffixes that follow it ("" for none)
+        String[][] numbers = {{"+55 11 9", "Brazil", "12340000"}, {"+55 11 3", "Brazil", "1234000"},
+                {"+1 202 555 0", "US", "100"}, {"+44 7700 900", "GB", "100"}, {"", "日本", ""},
+                {"1", "Côte d’Ivoire", "0"}, {"abc", null, ""}, {"+999 1", "BR", "0"}};
+        for (int i = 0; i < 64; i++) {
+            String[] number = numbers[i % numbers.length];
+            String phone = number[2].isEmpty() ? number[0] : number[0] + (Integer.parseInt(number[2]) + i);
+            PhoneRecord row = new PhoneRecord(i + 1, String.valueOf(i), "lead" + i + "@exämple.com",
+                    i % 2 == 0 ? "Zoë " + i : "张伟 " + i, phone, number[1], i % 3 == 0 ? "fb" : "ig", null);
+            ValidationOutcome outcome = validator.validateNumber(row.getPhoneNumber(), row.getCountry());
+            if (outcome.isValid()) {
+                valid.add(outcome.toValidRecord(row));
+            } else {
+                invalid.add(outcome.toInvalidRecord(row));
+            }
+        }
+        ResultPages.write(valid, invalid, EnumSet.allOf(FormattedNumber.Field.class), dir);
+
+        // Two filters, sort plus filter, and plain pages, with the answers the Java reader gives
+        JsonArray queries = new JsonArray();
+        try (ResultPages pages = ResultPages.open(dir.resolve(ResultPages.FILE_NAME))) {
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("region", "BR", "type", "MOBILE"), null, false, 0, 50));
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("region", "BR", "method", "country_code"), null, false, 3, 4));
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("region", "US", "type", "MOBILE"), null, false, 0, 50));
+            queries.add(expected(pages, ResultPages.Table.INVALID, filters("region", "日本", "error", "EMPTY"), null, false, 0, 50));
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("region", "BR"), "type", false, 0, 50));
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("method", "country_code"), "region", true, 2, 5));
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("type", "FIXED_LINE", "method", "country_code"), "region", true, 0, 50));
+            queries.add(expected(pages, ResultPages.Table.INVALID, filters("error", "NOT_VALID"), "region", true, 0, 50));
+            queries.add(expected(pages, ResultPages.Table.INVALID, filters(), "error", false, 3, 4));
+            queries.add(expected(pages, ResultPages.Table.VALID, filters("region", "FR"), null, false, 0, 50));
+        }
+        byte[] file = Files.readAllBytes(dir.resolve(ResultPages.FILE_NAME));
+        byte[] answers = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().serializeNulls().create()
+                .toJson(queries).concat("\n").getBytes(StandardCharsets.UTF_8);
+        if (Boolean.getBoolean("updateFixtures")) {
+            Files.createDirectories(FIXTURES);
+            Files.write(FIXTURES.resolve(ResultPages.FILE_NAME), file);
+            Files.write(FIXTURES.resolve(EXPECTED_QUERIES), answers);
+        }
+        assertArrayEquals(file, Files.readAllBytes(FIXTURES.resolve(ResultPages.FILE_NAME)),
+                "results.pages fixture is stale; rerun with -DupdateFixtures=true");
+        assertEquals(new String(answers, StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(FIXTURES.resolve(EXPECTED_QUERIES)), StandardCharsets.UTF_8));
+    }
+
+    private ResultPages write(Set<FormattedNumber.Field> formats) throws IOException {
+        ResultPages.write(VALID, INVALID, formats, dir);
+        return ResultPages.open(dir.resolve(ResultPages.FILE_NAME));
+    }
+
+    /** A query as the Python reader takes it, with the page the Java reader returns for it. */
+    private static JsonObject expected(ResultPages pages, ResultPages.Table table, Map<String, String> filters,
+                                       String sort, boolean descending, int offset, int limit) throws IOException {
+        ResultPages.Query query = new ResultPages.Query().table(table).offset(offset).limit(limit)
+                .sort(sort == null ? null : ResultPages.Column.parse(sort), descending);
+        JsonObject filterJson = new JsonObject();
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            query.filter(ResultPages.Column.parse(filter.getKey()), filter.getValue());
+            filterJson.addProperty(filter.getKey(), filter.getValue());
+        }
+        ResultPages.Page page = pages.query(query);
+        JsonArray records = new JsonArray();
+        for (String record : page.getRecords()) {
+            records.add(JsonParser.parseString(record));
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("table", table.name().toLowerCase());
+        json.add("filters", filterJson);
+        json.addProperty("sort", sort);
+        json.addProperty("descending", descending);
+        json.addProperty("offset", offset);
+        json.addProperty("limit", limit);
+        json.addProperty("total", page.getTotal());
+        json.add("records", records);
+        return json;
+    }
+
+    private static Map<String, String> filters(String... columnsAndValues) {
+        Map<String, String> filters = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            filters.put(columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return filters;
+    }
+
+    private static Gson gson(Set<FormattedNumber.Field> formats) {
+        return new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(ValidPhoneRecord.class, new ValidPhoneRecord.Json(formats))
+                .create();
+    }
+
+    private static List<String> readAll(ResultPages pages, ResultPages.Query query) throws IOException {
+        return pages.query(query.offset(0).limit(Integer.MAX_VALUE)).getRecords();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package com.facebookleads.validator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchIndexTest {
+
+    private static final String[] NAMES = {
+            "Zoë Ångström", "张伟", "Çağrı Öztürk", "José 🙂 Núñez", "Ana", "ana maria", "Анна Каренина", "Zoe"};
+    // Cut at 255 bytes, each key splits a 2-, 3- or 4-byte character there unless cut before it
+    private static final String LONG_ACCENTED = "ab" + repeat("é", 200);
+    private static final String LONG_CJK = "x" + repeat("張", 100);
+    private static final String LONG_EMOJI = "yz" + repeat("🙂", 80);
+    // Shares its first 255 bytes with LONG_ACCENTED
+    private static final String LONG_ACCENTED_OTHER_TAIL = LONG_ACCENTED + " Smith";
+
+    private static final List<ValidPhoneRecord> VALID = new ArrayList<>();
+    private static final List<InvalidPhoneRecord> INVALID = new ArrayList<>();
+    private static final Map<SearchIndex.Field, List<Object[]>> KEYS = new EnumMap<>(SearchIndex.Field.class);
+
+    @TempDir
+    static Path dir;
+
+    private static SearchIndex index;
+
+    @BeforeAll
+    static void writeIndex() throws IOException {
+        PhoneNumberValidator validator = new PhoneNumberValidator();
+        List<String> names = new ArrayList<>(Arrays.asList(NAMES));
+        names.addAll(Arrays.asList(LONG_ACCENTED, LONG_CJK, LONG_EMOJI, LONG_ACCENTED_OTHER_TAIL));
+        for (int i = 0; i < 400; i++) {
+            String phone = i % 4 == 0 ? "12-" + i
+                    : i % 4 == 1 ? "+55 (11) 9" + (12340000 + i)
+                    : i % 4 == 2 ? "+1 202 555 " + (1000 + i) : "+91 98765 " + (10000 + i);
+            String email = i % 9 == 0 ? null : (i % 2 == 0 ? "Lead" : "zoë.") + i + "@Exämple.com";
+            String name = names.get(i % names.size()) + (i < names.size() ? "" : " " + i);
+            PhoneRecord row = new PhoneRecord(i + 1, String.valueOf(i), email, name, phone, null, "fb", null);
+            ValidationOutcome outcome = validator.validateNumber(phone, null);
+            if (outcome.isValid()) {
+                VALID.add(outcome.toValidRecord(row));
+            } else {
+                INVALID.add(outcome.toInvalidRecord(row));
+            }
+        }
+        assertTrue(!VALID.isEmpty() && !INVALID.isEmpty());
+        for (SearchIndex.Field field : SearchIndex.Field.values()) {
+            KEYS.put(field, new ArrayList<>());
+        }
+        for (ValidPhoneRecord record : VALID) {
+            String digits = SearchIndex.Field.E164.normalize(record.getE164());
+            key(SearchIndex.Field.E164, digits, record.getRowNumber());
+            key(SearchIndex.Field.E164, digits.substring(record.getCountryCode().replace("+", "").length()),
+                    record.getRowNumber());
+            textKeys(record.getEmail(), record.getName(), record.getRowNumber());
+        }
+        for (InvalidPhoneRecord record : INVALID) {
+            key(SearchIndex.Field.E164, SearchIndex.Field.E164.normalize(record.getOriginalPhoneNumber()),
+                    record.getRowNumber());
+            textKeys(record.getEmail(), record.getName(), record.getRowNumber());
+        }
+
+        SearchIndex.write(VALID, INVALID, dir);
+        index = SearchIndex.open(dir.resolve(SearchIndex.FILE_NAME));
+    }
+
+    @Test
+    void digitPrefixesFindNumbersByE164AndNationalNumber() {
+        for (String prefix : Arrays.asList("55", "5511", "551191234", "1202555", "202555", "91", "9876510",
+                "11 9", "+55 (11)", "12", "1", "0", "9999999")) {
+            assertSearch(SearchIndex.Field.E164, prefix);
+        }
+        assertTrue(index.search(SearchIndex.Field.E164, "5511", Integer.MAX_VALUE).length > 0);
+        // No digits, no query
+        assertArrayEquals(new int[0], index.search(SearchIndex.Field.E164, "+()", 10));
+    }
+
+    @Test
+    void emailPrefixesIgnoreCase() {
+        for (String prefix : Arrays.asList("lead", "LEAD1", "lead10@", "zoë.", "ZOË.1", "zoe.", "lead2@exämple.com",
+                "nobody")) {
+            assertSearch(SearchIndex.Field.EMAIL, prefix);
+        }
+        assertTrue(index.search(SearchIndex.Field.EMAIL, "ZOË.1", Integer.MAX_VALUE).length > 0);
+    }
+
+    @Test
+    void multibyteNamePrefixesFindWholeNamesAndWords() {
+        for (String prefix : Arrays.asList("zoë", "Zoë Å", "ångström", "張", "张", "张伟", "çağ", "öz", "josé 🙂",
+                "🙂", "núñez", "ana", "ana m", "анна", "КАРЕНИНА", "zoe", "z", "é", "  Ana   Maria ")) {
+            assertSearch(SearchIndex.Field.NAME, prefix);
+        }
+        assertTrue(index.search(SearchIndex.Field.NAME, "ångström", Integer.MAX_VALUE).length > 0);
+        assertTrue(index.search(SearchIndex.Field.NAME, "анна", Integer.MAX_VALUE).length > 0);
+    }
+
+    @Test
+    void keysCutAtTheByteLimitStayWholeCharacters() {
+        for (String name : Arrays.asList(LONG_ACCENTED, LONG_CJK, LONG_EMOJI)) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            int length = SearchIndex.keyLength(bytes);
+            assertTrue(length <= 255 && length > 251, name.substring(0, 3) + ": " + length);
+            // The stored key decodes and re-encodes to the same bytes: no split character
+            String kept = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            assertArrayEquals(Arrays.copyOf(bytes, length), kept.getBytes(StandardCharsets.UTF_8));
+            assertTrue(name.startsWith(kept));
+        }
+        assertEquals(254, SearchIndex.keyLength(LONG_ACCENTED.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(253, SearchIndex.keyLength(LONG_CJK.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(254, SearchIndex.keyLength(LONG_EMOJI.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, SearchIndex.keyLength("abc".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void prefixesLongerThanTheByteLimitFindTheirCutKeys() {
+        for (String name : Arrays.asList(LONG_ACCENTED, LONG_CJK, LONG_EMOJI, LONG_ACCENTED_OTHER_TAIL)) {
+            int[] rows = index.search(SearchIndex.Field.NAME, name, Integer.MAX_VALUE);
+            assertTrue(rows.length > 0, name.substring(0, 3));
+            assertSearch(SearchIndex.Field.NAME, name);
+            // The key as stored, and one character less, find the same rows
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            String kept = new String(bytes, 0, SearchIndex.keyLength(bytes), StandardCharsets.UTF_8);
+            assertSearch(SearchIndex.Field.NAME, kept);
+            assertSearch(SearchIndex.Field.NAME, kept.substring(0, kept.offsetByCodePoints(kept.length(), -1)));
+        }
+        // Past the cap only the first 255 bytes count, so both long names match either
+        assertArrayEquals(index.search(SearchIndex.Field.NAME, LONG_ACCENTED, Integer.MAX_VALUE),
+                index.search(SearchIndex.Field.NAME, LONG_ACCENTED_OTHER_TAIL, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void anyFieldSearchAndLimits() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (SearchIndex.Field field : SearchIndex.Field.values()) {
+            for (int row : expected(field, "ana")) {
+                expected.add(row);
+            }
+        }
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(),
+                index.search("ana", Integer.MAX_VALUE));
+
+        int[] all = index.search(SearchIndex.Field.E164, "5511", Integer.MAX_VALUE);
+        int[] limited = index.search(SearchIndex.Field.E164, "5511", 5);
+        assertEquals(5, limited.length);
+        assertTrue(Arrays.stream(limited).allMatch(row -> Arrays.binarySearch(all, row) >= 0));
+        assertArrayEquals(new int[0], index.search(SearchIndex.Field.E164, "5511", 0));
+        assertArrayEquals(new int[0], index.search(SearchIndex.Field.NAME, "   ", 10));
+    }
+
+    private static void assertSearch(SearchIndex.Field field, String prefix) {
+        assertArrayEquals(expected(field, prefix), index.search(field, prefix, Integer.MAX_VALUE),
+                field + " " + prefix);
+    }
+
+    /** Rows with a key of the field starting with the prefix, by brute force. */
+    private static int[] expected(SearchIndex.Field field, String prefix) {
+        byte[] wanted = cut(field.normalize(prefix));
+        TreeSet<Integer> rows = new TreeSet<>();
+        if (wanted.length > 0) {
+            for (Object[] key : KEYS.get(field)) {
+                byte[] bytes = (byte[]) key[0];
+                if (bytes.length >= wanted.length && Arrays.equals(Arrays.copyOf(bytes, wanted.length), wanted)) {
+                    rows.add((Integer) key[1]);
+                }
+            }
+        }
+        return rows.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void textKeys(String email, String name, int row) {
+        if (email != null) {
+            key(SearchIndex.Field.EMAIL, SearchIndex.Field.EMAIL.normalize(email), row);
+        }
+        String normalized = SearchIndex.Field.NAME.normalize(name);
+        key(SearchIndex.Field.NAME, normalized, row);
+        for (String word : normalized.split(" ")) {
+            key(SearchIndex.Field.NAME, word, row);
+        }
+    }
+
+    private static void key(SearchIndex.Field field, String key, int row) {
+        KEYS.get(field).add(new Object[] {cut(key), row});
+    }
+
+    private static byte[] cut(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return Arrays.copyOf(bytes, SearchIndex.keyLength(bytes));
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}